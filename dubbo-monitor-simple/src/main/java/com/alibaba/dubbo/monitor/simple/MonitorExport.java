@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.query.StatisticsExport;
+import com.alibaba.dubbo.monitor.simple.statistics.FileStatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsStore;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * MonitorExport exports the statistics of the configured store from the command line, like the
+ * /export page of a running monitor:
+ * <pre>
+ * java -cp conf:lib/* com.alibaba.dubbo.monitor.simple.MonitorExport [--format csv|ndjson]
+ *     [--from yyyyMMdd|millis] [--to yyyyMMdd|millis] [--service name] [--method name] [--host ip]
+ *     [--gzip] [--output file]
+ * </pre>
+ * Without output, the records are written to the standard output.
+ */
+public class MonitorExport {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        if (System.getProperty(Constants.DUBBO_PROPERTIES_KEY) == null) {
+            System.setProperty(Constants.DUBBO_PROPERTIES_KEY, "conf/dubbo.properties");
+        }
+        String format = StatisticsExport.CSV;
+        String today = DateUtils.today();
+        String from = today;
+        String to = today;
+        String service = null;
+        String method = null;
+        String host = null;
+        String output = null;
+        boolean gzip = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--gzip".equals(arg)) {
+                gzip = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                usage("Missing value of " + arg);
+                return;
+            }
+            String value = args[++i];
+            if ("--format".equals(arg)) {
+                format = value;
+            } else if ("--from".equals(arg)) {
+                from = value;
+            } else if ("--to".equals(arg)) {
+                to = value;
+            } else if ("--service".equals(arg)) {
+                service = value;
+            } else if ("--method".equals(arg)) {
+                method = value;
+            } else if ("--host".equals(arg)) {
+                host = value;
+            } else if ("--output".equals(arg)) {
+                output = value;
+            } else {
+                usage("Unknown option " + arg);
+                return;
+            }
+        }
+        StatisticsExport export;
+        try {
+            export = new StatisticsExport(format, StatisticsExport.parseTime(from, false), StatisticsExport.parseTime(to, true));
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+            return;
+        }
+        export.setService(service);
+        export.setMethod(method);
+        export.setHost(host);
+        StatisticsStore store = ExtensionLoader.getExtensionLoader(StatisticsStore.class).getExtension(
+                ConfigUtils.getProperty("dubbo.statistics.store", FileStatisticsStore.NAME));
+        OutputStream stream = output == null ? System.out : new FileOutputStream(output);
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(stream, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? compressed : stream, "UTF-8"), BUFFER_SIZE);
+        try {
+            long records = export.execute(store, writer);
+            if (compressed != null) {
+                compressed.finish();
+            }
+            System.err.println("Exported " + records + " records.");
+        } finally {
+            if (output != null) {
+                writer.close();
+            } else {
+                writer.flush();
+            }
+        }
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Usage: MonitorExport [--format csv|ndjson] [--from yyyyMMdd|millis] [--to yyyyMMdd|millis]"
+                + " [--service name] [--method name] [--host ip] [--gzip] [--output file]");
+        System.exit(1);
+    }
+
+}
@@ -18,44 +18,80 @@ package com.alibaba.dubbo.monitor.simple;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.ConcurrentHashSet;
 import com.alibaba.dubbo.common.utils.ConfigUtils;
 import com.alibaba.dubbo.common.utils.NamedThreadFactory;
 import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.config.ApplicationConfig;
+import com.alibaba.dubbo.config.ProtocolConfig;
+import com.alibaba.dubbo.config.RegistryConfig;
+import com.alibaba.dubbo.config.ServiceConfig;
 import com.alibaba.dubbo.monitor.MonitorService;
-import com.alibaba.dubbo.monitor.simple.common.CountUtils;
-
-import org.jfree.chart.ChartFactory;
-import org.jfree.chart.JFreeChart;
-import org.jfree.chart.axis.DateAxis;
-import org.jfree.chart.plot.XYPlot;
-import org.jfree.data.time.Minute;
-import org.jfree.data.time.TimeSeries;
-import org.jfree.data.time.TimeSeriesCollection;
-
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
+import com.alibaba.dubbo.monitor.simple.alert.Alert;
+import com.alibaba.dubbo.monitor.simple.alert.AlertEngine;
+import com.alibaba.dubbo.monitor.simple.alert.AlertRule;
+import com.alibaba.dubbo.monitor.simple.alert.AlertSink;
+import com.alibaba.dubbo.monitor.simple.alert.LogAlertSink;
+import com.alibaba.dubbo.monitor.simple.anomaly.Anomaly;
+import com.alibaba.dubbo.monitor.simple.anomaly.AnomalyDetector;
+import com.alibaba.dubbo.monitor.simple.chart.ChartCache;
+import com.alibaba.dubbo.monitor.simple.chart.ChartExecutor;
+import com.alibaba.dubbo.monitor.simple.chart.ChartMetrics;
+import com.alibaba.dubbo.monitor.simple.chart.ChartRenderer;
+import com.alibaba.dubbo.monitor.simple.cluster.ClusterService;
+import com.alibaba.dubbo.monitor.simple.cluster.ClusterServiceImpl;
+import com.alibaba.dubbo.monitor.simple.cluster.DubboClusterTransport;
+import com.alibaba.dubbo.monitor.simple.cluster.MonitorCluster;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.container.RegistryContainer;
+import com.alibaba.dubbo.monitor.simple.ingest.OverloadPolicy;
+import com.alibaba.dubbo.monitor.simple.ingest.ReportSampler;
+import com.alibaba.dubbo.monitor.simple.ingest.RingBuffer;
+import com.alibaba.dubbo.monitor.simple.ingest.Sample;
+import com.alibaba.dubbo.monitor.simple.ingest.ShardMetrics;
+import com.alibaba.dubbo.monitor.simple.ingest.SpillJournal;
+import com.alibaba.dubbo.monitor.simple.query.SeriesQuery;
+import com.alibaba.dubbo.monitor.simple.query.StatisticsLookup;
+import com.alibaba.dubbo.monitor.simple.query.TimeSeries;
+import com.alibaba.dubbo.monitor.simple.retention.RetentionManager;
+import com.alibaba.dubbo.monitor.simple.statistics.FileStatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.HeavyHitters;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyAggregator;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyHistogram;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyListener;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyStore;
+import com.alibaba.dubbo.monitor.simple.statistics.RollupCompactor;
+import com.alibaba.dubbo.monitor.simple.statistics.RollupStore;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.SeriesCounters;
+import com.alibaba.dubbo.monitor.simple.statistics.SeriesDictionary;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsAggregator;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsListener;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+import com.alibaba.dubbo.monitor.simple.statistics.SummaryIndex;
+import com.alibaba.dubbo.monitor.simple.statistics.TopMetric;
+
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.text.DecimalFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * SimpleMonitorService
@@ -64,37 +100,134 @@ public class SimpleMonitorService implements MonitorService {
 
     private static final Logger logger = LoggerFactory.getLogger(SimpleMonitorService.class);
 
-    private static final String[] types = {SUCCESS, FAILURE, ELAPSED, CONCURRENT, MAX_ELAPSED, MAX_CONCURRENT};
+    private static final String[] types = StatisticsTypes.TYPES;
+
+    // tells a shard writer to stop
+    private static final Sample POISON = new Sample(0, null, null);
 
-    private static final String POISON_PROTOCOL = "poison";
+    private static SimpleMonitorService INSTANCE;
     private final ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(1, new NamedThreadFactory("DubboMonitorTimer", true));
     private final ScheduledFuture<?> chartFuture;
-    private final Thread writeThread;
-    private final BlockingQueue<URL> queue;
-    private String statisticsDirectory = "statistics";
+    private final ScheduledFuture<?> rollupFuture;
+    private final ScheduledFuture<?> expireFuture;
+    // deletions run apart from the timer, at low priority and paced, so they never delay the charts
+    private final ScheduledExecutorService retentionExecutor = Executors.newScheduledThreadPool(1,
+            new NamedThreadFactory("DubboMonitorRetention", true) {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = super.newThread(runnable);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+    private final ScheduledFuture<?> retentionFuture;
+    private final RetentionManager retentionManager;
+    // null unless the monitor runs as one node of a cluster
+    private final MonitorCluster cluster;
+    // membership is polled apart from the timer, so that a slow registry never delays the charts
+    private final ScheduledExecutorService clusterExecutor;
+    private final ScheduledFuture<?> clusterFuture;
+    private final ServiceConfig<ClusterService> clusterExporter;
+    private final ChartExecutor chartExecutor;
+    private final SeriesDictionary dictionary;
+    private final Shard[] shards;
+    private final AtomicInteger activeShards;
+    private final int batchSize;
+    private final long flushInterval;
+    private final long aggregateDelay;
+    private final OverloadPolicy overloadPolicy;
+    private final int sampleRate;
+    private final StatisticsStore store;
+    private final RollupStore rollupStore;
+    private final LatencyStore latencyStore;
+    private final SummaryIndex summaryIndex;
+    private final HeavyHitters heavyHitters;
+    private final AlertEngine alertEngine;
+    private final AnomalyDetector anomalyDetector;
+    private final SeriesCounters seriesCounters;
+    private final Set<String> dirtyCharts = new ConcurrentHashSet<String>();
+    private final ChartCache chartCache;
+    private final boolean prerender;
+    private boolean chartsInitialized;
     private String chartsDirectory = "charts";
     private volatile boolean running = true;
 
     public SimpleMonitorService() {
-        queue = new LinkedBlockingQueue<URL>(Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.queue", "100000")));
-        writeThread = new Thread(new Runnable() {
-            public void run() {
-                while (running) {
-                    try {
-                        write(); // write statistics
-                    } catch (Throwable t) {
-                        logger.error("Unexpected error occur at write stat log, cause: " + t.getMessage(), t);
-                        try {
-                            Thread.sleep(5000); // retry after 5 secs
-                        } catch (Throwable t2) {
-                        }
-                    }
+        batchSize = Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.batch", "1000"));
+        flushInterval = Long.parseLong(ConfigUtils.getProperty("dubbo.monitor.flush.interval", "1000"));
+        store = ExtensionLoader.getExtensionLoader(StatisticsStore.class).getExtension(
+                ConfigUtils.getProperty("dubbo.statistics.store", FileStatisticsStore.NAME));
+        latencyStore = new LatencyStore();
+        summaryIndex = new SummaryIndex(store, latencyStore, ConfigUtils.getProperty("dubbo.summary.directory",
+                ConfigUtils.getProperty("dubbo.statistics.directory", "statistics") + "/summary"),
+                Long.parseLong(ConfigUtils.getProperty("dubbo.monitor.summary.interval", "60000")));
+        int shardCount = Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.shards",
+                String.valueOf(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)))));
+        heavyHitters = new HeavyHitters(Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.top.capacity", "100")),
+                shardCount);
+        alertEngine = createAlertEngine();
+        seriesCounters = new SeriesCounters(
+                Boolean.parseBoolean(ConfigUtils.getProperty("dubbo.monitor.metrics.hosts", "false")),
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.metrics.series", "100000")),
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.metrics.ttl", "60")));
+        anomalyDetector = new AnomalyDetector(
+                Double.parseDouble(ConfigUtils.getProperty("dubbo.monitor.anomaly.alpha", "0.05")),
+                Double.parseDouble(ConfigUtils.getProperty("dubbo.monitor.anomaly.threshold", "4")),
+                Double.parseDouble(ConfigUtils.getProperty("dubbo.monitor.anomaly.ratio", "0.5")),
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.anomaly.warmup", "30")),
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.anomaly.failures", "5")),
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.anomaly.series", "20000")),
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.anomaly.history", "1000")),
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.anomaly.silence", "5")),
+                Double.parseDouble(ConfigUtils.getProperty("dubbo.monitor.anomaly.floor", "1")),
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.anomaly.idle", "1440")));
+        aggregateDelay = Long.parseLong(ConfigUtils.getProperty("dubbo.monitor.aggregate.delay", "10000"));
+        String policy = ConfigUtils.getProperty("dubbo.monitor.overload", OverloadPolicy.DROP_NEWEST.getName());
+        overloadPolicy = OverloadPolicy.parse(policy);
+        if (overloadPolicy == null) {
+            throw new IllegalArgumentException("Unsupported overload policy " + policy
+                    + ", expected drop-newest, drop-oldest or sample.");
+        }
+        sampleRate = Math.max(1, Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.overload.sample", "10")));
+        dictionary = new SeriesDictionary(ConfigUtils.getProperty("dubbo.series.dictionary",
+                ConfigUtils.getProperty("dubbo.statistics.directory", "statistics") + "/series.dictionary"),
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.series.max", "100000")));
+        chartExecutor = new ChartExecutor(
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.chart.threads",
+                        String.valueOf(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)))),
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.chart.pending", "64")),
+                Long.parseLong(ConfigUtils.getProperty("dubbo.monitor.chart.timeout", "30000")));
+        chartCache = new ChartCache(store, latencyStore,
+                Long.parseLong(ConfigUtils.getProperty("dubbo.monitor.chart.cache.size", "33554432")),
+                Long.parseLong(ConfigUtils.getProperty("dubbo.monitor.chart.timeout", "30000")));
+        prerender = Boolean.parseBoolean(ConfigUtils.getProperty("dubbo.monitor.chart.prerender", "false"));
+        int queueSize = Math.max(1, Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.queue", "100000")) / shardCount);
+        int journalCapacity = Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.journal.capacity", "262144"));
+        File journalDirectory = new File(ConfigUtils.getProperty("dubbo.monitor.journal.directory",
+                ConfigUtils.getProperty("dubbo.statistics.directory", "statistics") + "/journal"));
+        if (recover(journalDirectory)) {
+            // no journaled sample refers to the ids anymore, so the unused series can go
+            dictionary.expire(Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.series.expire", "7")));
+        }
+        shards = new Shard[shardCount];
+        activeShards = new AtomicInteger(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            SpillJournal journal = null;
+            if (journalCapacity > 0) {
+                File file = new File(journalDirectory, "shard-" + i + SpillJournal.SUFFIX);
+                try {
+                    journal = new SpillJournal(file, journalCapacity);
+                } catch (IOException e) {
+                    logger.error("Failed to create journal " + file + ", samples of shard " + i
+                            + " will not be journaled, cause: " + e.getMessage(), e);
                 }
             }
-        });
-        writeThread.setDaemon(true);
-        writeThread.setName("DubboMonitorAsyncWriteLogThread");
-        writeThread.start();
+            shards[i] = new Shard(i, queueSize, journal);
+            Thread thread = new Thread(shards[i]);
+            thread.setDaemon(true);
+            thread.setName("DubboMonitorAsyncWriteLogThread-" + i);
+            thread.start();
+        }
         chartFuture = scheduledExecutorService.scheduleWithFixedDelay(new Runnable() {
             public void run() {
                 try {
@@ -104,297 +237,922 @@ public class SimpleMonitorService implements MonitorService {
                 }
             }
         }, 1, 300, TimeUnit.SECONDS);
-        statisticsDirectory = ConfigUtils.getProperty("dubbo.statistics.directory");
-        chartsDirectory = ConfigUtils.getProperty("dubbo.charts.directory");
-    }
-
-    private static void createChart(String key, String service, String method, String date, String[] types, Map<String, long[]> data, double[] summary, String path) {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMddHHmm");
-        DecimalFormat numberFormat = new DecimalFormat("###,##0.##");
-        TimeSeriesCollection xydataset = new TimeSeriesCollection();
-        for (int i = 0; i < types.length; i++) {
-            String type = types[i];
-            TimeSeries timeseries = new TimeSeries(type);
-            for (Map.Entry<String, long[]> entry : data.entrySet()) {
+        rollupStore = new RollupStore(ConfigUtils.getProperty("dubbo.rollup.directory",
+                ConfigUtils.getProperty("dubbo.statistics.directory", "statistics") + "/rollup"));
+        final RollupCompactor compactor = new RollupCompactor(store, rollupStore);
+        long rollupInterval = Long.parseLong(ConfigUtils.getProperty("dubbo.monitor.rollup.interval", "3600000"));
+        rollupFuture = scheduledExecutorService.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
                 try {
-                    timeseries.add(new Minute(dateFormat.parse(date + entry.getKey())), entry.getValue()[i]);
-                } catch (ParseException e) {
-                    logger.error(e.getMessage(), e);
+                    compactor.run(); // roll up statistics
+                } catch (Throwable t) {
+                    logger.error("Unexpected error occur at roll up statistics, cause: " + t.getMessage(), t);
                 }
             }
-            xydataset.addSeries(timeseries);
-        }
-        JFreeChart jfreechart = ChartFactory.createTimeSeriesChart(
-                "max: " + numberFormat.format(summary[0]) + (summary[1] >= 0 ? " min: " + numberFormat.format(summary[1]) : "")
-                        + " avg: " + numberFormat.format(summary[2]) + (summary[3] >= 0 ? " sum: " + numberFormat.format(summary[3]) : ""),
-                toDisplayService(service) + "  " + method + "  " + toDisplayDate(date), key, xydataset, true, true, false);
-        jfreechart.setBackgroundPaint(Color.WHITE);
-        XYPlot xyplot = (XYPlot) jfreechart.getPlot();
-        xyplot.setBackgroundPaint(Color.WHITE);
-        xyplot.setDomainGridlinePaint(Color.GRAY);
-        xyplot.setRangeGridlinePaint(Color.GRAY);
-        xyplot.setDomainGridlinesVisible(true);
-        xyplot.setRangeGridlinesVisible(true);
-        DateAxis dateaxis = (DateAxis) xyplot.getDomainAxis();
-        dateaxis.setDateFormatOverride(new SimpleDateFormat("HH:mm"));
-        BufferedImage image = jfreechart.createBufferedImage(600, 300);
-        try {
-            if (logger.isInfoEnabled()) {
-                logger.info("write chart: " + path);
-            }
-            File methodChartFile = new File(path);
-            File methodChartDir = methodChartFile.getParentFile();
-            if (methodChartDir != null && !methodChartDir.exists()) {
-                methodChartDir.mkdirs();
+        }, 60000, rollupInterval, TimeUnit.MILLISECONDS);
+        expireFuture = scheduledExecutorService.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    expire(); // expire the state of silent series
+                } catch (Throwable t) {
+                    logger.error("Unexpected error occur at expire series state, cause: " + t.getMessage(), t);
+                }
             }
-            FileOutputStream output = new FileOutputStream(methodChartFile);
-            try {
-                ImageIO.write(image, "png", output);
-                output.flush();
-            } finally {
-                output.close();
+        }, 60, 60, TimeUnit.SECONDS);
+        chartsDirectory = ConfigUtils.getProperty("dubbo.charts.directory");
+        String statisticsDirectory = ConfigUtils.getProperty("dubbo.statistics.directory", "statistics");
+        retentionManager = new RetentionManager(store, latencyStore, rollupStore, summaryIndex, statisticsDirectory,
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.retention.rate", "1000")));
+        retentionManager.setMinuteRetention(Integer.parseInt(ConfigUtils.getProperty("dubbo.statistics.retention.minute", "0")));
+        retentionManager.setHourRetention(Integer.parseInt(ConfigUtils.getProperty("dubbo.statistics.retention.hour", "0")));
+        retentionManager.setDayRetention(Integer.parseInt(ConfigUtils.getProperty("dubbo.statistics.retention.day", "0")));
+        retentionManager.setSummaryRetention(Integer.parseInt(ConfigUtils.getProperty("dubbo.statistics.retention.summary", "0")));
+        retentionManager.setCharts(chartsDirectory,
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.charts.retention", "0")));
+        retentionManager.setArchive(ConfigUtils.getProperty("dubbo.statistics.archive.directory", statisticsDirectory + "/archive"),
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.statistics.archive.after", "0")),
+                Integer.parseInt(ConfigUtils.getProperty("dubbo.statistics.retention.archive", "0")));
+        long retentionInterval = Long.parseLong(ConfigUtils.getProperty("dubbo.monitor.retention.interval", "3600000"));
+        retentionFuture = retentionExecutor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    retentionManager.run(); // archive and delete expired data
+                } catch (Throwable t) {
+                    logger.error("Unexpected error occur at retain statistics, cause: " + t.getMessage(), t);
+                }
             }
-        } catch (IOException e) {
-            logger.warn(e.getMessage(), e);
+        }, 120000, retentionInterval, TimeUnit.MILLISECONDS);
+        if (Boolean.parseBoolean(ConfigUtils.getProperty("dubbo.monitor.cluster", "false"))) {
+            String host = ConfigUtils.getProperty("dubbo.protocol.host", NetUtils.getLocalHost());
+            int port = Integer.parseInt(ConfigUtils.getProperty("dubbo.protocol.port", "7070"));
+            int timeout = Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.cluster.timeout", "3000"));
+            ClusterService clusterService = new ClusterServiceImpl(this);
+            cluster = new MonitorCluster(host + ":" + port, clusterService, new DubboClusterTransport(timeout),
+                    Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.cluster.replicas", "160")),
+                    Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.cluster.batch", "1000")),
+                    Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.cluster.queue", "100000")),
+                    Long.parseLong(ConfigUtils.getProperty("dubbo.monitor.cluster.flush", "1000")),
+                    timeout);
+            long membershipInterval = Long.parseLong(ConfigUtils.getProperty("dubbo.monitor.cluster.interval", "5000"));
+            clusterExecutor = Executors.newScheduledThreadPool(1, new NamedThreadFactory("DubboMonitorMembership", true));
+            clusterFuture = clusterExecutor.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    try {
+                        updateClusterNodes();
+                    } catch (Throwable t) {
+                        logger.error("Unexpected error occur at update monitor cluster nodes, cause: " + t.getMessage(), t);
+                    }
+                }
+            }, 0, membershipInterval, TimeUnit.MILLISECONDS);
+            chartCache.setCluster(cluster);
+            clusterExporter = exportClusterService(clusterService, host, port);
+        } else {
+            cluster = null;
+            clusterExecutor = null;
+            clusterFuture = null;
+            clusterExporter = null;
         }
+        INSTANCE = this;
     }
 
-    private static String toDisplayService(String service) {
-        int i = service.lastIndexOf('.');
-        if (i >= 0) {
-            return service.substring(i + 1);
-        }
+    /**
+     * Export the cluster service of this node, registered so that the other nodes find it, with the
+     * application, registry and protocol the monitor service is exported with.
+     */
+    private static ServiceConfig<ClusterService> exportClusterService(ClusterService clusterService, String host, int port) {
+        ApplicationConfig application = new ApplicationConfig(ConfigUtils.getProperty("dubbo.application.name", "simple-monitor"));
+        application.setOwner(ConfigUtils.getProperty("dubbo.application.owner"));
+        RegistryConfig registry = new RegistryConfig(ConfigUtils.getProperty(RegistryContainer.REGISTRY_ADDRESS));
+        registry.setClient("curator");
+        ProtocolConfig protocol = new ProtocolConfig(Constants.DEFAULT_PROTOCOL, port);
+        // registered as the address the ring knows this node by
+        protocol.setHost(host);
+        ServiceConfig<ClusterService> service = new ServiceConfig<ClusterService>();
+        service.setApplication(application);
+        service.setRegistry(registry);
+        service.setProtocol(protocol);
+        service.setInterface(ClusterService.class);
+        service.setRef(clusterService);
+        service.export();
         return service;
     }
 
-    private static String toDisplayDate(String date) {
-        try {
-            return new SimpleDateFormat("yyyy-MM-dd").format(new SimpleDateFormat("yyyyMMdd").parse(date));
-        } catch (ParseException e) {
-            return date;
-        }
+    public static SimpleMonitorService getInstance() {
+        return INSTANCE;
     }
 
     public void close() {
         try {
             running = false;
-            queue.offer(new URL(POISON_PROTOCOL, NetUtils.LOCALHOST, 0));
+            for (Shard shard : shards) {
+                shard.queue.offer(POISON);
+            }
         } catch (Throwable t) {
             logger.warn(t.getMessage(), t);
         }
         try {
             chartFuture.cancel(true);
+            rollupFuture.cancel(true);
+            expireFuture.cancel(true);
+            retentionFuture.cancel(true);
+            retentionExecutor.shutdown();
+            if (cluster != null) {
+                clusterExporter.unexport();
+                clusterFuture.cancel(true);
+                clusterExecutor.shutdown();
+                cluster.close();
+            }
+            chartExecutor.shutdown();
         } catch (Throwable t) {
             logger.warn(t.getMessage(), t);
         }
     }
 
-    private void write() throws Exception {
-        URL statistics = queue.take();
-        if (POISON_PROTOCOL.equals(statistics.getProtocol())) {
+    /**
+     * The nodes of the cluster are the providers of the cluster service in the registry.
+     */
+    private void updateClusterNodes() {
+        RegistryContainer registry = RegistryContainer.getInstance();
+        if (registry == null) {
             return;
         }
-        String timestamp = statistics.getParameter(Constants.TIMESTAMP_KEY);
-        Date now;
-        if (timestamp == null || timestamp.length() == 0) {
-            now = new Date();
-        } else if (timestamp.length() == "yyyyMMddHHmmss".length()) {
-            now = new SimpleDateFormat("yyyyMMddHHmmss").parse(timestamp);
-        } else {
-            now = new Date(Long.parseLong(timestamp));
+        Set<String> nodes = new HashSet<String>();
+        for (URL url : registry.getProvidersByService(ClusterService.class.getName())) {
+            nodes.add(url.getAddress());
         }
-        String day = new SimpleDateFormat("yyyyMMdd").format(now);
-        SimpleDateFormat format = new SimpleDateFormat("HHmm");
-        for (String key : types) {
-            try {
-                String type;
-                String consumer;
-                String provider;
-                if (statistics.hasParameter(PROVIDER)) {
-                    type = CONSUMER;
-                    consumer = statistics.getHost();
-                    provider = statistics.getParameter(PROVIDER);
-                    int i = provider.indexOf(':');
-                    if (i > 0) {
-                        provider = provider.substring(0, i);
-                    }
-                } else {
-                    type = PROVIDER;
-                    consumer = statistics.getParameter(CONSUMER);
-                    int i = consumer == null ? -1 : consumer.indexOf(':');
-                    if (i > 0) {
-                        consumer = consumer.substring(0, i);
-                    }
-                    provider = statistics.getHost();
-                }
-                String filename = statisticsDirectory
-                        + "/" + day
-                        + "/" + statistics.getServiceInterface()
-                        + "/" + statistics.getParameter(METHOD)
-                        + "/" + consumer
-                        + "/" + provider
-                        + "/" + type + "." + key;
-                File file = new File(filename);
-                File dir = file.getParentFile();
-                if (dir != null && !dir.exists()) {
-                    dir.mkdirs();
-                }
-                FileWriter writer = new FileWriter(file, true);
-                try {
-                    writer.write(format.format(now) + " " + statistics.getParameter(key, 0) + "\n");
-                    writer.flush();
-                } finally {
-                    writer.close();
-                }
-            } catch (Throwable t) {
-                logger.error(t.getMessage(), t);
-            }
+        cluster.setNodes(nodes);
+    }
+
+    /**
+     * Series that stop reporting send no record to close what was kept about them, so their state
+     * is expired against the last closed minute instead.
+     */
+    private void expire() {
+        long minute = DateUtils.toMinute(System.currentTimeMillis() - aggregateDelay) - 1;
+        int alerts = alertEngine.expire(minute);
+        if (alerts > 0 && logger.isInfoEnabled()) {
+            logger.info("expire " + alerts + " alert states");
+        }
+        int baselines = anomalyDetector.sweep(minute);
+        if (baselines > 0 && logger.isInfoEnabled()) {
+            logger.info("expire " + baselines + " anomaly baselines");
+        }
+        int series = seriesCounters.expire(minute);
+        if (series > 0 && logger.isInfoEnabled()) {
+            logger.info("expire " + series + " metrics series");
         }
     }
 
     private void draw() {
-        File rootDir = new File(statisticsDirectory);
-        if (!rootDir.exists()) {
+        chartCache.evict();
+        if (!prerender) {
             return;
         }
-        File[] dateDirs = rootDir.listFiles();
-        for (File dateDir : dateDirs) {
-            File[] serviceDirs = dateDir.listFiles();
-            for (File serviceDir : serviceDirs) {
-                File[] methodDirs = serviceDir.listFiles();
-                for (File methodDir : methodDirs) {
-                    String methodUri = chartsDirectory + "/" + dateDir.getName() + "/" + serviceDir.getName() + "/" + methodDir.getName();
-
-                    File successFile = new File(methodUri + "/" + SUCCESS + ".png");
-                    long successModified = successFile.lastModified();
-                    boolean successChanged = false;
-                    Map<String, long[]> successData = new HashMap<String, long[]>();
-                    double[] successSummary = new double[4];
-
-                    File elapsedFile = new File(methodUri + "/" + ELAPSED + ".png");
-                    long elapsedModified = elapsedFile.lastModified();
-                    boolean elapsedChanged = false;
-                    Map<String, long[]> elapsedData = new HashMap<String, long[]>();
-                    double[] elapsedSummary = new double[4];
-                    long elapsedMax = 0;
-
-                    File[] consumerDirs = methodDir.listFiles();
-                    for (File consumerDir : consumerDirs) {
-                        File[] providerDirs = consumerDir.listFiles();
-                        for (File providerDir : providerDirs) {
-                            File consumerSuccessFile = new File(providerDir, CONSUMER + "." + SUCCESS);
-                            File providerSuccessFile = new File(providerDir, PROVIDER + "." + SUCCESS);
-                            appendData(new File[]{consumerSuccessFile, providerSuccessFile}, successData, successSummary);
-                            if (consumerSuccessFile.lastModified() > successModified
-                                    || providerSuccessFile.lastModified() > successModified) {
-                                successChanged = true;
-                            }
-
-                            File consumerElapsedFile = new File(providerDir, CONSUMER + "." + ELAPSED);
-                            File providerElapsedFile = new File(providerDir, PROVIDER + "." + ELAPSED);
-                            appendData(new File[]{consumerElapsedFile, providerElapsedFile}, elapsedData, elapsedSummary);
-                            elapsedMax = Math.max(elapsedMax, CountUtils.max(new File(providerDir, CONSUMER + "." + MAX_ELAPSED)));
-                            elapsedMax = Math.max(elapsedMax, CountUtils.max(new File(providerDir, PROVIDER + "." + MAX_ELAPSED)));
-                            if (consumerElapsedFile.lastModified() > elapsedModified
-                                    || providerElapsedFile.lastModified() > elapsedModified) {
-                                elapsedChanged = true;
-                            }
+        if (!chartsInitialized) {
+            // charts of statistics written before startup
+            for (String day : store.getDays()) {
+                for (String service : store.getServices(day)) {
+                    for (String method : store.getMethods(day, service)) {
+                        String methodUri = chartsDirectory + "/" + day + "/" + service + "/" + method;
+                        long modified = store.getLastModified(day, service, method);
+                        if (modified > new File(methodUri + "/" + SUCCESS + ".png").lastModified()
+                                || modified > new File(methodUri + "/" + ELAPSED + ".png").lastModified()) {
+                            dirtyCharts.add(ChartCache.toKey(day, service, method));
                         }
                     }
-                    if (elapsedChanged) {
-                        divData(elapsedData, successData);
-                        elapsedSummary[0] = elapsedMax;
-                        elapsedSummary[1] = -1;
-                        elapsedSummary[2] = successSummary[3] == 0 ? 0 : elapsedSummary[3] / successSummary[3];
-                        elapsedSummary[3] = -1;
-                        createChart("ms/t", serviceDir.getName(), methodDir.getName(), dateDir.getName(), new String[]{CONSUMER, PROVIDER}, elapsedData, elapsedSummary, elapsedFile.getAbsolutePath());
-                    }
-                    if (successChanged) {
-                        divData(successData, 60);
-                        successSummary[0] = successSummary[0] / 60;
-                        successSummary[1] = successSummary[1] / 60;
-                        successSummary[2] = successSummary[2] / 60;
-                        createChart("t/s", serviceDir.getName(), methodDir.getName(), dateDir.getName(), new String[]{CONSUMER, PROVIDER}, successData, successSummary, successFile.getAbsolutePath());
-                    }
                 }
             }
+            chartsInitialized = true;
+        }
+        List<Runnable> jobs = new ArrayList<Runnable>();
+        for (Iterator<String> iterator = dirtyCharts.iterator(); iterator.hasNext(); ) {
+            String key = iterator.next();
+            iterator.remove();
+            String[] parts = key.split("/", 3);
+            for (String type : ChartRenderer.TYPES) {
+                jobs.add(new ChartJob(parts[0], parts[1], parts[2], type));
+            }
+        }
+        try {
+            chartExecutor.execute(jobs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (logger.isInfoEnabled() && !jobs.isEmpty()) {
+            ChartMetrics metrics = chartExecutor.getMetrics();
+            logger.info("draw " + metrics.getLastCycleCharts() + "/" + jobs.size() + " charts in "
+                    + metrics.getLastCycleMillis() + "ms, average " + metrics.getAverageRenderMillis()
+                    + "ms, max " + metrics.getMaxRenderMillis() + "ms per chart");
         }
     }
 
-    private void divData(Map<String, long[]> successMap, long unit) {
-        for (long[] success : successMap.values()) {
-            for (int i = 0; i < success.length; i++) {
-                success[i] = success[i] / unit;
-            }
+    private void writeChart(String path, byte[] image) throws IOException {
+        if (logger.isInfoEnabled()) {
+            logger.info("write chart: " + path);
+        }
+        File methodChartFile = new File(path);
+        File methodChartDir = methodChartFile.getParentFile();
+        if (methodChartDir != null && !methodChartDir.exists()) {
+            methodChartDir.mkdirs();
+        }
+        FileOutputStream output = new FileOutputStream(methodChartFile);
+        try {
+            output.write(image);
+            output.flush();
+        } finally {
+            output.close();
         }
     }
 
-    private void divData(Map<String, long[]> elapsedMap, Map<String, long[]> successMap) {
-        for (Map.Entry<String, long[]> entry : elapsedMap.entrySet()) {
-            long[] elapsed = entry.getValue();
-            long[] success = successMap.get(entry.getKey());
-            for (int i = 0; i < elapsed.length; i++) {
-                elapsed[i] = success[i] == 0 ? 0 : elapsed[i] / success[i];
-            }
+    public void count(URL statistics) {
+        collect(statistics);
+    }
+
+    public void collect(URL statistics) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("collect statistics: " + statistics);
+        }
+        if (cluster != null && cluster.route(statistics)) {
+            return;
         }
+        collectLocal(statistics);
     }
 
-    private void appendData(File[] files, Map<String, long[]> data, double[] summary) {
-        for (int i = 0; i < files.length; i++) {
-            File file = files[i];
-            if (!file.exists()) {
+    /**
+     * Collect statistics on this node, whichever node owns their service.
+     */
+    public void collectLocal(URL statistics) {
+        Sample sample;
+        try {
+            sample = toSample(statistics);
+        } catch (Throwable t) {
+            logger.warn("Failed to parse statistics " + statistics + ", cause: " + t.getMessage(), t);
+            return;
+        }
+        Shard shard = shards[shardOf(sample.getSeries())];
+        shard.metrics.received(shard.offer(sample));
+    }
+
+    /**
+     * Persist the samples left in the journals by the previous run, before accepting new ones.
+     *
+     * @return true if no journal is left
+     */
+    private boolean recover(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return true;
+        }
+        long start = System.currentTimeMillis();
+        final Shard recovery = new Shard(-1, 1, null);
+        int count = 0;
+        boolean left = false;
+        List<File> recovered = new ArrayList<File>();
+        for (File file : files) {
+            if (!file.getName().endsWith(SpillJournal.SUFFIX)) {
                 continue;
             }
             try {
-                BufferedReader reader = new BufferedReader(new FileReader(file));
-                try {
-                    int sum = 0;
-                    int cnt = 0;
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        int index = line.indexOf(" ");
-                        if (index > 0) {
-                            String key = line.substring(0, index).trim();
-                            long value = Long.parseLong(line.substring(index + 1).trim());
-                            long[] values = data.get(key);
-                            if (values == null) {
-                                values = new long[files.length];
-                                data.put(key, values);
-                            }
-                            values[i] += value;
-                            summary[0] = Math.max(summary[0], values[i]);
-                            summary[1] = summary[1] == 0 ? values[i] : Math.min(summary[1], values[i]);
-                            sum += value;
-                            cnt++;
-                        }
+                count += SpillJournal.recover(file, dictionary, new SpillJournal.SampleVisitor() {
+                    public void onSample(Sample sample) {
+                        recovery.aggregate(sample);
                     }
-                    if (i == 0) {
-                        summary[3] += sum;
-                        summary[2] = (summary[2] + (sum / cnt)) / 2;
-                    }
-                } finally {
-                    reader.close();
-                }
+                });
+                recovered.add(file);
             } catch (IOException e) {
-                logger.warn(e.getMessage(), e);
+                logger.error("Failed to recover journal " + file + ", cause: " + e.getMessage(), e);
+                left = true;
             }
         }
+        if (count > 0) {
+            // minutes still open are persisted as well, the stores merge records of the same minute
+            recovery.persist(Long.MAX_VALUE);
+            store.close();
+            latencyStore.close();
+            summaryIndex.save();
+            recovery.flush();
+            // the journals are replayed again on the next start unless the stores wrote everything
+            if (!isWritten()) {
+                logger.error("Failed to write the " + count + " samples recovered from journals, keep the journals");
+                recovered.clear();
+                left = true;
+            }
+        }
+        for (File file : recovered) {
+            if (!file.delete()) {
+                logger.warn("Failed to delete recovered journal " + file);
+                left = true;
+            }
+        }
+        if (count > 0 && logger.isInfoEnabled()) {
+            logger.info("recover " + count + " samples from " + recovered.size() + " journals in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+        return !left;
     }
 
-    public void count(URL statistics) {
-        collect(statistics);
+    private static AlertEngine createAlertEngine() {
+        List<AlertRule> rules = new ArrayList<AlertRule>();
+        String path = ConfigUtils.getProperty("dubbo.monitor.alert.rules");
+        if (path != null && path.length() > 0) {
+            try {
+                rules = AlertEngine.load(new File(path));
+            } catch (IOException e) {
+                logger.error("Failed to load alert rules " + path + ", cause: " + e.getMessage(), e);
+            }
+        }
+        List<AlertSink> sinks = new ArrayList<AlertSink>();
+        for (String name : Constants.COMMA_SPLIT_PATTERN.split(
+                ConfigUtils.getProperty("dubbo.monitor.alert.sinks", LogAlertSink.NAME))) {
+            sinks.add(ExtensionLoader.getExtensionLoader(AlertSink.class).getExtension(name.trim()));
+        }
+        return new AlertEngine(rules, sinks);
     }
 
-    public void collect(URL statistics) {
-        queue.offer(statistics);
-        if (logger.isInfoEnabled()) {
-            logger.info("collect statistics: " + statistics);
+    /**
+     * Parse the report once, so that only its series and counters are queued.
+     */
+    private Sample toSample(URL statistics) throws ParseException {
+        String timestamp = statistics.getParameter(Constants.TIMESTAMP_KEY);
+        long now;
+        if (timestamp == null || timestamp.length() == 0) {
+            now = System.currentTimeMillis();
+        } else if (timestamp.length() == "yyyyMMddHHmmss".length()) {
+            now = new SimpleDateFormat("yyyyMMddHHmmss").parse(timestamp).getTime();
+        } else {
+            now = Long.parseLong(timestamp);
+        }
+        String type;
+        String consumer;
+        String provider;
+        if (statistics.hasParameter(PROVIDER)) {
+            type = CONSUMER;
+            consumer = statistics.getHost();
+            provider = statistics.getParameter(PROVIDER);
+            int i = provider.indexOf(':');
+            if (i > 0) {
+                provider = provider.substring(0, i);
+            }
+        } else {
+            type = PROVIDER;
+            consumer = statistics.getParameter(CONSUMER);
+            int i = consumer == null ? -1 : consumer.indexOf(':');
+            if (i > 0) {
+                consumer = consumer.substring(0, i);
+            }
+            provider = statistics.getHost();
+        }
+        Series series = dictionary.intern(statistics.getServiceInterface(), statistics.getParameter(METHOD), consumer, provider, type);
+        long[] values = new long[types.length];
+        for (int i = 0; i < types.length; i++) {
+            values[i] = statistics.getParameter(types[i], 0L);
         }
+        return new Sample(DateUtils.toMinute(now), series, values);
+    }
+
+    /**
+     * Samples of the same series always go to the same shard, which keeps their order.
+     */
+    private int shardOf(Series series) {
+        if (shards.length == 1) {
+            return 0;
+        }
+        int hash = series.hashCode();
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % shards.length;
+    }
+
+    public List<ShardMetrics> getShardMetrics() {
+        List<ShardMetrics> metrics = new ArrayList<ShardMetrics>(shards.length);
+        for (Shard shard : shards) {
+            metrics.add(shard.metrics);
+        }
+        return metrics;
+    }
+
+    public OverloadPolicy getOverloadPolicy() {
+        return overloadPolicy;
     }
 
+    /**
+     * @return N of the 1 in N reports kept per series by the sample overload policy
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public ChartCache getChartCache() {
+        return chartCache;
+    }
+
+    public ChartMetrics getChartMetrics() {
+        return chartExecutor.getMetrics();
+    }
+
+    public StatisticsStore getStatisticsStore() {
+        return store;
+    }
+
+    public LatencyStore getLatencyStore() {
+        return latencyStore;
+    }
+
+    public SeriesDictionary getSeriesDictionary() {
+        return dictionary;
+    }
+
+    public SummaryIndex getSummaryIndex() {
+        return summaryIndex;
+    }
+
+    public AlertEngine getAlertEngine() {
+        return alertEngine;
+    }
+
+    public AnomalyDetector getAnomalyDetector() {
+        return anomalyDetector;
+    }
+
+    public SeriesCounters getSeriesCounters() {
+        return seriesCounters;
+    }
+
+    public RetentionManager getRetentionManager() {
+        return retentionManager;
+    }
+
+    /**
+     * @return the cluster of this node, null unless clustered
+     */
+    public MonitorCluster getCluster() {
+        return cluster;
+    }
+
+    /**
+     * @return the alerts firing now, from every node if clustered
+     */
+    public List<Alert> getAlerts() {
+        return cluster == null ? alertEngine.getAlerts() : cluster.getAlerts();
+    }
+
+    /**
+     * @return the anomalies still going on, from every node if clustered
+     */
+    public List<Anomaly> getActiveAnomalies() {
+        return cluster == null ? anomalyDetector.getActive() : cluster.getActiveAnomalies();
+    }
+
+    /**
+     * @return the first minutes of the anomalies since the given minute, from every node if clustered
+     */
+    public List<Anomaly> getAnomalyHistory(long since) {
+        return cluster == null ? anomalyDetector.getHistory(since) : cluster.getAnomalyHistory(since);
+    }
+
+    /**
+     * @return the methods of a service with statistics on the day, from every node if clustered
+     */
+    public List<String> getMethods(String day, String service) {
+        if (cluster == null) {
+            return store.getMethods(day, service);
+        }
+        Set<String> methods = new TreeSet<String>(store.getMethods(day, service));
+        for (SummaryIndex.Entry entry : getSummaries(day, service)) {
+            methods.add(entry.getSeries().getMethod());
+        }
+        return new ArrayList<String>(methods);
+    }
+
+    /**
+     * @return the daily summaries of a service, from every node if clustered
+     */
+    public List<SummaryIndex.Entry> getSummaries(String day, String service) {
+        if (cluster == null) {
+            return summaryIndex.getEntries(day, service);
+        }
+        List<SummaryIndex.Entry> entries = new ArrayList<SummaryIndex.Entry>();
+        for (URL url : cluster.getSummaries(day, service)) {
+            entries.add(SummaryIndex.Entry.valueOf(url));
+        }
+        return entries;
+    }
+
+    public HeavyHitters getHeavyHitters() {
+        return heavyHitters;
+    }
+
+    /**
+     * @return the top series of a metric over a window, from every node if clustered
+     */
+    public List<HeavyHitters.Entry> getTop(HeavyHitters.Window window, TopMetric metric, int size) {
+        if (cluster == null) {
+            return heavyHitters.getTop(window, metric, size, System.currentTimeMillis());
+        }
+        return cluster.getTop(window, metric, size);
+    }
+
+    /**
+     * Read the values of a series, from every node if clustered, see {@link SeriesQuery}.
+     */
+    public TimeSeries query(SeriesQuery query, int points) {
+        if (cluster == null) {
+            return query.execute(store, rollupStore, latencyStore, points);
+        }
+        return cluster.query(query, points);
+    }
+
+    public RollupStore getRollupStore() {
+        return rollupStore;
+    }
+
+    /**
+     * Look up the statistics merged over a time range, see {@link StatisticsLookup}. An application
+     * is resolved to the services it provides or consumes in the registry.
+     */
     public List<URL> lookup(URL query) {
-        // TODO Auto-generated method stub
-        return null;
+        if (cluster != null) {
+            return cluster.lookup(query);
+        }
+        return lookupLocal(query);
+    }
+
+    /**
+     * Look up the statistics held by this node only.
+     */
+    public List<URL> lookupLocal(URL query) {
+        StatisticsLookup lookup = StatisticsLookup.parse(query);
+        if (lookup.getApplication() != null) {
+            Set<String> services = new HashSet<String>();
+            RegistryContainer registry = RegistryContainer.getInstance();
+            if (registry != null) {
+                for (URL url : registry.getProvidersByApplication(lookup.getApplication())) {
+                    services.add(url.getServiceInterface());
+                }
+                for (URL url : registry.getConsumersByApplication(lookup.getApplication())) {
+                    services.add(url.getServiceInterface());
+                }
+            }
+            lookup.setServices(services);
+        }
+        return lookup.execute(summaryIndex, store);
+    }
+
+    /**
+     * Shard aggregates and persists the reports of a partition of the series, with its own queue
+     * and aggregates, on its own thread.
+     */
+    private class Shard implements Runnable {
+
+        private final RingBuffer<Sample> queue;
+
+        // null if samples are not journaled
+        private final SpillJournal journal;
+
+        private final ShardMetrics metrics;
+
+        private final StatisticsAggregator aggregator = new StatisticsAggregator();
+
+        private final LatencyAggregator latencyAggregator = new LatencyAggregator();
+
+        // charts written by this shard but not flushed yet
+        private final Set<String> pendingCharts = new HashSet<String>();
+
+        // the first journal sequence aggregated into each minute not persisted yet
+        private final TreeMap<Long, Long> pendingSequences = new TreeMap<Long, Long>();
+
+        // journaled samples are aggregated in sequence order, whichever order producers queued
+        // them in: those taken from the queue early wait here, in the slot of their sequence
+        private final Sample[] reordered;
+
+        // the next journal sequence to aggregate, the ones before are aggregated or shed
+        private volatile long readSequence;
+
+        // the minutes before this one are persisted, up to the read sequence
+        private volatile long persistedMinute;
+
+        private final ReportSampler sampler = new ReportSampler(sampleRate);
+
+        Shard(int id, int queueSize, SpillJournal journal) {
+            this.queue = new RingBuffer<Sample>(queueSize);
+            this.journal = journal;
+            this.metrics = new ShardMetrics(id, queue, journal);
+            this.reordered = journal == null ? null : new Sample[journal.getCapacity()];
+            this.readSequence = journal == null ? 0 : journal.getTail();
+        }
+
+        /**
+         * Journal the sample before accepting it, and spill it when the queue is full. Neither
+         * takes a lock, producers only race on the CAS of the journal and queue sequences.
+         *
+         * @return false if the sample is dropped
+         */
+        boolean offer(Sample sample) {
+            if (overloadPolicy == OverloadPolicy.SAMPLE && isOverloaded()) {
+                sample = sampler.sample(sample);
+                if (sample == null) {
+                    metrics.shed(1);
+                    return true;
+                }
+            }
+            if (journal == null || sample.getSeries().getId() == Series.NO_ID) {
+                return queue.offer(sample);
+            }
+            long sequence = journal.append(sample.getMinute(), sample.getSeries(), sample.getValues());
+            if (sequence < 0) {
+                return false;
+            }
+            if (!queue.offer(new Sample(sequence, sample.getMinute(), sample.getSeries(), sample.getValues()))) {
+                journal.spill(sequence);
+                metrics.spilled();
+            }
+            return true;
+        }
+
+        private boolean isOverloaded() {
+            return getBacklog() >= queue.capacity() / 4 * 3;
+        }
+
+        /**
+         * @return the samples accepted and not aggregated yet
+         */
+        private long getBacklog() {
+            return journal == null ? queue.size() : Math.max(queue.size(), journal.getTail() - readSequence);
+        }
+
+        /**
+         * Discard the oldest waiting samples once the backlog passes three quarters of its bound,
+         * down to half of it. Queued samples of discarded sequences are dropped as they come.
+         */
+        private void shedOldest() {
+            int shed = journal == null ? OverloadPolicy.getShedCount(queue.size(), -1, queue.capacity())
+                    : OverloadPolicy.getShedCount(queue.size(), journal.getTail() - readSequence, journal.getCapacity());
+            if (shed == 0) {
+                return;
+            }
+            if (journal == null) {
+                int polled = 0;
+                while (polled < shed && queue.poll() != null) {
+                    polled++;
+                }
+                shed = polled;
+            } else {
+                long sequence = readSequence;
+                for (int i = 0; i < shed; i++, sequence++) {
+                    reordered[(int) (sequence % reordered.length)] = null;
+                }
+                readSequence = sequence;
+            }
+            metrics.shed(shed);
+            logger.warn("Shard " + metrics.getId() + " is overloaded, discard the " + shed + " oldest samples");
+        }
+
+        /**
+         * Aggregate the journaled samples from the read sequence on, in order, taking each from
+         * the queued ones or reading it back from the journal if spilled. Stops at a sample still
+         * being queued by its producer.
+         *
+         * @return the number of samples aggregated
+         */
+        private int readJournal() {
+            long tail = journal.getTail();
+            long sequence = readSequence;
+            int count = 0;
+            while (sequence < tail && count < batchSize) {
+                int slot = (int) (sequence % reordered.length);
+                Sample sample = reordered[slot];
+                if (sample != null && sample.getSequence() == sequence) {
+                    reordered[slot] = null;
+                } else if (journal.isSpilled(sequence)) {
+                    sample = journal.read(sequence, dictionary);
+                } else {
+                    break;
+                }
+                if (sample != null) {
+                    aggregate(sample);
+                }
+                sequence++;
+                count++;
+            }
+            readSequence = sequence;
+            return count;
+        }
+
+        public void run() {
+            List<Sample> batch = new ArrayList<Sample>(batchSize);
+            while (running) {
+                try {
+                    write(batch); // write statistics
+                } catch (Throwable t) {
+                    metrics.failed();
+                    logger.error("Unexpected error occur at write stat log, cause: " + t.getMessage(), t);
+                    try {
+                        Thread.sleep(5000); // retry after 5 secs
+                    } catch (Throwable t2) {
+                    }
+                } finally {
+                    batch.clear();
+                }
+            }
+            try {
+                persist(Long.MAX_VALUE);
+            } catch (Throwable t) {
+                logger.error("Unexpected error occur at write stat log, cause: " + t.getMessage(), t);
+            }
+            if (activeShards.decrementAndGet() == 0) {
+                store.close();
+                latencyStore.close();
+                summaryIndex.save();
+                boolean written = isWritten();
+                for (Shard shard : shards) {
+                    shard.close(written);
+                }
+                dictionary.close();
+            }
+        }
+
+        /**
+         * Release the journaled samples, once everything aggregated is persisted and the stores
+         * are closed, unless the stores failed to write it. Samples not aggregated yet stay in
+         * the journal.
+         */
+        private void close(boolean written) {
+            if (journal != null) {
+                if (written) {
+                    journal.commit(readSequence, readSequence, persistedMinute);
+                }
+                journal.close();
+            }
+        }
+
+        private void write(List<Sample> batch) throws Exception {
+            if (overloadPolicy == OverloadPolicy.DROP_OLDEST) {
+                shedOldest();
+            } else if (overloadPolicy == OverloadPolicy.SAMPLE) {
+                sampler.expire(DateUtils.toMinute(System.currentTimeMillis()));
+            }
+            boolean backlog = journal != null && journal.getTail() > readSequence;
+            Sample first = backlog ? queue.poll() : queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+            long start = System.nanoTime();
+            if (first != null) {
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+            }
+            int reports = 0;
+            for (Sample sample : batch) {
+                if (sample == POISON) {
+                    continue;
+                }
+                if (sample.getSequence() < 0) {
+                    aggregate(sample);
+                    reports++;
+                } else if (sample.getSequence() >= readSequence) {
+                    reordered[(int) (sample.getSequence() % reordered.length)] = sample;
+                }
+            }
+            if (journal != null) {
+                reports += readJournal();
+            }
+            // a minute is closed once the aggregate delay has passed after its end
+            int records = persist(DateUtils.toMinute(System.currentTimeMillis() - aggregateDelay));
+            flush();
+            summaryIndex.saveIfNecessary();
+            metrics.written(reports, records, (System.nanoTime() - start) / 1000);
+            metrics.setSpillBacklog(journal == null ? 0 : (int) Math.max(0, journal.getTail() - readSequence - queue.size()));
+        }
+
+        private void aggregate(Sample sample) {
+            aggregator.add(sample.getMinute(), sample.getSeries(), sample.getValues());
+            latencyAggregator.add(sample.getMinute(), sample.getSeries(), sample.getValues());
+            if (sample.getSequence() >= 0 && !pendingSequences.containsKey(sample.getMinute())) {
+                pendingSequences.put(sample.getMinute(), sample.getSequence());
+            }
+        }
+
+        /**
+         * @return the number of per-minute records persisted
+         */
+        private int persist(long before) {
+            pendingSequences.headMap(before).clear();
+            persistedMinute = before;
+            final int[] records = new int[1];
+            aggregator.flush(before, new StatisticsListener() {
+                private long lastMinute = -1;
+                private String day;
+
+                public void onStatistics(long minute, Series series, long[] values) {
+                    summaryIndex.add(minute, series, values);
+                    heavyHitters.onStatistics(minute, series, values);
+                    alertEngine.onStatistics(minute, series, values);
+                    anomalyDetector.onStatistics(minute, series, values);
+                    seriesCounters.onStatistics(minute, series, values);
+                    store.append(minute, series, values);
+                    if (minute != lastMinute) {
+                        day = DateUtils.toDay(minute);
+                        lastMinute = minute;
+                    }
+                    pendingCharts.add(ChartCache.toKey(day, series.getService(), series.getMethod()));
+                    records[0]++;
+                }
+            });
+            latencyAggregator.flush(before, new LatencyListener() {
+                public void onLatency(long minute, Series series, LatencyHistogram histogram) {
+                    summaryIndex.addLatency(minute, series, histogram);
+                    latencyStore.append(minute, series, histogram);
+                }
+            });
+            alertEngine.close(getClosedMinute());
+            return records[0];
+        }
+
+        /**
+         * Flush the store, invalidate the charts of the flushed statistics, and release the
+         * journaled samples whose minutes are flushed. The stores report a flush only once every
+         * byte is written to their files, but do not force them to the device: like the journal
+         * itself, released samples survive a crash of the monitor, not of the host.
+         */
+        private void flush() {
+            boolean flushed = store.flush();
+            flushed &= latencyStore.flush();
+            if (flushed && journal != null) {
+                long durable = readSequence;
+                for (Long sequence : pendingSequences.values()) {
+                    durable = Math.min(durable, sequence);
+                }
+                journal.commit(durable, readSequence, persistedMinute);
+            }
+            if (flushed && !pendingCharts.isEmpty()) {
+                for (String key : pendingCharts) {
+                    chartCache.invalidate(key);
+                }
+                if (prerender) {
+                    dirtyCharts.addAll(pendingCharts);
+                }
+                pendingCharts.clear();
+            }
+        }
+    }
+
+    /**
+     * @return the minute before which every shard persisted its statistics, as the rules are
+     * evaluated on the records of all shards
+     */
+    private long getClosedMinute() {
+        Shard[] shards = this.shards;
+        if (shards == null) {
+            return Long.MIN_VALUE;
+        }
+        long closed = Long.MAX_VALUE;
+        for (Shard shard : shards) {
+            if (shard == null) {
+                return Long.MIN_VALUE;
+            }
+            closed = Math.min(closed, shard.persistedMinute);
+        }
+        return closed;
+    }
+
+    /**
+     * Called once the stores are closed.
+     *
+     * @return true if the stores wrote everything appended, false if some files failed to be written
+     */
+    private boolean isWritten() {
+        boolean written = store.flush();
+        written &= latencyStore.flush();
+        return written;
+    }
+
+    private class ChartJob implements Runnable {
+
+        private final String day;
+
+        private final String service;
+
+        private final String method;
+
+        private final String type;
+
+        ChartJob(String day, String service, String method, String type) {
+            this.day = day;
+            this.service = service;
+            this.method = method;
+            this.type = type;
+        }
+
+        public void run() {
+            try {
+                byte[] image = chartCache.get(day, service, method, type);
+                writeChart(chartsDirectory + "/" + day + "/" + service + "/" + method + "/" + type + ".png", image);
+            } catch (IOException e) {
+                logger.warn(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return day + "/" + service + "/" + method + "/" + type;
+        }
     }
 
-}
\ No newline at end of file
+}
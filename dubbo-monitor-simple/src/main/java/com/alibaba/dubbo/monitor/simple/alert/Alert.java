@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.alert;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Alert is a state transition of a rule on its scope, handed to the {@link AlertSink}s. The scope
+ * is a series of the provider side with * for any consumer and provider, and for any method when
+ * the rule is on a service.
+ */
+public class Alert {
+
+    public static final String PROTOCOL = "alert";
+
+    private static final String RULE = "rule";
+
+    private static final String SINCE = "since";
+
+    private static final String MINUTE = "minute";
+
+    private static final String VALUE = "value";
+
+    private final AlertRule rule;
+
+    private final Series series;
+
+    private final boolean firing;
+
+    private final long since;
+
+    private final long minute;
+
+    private final double value;
+
+    /**
+     * @param since  the first minute the threshold was crossed
+     * @param minute the minute of the transition
+     * @param value  the value of the rule at the minute of the transition
+     */
+    public Alert(AlertRule rule, Series series, boolean firing, long since, long minute, double value) {
+        this.rule = rule;
+        this.series = series;
+        this.firing = firing;
+        this.since = since;
+        this.minute = minute;
+        this.value = value;
+    }
+
+    public AlertRule getRule() {
+        return rule;
+    }
+
+    public Series getSeries() {
+        return series;
+    }
+
+    /**
+     * @return true if the alert fires, false if it is resolved
+     */
+    public boolean isFiring() {
+        return firing;
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    public long getMinute() {
+        return minute;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return the firing alert as "alert://provider/service?method=...&consumer=...&side=...&rule=...&value=...",
+     * to be sent to another monitor node
+     */
+    public URL toURL() {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(MonitorService.METHOD, series.getMethod());
+        parameters.put(MonitorService.CONSUMER, series.getConsumer());
+        parameters.put(Constants.SIDE_KEY, series.getSide());
+        parameters.put(RULE, rule.toString());
+        parameters.put(SINCE, String.valueOf(since));
+        parameters.put(MINUTE, String.valueOf(minute));
+        parameters.put(VALUE, String.valueOf(value));
+        return new URL(PROTOCOL, series.getProvider(), 0, series.getService(), parameters);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the URL is not a firing alert
+     */
+    public static Alert valueOf(URL url) {
+        if (!PROTOCOL.equals(url.getProtocol())) {
+            throw new IllegalArgumentException("Illegal alert " + url);
+        }
+        Series series = new Series(url.getPath(), url.getParameter(MonitorService.METHOD),
+                url.getParameter(MonitorService.CONSUMER), url.getHost(), url.getParameter(Constants.SIDE_KEY));
+        return new Alert(AlertRule.parse(url.getParameter(RULE)), series, true, url.getParameter(SINCE, 0L),
+                url.getParameter(MINUTE, 0L), url.getParameter(VALUE, 0.0));
+    }
+
+    @Override
+    public String toString() {
+        return (firing ? "FIRING " : "RESOLVED ") + rule + " on " + series + ", value " + value;
+    }
+
+}
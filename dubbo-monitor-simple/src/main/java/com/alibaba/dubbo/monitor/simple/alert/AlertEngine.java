@@ -0,0 +1,405 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.alert;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsListener;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AlertEngine evaluates the {@link AlertRule}s on every closed minute of the scope of each rule, as
+ * the statistics writer threads persist it, so that nothing is read back from the store. (ThreadSafe)
+ * <p>
+ * Rules are indexed by service and method, so a record only meets the rules of its scope. The
+ * provider side records of a scope, a method, a service, or each service for rules of any service,
+ * are merged per minute across consumers and providers, and the merged minutes are evaluated once
+ * every writer {@link #close closed} them, so a rule holds on the service as a whole and fires once.
+ * State is only kept while a rule is crossed on a scope, and transitions are handed to the sinks
+ * on their own thread, so a slow sink never holds up the writers. A scope that stops reporting
+ * leaves its state behind, which {@link #expire} resolves once it is older than the duration of
+ * its rule.
+ */
+public class AlertEngine implements StatisticsListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlertEngine.class);
+
+    private static final int MAX_PENDING = 1000;
+
+    private final List<AlertRule> rules;
+
+    private final List<AlertRule> anyRules = new ArrayList<AlertRule>();
+
+    // service -> rules of any method
+    private final Map<String, List<AlertRule>> serviceRules = new HashMap<String, List<AlertRule>>();
+
+    // service -> method -> rules
+    private final Map<String, Map<String, List<AlertRule>>> methodRules = new HashMap<String, Map<String, List<AlertRule>>>();
+
+    private final List<AlertSink> sinks;
+
+    private final Executor executor;
+
+    private final ConcurrentMap<Key, State> states = new ConcurrentHashMap<Key, State>();
+
+    // rule and scope -> the merged records of the minutes not closed yet
+    private final ConcurrentMap<Key, Aggregate> aggregates = new ConcurrentHashMap<Key, Aggregate>();
+
+    public AlertEngine(List<AlertRule> rules, List<AlertSink> sinks) {
+        this(rules, sinks, createExecutor());
+    }
+
+    /**
+     * @param executor runs the sinks
+     */
+    public AlertEngine(List<AlertRule> rules, List<AlertSink> sinks, Executor executor) {
+        this.rules = Collections.unmodifiableList(new ArrayList<AlertRule>(rules));
+        this.sinks = sinks;
+        this.executor = executor;
+        for (AlertRule rule : rules) {
+            List<AlertRule> scope;
+            if (rule.getService() == null) {
+                scope = anyRules;
+            } else if (rule.getMethod() == null) {
+                scope = getList(serviceRules, rule.getService());
+            } else {
+                Map<String, List<AlertRule>> methods = methodRules.get(rule.getService());
+                if (methods == null) {
+                    methods = new HashMap<String, List<AlertRule>>();
+                    methodRules.put(rule.getService(), methods);
+                }
+                scope = getList(methods, rule.getMethod());
+            }
+            scope.add(rule);
+        }
+    }
+
+    private static List<AlertRule> getList(Map<String, List<AlertRule>> map, String key) {
+        List<AlertRule> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<AlertRule>();
+            map.put(key, list);
+        }
+        return list;
+    }
+
+    private static Executor createExecutor() {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(MAX_PENDING), new NamedThreadFactory("DubboMonitorAlert", true),
+                new RejectedExecutionHandler() {
+                    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                        logger.warn("Too many pending alerts, discard " + runnable);
+                    }
+                });
+    }
+
+    /**
+     * Read the rules of a file, one per line, skipping blank lines, comments starting with # and
+     * malformed rules.
+     */
+    public static List<AlertRule> load(File file) throws IOException {
+        List<AlertRule> rules = new ArrayList<AlertRule>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    rules.add(AlertRule.parse(line));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Skip alert rule of " + file + ", cause: " + e.getMessage());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return rules;
+    }
+
+    public List<AlertRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @return the alerts firing now
+     */
+    public List<Alert> getAlerts() {
+        List<Alert> alerts = new ArrayList<Alert>();
+        for (Map.Entry<Key, State> entry : states.entrySet()) {
+            State state = entry.getValue();
+            if (state.firing) {
+                alerts.add(new Alert(entry.getKey().rule, entry.getKey().series, true, state.since, state.last, state.value));
+            }
+        }
+        return alerts;
+    }
+
+    /**
+     * Merge a record into the scopes of its rules. Every invocation is reported by both sides, so
+     * only the provider side is counted. Records of minutes already closed are ignored.
+     */
+    public void onStatistics(long minute, Series series, long[] values) {
+        if (!MonitorService.PROVIDER.equals(series.getSide())) {
+            return;
+        }
+        add(anyRules, minute, series, values);
+        add(serviceRules.get(series.getService()), minute, series, values);
+        Map<String, List<AlertRule>> methods = methodRules.get(series.getService());
+        if (methods != null) {
+            add(methods.get(series.getMethod()), minute, series, values);
+        }
+    }
+
+    private void add(List<AlertRule> rules, long minute, Series series, long[] values) {
+        if (rules == null) {
+            return;
+        }
+        for (int i = 0; i < rules.size(); i++) {
+            AlertRule rule = rules.get(i);
+            Key key = new Key(rule, new Series(series.getService(), rule.getMethod() == null ? AlertRule.ANY
+                    : series.getMethod(), AlertRule.ANY, AlertRule.ANY, MonitorService.PROVIDER));
+            while (true) {
+                Aggregate aggregate = aggregates.get(key);
+                if (aggregate == null) {
+                    aggregate = new Aggregate();
+                    Aggregate old = aggregates.putIfAbsent(key, aggregate);
+                    if (old != null) {
+                        aggregate = old;
+                    }
+                }
+                if (aggregate.add(minute, values)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluate the merged minutes before the given one, in ascending order. Called by the writers
+     * once all of them persisted these minutes.
+     *
+     * @param before the minutes before this one are closed
+     */
+    public synchronized void close(long before) {
+        for (Map.Entry<Key, Aggregate> entry : aggregates.entrySet()) {
+            Map<Long, long[]> minutes = entry.getValue().close(before);
+            if (minutes == null) {
+                continue;
+            }
+            for (Map.Entry<Long, long[]> minute : minutes.entrySet()) {
+                evaluate(entry.getKey(), minute.getKey(), minute.getValue());
+            }
+        }
+    }
+
+    private void evaluate(Key key, long minute, long[] values) {
+        AlertRule rule = key.rule;
+        Series series = key.series;
+        double value = rule.valueOf(values);
+        boolean crossed = rule.isCrossed(value);
+        if (!crossed && states.isEmpty()) {
+            return;
+        }
+        State state = states.get(key);
+        if (crossed) {
+            if (state == null) {
+                state = new State(minute);
+                states.put(key, state);
+            } else if (!state.firing && state.last != minute - 1) {
+                // a minute without records breaks the streak
+                state.since = minute;
+            }
+            state.last = minute;
+            state.value = value;
+            if (!state.firing && minute - state.since + 1 >= rule.getMinutes()) {
+                state.firing = true;
+                dispatch(new Alert(rule, series, true, state.since, minute, value));
+            }
+        } else if (state != null) {
+            states.remove(key);
+            if (state.firing) {
+                dispatch(new Alert(rule, series, false, state.since, minute, value));
+            }
+        }
+    }
+
+    /**
+     * Remove the states whose scope had no record crossing their rule for longer than the rule
+     * duration, resolving those firing, and the scopes without pending minutes. Called
+     * periodically, as silent scopes send no record.
+     *
+     * @param minute the last closed minute
+     * @return the number of states removed
+     */
+    public synchronized int expire(long minute) {
+        for (Map.Entry<Key, Aggregate> entry : aggregates.entrySet()) {
+            if (entry.getValue().remove()) {
+                aggregates.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        int count = 0;
+        for (Map.Entry<Key, State> entry : states.entrySet()) {
+            Key key = entry.getKey();
+            State state = entry.getValue();
+            if (minute - state.last > key.rule.getMinutes() && states.remove(key, state)) {
+                count++;
+                if (state.firing) {
+                    dispatch(new Alert(key.rule, key.series, false, state.since, minute, state.value));
+                }
+            }
+        }
+        return count;
+    }
+
+    private void dispatch(final Alert alert) {
+        executor.execute(new Runnable() {
+            public void run() {
+                for (AlertSink sink : sinks) {
+                    try {
+                        sink.notify(alert);
+                    } catch (Throwable t) {
+                        logger.warn("Failed to notify " + alert + ", cause: " + t.getMessage(), t);
+                    }
+                }
+            }
+
+            @Override
+            public String toString() {
+                return alert.toString();
+            }
+        });
+    }
+
+    private static class Key {
+
+        private final AlertRule rule;
+
+        private final Series series;
+
+        Key(AlertRule rule, Series series) {
+            this.rule = rule;
+            this.series = series;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(rule) + series.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return rule == that.rule && series.equals(that.series);
+        }
+    }
+
+    /**
+     * The merged records of one scope, per minute not closed yet.
+     */
+    private static class Aggregate {
+
+        private final TreeMap<Long, long[]> minutes = new TreeMap<Long, long[]>();
+
+        // the minutes before this one are closed
+        private long closed = Long.MIN_VALUE;
+
+        private boolean removed;
+
+        /**
+         * @return false if the aggregate was removed, and another one is to be used
+         */
+        synchronized boolean add(long minute, long[] values) {
+            if (removed) {
+                return false;
+            }
+            if (minute >= closed) {
+                long[] merged = minutes.get(minute);
+                if (merged == null) {
+                    merged = new long[StatisticsTypes.LENGTH];
+                    minutes.put(minute, merged);
+                }
+                StatisticsTypes.merge(merged, values);
+            }
+            return true;
+        }
+
+        /**
+         * @return the minutes before the given one, or null if none
+         */
+        synchronized Map<Long, long[]> close(long before) {
+            closed = Math.max(closed, before);
+            if (minutes.isEmpty() || minutes.firstKey() >= before) {
+                return null;
+            }
+            Map<Long, long[]> head = new TreeMap<Long, long[]>(minutes.headMap(before));
+            minutes.headMap(before).clear();
+            return head;
+        }
+
+        /**
+         * @return true if the aggregate had no pending minute, and is now removed
+         */
+        synchronized boolean remove() {
+            removed = minutes.isEmpty();
+            return removed;
+        }
+    }
+
+    private static class State {
+
+        private volatile long since;
+
+        private volatile long last;
+
+        private volatile double value;
+
+        private volatile boolean firing;
+
+        State(long since) {
+            this.since = since;
+        }
+    }
+
+}
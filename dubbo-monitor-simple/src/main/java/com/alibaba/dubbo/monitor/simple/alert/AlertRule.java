@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.alert;
+
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * AlertRule is a threshold on the counters, or the ratio of two counters, of the series of a
+ * service or a method, which must hold for a number of consecutive minutes to fire:
+ * <pre>
+ * name: scope metric[/metric] operator threshold[%|ms] [for minutes]
+ *
+ * failures: com.foo.BarService failure/success > 5% for 3
+ * slow: com.foo.BarService/bar max.elapsed > 2000ms
+ * busy: * max.concurrent >= 100
+ * </pre>
+ * The scope is a service, a method of a service, or * for every series. Metrics are
+ * {@link StatisticsTypes#TYPES}.
+ */
+public class AlertRule {
+
+    public static final String ANY = "*";
+
+    private static final Pattern RULE = Pattern.compile(
+            "\\s*([\\w.\\-]+)\\s*:\\s*(\\S+)\\s+([\\w.]+)(?:\\s*/\\s*([\\w.]+))?\\s*(>=|<=|>|<)\\s*"
+                    + "(\\d+(?:\\.\\d+)?)\\s*(%|ms)?(?:\\s+for\\s+(\\d+))?\\s*");
+
+    private final String name;
+
+    private final String service;
+
+    private final String method;
+
+    private final int metric;
+
+    private final int divisor;
+
+    private final String operator;
+
+    private final double threshold;
+
+    private final int minutes;
+
+    private final String expression;
+
+    /**
+     * @param service the service, or null for any
+     * @param method  the method, or null for any
+     * @param divisor the metric dividing the first one, or -1
+     */
+    public AlertRule(String name, String service, String method, int metric, int divisor,
+                     String operator, double threshold, int minutes, String expression) {
+        if (minutes <= 0) {
+            throw new IllegalArgumentException("Illegal duration " + minutes + " of rule " + name);
+        }
+        this.name = name;
+        this.service = service;
+        this.method = method;
+        this.metric = metric;
+        this.divisor = divisor;
+        this.operator = operator;
+        this.threshold = threshold;
+        this.minutes = minutes;
+        this.expression = expression;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the rule is malformed
+     */
+    public static AlertRule parse(String rule) {
+        Matcher matcher = RULE.matcher(rule);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Malformed alert rule " + rule
+                    + ", expected name: scope metric[/metric] operator threshold[%|ms] [for minutes]");
+        }
+        String scope = matcher.group(2);
+        String service = null;
+        String method = null;
+        if (!ANY.equals(scope)) {
+            int i = scope.indexOf('/');
+            service = i < 0 ? scope : scope.substring(0, i);
+            method = i < 0 || ANY.equals(scope.substring(i + 1)) ? null : scope.substring(i + 1);
+        }
+        int metric = indexOf(matcher.group(3), rule);
+        int divisor = matcher.group(4) == null ? -1 : indexOf(matcher.group(4), rule);
+        double threshold = Double.parseDouble(matcher.group(6));
+        if ("%".equals(matcher.group(7))) {
+            threshold /= 100;
+        }
+        int minutes = matcher.group(8) == null ? 1 : Integer.parseInt(matcher.group(8));
+        return new AlertRule(matcher.group(1), service, method, metric, divisor, matcher.group(5), threshold,
+                minutes, rule.substring(matcher.end(1)).trim().substring(1).trim());
+    }
+
+    private static int indexOf(String type, String rule) {
+        int index = StatisticsTypes.indexOf(type);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unsupported metric " + type + " in alert rule " + rule);
+        }
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the consecutive minutes the threshold must be crossed to fire
+     */
+    public int getMinutes() {
+        return minutes;
+    }
+
+    /**
+     * @return the metric, or the ratio, of the counters of one minute. When the divisor is 0, the
+     * ratio is infinite if the metric is positive, as failures without any success, and NaN if not.
+     */
+    public double valueOf(long[] values) {
+        if (divisor < 0) {
+            return values[metric];
+        }
+        if (values[divisor] == 0) {
+            return values[metric] > 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        }
+        return (double) values[metric] / values[divisor];
+    }
+
+    public boolean isCrossed(double value) {
+        if (Double.isNaN(value)) {
+            return false;
+        }
+        if (">".equals(operator)) {
+            return value > threshold;
+        } else if (">=".equals(operator)) {
+            return value >= threshold;
+        } else if ("<".equals(operator)) {
+            return value < threshold;
+        }
+        return value <= threshold;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + expression;
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.alert;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * FileAlertSink appends one line per transition to a file:
+ * <pre>
+ * ${dubbo.monitor.alert.file}    yyyy-MM-dd HH:mm \t FIRING|RESOLVED \t rule \t series \t value
+ * </pre>
+ */
+public class FileAlertSink implements AlertSink {
+
+    public static final String NAME = "file";
+
+    private static final Logger logger = LoggerFactory.getLogger(FileAlertSink.class);
+
+    private final File file;
+
+    public FileAlertSink() {
+        file = new File(ConfigUtils.getProperty("dubbo.monitor.alert.file",
+                ConfigUtils.getProperty("dubbo.statistics.directory", "statistics") + "/alerts.log"));
+    }
+
+    public synchronized void notify(Alert alert) {
+        String line = new SimpleDateFormat("yyyy-MM-dd HH:mm").format(new Date(alert.getMinute() * DateUtils.MINUTE))
+                + "\t" + (alert.isFiring() ? "FIRING" : "RESOLVED")
+                + "\t" + alert.getRule()
+                + "\t" + alert.getSeries()
+                + "\t" + alert.getValue() + "\n";
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        try {
+            OutputStream output = new FileOutputStream(file, true);
+            try {
+                output.write(line.getBytes("UTF-8"));
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write alert to " + file + ", cause: " + e.getMessage(), e);
+        }
+    }
+
+}
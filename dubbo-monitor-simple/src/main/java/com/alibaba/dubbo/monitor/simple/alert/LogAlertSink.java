@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.alert;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+
+/**
+ * LogAlertSink logs firing alerts at warn level, and resolved ones at info level.
+ */
+public class LogAlertSink implements AlertSink {
+
+    public static final String NAME = "log";
+
+    private static final Logger logger = LoggerFactory.getLogger(LogAlertSink.class);
+
+    public void notify(Alert alert) {
+        if (alert.isFiring()) {
+            logger.warn(alert.toString());
+        } else if (logger.isInfoEnabled()) {
+            logger.info(alert.toString());
+        }
+    }
+
+}
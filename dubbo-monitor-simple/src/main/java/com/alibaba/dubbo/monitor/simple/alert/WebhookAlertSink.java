@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.alert;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.fastjson.JSON;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * WebhookAlertSink posts every transition as JSON to ${dubbo.monitor.alert.webhook}. Without an
+ * address the transitions are only logged, at debug level.
+ */
+public class WebhookAlertSink implements AlertSink {
+
+    public static final String NAME = "webhook";
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookAlertSink.class);
+
+    private final String address;
+
+    private final int timeout;
+
+    public WebhookAlertSink() {
+        address = ConfigUtils.getProperty("dubbo.monitor.alert.webhook");
+        timeout = Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.alert.webhook.timeout", "3000"));
+    }
+
+    public void notify(Alert alert) {
+        Series series = alert.getSeries();
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("status", alert.isFiring() ? "firing" : "resolved");
+        body.put("rule", alert.getRule().getName());
+        body.put("expression", alert.getRule().toString());
+        body.put("service", series.getService());
+        body.put("method", series.getMethod());
+        body.put("consumer", series.getConsumer());
+        body.put("provider", series.getProvider());
+        body.put("side", series.getSide());
+        body.put("value", alert.getValue());
+        body.put("since", alert.getSince() * DateUtils.MINUTE);
+        body.put("time", alert.getMinute() * DateUtils.MINUTE);
+        String json = JSON.toJSONString(body);
+        if (address == null || address.length() == 0) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("No webhook address, skip alert " + json);
+            }
+            return;
+        }
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(address).openConnection();
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+            OutputStream output = connection.getOutputStream();
+            try {
+                output.write(json.getBytes("UTF-8"));
+            } finally {
+                output.close();
+            }
+            int status = connection.getResponseCode();
+            connection.disconnect();
+            if (status >= 300) {
+                logger.warn("Webhook " + address + " rejected alert " + json + " with status " + status);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to post alert to " + address + ", cause: " + e.getMessage(), e);
+        }
+    }
+
+}
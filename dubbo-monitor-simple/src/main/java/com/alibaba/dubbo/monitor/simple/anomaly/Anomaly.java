@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.anomaly;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Anomaly is one minute of a series deviating from its baseline.
+ */
+public class Anomaly {
+
+    public static final String PROTOCOL = "anomaly";
+
+    private static final String TYPE = "type";
+
+    private static final String MINUTE = "minute";
+
+    private static final String VALUE = "value";
+
+    private static final String EXPECTED = "expected";
+
+    private static final String YESTERDAY = "yesterday";
+
+    private static final String SCORE = "score";
+
+    private final Series series;
+
+    private final AnomalyType type;
+
+    private final long minute;
+
+    private final double value;
+
+    private final double expected;
+
+    private final double yesterday;
+
+    private final double score;
+
+    /**
+     * @param expected  the moving average before the minute
+     * @param yesterday the average of the same hour yesterday, or NaN if unknown
+     * @param score     the deviation from the moving average, in standard deviations
+     */
+    public Anomaly(Series series, AnomalyType type, long minute, double value, double expected,
+                   double yesterday, double score) {
+        this.series = series;
+        this.type = type;
+        this.minute = minute;
+        this.value = value;
+        this.expected = expected;
+        this.yesterday = yesterday;
+        this.score = score;
+    }
+
+    public Series getSeries() {
+        return series;
+    }
+
+    public AnomalyType getType() {
+        return type;
+    }
+
+    public long getMinute() {
+        return minute;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public double getExpected() {
+        return expected;
+    }
+
+    public double getYesterday() {
+        return yesterday;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * @return the anomaly as "anomaly://provider/service?method=...&consumer=...&side=...&type=...&minute=...",
+     * to be sent to another monitor node
+     */
+    public URL toURL() {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(MonitorService.METHOD, series.getMethod());
+        parameters.put(MonitorService.CONSUMER, series.getConsumer());
+        parameters.put(Constants.SIDE_KEY, series.getSide());
+        parameters.put(TYPE, type.getName());
+        parameters.put(MINUTE, String.valueOf(minute));
+        parameters.put(VALUE, String.valueOf(value));
+        parameters.put(EXPECTED, String.valueOf(expected));
+        parameters.put(YESTERDAY, String.valueOf(yesterday));
+        parameters.put(SCORE, String.valueOf(score));
+        return new URL(PROTOCOL, series.getProvider(), 0, series.getService(), parameters);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the URL is not an anomaly
+     */
+    public static Anomaly valueOf(URL url) {
+        AnomalyType type = AnomalyType.parse(url.getParameter(TYPE));
+        if (!PROTOCOL.equals(url.getProtocol()) || type == null) {
+            throw new IllegalArgumentException("Illegal anomaly " + url);
+        }
+        Series series = new Series(url.getPath(), url.getParameter(MonitorService.METHOD),
+                url.getParameter(MonitorService.CONSUMER), url.getHost(), url.getParameter(Constants.SIDE_KEY));
+        return new Anomaly(series, type, url.getParameter(MINUTE, 0L), url.getParameter(VALUE, 0.0),
+                url.getParameter(EXPECTED, 0.0), url.getParameter(YESTERDAY, Double.NaN), url.getParameter(SCORE, 0.0));
+    }
+
+    @Override
+    public String toString() {
+        return type.getName() + " on " + series + " at minute " + minute + ", value " + value
+                + ", expected " + expected + ", score " + score;
+    }
+
+}
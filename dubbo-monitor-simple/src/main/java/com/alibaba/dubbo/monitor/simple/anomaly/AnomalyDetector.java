@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.anomaly;
+
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsListener;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * AnomalyDetector keeps a {@link Baseline} per series, fed by the statistics writer threads with
+ * every closed minute, and flags the minutes deviating from it. (ThreadSafe)
+ * <p>
+ * A minute is anomalous if its signal is more than the threshold in standard deviations away from
+ * the moving average, in the direction of the {@link AnomalyType}, and, when the same hour of the
+ * day before is known, also more than the ratio away from its average. The second test keeps the
+ * daily traffic curve from being flagged. Signals are checked once the baseline has seen the
+ * warm-up minutes.
+ * <p>
+ * A series that stops reporting sends no minute to check, so {@link #sweep(long)} flags the
+ * silent ones that had traffic as a drop to zero, and forgets the ones idle for longer.
+ */
+public class AnomalyDetector implements StatisticsListener {
+
+    private final double alpha;
+
+    private final double threshold;
+
+    private final double ratio;
+
+    private final int warmup;
+
+    private final int minFailures;
+
+    private final int maxSeries;
+
+    private final int maxHistory;
+
+    private final int silence;
+
+    private final double floor;
+
+    private final int idle;
+
+    private final ConcurrentMap<Series, Baseline> baselines = new ConcurrentHashMap<Series, Baseline>();
+
+    // the latest minute of each series and type currently flagged
+    private final ConcurrentMap<Series, AtomicReferenceArray<Anomaly>> active
+            = new ConcurrentHashMap<Series, AtomicReferenceArray<Anomaly>>();
+
+    // the onsets, latest found first
+    private final LinkedList<Anomaly> history = new LinkedList<Anomaly>();
+
+    /**
+     * @param alpha       the weight of a new minute in the moving average and variance
+     * @param threshold   the deviation to flag, in standard deviations
+     * @param ratio       the relative deviation from the same hour yesterday to flag
+     * @param warmup      the minutes a baseline must have seen before flagging
+     * @param minFailures the failures of a minute needed to flag a failure burst
+     * @param maxSeries   the series to keep a baseline of, others are ignored
+     * @param maxHistory  the onsets to keep
+     * @param silence     the minutes without a record to flag a series as dropped
+     * @param floor       the mean qps a silent series must have had to be flagged
+     * @param idle        the minutes without a record to forget a series
+     */
+    public AnomalyDetector(double alpha, double threshold, double ratio, int warmup, int minFailures,
+                           int maxSeries, int maxHistory, int silence, double floor, int idle) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha must be in (0, 1]: " + alpha);
+        }
+        this.alpha = alpha;
+        this.threshold = threshold;
+        this.ratio = ratio;
+        this.warmup = warmup;
+        this.minFailures = minFailures;
+        this.maxSeries = maxSeries;
+        this.maxHistory = maxHistory;
+        this.silence = silence;
+        this.floor = floor;
+        this.idle = idle;
+    }
+
+    /**
+     * Records of a series come from one writer thread only, in ascending minutes.
+     */
+    public void onStatistics(long minute, Series series, long[] values) {
+        Baseline baseline = baselines.get(series);
+        if (baseline == null) {
+            if (baselines.size() >= maxSeries) {
+                return;
+            }
+            baseline = new Baseline();
+            Baseline existing = baselines.putIfAbsent(series, baseline);
+            if (existing != null) {
+                baseline = existing;
+            }
+        }
+        synchronized (baseline) {
+            update(baseline, minute, series, values);
+        }
+    }
+
+    private void update(Baseline baseline, long minute, Series series, long[] values) {
+        baseline.roll(minute);
+        long success = values[StatisticsTypes.SUCCESS];
+        long failure = values[StatisticsTypes.FAILURE];
+        double qps = success / 60.0;
+        check(baseline, series, minute, AnomalyType.QPS_DROP, Baseline.QPS, qps, true);
+        baseline.update(Baseline.QPS, qps, alpha);
+        if (success > 0) {
+            double rt = (double) values[StatisticsTypes.ELAPSED] / success;
+            check(baseline, series, minute, AnomalyType.LATENCY_SHIFT, Baseline.RT, rt, true);
+            baseline.update(Baseline.RT, rt, alpha);
+        }
+        if (success + failure > 0) {
+            double rate = (double) failure / (success + failure);
+            check(baseline, series, minute, AnomalyType.FAILURE_BURST, Baseline.FAILURE, rate, failure >= minFailures);
+            baseline.update(Baseline.FAILURE, rate, alpha);
+        }
+    }
+
+    /**
+     * @param eligible false if the minute is too small to be flagged, it may still end an anomaly
+     */
+    private void check(Baseline baseline, Series series, long minute, AnomalyType type, int signal,
+                       double value, boolean eligible) {
+        if (baseline.getCount(signal) < warmup) {
+            return;
+        }
+        double mean = baseline.getMean(signal);
+        // a floor on the deviation, so that a flat series is not flagged on noise
+        double deviation = Math.max(baseline.getDeviation(signal), Math.max(0.05 * Math.abs(mean), 0.001));
+        double score = (value - mean) / deviation;
+        double yesterday = baseline.getYesterday(signal, minute);
+        boolean anomalous;
+        if (type == AnomalyType.QPS_DROP) {
+            anomalous = score <= -threshold && (Double.isNaN(yesterday) || value < yesterday * (1 - ratio));
+        } else {
+            anomalous = score >= threshold && (Double.isNaN(yesterday) || value > yesterday * (1 + ratio));
+        }
+        if (eligible && anomalous) {
+            flag(baseline, new Anomaly(series, type, minute, value, mean, yesterday, score));
+        } else if (baseline.isAnomalous(type)) {
+            clear(baseline, series, type);
+        }
+    }
+
+    private void flag(Baseline baseline, Anomaly anomaly) {
+        AtomicReferenceArray<Anomaly> anomalies = active.get(anomaly.getSeries());
+        if (anomalies == null) {
+            anomalies = new AtomicReferenceArray<Anomaly>(AnomalyType.values().length);
+            active.put(anomaly.getSeries(), anomalies);
+        }
+        anomalies.set(anomaly.getType().ordinal(), anomaly);
+        if (!baseline.isAnomalous(anomaly.getType())) {
+            baseline.setAnomalous(anomaly.getType(), true);
+            synchronized (history) {
+                history.addFirst(anomaly);
+                if (history.size() > maxHistory) {
+                    history.removeLast();
+                }
+            }
+        }
+    }
+
+    private void clear(Baseline baseline, Series series, AnomalyType type) {
+        baseline.setAnomalous(type, false);
+        AtomicReferenceArray<Anomaly> anomalies = active.get(series);
+        if (anomalies != null) {
+            anomalies.set(type.ordinal(), null);
+            boolean empty = true;
+            for (int i = 0; i < anomalies.length(); i++) {
+                empty &= anomalies.get(i) == null;
+            }
+            if (empty) {
+                active.remove(series);
+            }
+        }
+    }
+
+    /**
+     * Flag the series silent for the silence minutes before the given one, whose qps was above the
+     * floor, as a drop to zero, end their other anomalies, which no longer have a minute to show,
+     * and forget the series idle for longer than the idle minutes.
+     *
+     * @param minute the last closed minute
+     * @return the number of series forgotten
+     */
+    public int sweep(long minute) {
+        int evicted = 0;
+        for (Map.Entry<Series, Baseline> entry : baselines.entrySet()) {
+            Series series = entry.getKey();
+            Baseline baseline = entry.getValue();
+            synchronized (baseline) {
+                long silent = minute - baseline.getLast();
+                if (silent > idle) {
+                    baselines.remove(series, baseline);
+                    active.remove(series);
+                    evicted++;
+                    continue;
+                }
+                if (silent < silence) {
+                    continue;
+                }
+                for (AnomalyType type : AnomalyType.values()) {
+                    if (type != AnomalyType.QPS_DROP && baseline.isAnomalous(type)) {
+                        clear(baseline, series, type);
+                    }
+                }
+                double mean = baseline.getMean(Baseline.QPS);
+                if (!baseline.isAnomalous(AnomalyType.QPS_DROP) && baseline.getCount(Baseline.QPS) >= warmup
+                        && mean >= floor) {
+                    double deviation = Math.max(baseline.getDeviation(Baseline.QPS), 0.05 * mean);
+                    flag(baseline, new Anomaly(series, AnomalyType.QPS_DROP, minute, 0, mean,
+                            baseline.getYesterday(Baseline.QPS, minute), -mean / deviation));
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return the latest minute of every series and type flagged now
+     */
+    public List<Anomaly> getActive() {
+        List<Anomaly> anomalies = new ArrayList<Anomaly>();
+        for (AtomicReferenceArray<Anomaly> array : active.values()) {
+            for (int i = 0; i < array.length(); i++) {
+                Anomaly anomaly = array.get(i);
+                if (anomaly != null) {
+                    anomalies.add(anomaly);
+                }
+            }
+        }
+        return anomalies;
+    }
+
+    /**
+     * @return the first minutes of the anomalies since the given minute, latest found first
+     */
+    public List<Anomaly> getHistory(long since) {
+        List<Anomaly> anomalies = new ArrayList<Anomaly>();
+        synchronized (history) {
+            for (Anomaly anomaly : history) {
+                if (anomaly.getMinute() >= since) {
+                    anomalies.add(anomaly);
+                }
+            }
+        }
+        return anomalies;
+    }
+
+    /**
+     * @return the number of series with a baseline
+     */
+    public int size() {
+        return baselines.size();
+    }
+
+    public int getMaxSeries() {
+        return maxSeries;
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.anomaly;
+
+/**
+ * AnomalyType names the signal of a series an anomaly is found in, and its direction.
+ */
+public enum AnomalyType {
+
+    /**
+     * Successful invocations per minute fell well below the baseline.
+     */
+    QPS_DROP,
+
+    /**
+     * Average elapsed milliseconds rose well above the baseline.
+     */
+    LATENCY_SHIFT,
+
+    /**
+     * Failure ratio rose well above the baseline.
+     */
+    FAILURE_BURST;
+
+    /**
+     * @return the type of the given name, or null if unknown
+     */
+    public static AnomalyType parse(String name) {
+        for (AnomalyType type : values()) {
+            if (type.getName().equals(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    public String getName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.anomaly;
+
+import java.util.Arrays;
+
+/**
+ * Baseline of one series: the exponentially weighted moving average and variance of every signal,
+ * and the average of every signal per hour of the last day seen. Its size does not depend on how
+ * long the series is tracked. (NotThreadSafe)
+ */
+class Baseline {
+
+    static final int QPS = 0;
+
+    static final int RT = 1;
+
+    static final int FAILURE = 2;
+
+    static final int SIGNALS = 3;
+
+    private static final int HOURS = 24;
+
+    private final double[] means = new double[SIGNALS];
+
+    private final double[] variances = new double[SIGNALS];
+
+    private final int[] counts = new int[SIGNALS];
+
+    // hour of day * SIGNALS + signal -> average, NaN if not seen
+    private final float[] hours = new float[HOURS * SIGNALS];
+
+    private final double[] hourSums = new double[SIGNALS];
+
+    private final int[] hourCounts = new int[SIGNALS];
+
+    private long hour = -1;
+
+    // the latest minute seen
+    private long last = -1;
+
+    // the flagged signals, by AnomalyType ordinal
+    private final boolean[] anomalous = new boolean[AnomalyType.values().length];
+
+    Baseline() {
+        Arrays.fill(hours, Float.NaN);
+    }
+
+    /**
+     * Close the hour being averaged if the given minute is past it.
+     */
+    void roll(long minute) {
+        last = minute;
+        long current = minute / 60;
+        if (current == hour) {
+            return;
+        }
+        if (hour >= 0) {
+            int offset = (int) (hour % HOURS) * SIGNALS;
+            for (int i = 0; i < SIGNALS; i++) {
+                hours[offset + i] = hourCounts[i] == 0 ? Float.NaN : (float) (hourSums[i] / hourCounts[i]);
+            }
+        }
+        Arrays.fill(hourSums, 0);
+        Arrays.fill(hourCounts, 0);
+        hour = current;
+    }
+
+    void update(int signal, double value, double alpha) {
+        if (counts[signal] == 0) {
+            means[signal] = value;
+        } else {
+            double diff = value - means[signal];
+            double increment = alpha * diff;
+            means[signal] += increment;
+            variances[signal] = (1 - alpha) * (variances[signal] + diff * increment);
+        }
+        if (counts[signal] < Integer.MAX_VALUE) {
+            counts[signal]++;
+        }
+        hourSums[signal] += value;
+        hourCounts[signal]++;
+    }
+
+    long getLast() {
+        return last;
+    }
+
+    int getCount(int signal) {
+        return counts[signal];
+    }
+
+    double getMean(int signal) {
+        return means[signal];
+    }
+
+    double getDeviation(int signal) {
+        return Math.sqrt(variances[signal]);
+    }
+
+    /**
+     * @return the average of the signal in the same hour of the day before, NaN if unknown
+     */
+    double getYesterday(int signal, long minute) {
+        return hours[(int) (minute / 60 % HOURS) * SIGNALS + signal];
+    }
+
+    boolean isAnomalous(AnomalyType type) {
+        return anomalous[type.ordinal()];
+    }
+
+    void setAnomalous(AnomalyType type, boolean value) {
+        anomalous[type.ordinal()] = value;
+    }
+
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.chart;
+
+import com.alibaba.dubbo.monitor.simple.cluster.MonitorCluster;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyStore;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsStore;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ChartCache renders charts on request and keeps the rendered images in a least recently used
+ * cache bounded by size. (ThreadSafe)
+ * <p>
+ * Concurrent requests for the same chart share one rendering, and the images of a method are
+ * invalidated as soon as new statistics of the method are flushed.
+ * <p>
+ * On a cluster, charts are rendered from the data of every node. Flushes on the other nodes do not
+ * invalidate the images here, so only the images of the days no longer written are cached.
+ */
+public class ChartCache {
+
+    private final StatisticsStore store;
+
+    private final LatencyStore latencies;
+
+    private final long capacity;
+
+    private final long timeout;
+
+    private final ConcurrentMap<String, ChartData> chartData = new ConcurrentHashMap<String, ChartData>();
+
+    private final ConcurrentMap<String, FutureTask<byte[]>> renders = new ConcurrentHashMap<String, FutureTask<byte[]>>();
+
+    private final LinkedHashMap<String, byte[]> images = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private long size;
+
+    // null unless the monitor runs as one node of a cluster
+    private volatile MonitorCluster cluster;
+
+    /**
+     * @param capacity the maximum total size of the cached images in bytes
+     * @param timeout  the maximum time in milliseconds to wait for a rendering by another request
+     */
+    public ChartCache(StatisticsStore store, LatencyStore latencies, long capacity, long timeout) {
+        this.store = store;
+        this.latencies = latencies;
+        this.capacity = capacity;
+        this.timeout = timeout;
+    }
+
+    public void setCluster(MonitorCluster cluster) {
+        this.cluster = cluster;
+    }
+
+    public static String toKey(String day, String service, String method) {
+        return day + "/" + service + "/" + method;
+    }
+
+    /**
+     * @param type one of {@link ChartRenderer#TYPES}
+     * @return the PNG image of the chart
+     */
+    public byte[] get(String day, String service, String method, final String type) throws IOException {
+        final String key = toKey(day, service, method);
+        String imageKey = key + "/" + type;
+        byte[] image;
+        synchronized (images) {
+            image = images.get(imageKey);
+        }
+        if (image != null) {
+            hits.incrementAndGet();
+            return image;
+        }
+        misses.incrementAndGet();
+        FutureTask<byte[]> render = renders.get(imageKey);
+        boolean owner = false;
+        final MonitorCluster cluster = this.cluster;
+        if (render == null) {
+            final ChartData data = cluster == null ? getChartData(day, service, method) : null;
+            final String chartDay = day;
+            final String chartService = service;
+            final String chartMethod = method;
+            FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+                public byte[] call() throws Exception {
+                    if (data == null) {
+                        return ChartRenderer.render(cluster.getChartData(chartDay, chartService, chartMethod), type);
+                    }
+                    data.update(store, latencies);
+                    return ChartRenderer.render(data, type);
+                }
+            });
+            render = renders.putIfAbsent(imageKey, task);
+            if (render == null) {
+                render = task;
+                owner = true;
+            }
+        }
+        if (owner) {
+            render.run();
+        }
+        try {
+            image = render.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering chart " + imageKey);
+        } catch (TimeoutException e) {
+            throw new IOException("Timeout while rendering chart " + imageKey);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to render chart " + imageKey + ", cause: " + cause.getMessage(), cause);
+        } finally {
+            // not cached if invalidated while rendering
+            if (owner && renders.remove(imageKey, render) && image != null && (cluster == null || isPast(day))) {
+                put(imageKey, image);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Get the cached data of a method, or load the data of a past day, or of a method the store has
+     * no statistics of, without caching it. The methods are taken from requests, so only the ones
+     * the store knows get an entry, which bounds the entries to the methods of today and yesterday.
+     */
+    public ChartData getChartData(String day, String service, String method) {
+        String key = toKey(day, service, method);
+        ChartData data = chartData.get(key);
+        if (data == null) {
+            data = new ChartData(day, service, method);
+            if (!isPast(day) && store.getMethods(day, service).contains(method)) {
+                ChartData old = chartData.putIfAbsent(key, data);
+                if (old != null) {
+                    data = old;
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Get the data of a method, updated with the statistics flushed since the last update.
+     */
+    public ChartData load(String day, String service, String method) {
+        ChartData data = getChartData(day, service, method);
+        data.update(store, latencies);
+        return data;
+    }
+
+    /**
+     * Invalidate the images of a method.
+     *
+     * @param key {@link #toKey(String, String, String)}
+     */
+    public void invalidate(String key) {
+        invalidations.incrementAndGet();
+        for (String type : ChartRenderer.TYPES) {
+            String imageKey = key + "/" + type;
+            renders.remove(imageKey);
+            synchronized (images) {
+                byte[] image = images.remove(imageKey);
+                if (image != null) {
+                    size -= image.length;
+                }
+            }
+        }
+    }
+
+    /**
+     * Release the cached data of past days, which does not change anymore.
+     */
+    public void evict() {
+        for (Iterator<ChartData> iterator = chartData.values().iterator(); iterator.hasNext(); ) {
+            if (isPast(iterator.next().getDay())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public long getSize() {
+        synchronized (images) {
+            return size;
+        }
+    }
+
+    private void put(String imageKey, byte[] image) {
+        synchronized (images) {
+            byte[] old = images.put(imageKey, image);
+            size += image.length - (old == null ? 0 : old.length);
+            for (Iterator<Map.Entry<String, byte[]>> iterator = images.entrySet().iterator();
+                 size > capacity && iterator.hasNext(); ) {
+                size -= iterator.next().getValue().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Only today and yesterday may still receive statistics.
+     */
+    private static boolean isPast(String day) {
+        String yesterday = DateUtils.toDay(DateUtils.toMinute(System.currentTimeMillis()) - DateUtils.MINUTES_PER_DAY);
+        return day.compareTo(yesterday) < 0;
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.chart;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyHistogram;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyListener;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyStore;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsCursor;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsListener;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * ChartData caches the per-minute success and elapsed sums and latency histograms of one method
+ * on one day, split by consumer and provider side. Each update only folds in the records written
+ * since the previous one. (ThreadSafe)
+ * <p>
+ * On a cluster, the data of each node is sent as one URL per minute and side, and merged:
+ * <pre>
+ * chart://0.0.0.0/service?method=...&time=HHmm&side=provider&success=...&elapsed=...&max.elapsed=...&latency=...
+ * </pre>
+ */
+public class ChartData implements StatisticsListener, LatencyListener {
+
+    public static final String PROTOCOL = "chart";
+
+    private static final String TIME = "time";
+
+    private static final String LATENCY = "latency";
+
+    private static final String[] SIDES = {MonitorService.CONSUMER, MonitorService.PROVIDER};
+
+    private final String day;
+
+    private final String service;
+
+    private final String method;
+
+    private final StatisticsCursor cursor = new StatisticsCursor();
+
+    private final Map<String, long[]> successData = new HashMap<String, long[]>();
+
+    private final Map<String, long[]> elapsedData = new HashMap<String, long[]>();
+
+    private final Map<String, LatencyHistogram[]> latencyData = new HashMap<String, LatencyHistogram[]>();
+
+    private long elapsedMax;
+
+    public ChartData(String day, String service, String method) {
+        this.day = day;
+        this.service = service;
+        this.method = method;
+    }
+
+    public String getDay() {
+        return day;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public synchronized void update(StatisticsStore store, LatencyStore latencies) {
+        store.scan(day, service, method, cursor, this);
+        latencies.scan(day, service, method, cursor, this);
+    }
+
+    public void onStatistics(long minute, Series series, long[] values) {
+        String time = DateUtils.toTime(minute);
+        int side = MonitorService.CONSUMER.equals(series.getSide()) ? 0 : 1;
+        getData(successData, time)[side] += values[StatisticsTypes.SUCCESS];
+        getData(elapsedData, time)[side] += values[StatisticsTypes.ELAPSED];
+        elapsedMax = Math.max(elapsedMax, values[StatisticsTypes.MAX_ELAPSED]);
+    }
+
+    public void onLatency(long minute, Series series, LatencyHistogram histogram) {
+        String time = DateUtils.toTime(minute);
+        int side = MonitorService.CONSUMER.equals(series.getSide()) ? 0 : 1;
+        LatencyHistogram[] histograms = latencyData.get(time);
+        if (histograms == null) {
+            histograms = new LatencyHistogram[2];
+            latencyData.put(time, histograms);
+        }
+        if (histograms[side] == null) {
+            histograms[side] = histogram;
+        } else {
+            histograms[side].merge(histogram);
+        }
+    }
+
+    /**
+     * @return the side whose latencies are charted, provider if it has reported any
+     */
+    private int getLatencySide() {
+        for (LatencyHistogram[] histograms : latencyData.values()) {
+            if (histograms[1] != null) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the latencies at {@link LatencyHistogram#PERCENTILES}, keyed by "HHmm"
+     */
+    public synchronized Map<String, long[]> getPercentileData() {
+        int side = getLatencySide();
+        Map<String, long[]> data = new HashMap<String, long[]>(latencyData.size() * 2);
+        for (Map.Entry<String, LatencyHistogram[]> entry : latencyData.entrySet()) {
+            LatencyHistogram histogram = entry.getValue()[side];
+            if (histogram != null) {
+                data.put(entry.getKey(), histogram.getPercentiles());
+            }
+        }
+        return data;
+    }
+
+    /**
+     * @return the latencies of the whole day at {@link LatencyHistogram#PERCENTILES}
+     */
+    public synchronized long[] getPercentiles() {
+        int side = getLatencySide();
+        LatencyHistogram total = new LatencyHistogram();
+        for (LatencyHistogram[] histograms : latencyData.values()) {
+            if (histograms[side] != null) {
+                total.merge(histograms[side]);
+            }
+        }
+        return total.getPercentiles();
+    }
+
+    /**
+     * @return a copy of the success sums, keyed by "HHmm", valued by consumer and provider side
+     */
+    public synchronized Map<String, long[]> getSuccessData() {
+        return copy(successData);
+    }
+
+    /**
+     * @return a copy of the elapsed sums, keyed by "HHmm", valued by consumer and provider side
+     */
+    public synchronized Map<String, long[]> getElapsedData() {
+        return copy(elapsedData);
+    }
+
+    public synchronized long getElapsedMax() {
+        return elapsedMax;
+    }
+
+    /**
+     * @return the data, one URL per minute and side, to be sent to another monitor node
+     */
+    public synchronized List<URL> toURLs() {
+        Set<String> times = new TreeSet<String>(successData.keySet());
+        times.addAll(elapsedData.keySet());
+        times.addAll(latencyData.keySet());
+        List<URL> urls = new ArrayList<URL>(times.size() * 2);
+        for (String time : times) {
+            long[] success = successData.get(time);
+            long[] elapsed = elapsedData.get(time);
+            LatencyHistogram[] histograms = latencyData.get(time);
+            for (int side = 0; side < SIDES.length; side++) {
+                Map<String, String> parameters = new HashMap<String, String>();
+                if (success != null && success[side] != 0) {
+                    parameters.put(MonitorService.SUCCESS, String.valueOf(success[side]));
+                }
+                if (elapsed != null && elapsed[side] != 0) {
+                    parameters.put(MonitorService.ELAPSED, String.valueOf(elapsed[side]));
+                }
+                if (histograms != null && histograms[side] != null) {
+                    parameters.put(LATENCY, histograms[side].encode());
+                }
+                if (parameters.isEmpty()) {
+                    continue;
+                }
+                parameters.put(MonitorService.METHOD, method);
+                parameters.put(TIME, time);
+                parameters.put(Constants.SIDE_KEY, SIDES[side]);
+                parameters.put(MonitorService.MAX_ELAPSED, String.valueOf(elapsedMax));
+                urls.add(new URL(PROTOCOL, Constants.ANYHOST_VALUE, 0, service, parameters));
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Add the data of another monitor node.
+     *
+     * @param urls as {@link #toURLs()} returns
+     */
+    public synchronized void merge(List<URL> urls) {
+        for (URL url : urls) {
+            String time = url.getParameter(TIME);
+            int side = MonitorService.CONSUMER.equals(url.getParameter(Constants.SIDE_KEY)) ? 0 : 1;
+            getData(successData, time)[side] += url.getParameter(MonitorService.SUCCESS, 0L);
+            getData(elapsedData, time)[side] += url.getParameter(MonitorService.ELAPSED, 0L);
+            elapsedMax = Math.max(elapsedMax, url.getParameter(MonitorService.MAX_ELAPSED, 0L));
+            String latency = url.getParameter(LATENCY);
+            if (latency != null) {
+                LatencyHistogram[] histograms = latencyData.get(time);
+                if (histograms == null) {
+                    histograms = new LatencyHistogram[2];
+                    latencyData.put(time, histograms);
+                }
+                LatencyHistogram histogram = LatencyHistogram.decode(latency);
+                if (histograms[side] == null) {
+                    histograms[side] = histogram;
+                } else {
+                    histograms[side].merge(histogram);
+                }
+            }
+        }
+    }
+
+    private static long[] getData(Map<String, long[]> data, String time) {
+        long[] values = data.get(time);
+        if (values == null) {
+            values = new long[2];
+            data.put(time, values);
+        }
+        return values;
+    }
+
+    private static Map<String, long[]> copy(Map<String, long[]> data) {
+        Map<String, long[]> copy = new HashMap<String, long[]>(data.size() * 2);
+        for (Map.Entry<String, long[]> entry : data.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().clone());
+        }
+        return copy;
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.chart;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ChartExecutor renders charts on a fixed pool of low priority threads, so that chart rendering
+ * uses the spare cores without competing with the statistics writer thread. (ThreadSafe)
+ */
+public class ChartExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChartExecutor.class);
+
+    private static final long POLL_INTERVAL = 100;
+
+    private final ThreadPoolExecutor executor;
+
+    private final int maxPending;
+
+    private final long timeout;
+
+    private final ChartMetrics metrics = new ChartMetrics();
+
+    /**
+     * @param threads    the number of rendering threads
+     * @param maxPending the maximum number of jobs submitted but not completed
+     * @param timeout    the maximum running time of a job in milliseconds, before it is cancelled
+     */
+    public ChartExecutor(int threads, int maxPending, long timeout) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("DubboMonitorChart", true) {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = super.newThread(runnable);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        this.maxPending = Math.max(threads, maxPending);
+        this.timeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    public ChartMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Run the jobs and wait until all of them have completed, failed or timed out.
+     *
+     * @return the number of jobs completed successfully
+     */
+    public int execute(Collection<? extends Runnable> jobs) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        ExecutorCompletionService<Job> completion = new ExecutorCompletionService<Job>(executor);
+        List<Job> running = new ArrayList<Job>();
+        Iterator<? extends Runnable> iterator = jobs.iterator();
+        int completed = 0;
+        while (iterator.hasNext() || !running.isEmpty()) {
+            while (iterator.hasNext() && running.size() < maxPending) {
+                Job job = new Job(iterator.next());
+                job.future = completion.submit(job, job);
+                running.add(job);
+            }
+            Future<Job> future = completion.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            if (future != null) {
+                try {
+                    Job job = future.get();
+                    running.remove(job);
+                    if (job.succeeded) {
+                        completed++;
+                    }
+                } catch (CancellationException e) {
+                    // removed when cancelled
+                } catch (ExecutionException e) {
+                    logger.warn(e.getMessage(), e);
+                }
+            }
+            long now = System.nanoTime();
+            for (Iterator<Job> it = running.iterator(); it.hasNext(); ) {
+                Job job = it.next();
+                long started = job.started;
+                if (started != 0 && now - started > timeout) {
+                    job.future.cancel(true);
+                    it.remove();
+                    metrics.recordTimeout();
+                    logger.warn("Cancel chart job " + job.runnable + " running for more than "
+                            + TimeUnit.NANOSECONDS.toMillis(timeout) + "ms");
+                }
+            }
+        }
+        metrics.recordCycle(System.currentTimeMillis() - start, completed);
+        return completed;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private class Job implements Runnable {
+
+        private final Runnable runnable;
+
+        private volatile long started;
+
+        private volatile boolean succeeded;
+
+        private Future<Job> future;
+
+        Job(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        public void run() {
+            started = System.nanoTime();
+            try {
+                runnable.run();
+                metrics.recordChart(System.nanoTime() - started);
+                succeeded = true;
+            } catch (Throwable t) {
+                metrics.recordFailure();
+                logger.error("Failed to render chart " + runnable + ", cause: " + t.getMessage(), t);
+            }
+        }
+    }
+
+}
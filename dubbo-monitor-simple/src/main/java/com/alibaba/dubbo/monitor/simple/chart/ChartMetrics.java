@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.chart;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ChartMetrics records the rendering time of every chart and every drawing cycle. (ThreadSafe)
+ */
+public class ChartMetrics {
+
+    private final AtomicLong charts = new AtomicLong();
+
+    private final AtomicLong renderNanos = new AtomicLong();
+
+    private final AtomicLong maxRenderNanos = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final AtomicLong cycles = new AtomicLong();
+
+    private volatile long lastCycleMillis;
+
+    private volatile int lastCycleCharts;
+
+    public void recordChart(long nanos) {
+        charts.incrementAndGet();
+        renderNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxRenderNanos.get())) {
+            if (maxRenderNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    public void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    public void recordTimeout() {
+        timeouts.incrementAndGet();
+    }
+
+    public void recordCycle(long millis, int charts) {
+        cycles.incrementAndGet();
+        lastCycleMillis = millis;
+        lastCycleCharts = charts;
+    }
+
+    public long getCharts() {
+        return charts.get();
+    }
+
+    public long getAverageRenderMillis() {
+        long count = charts.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(renderNanos.get() / count);
+    }
+
+    public long getMaxRenderMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxRenderNanos.get());
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getCycles() {
+        return cycles.get();
+    }
+
+    public long getLastCycleMillis() {
+        return lastCycleMillis;
+    }
+
+    public int getLastCycleCharts() {
+        return lastCycleCharts;
+    }
+
+}
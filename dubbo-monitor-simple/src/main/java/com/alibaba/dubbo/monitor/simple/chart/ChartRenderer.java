@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.chart;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyHistogram;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.DateAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.time.Minute;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Map;
+
+/**
+ * ChartRenderer renders the QPS ({@link MonitorService#SUCCESS}), the average response time
+ * ({@link MonitorService#ELAPSED}) and the latency percentiles ({@link #PERCENTILE}) charts of
+ * a method as PNG images. (ThreadSafe)
+ */
+public class ChartRenderer {
+
+    public static final String PERCENTILE = "percentile";
+
+    public static final String[] TYPES = {MonitorService.SUCCESS, MonitorService.ELAPSED, PERCENTILE};
+
+    private static final Logger logger = LoggerFactory.getLogger(ChartRenderer.class);
+
+    private static final String[] SIDES = {MonitorService.CONSUMER, MonitorService.PROVIDER};
+
+    private ChartRenderer() {
+    }
+
+    public static boolean isSupported(String type) {
+        for (String t : TYPES) {
+            if (t.equals(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param type one of {@link #TYPES}
+     * @return the PNG image
+     */
+    public static byte[] render(ChartData data, String type) throws IOException {
+        if (PERCENTILE.equals(type)) {
+            long[] percentiles = data.getPercentiles();
+            // estimated from the per-minute sums and maximums, see LatencyHistogram#recordReport
+            StringBuilder title = new StringBuilder("Estimated");
+            for (int i = 0; i < percentiles.length; i++) {
+                title.append(' ');
+                title.append(LatencyHistogram.PERCENTILE_NAMES[i]).append(": ").append(percentiles[i]);
+            }
+            return createChart("ms", title.toString(), data.getService(), data.getMethod(), data.getDay(),
+                    LatencyHistogram.PERCENTILE_NAMES, data.getPercentileData());
+        }
+        Map<String, long[]> successData = data.getSuccessData();
+        double[] successSummary = summarize(successData);
+        if (MonitorService.ELAPSED.equals(type)) {
+            Map<String, long[]> elapsedData = data.getElapsedData();
+            double[] elapsedSummary = summarize(elapsedData);
+            divData(elapsedData, successData);
+            elapsedSummary[0] = data.getElapsedMax();
+            elapsedSummary[1] = -1;
+            elapsedSummary[2] = successSummary[3] == 0 ? 0 : elapsedSummary[3] / successSummary[3];
+            elapsedSummary[3] = -1;
+            return createChart("ms/t", data.getService(), data.getMethod(), data.getDay(), SIDES, elapsedData, elapsedSummary);
+        } else if (MonitorService.SUCCESS.equals(type)) {
+            divData(successData, 60);
+            successSummary[0] = successSummary[0] / 60;
+            successSummary[1] = successSummary[1] / 60;
+            successSummary[2] = successSummary[2] / 60;
+            return createChart("t/s", data.getService(), data.getMethod(), data.getDay(), SIDES, successData, successSummary);
+        }
+        throw new IllegalArgumentException("Unsupported chart type " + type);
+    }
+
+    private static byte[] createChart(String key, String service, String method, String date, String[] types, Map<String, long[]> data, double[] summary) throws IOException {
+        DecimalFormat numberFormat = new DecimalFormat("###,##0.##");
+        String title = "max: " + numberFormat.format(summary[0]) + (summary[1] >= 0 ? " min: " + numberFormat.format(summary[1]) : "")
+                + " avg: " + numberFormat.format(summary[2]) + (summary[3] >= 0 ? " sum: " + numberFormat.format(summary[3]) : "");
+        return createChart(key, title, service, method, date, types, data);
+    }
+
+    private static byte[] createChart(String key, String title, String service, String method, String date, String[] types, Map<String, long[]> data) throws IOException {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMddHHmm");
+        TimeSeriesCollection xydataset = new TimeSeriesCollection();
+        for (int i = 0; i < types.length; i++) {
+            String type = types[i];
+            TimeSeries timeseries = new TimeSeries(type);
+            for (Map.Entry<String, long[]> entry : data.entrySet()) {
+                try {
+                    timeseries.add(new Minute(dateFormat.parse(date + entry.getKey())), entry.getValue()[i]);
+                } catch (ParseException e) {
+                    logger.error(e.getMessage(), e);
+                }
+            }
+            xydataset.addSeries(timeseries);
+        }
+        JFreeChart jfreechart = ChartFactory.createTimeSeriesChart(title,
+                toDisplayService(service) + "  " + method + "  " + toDisplayDate(date), key, xydataset, true, true, false);
+        jfreechart.setBackgroundPaint(Color.WHITE);
+        XYPlot xyplot = (XYPlot) jfreechart.getPlot();
+        xyplot.setBackgroundPaint(Color.WHITE);
+        xyplot.setDomainGridlinePaint(Color.GRAY);
+        xyplot.setRangeGridlinePaint(Color.GRAY);
+        xyplot.setDomainGridlinesVisible(true);
+        xyplot.setRangeGridlinesVisible(true);
+        DateAxis dateaxis = (DateAxis) xyplot.getDomainAxis();
+        dateaxis.setDateFormatOverride(new SimpleDateFormat("HH:mm"));
+        BufferedImage image = jfreechart.createBufferedImage(600, 300);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(16 * 1024);
+        ImageIO.write(image, "png", output);
+        return output.toByteArray();
+    }
+
+    private static String toDisplayService(String service) {
+        int i = service.lastIndexOf('.');
+        if (i >= 0) {
+            return service.substring(i + 1);
+        }
+        return service;
+    }
+
+    private static String toDisplayDate(String date) {
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd").format(new SimpleDateFormat("yyyyMMdd").parse(date));
+        } catch (ParseException e) {
+            return date;
+        }
+    }
+
+    /**
+     * @return max and min of all values, average and sum of the consumer side values
+     */
+    private static double[] summarize(Map<String, long[]> data) {
+        double[] summary = new double[4];
+        boolean first = true;
+        for (long[] values : data.values()) {
+            for (long value : values) {
+                summary[0] = first ? value : Math.max(summary[0], value);
+                summary[1] = first ? value : Math.min(summary[1], value);
+                first = false;
+            }
+            summary[3] += values[0];
+        }
+        summary[2] = data.isEmpty() ? 0 : summary[3] / data.size();
+        return summary;
+    }
+
+    private static void divData(Map<String, long[]> successMap, long unit) {
+        for (long[] success : successMap.values()) {
+            for (int i = 0; i < success.length; i++) {
+                success[i] = success[i] / unit;
+            }
+        }
+    }
+
+    private static void divData(Map<String, long[]> elapsedMap, Map<String, long[]> successMap) {
+        for (Map.Entry<String, long[]> entry : elapsedMap.entrySet()) {
+            long[] elapsed = entry.getValue();
+            long[] success = successMap.get(entry.getKey());
+            for (int i = 0; i < elapsed.length; i++) {
+                elapsed[i] = success[i] == 0 ? 0 : elapsed[i] / success[i];
+            }
+        }
+    }
+
+
+}
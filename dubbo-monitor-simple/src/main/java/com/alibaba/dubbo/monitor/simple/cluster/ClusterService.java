@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.cluster;
+
+import com.alibaba.dubbo.common.URL;
+
+import java.util.List;
+
+/**
+ * ClusterService is exported by every monitor node of a cluster, and registered so that the
+ * nodes find each other. Its methods act on the node called only, and never route or fan out.
+ */
+public interface ClusterService {
+
+    /**
+     * Collect a batch of statistics forwarded by another node, even if the ring of this node does
+     * not assign their services to it, which happens while nodes join or leave.
+     */
+    void forward(List<URL> statistics);
+
+    /**
+     * @see com.alibaba.dubbo.monitor.MonitorService#lookup(URL)
+     */
+    List<URL> lookup(URL query);
+
+    /**
+     * @return the daily summaries of the series of a service held by this node, one URL each
+     * @see com.alibaba.dubbo.monitor.simple.statistics.SummaryIndex.Entry#toURL()
+     */
+    List<URL> getSummaries(String day, String service);
+
+    /**
+     * @param query a series query URL with its resolution set
+     * @return the buckets of the query scanned on this node
+     * @see com.alibaba.dubbo.monitor.simple.query.SeriesQuery#scan
+     */
+    List<URL> query(URL query);
+
+    /**
+     * @return the top series of a metric over a window on this node, one URL each
+     * @see com.alibaba.dubbo.monitor.simple.statistics.HeavyHitters.Entry#toURL()
+     */
+    List<URL> getTop(String window, String metric, int size);
+
+    /**
+     * @return the chart data of a method held by this node
+     * @see com.alibaba.dubbo.monitor.simple.chart.ChartData#toURLs()
+     */
+    List<URL> getChart(String day, String service, String method);
+
+    /**
+     * @return the alerts firing on this node, one URL each
+     * @see com.alibaba.dubbo.monitor.simple.alert.Alert#toURL()
+     */
+    List<URL> getAlerts();
+
+    /**
+     * @return the anomalies still going on found by this node, one URL each
+     * @see com.alibaba.dubbo.monitor.simple.anomaly.Anomaly#toURL()
+     */
+    List<URL> getActiveAnomalies();
+
+    /**
+     * @return the first minutes of the anomalies found by this node since the given minute
+     */
+    List<URL> getAnomalyHistory(long since);
+
+}
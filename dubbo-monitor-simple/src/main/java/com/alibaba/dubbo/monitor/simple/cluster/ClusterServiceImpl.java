@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.cluster;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.alert.Alert;
+import com.alibaba.dubbo.monitor.simple.anomaly.Anomaly;
+import com.alibaba.dubbo.monitor.simple.query.SeriesQuery;
+import com.alibaba.dubbo.monitor.simple.statistics.HeavyHitters;
+import com.alibaba.dubbo.monitor.simple.statistics.SummaryIndex;
+import com.alibaba.dubbo.monitor.simple.statistics.TopMetric;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ClusterServiceImpl answers the other nodes from the local monitor service.
+ */
+public class ClusterServiceImpl implements ClusterService {
+
+    private final SimpleMonitorService monitor;
+
+    public ClusterServiceImpl(SimpleMonitorService monitor) {
+        this.monitor = monitor;
+    }
+
+    public void forward(List<URL> statistics) {
+        for (URL url : statistics) {
+            monitor.collectLocal(url);
+        }
+    }
+
+    public List<URL> lookup(URL query) {
+        return monitor.lookupLocal(query);
+    }
+
+    public List<URL> getSummaries(String day, String service) {
+        List<SummaryIndex.Entry> entries = monitor.getSummaryIndex().getEntries(day, service);
+        List<URL> urls = new ArrayList<URL>(entries.size());
+        for (SummaryIndex.Entry entry : entries) {
+            urls.add(entry.toURL());
+        }
+        return urls;
+    }
+
+    public List<URL> query(URL query) {
+        return SeriesQuery.valueOf(query).scan(monitor.getStatisticsStore(), monitor.getRollupStore(),
+                monitor.getLatencyStore());
+    }
+
+    public List<URL> getTop(String window, String metric, int size) {
+        HeavyHitters.Window topWindow = HeavyHitters.Window.parse(window);
+        TopMetric topMetric = TopMetric.parse(metric);
+        if (topWindow == null || topMetric == null) {
+            throw new IllegalArgumentException("Illegal top list of " + metric + " over " + window);
+        }
+        List<HeavyHitters.Entry> entries = monitor.getHeavyHitters().getTop(topWindow, topMetric, size,
+                System.currentTimeMillis());
+        List<URL> urls = new ArrayList<URL>(entries.size());
+        for (HeavyHitters.Entry entry : entries) {
+            urls.add(entry.toURL());
+        }
+        return urls;
+    }
+
+    public List<URL> getChart(String day, String service, String method) {
+        return monitor.getChartCache().load(day, service, method).toURLs();
+    }
+
+    public List<URL> getAlerts() {
+        List<Alert> alerts = monitor.getAlertEngine().getAlerts();
+        List<URL> urls = new ArrayList<URL>(alerts.size());
+        for (Alert alert : alerts) {
+            urls.add(alert.toURL());
+        }
+        return urls;
+    }
+
+    public List<URL> getActiveAnomalies() {
+        return toURLs(monitor.getAnomalyDetector().getActive());
+    }
+
+    public List<URL> getAnomalyHistory(long since) {
+        return toURLs(monitor.getAnomalyDetector().getHistory(since));
+    }
+
+    private static List<URL> toURLs(List<Anomaly> anomalies) {
+        List<URL> urls = new ArrayList<URL>(anomalies.size());
+        for (Anomaly anomaly : anomalies) {
+            urls.add(anomaly.toURL());
+        }
+        return urls;
+    }
+
+}
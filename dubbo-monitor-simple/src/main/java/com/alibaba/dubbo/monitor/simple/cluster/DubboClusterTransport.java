@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.cluster;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Protocol;
+import com.alibaba.dubbo.rpc.ProxyFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * DubboClusterTransport calls the other nodes over the dubbo protocol, with one reference per
+ * node, as DubboMonitorFactory refers to the monitor.
+ */
+public class DubboClusterTransport implements ClusterTransport {
+
+    private static final Protocol protocol = ExtensionLoader.getExtensionLoader(Protocol.class).getAdaptiveExtension();
+
+    private static final ProxyFactory proxyFactory = ExtensionLoader.getExtensionLoader(ProxyFactory.class).getAdaptiveExtension();
+
+    private final int timeout;
+
+    private final Map<String, Invoker<ClusterService>> invokers = new HashMap<String, Invoker<ClusterService>>();
+
+    private final Map<String, ClusterService> services = new HashMap<String, ClusterService>();
+
+    /**
+     * @param timeout the milliseconds to wait for a call
+     */
+    public DubboClusterTransport(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public synchronized ClusterService getService(String node) {
+        ClusterService service = services.get(node);
+        if (service == null) {
+            URL url = URL.valueOf("dubbo://" + node + "/" + ClusterService.class.getName())
+                    .addParameter(Constants.INTERFACE_KEY, ClusterService.class.getName())
+                    .addParameter(Constants.TIMEOUT_KEY, timeout)
+                    .addParameter(Constants.LAZY_CONNECT_KEY, true);
+            Invoker<ClusterService> invoker = protocol.refer(ClusterService.class, url);
+            service = proxyFactory.getProxy(invoker);
+            invokers.put(node, invoker);
+            services.put(node, service);
+        }
+        return service;
+    }
+
+    public synchronized void retain(Collection<String> nodes) {
+        for (Iterator<Map.Entry<String, Invoker<ClusterService>>> iterator = invokers.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, Invoker<ClusterService>> entry = iterator.next();
+            if (!nodes.contains(entry.getKey())) {
+                entry.getValue().destroy();
+                services.remove(entry.getKey());
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void destroy() {
+        for (Invoker<ClusterService> invoker : invokers.values()) {
+            invoker.destroy();
+        }
+        invokers.clear();
+        services.clear();
+    }
+
+}
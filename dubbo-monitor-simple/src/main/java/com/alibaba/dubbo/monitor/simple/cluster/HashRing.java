@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.cluster;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * HashRing assigns keys to nodes by consistent hashing, with the virtual nodes and the MD5 points
+ * of Dubbo's consistent hash load balance, so that a node joining or leaving only moves the keys
+ * of its own share of the ring. Rings are immutable, and equal on every node given the same nodes.
+ */
+public class HashRing {
+
+    private final List<String> nodes;
+
+    private final TreeMap<Long, String> points = new TreeMap<Long, String>();
+
+    /**
+     * @param replicas the virtual nodes of each node, rounded up to a multiple of 4
+     */
+    public HashRing(Collection<String> nodes, int replicas) {
+        this.nodes = Collections.unmodifiableList(new ArrayList<String>(new TreeSet<String>(nodes)));
+        for (String node : this.nodes) {
+            for (int i = 0; i < (replicas + 3) / 4; i++) {
+                byte[] digest = md5(node + "#" + i);
+                for (int h = 0; h < 4; h++) {
+                    points.put(hash(digest, h), node);
+                }
+            }
+        }
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the node owning the key, null if the ring is empty
+     */
+    public String getNode(String key) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        SortedMap<Long, String> tail = points.tailMap(hash(md5(key), 0));
+        return tail.isEmpty() ? points.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    /**
+     * @return the share of the ring owned by the node, between 0 and 1
+     */
+    public double getShare(String node) {
+        if (points.isEmpty()) {
+            return 0;
+        }
+        long owned = 0;
+        long previous = points.lastKey() - (1L << 32);
+        for (Map.Entry<Long, String> point : points.entrySet()) {
+            if (point.getValue().equals(node)) {
+                owned += point.getKey() - previous;
+            }
+            previous = point.getKey();
+        }
+        return owned / (double) (1L << 32);
+    }
+
+    private static long hash(byte[] digest, int number) {
+        return (((long) (digest[3 + number * 4] & 0xFF) << 24)
+                | ((long) (digest[2 + number * 4] & 0xFF) << 16)
+                | ((long) (digest[1 + number * 4] & 0xFF) << 8)
+                | (digest[number * 4] & 0xFF))
+                & 0xFFFFFFFFL;
+    }
+
+    private static byte[] md5(String value) {
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            return md5.digest(value.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+}
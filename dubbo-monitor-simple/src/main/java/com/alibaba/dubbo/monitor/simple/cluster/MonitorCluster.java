@@ -0,0 +1,483 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.cluster;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.monitor.simple.alert.Alert;
+import com.alibaba.dubbo.monitor.simple.anomaly.Anomaly;
+import com.alibaba.dubbo.monitor.simple.chart.ChartData;
+import com.alibaba.dubbo.monitor.simple.query.SeriesQuery;
+import com.alibaba.dubbo.monitor.simple.query.StatisticsLookup;
+import com.alibaba.dubbo.monitor.simple.query.TimeSeries;
+import com.alibaba.dubbo.monitor.simple.statistics.HeavyHitters;
+import com.alibaba.dubbo.monitor.simple.statistics.TopMetric;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MonitorCluster shards the statistics of a fleet across monitor nodes by service.
+ * <p>
+ * Each service is owned by the node the {@link HashRing} of the current nodes assigns it to.
+ * Statistics of services owned by another node are queued per node, and forwarded in batches by
+ * a sender thread. When nodes join or leave, the queued statistics are routed again over the new
+ * ring, and those which cannot be delivered to a node are kept until it comes back or leaves.
+ * <p>
+ * Statistics written before a service moved stay on its previous owner, so lookups and summaries
+ * fan out to every node, and their results are merged.
+ */
+public class MonitorCluster {
+
+    private static final Logger logger = LoggerFactory.getLogger(MonitorCluster.class);
+
+    private final String self;
+
+    private final ClusterService local;
+
+    private final ClusterTransport transport;
+
+    private final int replicas;
+
+    private final int batchSize;
+
+    private final int capacity;
+
+    private final long timeout;
+
+    private final ConcurrentMap<String, Peer> peers = new ConcurrentHashMap<String, Peer>();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(new NamedThreadFactory("DubboMonitorCluster", true));
+
+    private final Thread sender;
+
+    private volatile HashRing ring;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param self          the address of this node, host:port, as the other nodes know it
+     * @param local         the service of this node, called directly
+     * @param replicas      the virtual nodes of each node on the ring
+     * @param batchSize     the statistics forwarded to a node in one call
+     * @param capacity      the statistics queued per node, beyond which they are dropped
+     * @param flushInterval the milliseconds between two sends, 0 to only send on {@link #flush()}
+     * @param timeout       the milliseconds to wait for the nodes of a fan out
+     */
+    public MonitorCluster(String self, ClusterService local, ClusterTransport transport, int replicas,
+                          int batchSize, int capacity, final long flushInterval, long timeout) {
+        this.self = self;
+        this.local = local;
+        this.transport = transport;
+        this.replicas = replicas;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.timeout = timeout;
+        this.ring = new HashRing(Collections.singleton(self), replicas);
+        if (flushInterval > 0) {
+            sender = new Thread(new Runnable() {
+                public void run() {
+                    while (running) {
+                        try {
+                            Thread.sleep(flushInterval);
+                            flush();
+                        } catch (InterruptedException e) {
+                            return;
+                        } catch (Throwable t) {
+                            logger.error("Unexpected error occur at forward statistics, cause: " + t.getMessage(), t);
+                        }
+                    }
+                }
+            }, "DubboMonitorClusterSender");
+            sender.setDaemon(true);
+            sender.start();
+        } else {
+            sender = null;
+        }
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public HashRing getRing() {
+        return ring;
+    }
+
+    /**
+     * @return the node owning the service
+     */
+    public String getOwner(String service) {
+        return ring.getNode(service);
+    }
+
+    /**
+     * Replace the nodes of the cluster, this node always being one of them.
+     */
+    public synchronized void setNodes(Collection<String> nodes) {
+        Set<String> members = new TreeSet<String>(nodes);
+        members.add(self);
+        HashRing previous = ring;
+        if (members.equals(new TreeSet<String>(previous.getNodes()))) {
+            return;
+        }
+        ring = new HashRing(members, replicas);
+        if (logger.isInfoEnabled()) {
+            Set<String> joined = new TreeSet<String>(members);
+            joined.removeAll(previous.getNodes());
+            Set<String> left = new TreeSet<String>(previous.getNodes());
+            left.removeAll(members);
+            logger.info("monitor cluster nodes changed, joined " + joined + ", left " + left + ", now " + members);
+        }
+        transport.retain(members);
+        // the statistics queued for the previous owners go to the new ones
+        for (Peer peer : peers.values()) {
+            List<URL> queued = new ArrayList<URL>();
+            peer.queue.drainTo(queued);
+            if (!members.contains(peer.node)) {
+                peers.remove(peer.node);
+            }
+            reroute(queued);
+        }
+    }
+
+    /**
+     * Queue the statistics for their owner if it is another node.
+     *
+     * @return false if the statistics are to be collected by this node
+     */
+    public boolean route(URL statistics) {
+        String node = ring.getNode(statistics.getServiceInterface());
+        if (node == null || node.equals(self)) {
+            return false;
+        }
+        enqueue(node, statistics);
+        return true;
+    }
+
+    private void enqueue(String node, URL statistics) {
+        Peer peer = peers.get(node);
+        if (peer == null) {
+            peers.putIfAbsent(node, new Peer(node, capacity));
+            peer = peers.get(node);
+        }
+        if (!peer.queue.offer(statistics)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void reroute(List<URL> statistics) {
+        List<URL> owned = new ArrayList<URL>();
+        for (URL url : statistics) {
+            if (!route(url)) {
+                owned.add(url);
+            }
+        }
+        if (!owned.isEmpty()) {
+            local.forward(owned);
+        }
+    }
+
+    /**
+     * Forward the queued statistics of every node in batches.
+     */
+    public void flush() {
+        List<URL> batch = new ArrayList<URL>(batchSize);
+        for (Peer peer : peers.values()) {
+            while (peer.queue.drainTo(batch, batchSize) > 0) {
+                try {
+                    transport.getService(peer.node).forward(batch);
+                    peer.forwarded.addAndGet(batch.size());
+                    batch.clear();
+                } catch (Throwable t) {
+                    peer.failures.incrementAndGet();
+                    peer.lastError = t.getMessage();
+                    logger.warn("Failed to forward " + batch.size() + " statistics to monitor node " + peer.node
+                            + ", cause: " + t.getMessage(), t);
+                    // kept for the next flush, or for the new owner once the node has left
+                    List<URL> failed = new ArrayList<URL>(batch);
+                    batch.clear();
+                    reroute(failed);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Look up the statistics on every node, merging the counters of the series found on several.
+     */
+    public List<URL> lookup(final URL query) {
+        List<URL> urls = new ArrayList<URL>();
+        for (List<URL> result : fanOut(new NodeCall() {
+            public List<URL> call(ClusterService service) {
+                return service.lookup(query);
+            }
+        })) {
+            urls.addAll(result);
+        }
+        return StatisticsLookup.merge(urls);
+    }
+
+    /**
+     * @return the daily summaries of a service on every node, a series may have one per node
+     */
+    public List<URL> getSummaries(final String day, final String service) {
+        List<URL> urls = new ArrayList<URL>();
+        for (List<URL> result : fanOut(new NodeCall() {
+            public List<URL> call(ClusterService clusterService) {
+                return clusterService.getSummaries(day, service);
+            }
+        })) {
+            urls.addAll(result);
+        }
+        return urls;
+    }
+
+    /**
+     * Query a series on every node, merging the buckets of the same period before computing the values.
+     *
+     * @param points the number of points wanted, used to select the resolution if not set
+     */
+    public TimeSeries query(SeriesQuery query, int points) {
+        // every node has to scan in the same resolution
+        query.setResolution(query.resolve(points));
+        final URL url = query.toURL();
+        List<URL> buckets = new ArrayList<URL>();
+        for (List<URL> result : fanOut(new NodeCall() {
+            public List<URL> call(ClusterService service) {
+                return service.query(url);
+            }
+        })) {
+            buckets.addAll(result);
+        }
+        return query.merge(buckets);
+    }
+
+    /**
+     * Merge the top lists of every node. Each node contributes its own top series only, so a series
+     * just below the top of several nodes may be missed.
+     */
+    public List<HeavyHitters.Entry> getTop(final HeavyHitters.Window window, final TopMetric metric, final int size) {
+        List<HeavyHitters.Entry> entries = new ArrayList<HeavyHitters.Entry>();
+        for (List<URL> result : fanOut(new NodeCall() {
+            public List<URL> call(ClusterService service) {
+                return service.getTop(window.getName(), metric.getName(), size);
+            }
+        })) {
+            for (URL url : result) {
+                entries.add(HeavyHitters.Entry.valueOf(url));
+            }
+        }
+        return HeavyHitters.merge(entries, window, metric, size);
+    }
+
+    /**
+     * @return the chart data of a method merged over every node
+     */
+    public ChartData getChartData(final String day, final String service, final String method) {
+        ChartData data = new ChartData(day, service, method);
+        for (List<URL> result : fanOut(new NodeCall() {
+            public List<URL> call(ClusterService clusterService) {
+                return clusterService.getChart(day, service, method);
+            }
+        })) {
+            data.merge(result);
+        }
+        return data;
+    }
+
+    /**
+     * @return the alerts firing on every node, each owning the rules of its own series
+     */
+    public List<Alert> getAlerts() {
+        List<Alert> alerts = new ArrayList<Alert>();
+        for (List<URL> result : fanOut(new NodeCall() {
+            public List<URL> call(ClusterService service) {
+                return service.getAlerts();
+            }
+        })) {
+            for (URL url : result) {
+                alerts.add(Alert.valueOf(url));
+            }
+        }
+        return alerts;
+    }
+
+    /**
+     * @return the anomalies still going on found by every node
+     */
+    public List<Anomaly> getActiveAnomalies() {
+        return toAnomalies(fanOut(new NodeCall() {
+            public List<URL> call(ClusterService service) {
+                return service.getActiveAnomalies();
+            }
+        }));
+    }
+
+    /**
+     * @return the first minutes of the anomalies found by every node since the given minute, latest first
+     */
+    public List<Anomaly> getAnomalyHistory(final long since) {
+        List<Anomaly> anomalies = toAnomalies(fanOut(new NodeCall() {
+            public List<URL> call(ClusterService service) {
+                return service.getAnomalyHistory(since);
+            }
+        }));
+        Collections.sort(anomalies, new Comparator<Anomaly>() {
+            public int compare(Anomaly a, Anomaly b) {
+                return a.getMinute() > b.getMinute() ? -1 : (a.getMinute() == b.getMinute() ? 0 : 1);
+            }
+        });
+        return anomalies;
+    }
+
+    private static List<Anomaly> toAnomalies(List<List<URL>> results) {
+        List<Anomaly> anomalies = new ArrayList<Anomaly>();
+        for (List<URL> result : results) {
+            for (URL url : result) {
+                anomalies.add(Anomaly.valueOf(url));
+            }
+        }
+        return anomalies;
+    }
+
+    /**
+     * Call every node in parallel, skipping the nodes which fail or do not answer in time.
+     */
+    private List<List<URL>> fanOut(final NodeCall call) {
+        List<String> nodes = ring.getNodes();
+        List<Future<List<URL>>> futures = new ArrayList<Future<List<URL>>>(nodes.size());
+        for (final String node : nodes) {
+            futures.add(executor.submit(new Callable<List<URL>>() {
+                public List<URL> call() {
+                    return call.call(node.equals(self) ? local : transport.getService(node));
+                }
+            }));
+        }
+        List<List<URL>> results = new ArrayList<List<URL>>(nodes.size());
+        long deadline = System.currentTimeMillis() + timeout;
+        for (int i = 0; i < futures.size(); i++) {
+            Future<List<URL>> future = futures.get(i);
+            try {
+                results.add(future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                logger.warn("Monitor node " + nodes.get(i) + " did not answer in " + timeout + "ms, skip it.");
+            } catch (ExecutionException e) {
+                logger.warn("Failed to call monitor node " + nodes.get(i) + ", skip it, cause: "
+                        + e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return the nodes statistics were forwarded to
+     */
+    public Collection<Peer> getPeers() {
+        return peers.values();
+    }
+
+    /**
+     * @return the statistics dropped because the queue of their node was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public void close() {
+        running = false;
+        if (sender != null) {
+            sender.interrupt();
+        }
+        executor.shutdownNow();
+        transport.destroy();
+    }
+
+    private interface NodeCall {
+
+        List<URL> call(ClusterService service);
+
+    }
+
+    /**
+     * Peer holds the statistics queued for another node.
+     */
+    public static class Peer {
+
+        private final String node;
+
+        private final BlockingQueue<URL> queue;
+
+        private final AtomicLong forwarded = new AtomicLong();
+
+        private final AtomicLong failures = new AtomicLong();
+
+        private volatile String lastError;
+
+        Peer(String node, int capacity) {
+            this.node = node;
+            this.queue = new ArrayBlockingQueue<URL>(capacity);
+        }
+
+        public String getNode() {
+            return node;
+        }
+
+        public int getQueued() {
+            return queue.size();
+        }
+
+        public long getForwarded() {
+            return forwarded.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+    }
+
+}
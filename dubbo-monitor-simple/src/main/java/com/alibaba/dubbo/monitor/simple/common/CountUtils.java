@@ -18,12 +18,10 @@ package com.alibaba.dubbo.monitor.simple.common;
 
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsScanner;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.regex.Pattern;
 
 /**
  * CountUtils
@@ -32,61 +30,41 @@ public class CountUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(CountUtils.class);
 
-    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d+");
-
-    private static final int SUM = 0;
-
-    private static final int MAX = 1;
-
-    private static final int AVG = 2;
+    private static final ThreadLocal<StatisticsScanner> SCANNER = new ThreadLocal<StatisticsScanner>() {
+        @Override
+        protected StatisticsScanner initialValue() {
+            return new StatisticsScanner();
+        }
+    };
 
     public static long sum(File file) {
-        return calc(file, SUM);
+        return summarize(file).getSum();
     }
 
     public static long max(File file) {
-        return calc(file, MAX);
+        return summarize(file).getMax();
     }
 
     public static long avg(File file) {
-        return calc(file, AVG);
+        return summarize(file).getAverage();
     }
 
-    private static long calc(File file, int op) {
-        if (file.exists()) {
-            try {
-                BufferedReader reader = new BufferedReader(new FileReader(file));
+    /**
+     * Compute the sum, max, count and average of all the given files in one pass over each.
+     */
+    public static StatisticsScanner.Summary summarize(File... files) {
+        StatisticsScanner.Summary summary = new StatisticsScanner.Summary();
+        StatisticsScanner scanner = SCANNER.get();
+        for (File file : files) {
+            if (file.exists()) {
                 try {
-                    int times = 0;
-                    int count = 0;
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        int i = line.indexOf(" ");
-                        if (i > 0) {
-                            line = line.substring(i + 1).trim();
-                            if (NUMBER_PATTERN.matcher(line).matches()) {
-                                int value = Integer.parseInt(line);
-                                times++;
-                                if (op == MAX) {
-                                    count = Math.max(count, value);
-                                } else {
-                                    count += value;
-                                }
-                            }
-                        }
-                    }
-                    if (op == AVG) {
-                        return count / times;
-                    }
-                    return count;
-                } finally {
-                    reader.close();
+                    scanner.scan(file, 0, summary);
+                } catch (IOException e) {
+                    logger.warn(e.getMessage(), e);
                 }
-            } catch (IOException e) {
-                logger.warn(e.getMessage(), e);
             }
         }
-        return 0;
+        return summary;
     }
 
 }
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.common;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * DateUtils
+ * <p>
+ * Statistics are addressed by minutes since the epoch, and persisted under a "yyyyMMdd" day
+ * and a "HHmm" time of day in the local time zone.
+ */
+public class DateUtils {
+
+    public static final long MINUTE = 60 * 1000L;
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final ThreadLocal<SimpleDateFormat> DAY_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("yyyyMMdd");
+        }
+    };
+
+    private static final ThreadLocal<SimpleDateFormat> TIME_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("HHmm");
+        }
+    };
+
+    private DateUtils() {
+    }
+
+    public static long toMinute(long millis) {
+        return millis / MINUTE;
+    }
+
+    public static String toDay(long minute) {
+        return DAY_FORMAT.get().format(new Date(minute * MINUTE));
+    }
+
+    public static String toTime(long minute) {
+        return TIME_FORMAT.get().format(new Date(minute * MINUTE));
+    }
+
+    public static String today() {
+        return DAY_FORMAT.get().format(new Date());
+    }
+
+    /**
+     * @param day "yyyyMMdd"
+     * @return the first minute of the day
+     */
+    public static long toMinute(String day) {
+        try {
+            return toMinute(DAY_FORMAT.get().parse(day).getTime());
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Illegal date " + day + ", expected yyyyMMdd.", e);
+        }
+    }
+
+    /**
+     * @param day  "yyyyMMdd"
+     * @param time "HHmm"
+     */
+    public static long toMinute(String day, String time) {
+        return toMinute(day) + parseTime(time);
+    }
+
+    /**
+     * @param time "HHmm"
+     * @return minutes since midnight, or -1 if the time is malformed
+     */
+    public static int parseTime(String time) {
+        if (time.length() != 4) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            char c = time.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return (value / 100) * 60 + value % 100;
+    }
+
+    public static boolean isDay(String day) {
+        if (day == null || day.length() != 8) {
+            return false;
+        }
+        for (int i = 0; i < day.length(); i++) {
+            if (day.charAt(i) < '0' || day.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -21,7 +21,14 @@ import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.utils.ConfigUtils;
 import com.alibaba.dubbo.common.utils.NetUtils;
 import com.alibaba.dubbo.container.Container;
+import com.alibaba.dubbo.monitor.simple.servlet.AnomalyServlet;
+import com.alibaba.dubbo.monitor.simple.servlet.ChartServlet;
+import com.alibaba.dubbo.monitor.simple.servlet.ExportServlet;
+import com.alibaba.dubbo.monitor.simple.servlet.IngestServlet;
+import com.alibaba.dubbo.monitor.simple.servlet.MetricsServlet;
 import com.alibaba.dubbo.monitor.simple.servlet.PageServlet;
+import com.alibaba.dubbo.monitor.simple.servlet.QueryServlet;
+import com.alibaba.dubbo.monitor.simple.servlet.TopServlet;
 import com.alibaba.dubbo.monitor.simple.servlet.ResourceFilter;
 
 import org.mortbay.jetty.Handler;
@@ -61,6 +68,14 @@ public class JettyContainer implements Container {
             resourceHolder.setInitParameter("resources", resources);
         }
 
+        handler.addServletWithMapping(ChartServlet.class, "/chart.png");
+        handler.addServletWithMapping(QueryServlet.class, "/query.json");
+        handler.addServletWithMapping(IngestServlet.class, "/ingest.json");
+        handler.addServletWithMapping(TopServlet.class, "/top.json");
+        handler.addServletWithMapping(AnomalyServlet.class, "/anomalies.json");
+        handler.addServletWithMapping(MetricsServlet.class, "/metrics");
+        handler.addServletWithMapping(ExportServlet.class, "/export");
+
         ServletHolder pageHolder = handler.addServletWithMapping(PageServlet.class, "/*");
         pageHolder.setInitParameter("pages", ConfigUtils.getProperty(JETTY_PAGES));
         pageHolder.setInitOrder(2);
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.ingest;
+
+/**
+ * OverloadPolicy decides which reports a shard gives up when it falls behind.
+ */
+public enum OverloadPolicy {
+
+    /**
+     * Drop the reports arriving while the queue, and the journal if any, are full.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Discard the oldest waiting samples once the backlog passes three quarters of its bound,
+     * down to half of it, so that new reports keep being accepted.
+     */
+    DROP_OLDEST,
+
+    /**
+     * While the shard is overloaded, keep 1 in N reports of each series, with its additive counters
+     * scaled by N.
+     */
+    SAMPLE;
+
+    /**
+     * @return the policy of the given name, or null if unknown
+     */
+    public static OverloadPolicy parse(String name) {
+        for (OverloadPolicy policy : values()) {
+            if (policy.getName().equals(name)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    public String getName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+    /**
+     * The number of oldest samples {@link #DROP_OLDEST} discards. With a journal, the journaled
+     * samples are discarded by skipping their sequences, so never more than are journaled, while
+     * the queue also holds the samples of series not journaled.
+     *
+     * @param queued    the samples in the queue
+     * @param journaled the journaled samples not aggregated yet, or -1 if samples are not journaled
+     * @param bound     the capacity of the journal, or of the queue without journal
+     */
+    public static int getShedCount(int queued, long journaled, int bound) {
+        long backlog = Math.max(queued, journaled);
+        if (backlog <= bound / 4 * 3) {
+            return 0;
+        }
+        long shed = backlog - bound / 2;
+        if (journaled >= 0) {
+            shed = Math.min(shed, journaled);
+        }
+        return (int) Math.max(0, shed);
+    }
+
+}
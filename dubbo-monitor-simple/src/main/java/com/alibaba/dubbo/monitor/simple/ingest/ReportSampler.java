@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.ingest;
+
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ReportSampler keeps 1 in N reports of each series for {@link OverloadPolicy#SAMPLE}, with the
+ * additive counters of the kept ones scaled by N. The series seen are forgotten every minute, so
+ * only the series of the current minute are held. (ThreadSafe)
+ */
+public class ReportSampler {
+
+    private final int rate;
+
+    // the reports seen of each series in the current minute
+    private final ConcurrentMap<Series, AtomicInteger> seen = new ConcurrentHashMap<Series, AtomicInteger>();
+
+    private volatile long minute = -1;
+
+    public ReportSampler(int rate) {
+        this.rate = Math.max(1, rate);
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    /**
+     * @return the sample with its additive counters scaled by the rate, or null if it is not kept
+     */
+    public Sample sample(Sample sample) {
+        AtomicInteger count = seen.get(sample.getSeries());
+        if (count == null) {
+            seen.putIfAbsent(sample.getSeries(), new AtomicInteger());
+            count = seen.get(sample.getSeries());
+        }
+        if (count.getAndIncrement() % rate != 0) {
+            return null;
+        }
+        long[] values = sample.getValues();
+        for (int i = 0; i < values.length; i++) {
+            if (!StatisticsTypes.isMax(i)) {
+                values[i] *= rate;
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Forget the series seen, once the minute changes.
+     */
+    public void expire(long minute) {
+        if (minute != this.minute) {
+            seen.clear();
+            this.minute = minute;
+        }
+    }
+
+    /**
+     * @return the number of series held
+     */
+    public int size() {
+        return seen.size();
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.ingest;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * RingBuffer is a bounded, preallocated multi-producer / single-consumer queue.
+ * <p>
+ * Producers claim a sequence with a CAS on the cursor, store the element in the slot of the
+ * sequence and publish it by writing the sequence into the slot's published mark. The consumer
+ * takes slots in sequence order as soon as they are published, so nothing is allocated and no
+ * lock is taken per element. The consumer only blocks when the buffer is empty, and producers
+ * only take the wait lock when the consumer is blocked.
+ * <p>
+ * Offers are ThreadSafe, polls and drains must come from a single consumer thread.
+ */
+public class RingBuffer<E> {
+
+    private static final int SPINS = 100;
+
+    private final Object[] entries;
+
+    private final AtomicLongArray published;
+
+    private final int mask;
+
+    // the last sequence claimed by a producer
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    // the last sequence taken by the consumer
+    private volatile long consumed = -1;
+
+    private volatile boolean waiting;
+
+    private final Object lock = new Object();
+
+    /**
+     * @param capacity rounded up to the next power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Illegal ring buffer capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        entries = new Object[size];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long sequence;
+        do {
+            sequence = cursor.get() + 1;
+            if (sequence - entries.length > consumed) {
+                return false;
+            }
+        } while (!cursor.compareAndSet(sequence - 1, sequence));
+        int index = (int) sequence & mask;
+        entries[index] = element;
+        published.set(index, sequence);
+        if (waiting) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Take the next element, waiting up to the timeout for one to be published.
+     *
+     * @return null if none was published in time
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E element = poll();
+        if (element != null) {
+            return element;
+        }
+        for (int i = 0; i < SPINS; i++) {
+            if ((element = poll()) != null) {
+                return element;
+            }
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            waiting = true;
+            try {
+                while ((element = poll()) == null) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+            } finally {
+                waiting = false;
+            }
+        }
+        return element;
+    }
+
+    /**
+     * @return the next element, or null if it is not published yet
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long sequence = consumed + 1;
+        int index = (int) sequence & mask;
+        if (published.get(index) != sequence) {
+            return null;
+        }
+        E element = (E) entries[index];
+        entries[index] = null;
+        consumed = sequence;
+        return element;
+    }
+
+    /**
+     * Take the published elements, up to the given number, without waiting.
+     *
+     * @return the number of elements taken
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super E> collection, int maxElements) {
+        long sequence = consumed;
+        int count = 0;
+        while (count < maxElements) {
+            int index = (int) (sequence + 1) & mask;
+            if (published.get(index) != sequence + 1) {
+                break;
+            }
+            collection.add((E) entries[index]);
+            entries[index] = null;
+            sequence++;
+            count++;
+        }
+        if (count > 0) {
+            consumed = sequence;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of claimed but not yet consumed slots
+     */
+    public int size() {
+        return (int) Math.max(0, cursor.get() - consumed);
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.ingest;
+
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+
+/**
+ * Sample is one parsed report waiting in a shard queue: its minute, its dictionary series and its
+ * counters, instead of the reported URL with its parameter map.
+ */
+public final class Sample {
+
+    private final long sequence;
+
+    private final long minute;
+
+    private final Series series;
+
+    private final long[] values;
+
+    /**
+     * @param values the counters, indexed by {@link StatisticsTypes}
+     */
+    public Sample(long minute, Series series, long[] values) {
+        this(-1, minute, series, values);
+    }
+
+    /**
+     * @param sequence the sequence of the sample in its shard's journal, or -1 if not journaled
+     */
+    public Sample(long sequence, long minute, Series series, long[] values) {
+        this.sequence = sequence;
+        this.minute = minute;
+        this.series = series;
+        this.values = values;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getMinute() {
+        return minute;
+    }
+
+    public Series getSeries() {
+        return series;
+    }
+
+    public long[] getValues() {
+        return values;
+    }
+
+}
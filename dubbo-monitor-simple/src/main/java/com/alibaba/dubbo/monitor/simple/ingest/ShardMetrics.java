@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.ingest;
+
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ShardMetrics counts the work of one ingestion shard. Received, dropped, spilled and shed reports
+ * are counted by the reporting threads and the shard thread, the others by the shard thread only.
+ * (ThreadSafe)
+ */
+public class ShardMetrics {
+
+    private final int id;
+
+    private final RingBuffer<?> queue;
+
+    private final SpillJournal journal;
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong spilled = new AtomicLong();
+
+    private final AtomicLong shed = new AtomicLong();
+
+    // write loop durations in microseconds
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+
+    private volatile int spillBacklog;
+
+    private volatile long reports;
+
+    private volatile long records;
+
+    private volatile long batches;
+
+    private volatile long errors;
+
+    private volatile int lastBatchSize;
+
+    private volatile long lastWrite;
+
+    /**
+     * @param journal null if the shard does not journal its samples
+     */
+    public ShardMetrics(int id, RingBuffer<?> queue, SpillJournal journal) {
+        this.id = id;
+        this.queue = queue;
+        this.journal = journal;
+    }
+
+    public void received(boolean accepted) {
+        received.incrementAndGet();
+        if (!accepted) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public void spilled() {
+        spilled.incrementAndGet();
+    }
+
+    /**
+     * Count reports given up by the overload policy.
+     */
+    public void shed(int count) {
+        shed.addAndGet(count);
+    }
+
+    /**
+     * @param spillBacklog the spilled samples not read back yet
+     */
+    public void setSpillBacklog(int spillBacklog) {
+        this.spillBacklog = spillBacklog;
+    }
+
+    /**
+     * @param micros the duration of the write loop, without waiting for reports
+     */
+    public void written(int batchSize, int records, long micros) {
+        synchronized (writeLatency) {
+            writeLatency.record(micros, 1);
+        }
+        this.batches++;
+        this.reports += batchSize;
+        this.records += records;
+        this.lastBatchSize = batchSize;
+        this.lastWrite = System.currentTimeMillis();
+    }
+
+    public void failed() {
+        errors++;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return queue.capacity();
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the reports given up by the overload policy
+     */
+    public long getShed() {
+        return shed.get();
+    }
+
+    /**
+     * @return the samples waiting for the shard thread, in the queue and spilled
+     */
+    public int getLag() {
+        return queue.size() + spillBacklog;
+    }
+
+    /**
+     * @return the write loop duration percentiles in microseconds, see {@link LatencyHistogram#PERCENTILES}
+     */
+    public long[] getWriteLatency() {
+        synchronized (writeLatency) {
+            return writeLatency.getPercentiles();
+        }
+    }
+
+    public long getMaxWriteLatency() {
+        synchronized (writeLatency) {
+            return writeLatency.getMax();
+        }
+    }
+
+    /**
+     * @return the samples accepted into the journal only, as the queue was full
+     */
+    public long getSpilled() {
+        return spilled.get();
+    }
+
+    /**
+     * @return the journaled samples not yet durably persisted, or -1 without journal
+     */
+    public int getJournalSize() {
+        return journal == null ? -1 : journal.size();
+    }
+
+    public int getJournalCapacity() {
+        return journal == null ? 0 : journal.getCapacity();
+    }
+
+    /**
+     * @return the reports aggregated
+     */
+    public long getReports() {
+        return reports;
+    }
+
+    /**
+     * @return the per-minute records persisted
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    /**
+     * @return the time of the last write loop, in milliseconds
+     */
+    public long getLastWrite() {
+        return lastWrite;
+    }
+
+}
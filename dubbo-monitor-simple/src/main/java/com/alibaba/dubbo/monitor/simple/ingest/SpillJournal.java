@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.ingest;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.SeriesDictionary;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * SpillJournal is a fixed-size, memory-mapped ring of the samples accepted by one shard, so that
+ * they survive a restart of the monitor, and so that bursts beyond the in-memory queue are kept
+ * instead of dropped:
+ * <pre>
+ * header: int magic, int record size, int capacity, int reserved, long head,
+ *         long persisted sequence, long persisted minute
+ * record: long sequence + 1, long minute, int series id, int reserved, long[6] counters
+ * </pre>
+ * The sequence is written last, so a record is valid only once it is complete. The head is the
+ * sequence of the first sample not yet durably persisted, the tail the sequence of the next
+ * append. As minutes are persisted independently, samples of persisted minutes remain after the
+ * head, interleaved with samples of pending ones: the persisted watermark records that every
+ * sample before the persisted sequence whose minute is before the persisted minute is durable.
+ * On startup, {@link #recover} visits the samples between the head and the last valid record,
+ * except those below the watermark. Only samples of dictionary series can be journaled, as
+ * records refer to their series by id.
+ * <p>
+ * Durable means written to the file system: neither the journal nor the statistics stores force
+ * their pages to the device but on close, so the samples survive a crash of the monitor, and may
+ * be lost with the last seconds of a crash of the host.
+ * <p>
+ * Appends are ThreadSafe without lock: producers claim a sequence with a CAS on the tail and
+ * write their own slot. A producer marks its sample spilled once the record is complete, which
+ * publishes it to the shard writer thread, the only one to read, mark read and commit.
+ */
+public class SpillJournal {
+
+    public static final String SUFFIX = ".journal";
+
+    private static final Logger logger = LoggerFactory.getLogger(SpillJournal.class);
+
+    private static final int MAGIC = 0x444d4a31;
+
+    private static final int HEADER_SIZE = 64;
+
+    private static final int HEAD_OFFSET = 16;
+
+    private static final int PERSISTED_SEQUENCE_OFFSET = 24;
+
+    private static final int PERSISTED_MINUTE_OFFSET = 32;
+
+    static final int RECORD_SIZE = 8 + 8 + 4 + 4 + 8 * StatisticsTypes.LENGTH;
+
+    private final File file;
+
+    private final int capacity;
+
+    private final RandomAccessFile raf;
+
+    private final MappedByteBuffer buffer;
+
+    private volatile long head;
+
+    // the next sequence to claim
+    private final AtomicLong tail;
+
+    // the sequence spilled in each slot, published to the reader
+    private final AtomicLongArray spilled;
+
+    /**
+     * Create an empty journal, replacing the file if it exists.
+     */
+    public SpillJournal(File file, int capacity) throws IOException {
+        this(file, capacity, true);
+    }
+
+    private SpillJournal(File file, int capacity, boolean create) throws IOException {
+        if (capacity <= 0 || (long) capacity * RECORD_SIZE > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IllegalArgumentException("Illegal journal capacity " + capacity);
+        }
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        this.file = file;
+        this.capacity = capacity;
+        long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            if (create) {
+                raf.setLength(0);
+                raf.setLength(size);
+            }
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        if (create) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, RECORD_SIZE);
+            buffer.putInt(8, capacity);
+            buffer.putLong(HEAD_OFFSET, 0);
+            buffer.putLong(PERSISTED_SEQUENCE_OFFSET, 0);
+            buffer.putLong(PERSISTED_MINUTE_OFFSET, 0);
+        }
+        head = buffer.getLong(HEAD_OFFSET);
+        // concurrent appends may leave a claimed slot unwritten before later ones
+        long last = head - 1;
+        for (long sequence = head; sequence - head < capacity; sequence++) {
+            if (isValid(sequence)) {
+                last = sequence;
+            }
+        }
+        tail = new AtomicLong(last + 1);
+        spilled = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            spilled.set(i, -1);
+        }
+    }
+
+    /**
+     * Visit the uncommitted samples of a journal left by a previous run, in order, skipping those
+     * already persisted. The file is left untouched, and is to be deleted once the samples are
+     * durably persisted.
+     *
+     * @return the number of samples visited
+     */
+    public static int recover(File file, SeriesDictionary dictionary, SampleVisitor visitor) throws IOException {
+        int capacity;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC || raf.readInt() != RECORD_SIZE) {
+                logger.warn("Skip malformed journal " + file);
+                return 0;
+            }
+            capacity = raf.readInt();
+            if (capacity <= 0 || raf.length() != HEADER_SIZE + (long) capacity * RECORD_SIZE) {
+                logger.warn("Skip malformed journal " + file);
+                return 0;
+            }
+        } finally {
+            raf.close();
+        }
+        SpillJournal journal = new SpillJournal(file, capacity, false);
+        try {
+            long persistedSequence = journal.buffer.getLong(PERSISTED_SEQUENCE_OFFSET);
+            long persistedMinute = journal.buffer.getLong(PERSISTED_MINUTE_OFFSET);
+            int count = 0;
+            for (long sequence = journal.head; sequence < journal.getTail(); sequence++) {
+                Sample sample = journal.isValid(sequence) ? journal.read(sequence, dictionary) : null;
+                if (sample != null && !(sequence < persistedSequence && sample.getMinute() < persistedMinute)) {
+                    visitor.onSample(sample);
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * @return the sequence of the appended sample, or -1 if the journal is full
+     */
+    public long append(long minute, Series series, long[] values) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= capacity) {
+                return -1;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        // absolute puts only, producers never touch the same slot
+        int position = position(sequence);
+        buffer.putLong(position + 8, minute);
+        buffer.putInt(position + 16, series.getId());
+        for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+            buffer.putLong(position + 24 + i * 8, values[i]);
+        }
+        buffer.putLong(position, sequence + 1);
+        return sequence;
+    }
+
+    /**
+     * Mark the appended sample as kept in the journal only, for the reader to read it back.
+     */
+    public void spill(long sequence) {
+        spilled.set((int) (sequence % capacity), sequence);
+    }
+
+    /**
+     * @return true if the sample of the given sequence is spilled, and its record is readable
+     */
+    public boolean isSpilled(long sequence) {
+        return spilled.get((int) (sequence % capacity)) == sequence;
+    }
+
+    /**
+     * @return the sample of the given sequence, or null if its series is unknown
+     */
+    public Sample read(long sequence, SeriesDictionary dictionary) {
+        int position = position(sequence);
+        Series series = dictionary.get(buffer.getInt(position + 16));
+        if (series == null) {
+            return null;
+        }
+        long[] values = new long[StatisticsTypes.LENGTH];
+        for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+            values[i] = buffer.getLong(position + 24 + i * 8);
+        }
+        return new Sample(sequence, buffer.getLong(position + 8), series, values);
+    }
+
+    /**
+     * Release the samples before the given sequence, once they are durably persisted, and record
+     * that the samples before the persisted sequence are durable when their minute is before the
+     * persisted minute.
+     */
+    public void commit(long sequence, long persistedSequence, long persistedMinute) {
+        // the watermark first, a crash in between replays from the former head and skips as much
+        buffer.putLong(PERSISTED_MINUTE_OFFSET, persistedMinute);
+        buffer.putLong(PERSISTED_SEQUENCE_OFFSET, persistedSequence);
+        if (sequence > head) {
+            head = Math.min(sequence, tail.get());
+            buffer.putLong(HEAD_OFFSET, head);
+        }
+    }
+
+    public long getHead() {
+        return head;
+    }
+
+    public long getTail() {
+        return tail.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of samples not yet committed
+     */
+    public int size() {
+        return (int) (tail.get() - head);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void close() {
+        try {
+            buffer.force();
+            raf.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close journal " + file + ", cause: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean isValid(long sequence) {
+        return buffer.getLong(position(sequence)) == sequence + 1;
+    }
+
+    private int position(long sequence) {
+        return HEADER_SIZE + (int) (sequence % capacity) * RECORD_SIZE;
+    }
+
+    public interface SampleVisitor {
+
+        void onSample(Sample sample);
+
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.pages;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.alert.Alert;
+import com.alibaba.dubbo.monitor.simple.alert.AlertEngine;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.common.Menu;
+import com.alibaba.dubbo.monitor.simple.common.Page;
+import com.alibaba.dubbo.monitor.simple.servlet.PageHandler;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * AlertsPageHandler
+ */
+@Menu(name = "Alerts", desc = "Show firing alerts.", order = 5000)
+public class AlertsPageHandler implements PageHandler {
+
+    public Page handle(URL url) {
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            throw new IllegalStateException("The monitor service is not started.");
+        }
+        AlertEngine engine = monitor.getAlertEngine();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        DecimalFormat decimal = new DecimalFormat("0.####");
+        List<List<String>> rows = new ArrayList<List<String>>();
+        for (Alert alert : monitor.getAlerts()) {
+            Series series = alert.getSeries();
+            List<String> row = new ArrayList<String>();
+            row.add(alert.getRule().toString());
+            row.add("<a href=\"charts.html?service=" + series.getService() + "\">" + series.getService() + "</a>");
+            row.add(series.getMethod());
+            row.add(series.getConsumer());
+            row.add(series.getProvider());
+            row.add(series.getSide());
+            row.add("<font color=\"red\">" + decimal.format(alert.getValue()) + "</font>");
+            row.add(format.format(new Date(alert.getSince() * DateUtils.MINUTE)));
+            row.add(format.format(new Date(alert.getMinute() * DateUtils.MINUTE)));
+            rows.add(row);
+        }
+        return new Page("Alerts (" + engine.getRules().size() + " rules)", "Firing (" + rows.size() + ")",
+                new String[]{"Rule", "Service", "Method", "Consumer", "Provider", "Side", "Value", "Since", "Last"}, rows);
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.pages;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.anomaly.Anomaly;
+import com.alibaba.dubbo.monitor.simple.anomaly.AnomalyDetector;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.common.Menu;
+import com.alibaba.dubbo.monitor.simple.common.Page;
+import com.alibaba.dubbo.monitor.simple.servlet.PageHandler;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * AnomaliesPageHandler
+ */
+@Menu(name = "Anomalies", desc = "Show series deviating from their baseline.", order = 6000)
+public class AnomaliesPageHandler implements PageHandler {
+
+    public Page handle(URL url) {
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            throw new IllegalStateException("The monitor service is not started.");
+        }
+        AnomalyDetector detector = monitor.getAnomalyDetector();
+        boolean history = "history".equals(url.getParameter("view"));
+        List<Anomaly> anomalies = history
+                ? monitor.getAnomalyHistory(DateUtils.toMinute(System.currentTimeMillis()) - DateUtils.MINUTES_PER_DAY)
+                : monitor.getActiveAnomalies();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        DecimalFormat decimal = new DecimalFormat("0.###");
+        List<List<String>> rows = new ArrayList<List<String>>();
+        for (Anomaly anomaly : anomalies) {
+            Series series = anomaly.getSeries();
+            List<String> row = new ArrayList<String>();
+            row.add(anomaly.getType().getName());
+            row.add("<a href=\"charts.html?service=" + series.getService() + "\">" + series.getService() + "</a>");
+            row.add(series.getMethod());
+            row.add(series.getConsumer());
+            row.add(series.getProvider());
+            row.add(series.getSide());
+            row.add(format.format(new Date(anomaly.getMinute() * DateUtils.MINUTE)));
+            row.add("<font color=\"red\">" + decimal.format(anomaly.getValue()) + "</font>");
+            row.add(decimal.format(anomaly.getExpected()));
+            row.add(Double.isNaN(anomaly.getYesterday()) ? "" : decimal.format(anomaly.getYesterday()));
+            row.add(decimal.format(anomaly.getScore()));
+            rows.add(row);
+        }
+        String nav = "Anomalies (" + detector.size() + " series) &gt; "
+                + (history ? "<a href=\"anomalies.html\">Active</a> | Last day"
+                : "Active | <a href=\"anomalies.html?view=history\">Last day</a>")
+                + " | <a href=\"anomalies.json\" target=\"_blank\">anomalies.json</a>";
+        return new Page(nav, (history ? "Found in the last day" : "Active") + " (" + rows.size() + ")",
+                new String[]{"Type", "Service", "Method", "Consumer", "Provider", "Side", "Minute", "Value",
+                        "Expected", "Yesterday", "Score"}, rows);
+    }
+
+}
@@ -17,12 +17,12 @@
 package com.alibaba.dubbo.monitor.simple.pages;
 
 import com.alibaba.dubbo.common.URL;
-import com.alibaba.dubbo.common.utils.ConfigUtils;
 import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.chart.ChartRenderer;
 import com.alibaba.dubbo.monitor.simple.common.Page;
 import com.alibaba.dubbo.monitor.simple.servlet.PageHandler;
 
-import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -43,16 +43,13 @@ public class ChartsPageHandler implements PageHandler {
             date = new SimpleDateFormat("yyyyMMdd").format(new Date());
         }
         List<List<String>> rows = new ArrayList<List<String>>();
-        String directory = ConfigUtils.getProperty("dubbo.charts.directory");
-        File chartsDir = new File(directory);
-        String filename = directory + "/" + date + "/" + service;
-        File serviceDir = new File(filename);
-        if (serviceDir.exists()) {
-            File[] methodDirs = serviceDir.listFiles();
-            for (File methodDir : methodDirs) {
-                String methodUri = chartsDir.getName() + "/" + date + "/" + service + "/" + methodDir.getName() + "/";
-                rows.add(toRow(methodDir, methodUri));
-            }
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            throw new IllegalStateException("The monitor service is not started.");
+        }
+        for (String method : monitor.getMethods(date, service)) {
+            rows.add(toRow(method, "chart.png?service=" + URL.encode(service) + "&method=" + URL.encode(method)
+                    + "&date=" + URL.encode(date) + "&type="));
         }
         StringBuilder nav = new StringBuilder();
         nav.append("<a href=\"services.html\">Services</a> &gt; ");
@@ -71,24 +68,18 @@ public class ChartsPageHandler implements PageHandler {
         nav.append(service);
         nav.append("&date=' + this.value;}\" />");
         return new Page(nav.toString(), "Charts (" + rows.size() + ")",
-                new String[]{"Method", "Requests per second (QPS)", "Average response time (ms)"}, rows);
+                new String[]{"Method", "Requests per second (QPS)", "Average response time (ms)", "Estimated response time percentiles (ms)"}, rows);
     }
 
-    private List<String> toRow(File dir, String uri) {
+    private List<String> toRow(String method, String uri) {
         List<String> row = new ArrayList<String>();
-        row.add(dir.getName());
-        if (new File(dir, MonitorService.SUCCESS + ".png").exists()) {
-            String url = uri + MonitorService.SUCCESS + ".png";
-            row.add("<a href=\"" + url + "\" target=\"_blank\"><img src=\"" + url + "\" style=\"width: 100%;\" border=\"0\" /></a>");
-        } else {
-            row.add("");
-        }
-        if (new File(dir, MonitorService.ELAPSED + ".png").exists()) {
-            String url = uri + MonitorService.ELAPSED + ".png";
-            row.add("<a href=\"" + url + "\" target=\"_blank\"><img src=\"" + url + "\" style=\"width: 100%;\" border=\"0\" /></a>");
-        } else {
-            row.add("");
-        }
+        row.add(method);
+        String url = uri + MonitorService.SUCCESS;
+        row.add("<a href=\"" + url + "\" target=\"_blank\"><img src=\"" + url + "\" style=\"width: 100%;\" border=\"0\" /></a>");
+        url = uri + MonitorService.ELAPSED;
+        row.add("<a href=\"" + url + "\" target=\"_blank\"><img src=\"" + url + "\" style=\"width: 100%;\" border=\"0\" /></a>");
+        url = uri + ChartRenderer.PERCENTILE;
+        row.add("<a href=\"" + url + "\" target=\"_blank\"><img src=\"" + url + "\" style=\"width: 100%;\" border=\"0\" /></a>");
         return row;
     }
 
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.pages;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.cluster.HashRing;
+import com.alibaba.dubbo.monitor.simple.cluster.MonitorCluster;
+import com.alibaba.dubbo.monitor.simple.common.Menu;
+import com.alibaba.dubbo.monitor.simple.common.Page;
+import com.alibaba.dubbo.monitor.simple.container.RegistryContainer;
+import com.alibaba.dubbo.monitor.simple.servlet.PageHandler;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClusterPageHandler
+ */
+@Menu(name = "Cluster", desc = "Show the monitor nodes of the cluster and the services they own.", order = 8000)
+public class ClusterPageHandler implements PageHandler {
+
+    public Page handle(URL url) {
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            throw new IllegalStateException("The monitor service is not started.");
+        }
+        MonitorCluster cluster = monitor.getCluster();
+        if (cluster == null) {
+            return new Page("Cluster", "Cluster (0)", new String[]{"Node"}, new ArrayList<List<String>>());
+        }
+        HashRing ring = cluster.getRing();
+        Map<String, Integer> services = new HashMap<String, Integer>();
+        RegistryContainer registry = RegistryContainer.getInstance();
+        if (registry != null) {
+            for (String service : registry.getServices()) {
+                String node = ring.getNode(service);
+                Integer count = services.get(node);
+                services.put(node, count == null ? 1 : count + 1);
+            }
+        }
+        Map<String, MonitorCluster.Peer> peers = new HashMap<String, MonitorCluster.Peer>();
+        for (MonitorCluster.Peer peer : cluster.getPeers()) {
+            peers.put(peer.getNode(), peer);
+        }
+        DecimalFormat percent = new DecimalFormat("0.0%");
+        List<List<String>> rows = new ArrayList<List<String>>();
+        for (String node : ring.getNodes()) {
+            List<String> row = new ArrayList<String>();
+            row.add(node.equals(cluster.getSelf()) ? node + " (this node)" : node);
+            row.add(percent.format(ring.getShare(node)));
+            Integer count = services.get(node);
+            row.add(String.valueOf(count == null ? 0 : count));
+            MonitorCluster.Peer peer = peers.get(node);
+            row.add(peer == null ? "" : String.valueOf(peer.getQueued()));
+            row.add(peer == null ? "" : String.valueOf(peer.getForwarded()));
+            row.add(peer == null ? "" : peer.getFailures() == 0 ? "0"
+                    : "<font color=\"red\">" + peer.getFailures() + "</font> " + peer.getLastError());
+            rows.add(row);
+        }
+        return new Page("Cluster &gt; " + cluster.getDropped() + " statistics dropped on full queues",
+                "Nodes (" + rows.size() + ")",
+                new String[]{"Node", "Ring share", "Services", "Queued", "Forwarded", "Failures"}, rows);
+    }
+
+}
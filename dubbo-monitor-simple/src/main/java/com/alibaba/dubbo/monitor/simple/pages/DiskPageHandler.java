@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.pages;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.common.Menu;
+import com.alibaba.dubbo.monitor.simple.common.Page;
+import com.alibaba.dubbo.monitor.simple.retention.DiskUsage;
+import com.alibaba.dubbo.monitor.simple.retention.RetentionManager;
+import com.alibaba.dubbo.monitor.simple.servlet.PageHandler;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * DiskPageHandler
+ */
+@Menu(name = "Disk", desc = "Show disk usage per day and service, and the retention of each kind of data.", order = 7000)
+public class DiskPageHandler implements PageHandler {
+
+    public Page handle(URL url) {
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            throw new IllegalStateException("The monitor service is not started.");
+        }
+        RetentionManager retention = monitor.getRetentionManager();
+        DiskUsage usage = retention.getUsage();
+        if (usage == null) {
+            usage = retention.scan();
+        }
+        List<String> kinds = usage.getKinds();
+        String[] columns = new String[kinds.size() + 2];
+        for (int i = 0; i < kinds.size(); i++) {
+            columns[i + 1] = kinds.get(i);
+        }
+        columns[columns.length - 1] = "Total";
+        String day = url.getParameter("day");
+        List<List<String>> rows = new ArrayList<List<String>>();
+        if (day == null || day.length() == 0) {
+            columns[0] = "Day";
+            long[] totals = new long[kinds.size()];
+            for (String d : usage.getDays()) {
+                List<String> row = new ArrayList<String>();
+                row.add("<a href=\"disk.html?day=" + d + "\">" + d + "</a>");
+                long total = 0;
+                for (int i = 0; i < kinds.size(); i++) {
+                    long bytes = usage.getBytes(kinds.get(i), d);
+                    totals[i] += bytes;
+                    total += bytes;
+                    row.add(toSize(bytes) + " (" + usage.getFiles(kinds.get(i), d) + " files)");
+                }
+                row.add(toSize(total));
+                rows.add(row);
+            }
+            List<String> row = new ArrayList<String>();
+            row.add("Total");
+            long total = 0;
+            for (long bytes : totals) {
+                total += bytes;
+                row.add(toSize(bytes));
+            }
+            row.add(toSize(total));
+            rows.add(row);
+        } else {
+            columns[0] = "Service";
+            for (String service : usage.getServices(day)) {
+                List<String> row = new ArrayList<String>();
+                row.add(DiskUsage.ALL.equals(service) ? "(all services)"
+                        : "<a href=\"charts.html?service=" + service + "&date=" + day + "\">" + service + "</a>");
+                long total = 0;
+                for (String kind : kinds) {
+                    long bytes = usage.getBytes(kind, day, service);
+                    total += bytes;
+                    row.add(toSize(bytes));
+                }
+                row.add(toSize(total));
+                rows.add(row);
+            }
+        }
+        String nav = (day == null || day.length() == 0 ? "Disk" : "<a href=\"disk.html\">Disk</a> &gt; " + day)
+                + " &gt; scanned at " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(usage.getTime()))
+                + " | retention in days (0 keeps forever): minute " + retention.getMinuteRetention()
+                + ", hour " + retention.getHourRetention()
+                + ", day " + retention.getDayRetention()
+                + ", summary " + retention.getSummaryRetention()
+                + ", charts " + retention.getChartsRetention()
+                + ", archive " + retention.getArchiveRetention()
+                + (retention.getArchiveAfter() > 0 ? " | archive after " + retention.getArchiveAfter() + " days" : "");
+        String title = day == null || day.length() == 0
+                ? "Days (" + usage.getDays().size() + ")" : "Services (" + rows.size() + ")";
+        return new Page(nav, title, columns, rows);
+    }
+
+    private static String toSize(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        DecimalFormat format = new DecimalFormat("0.#");
+        if (bytes < 1024 * 1024) {
+            return format.format(bytes / 1024.0) + " KB";
+        }
+        if (bytes < 1024L * 1024 * 1024) {
+            return format.format(bytes / (1024.0 * 1024)) + " MB";
+        }
+        return format.format(bytes / (1024.0 * 1024 * 1024)) + " GB";
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.pages;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.common.Menu;
+import com.alibaba.dubbo.monitor.simple.common.Page;
+import com.alibaba.dubbo.monitor.simple.ingest.OverloadPolicy;
+import com.alibaba.dubbo.monitor.simple.ingest.ShardMetrics;
+import com.alibaba.dubbo.monitor.simple.servlet.PageHandler;
+import com.alibaba.dubbo.monitor.simple.statistics.SeriesDictionary;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * IngestPageHandler
+ */
+@Menu(name = "Ingest", desc = "Show monitor ingestion shards.", order = Integer.MAX_VALUE - 13000)
+public class IngestPageHandler implements PageHandler {
+
+    public Page handle(URL url) {
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            throw new IllegalStateException("The monitor service is not started.");
+        }
+        List<List<String>> rows = new ArrayList<List<String>>();
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        long[] total = new long[9];
+        for (ShardMetrics metrics : monitor.getShardMetrics()) {
+            List<String> row = new ArrayList<String>();
+            row.add(String.valueOf(metrics.getId()));
+            row.add(metrics.getQueueSize() + "/" + metrics.getCapacity());
+            row.add(String.valueOf(metrics.getLag()));
+            row.add(String.valueOf(metrics.getReceived()));
+            row.add(highlight(metrics.getDropped()));
+            row.add(highlight(metrics.getShed()));
+            row.add(String.valueOf(metrics.getSpilled()));
+            row.add(metrics.getJournalSize() < 0 ? "" : metrics.getJournalSize() + "/" + metrics.getJournalCapacity());
+            row.add(String.valueOf(metrics.getReports()));
+            row.add(String.valueOf(metrics.getRecords()));
+            row.add(metrics.getBatches() + " (last " + metrics.getLastBatchSize() + ")");
+            StringBuilder latency = new StringBuilder();
+            for (long value : metrics.getWriteLatency()) {
+                latency.append(latency.length() == 0 ? "" : " / ").append(value);
+            }
+            row.add(latency + " (max " + metrics.getMaxWriteLatency() + ")");
+            row.add(String.valueOf(metrics.getErrors()));
+            row.add(metrics.getLastWrite() == 0 ? "" : format.format(new Date(metrics.getLastWrite())));
+            rows.add(row);
+            long[] values = {metrics.getLag(), metrics.getReceived(), metrics.getDropped(), metrics.getShed(),
+                    metrics.getSpilled(), metrics.getReports(), metrics.getRecords(), metrics.getBatches(), metrics.getErrors()};
+            for (int i = 0; i < values.length; i++) {
+                total[i] += values[i];
+            }
+        }
+        List<String> row = new ArrayList<String>();
+        row.add("Total");
+        row.add("");
+        row.add(String.valueOf(total[0]));
+        row.add(String.valueOf(total[1]));
+        row.add(highlight(total[2]));
+        row.add(highlight(total[3]));
+        row.add(String.valueOf(total[4]));
+        row.add("");
+        row.add(String.valueOf(total[5]));
+        row.add(String.valueOf(total[6]));
+        row.add(String.valueOf(total[7]));
+        row.add("");
+        row.add(String.valueOf(total[8]));
+        row.add("");
+        rows.add(row);
+        String policy = monitor.getOverloadPolicy().getName();
+        if (monitor.getOverloadPolicy() == OverloadPolicy.SAMPLE) {
+            policy += " 1/" + monitor.getSampleRate();
+        }
+        SeriesDictionary dictionary = monitor.getSeriesDictionary();
+        String series = dictionary.size() + "/" + dictionary.getLimit() + " series";
+        if (dictionary.getOverflows() > 0) {
+            series += ", " + highlight(dictionary.getOverflows())
+                    + " lookups found the dictionary full, raise dubbo.monitor.series.max";
+        }
+        return new Page("Ingest (overload policy " + policy + ", written "
+                + (monitor.getStatisticsStore().getWrittenBytes() + monitor.getLatencyStore().getWrittenBytes())
+                + " bytes, " + series + ") | <a href=\"ingest.json\" target=\"_blank\">ingest.json</a>",
+                "Shards (" + (rows.size() - 1) + ")", new String[]{"Shard", "Queue", "Lag", "Received",
+                "Dropped", "Shed", "Spilled", "Journal", "Reports", "Records", "Batches",
+                "Write p50/p90/p99/p999 (us)", "Errors", "Last write"}, rows);
+    }
+
+    private static String highlight(long count) {
+        return count > 0 ? "<font color=\"red\">" + count + "</font>" : "0";
+    }
+
+}
@@ -17,19 +17,22 @@
 package com.alibaba.dubbo.monitor.simple.pages;
 
 import com.alibaba.dubbo.common.URL;
-import com.alibaba.dubbo.common.utils.ConfigUtils;
 import com.alibaba.dubbo.monitor.MonitorService;
-import com.alibaba.dubbo.monitor.simple.common.CountUtils;
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
 import com.alibaba.dubbo.monitor.simple.common.Page;
 import com.alibaba.dubbo.monitor.simple.servlet.PageHandler;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyHistogram;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+import com.alibaba.dubbo.monitor.simple.statistics.SummaryIndex;
 
-import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * StatisticsPageHandler
@@ -45,41 +48,53 @@ public class StatisticsPageHandler implements PageHandler {
         if (date == null || date.length() == 0) {
             date = new SimpleDateFormat("yyyyMMdd").format(new Date());
         }
-        String expand = url.getParameter("expand");
+        final String expand = url.getParameter("expand");
         List<List<String>> rows = new ArrayList<List<String>>();
-        String directory = ConfigUtils.getProperty("dubbo.statistics.directory");
-        String filename = directory + "/" + date + "/" + service;
-        File serviceDir = new File(filename);
-        if (serviceDir.exists()) {
-            File[] methodDirs = serviceDir.listFiles();
-            for (File methodDir : methodDirs) {
-                long[] statistics = newStatistics();
-                Map<String, long[]> expandMap = new HashMap<String, long[]>();
-                File[] consumerDirs = methodDir.listFiles();
-                for (File consumerDir : consumerDirs) {
-                    long[] expandStatistics = null;
-                    if (MonitorService.CONSUMER.equals(expand)) {
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            throw new IllegalStateException("The monitor service is not started.");
+        }
+        Map<String, List<SummaryIndex.Entry>> methods = new TreeMap<String, List<SummaryIndex.Entry>>();
+        for (SummaryIndex.Entry entry : monitor.getSummaries(date, service)) {
+            List<SummaryIndex.Entry> entries = methods.get(entry.getSeries().getMethod());
+            if (entries == null) {
+                entries = new ArrayList<SummaryIndex.Entry>();
+                methods.put(entry.getSeries().getMethod(), entries);
+            }
+            entries.add(entry);
+        }
+        for (Map.Entry<String, List<SummaryIndex.Entry>> method : methods.entrySet()) {
+            long[] statistics = newStatistics();
+            LatencyHistogram[] latencies = newLatencies();
+            Map<String, long[]> expandMap = new TreeMap<String, long[]>();
+            Map<String, LatencyHistogram[]> expandLatencies = new HashMap<String, LatencyHistogram[]>();
+            for (SummaryIndex.Entry entry : method.getValue()) {
+                Series series = entry.getSeries();
+                appendStatistics(series, entry.getValues(), statistics);
+                appendLatencies(series, entry.getLatency(), latencies);
+                String node = null;
+                if (MonitorService.CONSUMER.equals(expand)) {
+                    node = series.getConsumer();
+                } else if (MonitorService.PROVIDER.equals(expand)) {
+                    node = series.getProvider();
+                }
+                if (node != null) {
+                    long[] expandStatistics = expandMap.get(node);
+                    if (expandStatistics == null) {
                         expandStatistics = newStatistics();
-                        expandMap.put(consumerDir.getName(), expandStatistics);
-                    }
-                    File[] providerDirs = consumerDir.listFiles();
-                    for (File providerDir : providerDirs) {
-                        if (MonitorService.PROVIDER.equals(expand)) {
-                            expandStatistics = newStatistics();
-                            expandMap.put(providerDir.getName(), expandStatistics);
-                        }
-                        appendStatistics(providerDir, statistics);
-                        if (expandStatistics != null) {
-                            appendStatistics(providerDir, expandStatistics);
-                        }
+                        expandMap.put(node, expandStatistics);
+                        expandLatencies.put(node, newLatencies());
                     }
+                    appendStatistics(series, entry.getValues(), expandStatistics);
+                    appendLatencies(series, entry.getLatency(), expandLatencies.get(node));
                 }
-                rows.add(toRow(methodDir.getName(), statistics));
-                if (expandMap != null && expandMap.size() > 0) {
-                    for (Map.Entry<String, long[]> entry : expandMap.entrySet()) {
-                        String node = MonitorService.CONSUMER.equals(expand) ? "&lt;--" : "--&gt;";
-                        rows.add(toRow(" &nbsp;&nbsp;&nbsp;&nbsp; |" + node + " " + entry.getKey(), entry.getValue()));
-                    }
+            }
+            rows.add(toRow(method.getKey(), statistics, latencies));
+            if (expandMap.size() > 0) {
+                for (Map.Entry<String, long[]> entry : expandMap.entrySet()) {
+                    String node = MonitorService.CONSUMER.equals(expand) ? "&lt;--" : "--&gt;";
+                    rows.add(toRow(" &nbsp;&nbsp;&nbsp;&nbsp; |" + node + " " + entry.getKey(), entry.getValue(),
+                            expandLatencies.get(entry.getKey())));
                 }
             }
         }
@@ -132,27 +147,49 @@ public class StatisticsPageHandler implements PageHandler {
         }
         return new Page(nav.toString(), "Statistics (" + rows.size() + ")",
                 new String[]{"Method:", "Success", "Failure", "Avg Elapsed (ms)",
-                        "Max Elapsed (ms)", "Max Concurrent"}, rows);
+                        "Max Elapsed (ms)", "Estimated Elapsed p50/p90/p99/p999 (ms)", "Max Concurrent"}, rows);
     }
 
     private long[] newStatistics() {
         return new long[10];
     }
 
-    private void appendStatistics(File providerDir, long[] statistics) {
-        statistics[0] += CountUtils.sum(new File(providerDir, MonitorService.CONSUMER + "." + MonitorService.SUCCESS));
-        statistics[1] += CountUtils.sum(new File(providerDir, MonitorService.PROVIDER + "." + MonitorService.SUCCESS));
-        statistics[2] += CountUtils.sum(new File(providerDir, MonitorService.CONSUMER + "." + MonitorService.FAILURE));
-        statistics[3] += CountUtils.sum(new File(providerDir, MonitorService.PROVIDER + "." + MonitorService.FAILURE));
-        statistics[4] += CountUtils.sum(new File(providerDir, MonitorService.CONSUMER + "." + MonitorService.ELAPSED));
-        statistics[5] += CountUtils.sum(new File(providerDir, MonitorService.PROVIDER + "." + MonitorService.ELAPSED));
-        statistics[6] = Math.max(statistics[6], CountUtils.max(new File(providerDir, MonitorService.CONSUMER + "." + MonitorService.MAX_ELAPSED)));
-        statistics[7] = Math.max(statistics[7], CountUtils.max(new File(providerDir, MonitorService.PROVIDER + "." + MonitorService.MAX_ELAPSED)));
-        statistics[8] = Math.max(statistics[8], CountUtils.max(new File(providerDir, MonitorService.CONSUMER + "." + MonitorService.MAX_CONCURRENT)));
-        statistics[9] = Math.max(statistics[9], CountUtils.max(new File(providerDir, MonitorService.PROVIDER + "." + MonitorService.MAX_CONCURRENT)));
+    /**
+     * statistics: success, failure, elapsed, max elapsed and max concurrent, each as a consumer side
+     * and provider side pair.
+     */
+    private void appendStatistics(Series series, long[] values, long[] statistics) {
+        int side = MonitorService.CONSUMER.equals(series.getSide()) ? 0 : 1;
+        statistics[side] += values[StatisticsTypes.SUCCESS];
+        statistics[2 + side] += values[StatisticsTypes.FAILURE];
+        statistics[4 + side] += values[StatisticsTypes.ELAPSED];
+        statistics[6 + side] = Math.max(statistics[6 + side], values[StatisticsTypes.MAX_ELAPSED]);
+        statistics[8 + side] = Math.max(statistics[8 + side], values[StatisticsTypes.MAX_CONCURRENT]);
+    }
+
+    private LatencyHistogram[] newLatencies() {
+        return new LatencyHistogram[]{new LatencyHistogram(), new LatencyHistogram()};
+    }
+
+    /**
+     * latencies: a consumer side and provider side pair.
+     */
+    private void appendLatencies(Series series, LatencyHistogram histogram, LatencyHistogram[] latencies) {
+        latencies[MonitorService.CONSUMER.equals(series.getSide()) ? 0 : 1].merge(histogram);
+    }
+
+    private String toPercentiles(LatencyHistogram histogram) {
+        StringBuilder buf = new StringBuilder();
+        for (long value : histogram.getPercentiles()) {
+            if (buf.length() > 0) {
+                buf.append('/');
+            }
+            buf.append(value);
+        }
+        return buf.toString();
     }
 
-    private List<String> toRow(String name, long[] statistics) {
+    private List<String> toRow(String name, long[] statistics, LatencyHistogram[] latencies) {
         List<String> row = new ArrayList<String>();
         row.add(name);
         row.add(String.valueOf(statistics[0]) + " --&gt; " + String.valueOf(statistics[1]));
@@ -160,6 +197,7 @@ public class StatisticsPageHandler implements PageHandler {
         row.add(String.valueOf(statistics[0] == 0 ? 0 : statistics[4] / statistics[0])
                 + " --&gt; " + String.valueOf(statistics[1] == 0 ? 0 : statistics[5] / statistics[1]));
         row.add(String.valueOf(statistics[6]) + " --&gt; " + String.valueOf(statistics[7]));
+        row.add(toPercentiles(latencies[0]) + " --&gt; " + toPercentiles(latencies[1]));
         row.add(String.valueOf(statistics[8]) + " --&gt; " + String.valueOf(statistics[9]));
         return row;
     }
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.pages;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.common.Menu;
+import com.alibaba.dubbo.monitor.simple.common.Page;
+import com.alibaba.dubbo.monitor.simple.servlet.PageHandler;
+import com.alibaba.dubbo.monitor.simple.statistics.HeavyHitters;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+import com.alibaba.dubbo.monitor.simple.statistics.TopMetric;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TopPageHandler
+ */
+@Menu(name = "Top", desc = "Show the busiest, slowest and most failing methods.", order = 4000)
+public class TopPageHandler implements PageHandler {
+
+    private static final int DEFAULT_SIZE = 20;
+
+    public Page handle(URL url) {
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            throw new IllegalStateException("The monitor service is not started.");
+        }
+        TopMetric metric = TopMetric.parse(url.getParameter("metric", TopMetric.QPS.getName()));
+        if (metric == null) {
+            throw new IllegalArgumentException("Unsupported metric " + url.getParameter("metric"));
+        }
+        HeavyHitters.Window window = HeavyHitters.Window.parse(url.getParameter("window", HeavyHitters.Window.FIVE_MINUTES.getName()));
+        if (window == null) {
+            throw new IllegalArgumentException("Illegal window " + url.getParameter("window"));
+        }
+        int size = url.getParameter("size", DEFAULT_SIZE);
+        DecimalFormat format = new DecimalFormat("0.###");
+        List<List<String>> rows = new ArrayList<List<String>>();
+        int rank = 0;
+        for (HeavyHitters.Entry entry : monitor.getTop(window, metric, size)) {
+            Series series = entry.getSeries();
+            long[] values = entry.getValues();
+            List<String> row = new ArrayList<String>();
+            row.add(String.valueOf(++rank));
+            row.add("<a href=\"charts.html?service=" + series.getService() + "\">" + series.getService() + "</a>");
+            row.add(series.getMethod());
+            row.add(series.getSide());
+            row.add(metric == TopMetric.FAILURE ? format.format(entry.getValue() * 100) + "%" : format.format(entry.getValue()));
+            row.add(String.valueOf(values[StatisticsTypes.SUCCESS]));
+            row.add(String.valueOf(values[StatisticsTypes.FAILURE]));
+            row.add(format.format(TopMetric.RT.valueOf(values, window.getMinutes())));
+            row.add(String.valueOf(values[StatisticsTypes.MAX_ELAPSED]));
+            row.add(String.valueOf(values[StatisticsTypes.MAX_CONCURRENT]));
+            rows.add(row);
+        }
+        StringBuilder nav = new StringBuilder("Top");
+        for (TopMetric m : TopMetric.values()) {
+            nav.append(m == TopMetric.QPS ? " &gt; " : " | ");
+            if (m == metric) {
+                nav.append(m.getName());
+            } else {
+                nav.append("<a href=\"top.html?metric=").append(m.getName()).append("&window=").append(window.getName())
+                        .append("\">").append(m.getName()).append("</a>");
+            }
+        }
+        for (HeavyHitters.Window w : HeavyHitters.Window.values()) {
+            nav.append(w == HeavyHitters.Window.FIVE_MINUTES ? " &gt; " : " | ");
+            if (w == window) {
+                nav.append(w.getName());
+            } else {
+                nav.append("<a href=\"top.html?metric=").append(metric.getName()).append("&window=").append(w.getName())
+                        .append("\">").append(w.getName()).append("</a>");
+            }
+        }
+        nav.append(" | <a href=\"top.json?metric=").append(metric.getName()).append("&window=").append(window.getName())
+                .append("\" target=\"_blank\">top.json</a>");
+        return new Page(nav.toString(), "Top " + metric.getName() + " in " + window.getName() + " (" + rows.size() + ")",
+                new String[]{"Rank", "Service", "Method", "Side", metric.getName(),
+                        "Success", "Failure", "Avg elapsed (ms)", "Max elapsed (ms)", "Max concurrent"}, rows);
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.query;
+
+/**
+ * Downsampler reduces a time series to a requested number of points, keeping its visual shape.
+ */
+public final class Downsampler {
+
+    /**
+     * Largest-Triangle-Three-Buckets, keeps the point of each bucket which forms the largest
+     * triangle with the point kept in the previous bucket and the average of the next bucket.
+     */
+    public static final String LTTB = "lttb";
+
+    /**
+     * Keeps the minimum and the maximum point of each bucket, so no spike is lost.
+     */
+    public static final String MIN_MAX = "minmax";
+
+    private Downsampler() {
+    }
+
+    public static boolean isSupported(String mode) {
+        return LTTB.equals(mode) || MIN_MAX.equals(mode);
+    }
+
+    public static TimeSeries downsample(TimeSeries series, int points, String mode) {
+        if (LTTB.equals(mode)) {
+            return lttb(series, points);
+        } else if (MIN_MAX.equals(mode)) {
+            return minMax(series, points);
+        }
+        throw new IllegalArgumentException("Unsupported downsampling mode " + mode);
+    }
+
+    public static TimeSeries lttb(TimeSeries series, int points) {
+        int size = series.size();
+        if (points <= 0 || points >= size || size <= 2) {
+            return series;
+        }
+        if (points < 3) {
+            points = 3;
+        }
+        long[] times = series.getTimes();
+        double[] values = series.getValues();
+        long[] sampledTimes = new long[points];
+        double[] sampledValues = new double[points];
+        // the first and the last point are always kept, the others are split into points - 2 buckets
+        double bucketSize = (double) (size - 2) / (points - 2);
+        int selected = 0;
+        sampledTimes[0] = times[0];
+        sampledValues[0] = values[0];
+        for (int bucket = 0; bucket < points - 2; bucket++) {
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+            double averageTime = 0;
+            double averageValue = 0;
+            for (int i = end; i < nextEnd; i++) {
+                averageTime += times[i];
+                averageValue += values[i];
+            }
+            int count = nextEnd - end;
+            averageTime /= count;
+            averageValue /= count;
+            double baseTime = times[selected];
+            double baseValue = values[selected];
+            double maxArea = -1;
+            int next = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((baseTime - averageTime) * (values[i] - baseValue)
+                        - (baseTime - times[i]) * (averageValue - baseValue));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = i;
+                }
+            }
+            sampledTimes[bucket + 1] = times[next];
+            sampledValues[bucket + 1] = values[next];
+            selected = next;
+        }
+        sampledTimes[points - 1] = times[size - 1];
+        sampledValues[points - 1] = values[size - 1];
+        return new TimeSeries(sampledTimes, sampledValues, series.getRawSize(), series.getResolution());
+    }
+
+    public static TimeSeries minMax(TimeSeries series, int points) {
+        int size = series.size();
+        if (points <= 0 || points >= size) {
+            return series;
+        }
+        int buckets = Math.max(1, points / 2);
+        long[] times = series.getTimes();
+        double[] values = series.getValues();
+        long[] sampledTimes = new long[buckets * 2];
+        double[] sampledValues = new double[buckets * 2];
+        int count = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = (int) ((long) bucket * size / buckets);
+            int end = (int) ((long) (bucket + 1) * size / buckets);
+            if (start >= end) {
+                continue;
+            }
+            int min = start;
+            int max = start;
+            for (int i = start + 1; i < end; i++) {
+                if (values[i] < values[min]) {
+                    min = i;
+                }
+                if (values[i] > values[max]) {
+                    max = i;
+                }
+            }
+            int first = Math.min(min, max);
+            int second = Math.max(min, max);
+            sampledTimes[count] = times[first];
+            sampledValues[count++] = values[first];
+            if (second != first) {
+                sampledTimes[count] = times[second];
+                sampledValues[count++] = values[second];
+            }
+        }
+        if (count < sampledTimes.length) {
+            long[] trimmedTimes = new long[count];
+            double[] trimmedValues = new double[count];
+            System.arraycopy(sampledTimes, 0, trimmedTimes, 0, count);
+            System.arraycopy(sampledValues, 0, trimmedValues, 0, count);
+            sampledTimes = trimmedTimes;
+            sampledValues = trimmedValues;
+        }
+        return new TimeSeries(sampledTimes, sampledValues, series.getRawSize(), series.getResolution());
+    }
+
+}
@@ -0,0 +1,461 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.query;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyHistogram;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyListener;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyStore;
+import com.alibaba.dubbo.monitor.simple.statistics.Resolution;
+import com.alibaba.dubbo.monitor.simple.statistics.Rollup;
+import com.alibaba.dubbo.monitor.simple.statistics.RollupListener;
+import com.alibaba.dubbo.monitor.simple.statistics.RollupStore;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsListener;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * SeriesQuery reads the values of one metric of a method from the statistics store and its
+ * rollups, optionally restricted to a consumer or a provider, on the provider side unless told
+ * otherwise, as every invocation is reported by both sides. Records of all matching series are
+ * merged per period of the resolution.
+ * <p>
+ * On a cluster, every node {@link #scan scans} its own records into per period buckets, sent as
+ * URLs, and the values are computed once the buckets of all nodes are {@link #merge merged}:
+ * <pre>
+ * series://0.0.0.0/service?method=...&metric=qps&from=minute&to=minute&resolution=hour
+ * bucket://0.0.0.0/service?method=...&time=minute&success=...&max.success=...&count=...
+ * bucket://0.0.0.0/service?method=...&time=minute&latency=...
+ * </pre>
+ */
+public class SeriesQuery {
+
+    /**
+     * Invocations per second, derived from {@link MonitorService#SUCCESS}.
+     */
+    public static final String QPS = "qps";
+
+    /**
+     * Average elapsed milliseconds per successful invocation.
+     */
+    public static final String RT = "rt";
+
+    public static final String PROTOCOL = "series";
+
+    public static final String BUCKET = "bucket";
+
+    private static final String TIME = "time";
+
+    private static final String LATENCY = "latency";
+
+    private static final String COUNT = "count";
+
+    private static final String RESOLUTION = "resolution";
+
+    private static final int DEFAULT_POINTS = 100;
+
+    private final String service;
+
+    private final String method;
+
+    private final String metric;
+
+    private final long from;
+
+    private final long to;
+
+    private String consumer;
+
+    private String provider;
+
+    private String side = MonitorService.PROVIDER;
+
+    private Resolution resolution;
+
+    /**
+     * @param metric one of {@link StatisticsTypes#TYPES}, {@link #QPS}, {@link #RT} or
+     *               {@link LatencyHistogram#PERCENTILE_NAMES}
+     * @param from   the first minute, inclusive, in minutes since the epoch
+     * @param to     the last minute, inclusive, in minutes since the epoch
+     */
+    public SeriesQuery(String service, String method, String metric, long from, long to) {
+        if (!isSupported(metric)) {
+            throw new IllegalArgumentException("Unsupported metric " + metric);
+        }
+        if (from > to) {
+            throw new IllegalArgumentException("Illegal time range, from " + from + " is after to " + to);
+        }
+        this.service = service;
+        this.method = method;
+        this.metric = metric;
+        this.from = from;
+        this.to = to;
+    }
+
+    public static boolean isSupported(String metric) {
+        return QPS.equals(metric) || RT.equals(metric) || StatisticsTypes.indexOf(metric) >= 0
+                || percentileOf(metric) >= 0;
+    }
+
+    /**
+     * @return the index of the metric in {@link LatencyHistogram#PERCENTILE_NAMES}, or -1
+     */
+    private static int percentileOf(String metric) {
+        for (int i = 0; i < LatencyHistogram.PERCENTILE_NAMES.length; i++) {
+            if (LatencyHistogram.PERCENTILE_NAMES[i].equals(metric)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public String getConsumer() {
+        return consumer;
+    }
+
+    public void setConsumer(String consumer) {
+        this.consumer = consumer;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public void setProvider(String provider) {
+        this.provider = provider;
+    }
+
+    public String getSide() {
+        return side;
+    }
+
+    /**
+     * @param side consumer or provider, or null for both, which counts every invocation twice
+     */
+    public void setSide(String side) {
+        this.side = side;
+    }
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     * @param resolution the resolution of the points, or null to select it from the range
+     */
+    public void setResolution(Resolution resolution) {
+        this.resolution = resolution;
+    }
+
+    /**
+     * @return true if the metric is one of {@link LatencyHistogram#PERCENTILE_NAMES}
+     */
+    public boolean isPercentile() {
+        return percentileOf(metric) >= 0;
+    }
+
+    /**
+     * Read the points from the rollups of the resolution where the days have been rolled up, and
+     * from the minute statistics otherwise. Percentiles are estimates read from the minute latency
+     * histograms, merged per period, which are not rolled up: none are found past the minute
+     * retention.
+     *
+     * @param points the number of points wanted, used to select the resolution if not set
+     */
+    public TimeSeries execute(StatisticsStore store, RollupStore rollups, LatencyStore latencies, int points) {
+        Resolution resolution = resolve(points);
+        int percentile = percentileOf(metric);
+        if (percentile >= 0) {
+            return toPercentileSeries(scanLatencies(latencies, resolution), resolution,
+                    LatencyHistogram.PERCENTILES[percentile]);
+        }
+        return toSeries(scanRollups(store, rollups, resolution), resolution);
+    }
+
+    /**
+     * @return the resolution set, or the one selected from the range for the number of points
+     */
+    public Resolution resolve(int points) {
+        return resolution != null ? resolution
+                : Resolution.select(to - from + 1, points > 0 ? points : DEFAULT_POINTS);
+    }
+
+    /**
+     * Scan the records of this node only, in the resolution set, see {@link #resolve(int)}.
+     *
+     * @return the buckets of the periods holding records, to be {@link #merge merged} with those
+     * of the other nodes
+     */
+    public List<URL> scan(StatisticsStore store, RollupStore rollups, LatencyStore latencies) {
+        Resolution resolution = resolve(0);
+        List<URL> urls = new ArrayList<URL>();
+        if (percentileOf(metric) >= 0) {
+            for (Map.Entry<Long, LatencyHistogram> entry : scanLatencies(latencies, resolution).entrySet()) {
+                urls.add(toBucket(entry.getKey()).addParameter(LATENCY, entry.getValue().encode()));
+            }
+            return urls;
+        }
+        for (Map.Entry<Long, long[]> entry : scanRollups(store, rollups, resolution).entrySet()) {
+            long[] rollup = entry.getValue();
+            Map<String, String> parameters = new HashMap<String, String>();
+            for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+                parameters.put(StatisticsTypes.TYPES[i], String.valueOf(rollup[Rollup.SUM + i]));
+                parameters.put("max." + StatisticsTypes.TYPES[i], String.valueOf(rollup[Rollup.MAX + i]));
+            }
+            parameters.put(COUNT, String.valueOf(rollup[Rollup.COUNT]));
+            urls.add(toBucket(entry.getKey()).addParameters(parameters));
+        }
+        return urls;
+    }
+
+    /**
+     * Merge the buckets scanned by every node into the values of the metric, in the resolution set.
+     */
+    public TimeSeries merge(List<URL> buckets) {
+        Resolution resolution = resolve(0);
+        int percentile = percentileOf(metric);
+        if (percentile >= 0) {
+            Map<Long, LatencyHistogram> histograms = new TreeMap<Long, LatencyHistogram>();
+            for (URL url : buckets) {
+                long time = url.getParameter(TIME, 0L);
+                LatencyHistogram histogram = LatencyHistogram.decode(url.getParameter(LATENCY, "0;"));
+                LatencyHistogram merged = histograms.get(time);
+                if (merged == null) {
+                    histograms.put(time, histogram);
+                } else {
+                    merged.merge(histogram);
+                }
+            }
+            return toPercentileSeries(histograms, resolution, LatencyHistogram.PERCENTILES[percentile]);
+        }
+        Map<Long, long[]> rollups = new TreeMap<Long, long[]>();
+        long[] rollup = new long[Rollup.LENGTH];
+        for (URL url : buckets) {
+            for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+                rollup[Rollup.SUM + i] = url.getParameter(StatisticsTypes.TYPES[i], 0L);
+                rollup[Rollup.MAX + i] = url.getParameter("max." + StatisticsTypes.TYPES[i], 0L);
+            }
+            rollup[Rollup.COUNT] = url.getParameter(COUNT, 0L);
+            Rollup.merge(getBucket(rollups, url.getParameter(TIME, 0L)), rollup);
+        }
+        return toSeries(rollups, resolution);
+    }
+
+    private URL toBucket(long minute) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(MonitorService.METHOD, method);
+        parameters.put(TIME, String.valueOf(minute));
+        return new URL(BUCKET, Constants.ANYHOST_VALUE, 0, service, parameters);
+    }
+
+    /**
+     * @return the query as "series://0.0.0.0/service?method=...&metric=...&from=...&to=...", to
+     * be sent to another monitor node
+     */
+    public URL toURL() {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(MonitorService.METHOD, method);
+        parameters.put(StatisticsLookup.METRIC, metric);
+        parameters.put(StatisticsLookup.FROM, String.valueOf(from));
+        parameters.put(StatisticsLookup.TO, String.valueOf(to));
+        if (consumer != null) {
+            parameters.put(MonitorService.CONSUMER, consumer);
+        }
+        if (provider != null) {
+            parameters.put(MonitorService.PROVIDER, provider);
+        }
+        if (side != null) {
+            parameters.put(Constants.SIDE_KEY, side);
+        }
+        if (resolution != null) {
+            parameters.put(RESOLUTION, resolution.getName());
+        }
+        return new URL(PROTOCOL, Constants.ANYHOST_VALUE, 0, service, parameters);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the URL is not a series query
+     */
+    public static SeriesQuery valueOf(URL url) {
+        if (!PROTOCOL.equals(url.getProtocol())) {
+            throw new IllegalArgumentException("Illegal series query " + url);
+        }
+        SeriesQuery query = new SeriesQuery(url.getPath(), url.getParameter(MonitorService.METHOD),
+                url.getParameter(StatisticsLookup.METRIC), url.getParameter(StatisticsLookup.FROM, 0L),
+                url.getParameter(StatisticsLookup.TO, 0L));
+        query.setConsumer(url.getParameter(MonitorService.CONSUMER));
+        query.setProvider(url.getParameter(MonitorService.PROVIDER));
+        query.setSide(url.getParameter(Constants.SIDE_KEY));
+        String resolution = url.getParameter(RESOLUTION);
+        if (resolution != null) {
+            query.setResolution(Resolution.parse(resolution));
+        }
+        return query;
+    }
+
+    private Map<Long, long[]> scanRollups(StatisticsStore store, RollupStore rollups, final Resolution resolution) {
+        final Map<Long, long[]> buckets = new TreeMap<Long, long[]>();
+        String first = DateUtils.toDay(from);
+        String last = DateUtils.toDay(to);
+        Set<String> days = new TreeSet<String>(store.getDays());
+        if (resolution != Resolution.MINUTE) {
+            days.addAll(rollups.getDays(resolution));
+        }
+        for (String day : days) {
+            if (day.compareTo(first) < 0 || day.compareTo(last) > 0) {
+                continue;
+            }
+            if (resolution != Resolution.MINUTE && rollups.exists(day, resolution)) {
+                rollups.scan(day, resolution, service, method, new RollupListener() {
+                    public void onRollup(long minute, Series series, long[] rollup) {
+                        if (minute + resolution.getMinutes() > from && minute <= to && matches(series)) {
+                            Rollup.merge(getBucket(buckets, minute), rollup);
+                        }
+                    }
+                });
+            } else {
+                final long dayStart = DateUtils.toMinute(day);
+                store.scan(day, service, method, new StatisticsListener() {
+                    public void onStatistics(long minute, Series series, long[] values) {
+                        if (minute >= from && minute <= to && matches(series)) {
+                            Rollup.add(getBucket(buckets, resolution.truncate(dayStart, minute)), values);
+                        }
+                    }
+                });
+            }
+        }
+        return buckets;
+    }
+
+    private TimeSeries toSeries(Map<Long, long[]> buckets, Resolution resolution) {
+        long[] times = new long[buckets.size()];
+        double[] values = new double[buckets.size()];
+        int i = 0;
+        for (Map.Entry<Long, long[]> entry : buckets.entrySet()) {
+            times[i] = entry.getKey() * DateUtils.MINUTE;
+            values[i] = valueOf(entry.getValue(), resolution);
+            i++;
+        }
+        return new TimeSeries(times, values, times.length, resolution);
+    }
+
+    private Map<Long, LatencyHistogram> scanLatencies(LatencyStore latencies, final Resolution resolution) {
+        final Map<Long, LatencyHistogram> buckets = new TreeMap<Long, LatencyHistogram>();
+        String first = DateUtils.toDay(from);
+        String last = DateUtils.toDay(to);
+        for (String day : latencies.getDays()) {
+            if (day.compareTo(first) < 0 || day.compareTo(last) > 0) {
+                continue;
+            }
+            final long dayStart = DateUtils.toMinute(day);
+            latencies.scan(day, service, method, new LatencyListener() {
+                public void onLatency(long minute, Series series, LatencyHistogram histogram) {
+                    if (minute >= from && minute <= to && matches(series)) {
+                        long bucket = resolution.truncate(dayStart, minute);
+                        LatencyHistogram merged = buckets.get(bucket);
+                        if (merged == null) {
+                            buckets.put(bucket, histogram);
+                        } else {
+                            merged.merge(histogram);
+                        }
+                    }
+                }
+            });
+        }
+        return buckets;
+    }
+
+    private static TimeSeries toPercentileSeries(Map<Long, LatencyHistogram> buckets, Resolution resolution,
+                                                 double percentile) {
+        long[] times = new long[buckets.size()];
+        double[] values = new double[buckets.size()];
+        int i = 0;
+        for (Map.Entry<Long, LatencyHistogram> entry : buckets.entrySet()) {
+            times[i] = entry.getKey() * DateUtils.MINUTE;
+            values[i] = entry.getValue().getValueAtPercentile(percentile);
+            i++;
+        }
+        return new TimeSeries(times, values, times.length, resolution);
+    }
+
+    private static long[] getBucket(Map<Long, long[]> buckets, long minute) {
+        long[] bucket = buckets.get(minute);
+        if (bucket == null) {
+            bucket = new long[Rollup.LENGTH];
+            buckets.put(minute, bucket);
+        }
+        return bucket;
+    }
+
+    private boolean matches(Series series) {
+        return (consumer == null || consumer.equals(series.getConsumer()))
+                && (provider == null || provider.equals(series.getProvider()))
+                && (side == null || side.equals(series.getSide()));
+    }
+
+    /**
+     * Rates and concurrency are averaged over the whole period, sums and maximums are returned as is.
+     */
+    private double valueOf(long[] rollup, Resolution resolution) {
+        if (QPS.equals(metric)) {
+            return rollup[Rollup.SUM + StatisticsTypes.SUCCESS] / (resolution.getMinutes() * 60.0);
+        } else if (RT.equals(metric)) {
+            long success = rollup[Rollup.SUM + StatisticsTypes.SUCCESS];
+            return success == 0 ? 0 : (double) rollup[Rollup.SUM + StatisticsTypes.ELAPSED] / success;
+        }
+        int index = StatisticsTypes.indexOf(metric);
+        if (StatisticsTypes.isMax(index)) {
+            return rollup[Rollup.MAX + index];
+        } else if (index == StatisticsTypes.CONCURRENT) {
+            return (double) rollup[Rollup.SUM + index] / resolution.getMinutes();
+        }
+        return rollup[Rollup.SUM + index];
+    }
+
+}
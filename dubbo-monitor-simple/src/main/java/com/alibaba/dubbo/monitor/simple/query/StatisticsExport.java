@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.query;
+
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsListener;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * StatisticsExport writes the minute statistics of a time range as CSV or as newline delimited
+ * JSON, one record per series and minute:
+ * <pre>
+ * time,service,method,consumer,provider,side,success,failure,elapsed,concurrent,max.elapsed,max.concurrent
+ * {"time":millis,"service":"...","method":"...",...,"max.concurrent":1}
+ * </pre>
+ * Records are written while the store is scanned, one method of one day at a time, so memory does
+ * not depend on the size of the export. Optional filters are service, method and host, which
+ * matches the consumer or the provider.
+ */
+public class StatisticsExport {
+
+    public static final String CSV = "csv";
+
+    public static final String NDJSON = "ndjson";
+
+    private final String format;
+
+    private final long from;
+
+    private final long to;
+
+    private String service;
+
+    private String method;
+
+    private String host;
+
+    /**
+     * @param format {@link #CSV} or {@link #NDJSON}
+     * @param from   the first minute, inclusive, in minutes since the epoch
+     * @param to     the last minute, inclusive, in minutes since the epoch
+     */
+    public StatisticsExport(String format, long from, long to) {
+        if (!isSupported(format)) {
+            throw new IllegalArgumentException("Unsupported format " + format + ", expected csv or ndjson.");
+        }
+        if (from > to) {
+            throw new IllegalArgumentException("Illegal time range, from " + from + " is after to " + to);
+        }
+        this.format = format;
+        this.from = from;
+        this.to = to;
+    }
+
+    public static boolean isSupported(String format) {
+        return CSV.equals(format) || NDJSON.equals(format);
+    }
+
+    /**
+     * @param value a day "yyyyMMdd", or milliseconds since the epoch
+     * @param end   true to return the last minute of a day, false its first minute
+     * @return minutes since the epoch
+     */
+    public static long parseTime(String value, boolean end) {
+        if (DateUtils.isDay(value)) {
+            long start = DateUtils.toMinute(value);
+            return end ? start + DateUtils.MINUTES_PER_DAY - 1 : start;
+        }
+        try {
+            return DateUtils.toMinute(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Illegal time " + value + ", expected yyyyMMdd or milliseconds.");
+        }
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public void setService(String service) {
+        this.service = service;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    /**
+     * @param host matched against both the consumer and the provider
+     */
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    /**
+     * Write the records, the writer is flushed but not closed.
+     *
+     * @return the number of records written
+     */
+    public long execute(StatisticsStore store, Writer writer) throws IOException {
+        RecordWriter records = new RecordWriter(writer);
+        if (CSV.equals(format)) {
+            writer.write("time,service,method,consumer,provider,side");
+            for (String type : StatisticsTypes.TYPES) {
+                writer.write(',');
+                writer.write(type);
+            }
+            writer.write('\n');
+        }
+        String first = DateUtils.toDay(from);
+        String last = DateUtils.toDay(to);
+        for (String day : store.getDays()) {
+            if (day.compareTo(first) < 0 || day.compareTo(last) > 0) {
+                continue;
+            }
+            List<String> services = service != null ? Collections.singletonList(service) : store.getServices(day);
+            for (String s : services) {
+                List<String> methods = method != null ? Collections.singletonList(method) : store.getMethods(day, s);
+                for (String m : methods) {
+                    store.scan(day, s, m, records);
+                    if (records.failure != null) {
+                        throw records.failure;
+                    }
+                }
+            }
+        }
+        writer.flush();
+        return records.count;
+    }
+
+    private class RecordWriter implements StatisticsListener {
+
+        private final Writer writer;
+
+        private final StringBuilder line = new StringBuilder();
+
+        private IOException failure;
+
+        private long count;
+
+        RecordWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        public void onStatistics(long minute, Series series, long[] values) {
+            if (failure != null || minute < from || minute > to
+                    || host != null && !host.equals(series.getConsumer()) && !host.equals(series.getProvider())) {
+                return;
+            }
+            line.setLength(0);
+            if (CSV.equals(format)) {
+                line.append(minute * DateUtils.MINUTE);
+                appendCsv(series.getService());
+                appendCsv(series.getMethod());
+                appendCsv(series.getConsumer());
+                appendCsv(series.getProvider());
+                appendCsv(series.getSide());
+                for (long value : values) {
+                    line.append(',').append(value);
+                }
+            } else {
+                line.append("{\"time\":").append(minute * DateUtils.MINUTE);
+                appendJson("service", series.getService());
+                appendJson("method", series.getMethod());
+                appendJson("consumer", series.getConsumer());
+                appendJson("provider", series.getProvider());
+                appendJson("side", series.getSide());
+                for (int i = 0; i < values.length; i++) {
+                    line.append(",\"").append(StatisticsTypes.TYPES[i]).append("\":").append(values[i]);
+                }
+                line.append('}');
+            }
+            line.append('\n');
+            try {
+                writer.append(line);
+                count++;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        private void appendCsv(String value) {
+            line.append(',');
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+                line.append(value);
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+            line.append('"');
+        }
+
+        private void appendJson(String name, String value) {
+            line.append(",\"").append(name).append("\":");
+            if (value == null) {
+                line.append("null");
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    line.append('\\').append(c);
+                } else if (c < 0x20) {
+                    line.append(String.format("\\u%04x", (int) c));
+                } else {
+                    line.append(c);
+                }
+            }
+            line.append('"');
+        }
+    }
+
+}
@@ -0,0 +1,376 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.query;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsListener;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+import com.alibaba.dubbo.monitor.simple.statistics.SummaryIndex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * StatisticsLookup answers {@link MonitorService#lookup(URL)} with the counters of every matching
+ * series merged over a time range, as statistics URLs in the format {@link MonitorService#collect(URL)}
+ * accepts:
+ * <pre>
+ * count://host/service?method=...&application=...&side=...&from=millis&to=millis&metric=success
+ * </pre>
+ * All parameters are optional. The service is the path or the interface parameter, host matches
+ * the consumer or the provider, and metric restricts the returned counters to one of
+ * {@link StatisticsTypes#TYPES}. The time range defaults to today.
+ * <p>
+ * Whole days are answered from the {@link SummaryIndex}. Only the first and the last day of the
+ * range, when partly covered, read the minute statistics, and only of the methods the summary
+ * knows, so the cost depends on the days and series asked for and not on the history kept.
+ */
+public class StatisticsLookup {
+
+    public static final String PROTOCOL = "count";
+
+    public static final String FROM = "from";
+
+    public static final String TO = "to";
+
+    public static final String METRIC = "metric";
+
+    public static final String HOST = "host";
+
+    private final long from;
+
+    private final long to;
+
+    private String service;
+
+    private String method;
+
+    private String host;
+
+    private String consumer;
+
+    private String provider;
+
+    private String side;
+
+    private String metric;
+
+    private String application;
+
+    private Set<String> services;
+
+    /**
+     * @param from the first minute, inclusive, in minutes since the epoch
+     * @param to   the last minute, inclusive, in minutes since the epoch
+     */
+    public StatisticsLookup(long from, long to) {
+        if (from > to) {
+            throw new IllegalArgumentException("Illegal time range, from " + from + " is after to " + to);
+        }
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Read the lookup from the parameters of the query URL. The application is only copied, see
+     * {@link #setServices(Collection)}.
+     */
+    public static StatisticsLookup parse(URL query) {
+        long now = System.currentTimeMillis();
+        long to = getTime(query, TO, now);
+        long from = getTime(query, FROM, DateUtils.toMinute(DateUtils.today()) * DateUtils.MINUTE);
+        StatisticsLookup lookup = new StatisticsLookup(DateUtils.toMinute(from), DateUtils.toMinute(to));
+        String service = query.getParameter(MonitorService.INTERFACE);
+        if (service == null || service.length() == 0) {
+            service = query.getPath();
+        }
+        lookup.setService(service);
+        lookup.setMethod(query.getParameter(MonitorService.METHOD));
+        lookup.setHost(query.getParameter(HOST));
+        lookup.setConsumer(query.getParameter(MonitorService.CONSUMER));
+        lookup.setProvider(query.getParameter(MonitorService.PROVIDER));
+        lookup.setSide(query.getParameter(Constants.SIDE_KEY));
+        lookup.setMetric(query.getParameter(METRIC));
+        lookup.setApplication(query.getParameter(MonitorService.APPLICATION));
+        return lookup;
+    }
+
+    private static long getTime(URL query, String name, long defaultValue) {
+        String value = query.getParameter(name);
+        if (value == null || value.length() == 0) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Illegal " + name + " " + value + ", expected milliseconds.");
+        }
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public void setService(String service) {
+        this.service = emptyToNull(service);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = emptyToNull(method);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @param host matched against both the consumer and the provider
+     */
+    public void setHost(String host) {
+        this.host = emptyToNull(host);
+    }
+
+    public String getConsumer() {
+        return consumer;
+    }
+
+    public void setConsumer(String consumer) {
+        this.consumer = emptyToNull(consumer);
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public void setProvider(String provider) {
+        this.provider = emptyToNull(provider);
+    }
+
+    public String getSide() {
+        return side;
+    }
+
+    public void setSide(String side) {
+        side = emptyToNull(side);
+        if (side != null && !MonitorService.CONSUMER.equals(side) && !MonitorService.PROVIDER.equals(side)) {
+            throw new IllegalArgumentException("Illegal side " + side + ", expected consumer or provider.");
+        }
+        this.side = side;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    /**
+     * @param metric one of {@link StatisticsTypes#TYPES}, or null for all of them
+     */
+    public void setMetric(String metric) {
+        metric = emptyToNull(metric);
+        if (metric != null && StatisticsTypes.indexOf(metric) < 0) {
+            throw new IllegalArgumentException("Unsupported metric " + metric);
+        }
+        this.metric = metric;
+    }
+
+    public String getApplication() {
+        return application;
+    }
+
+    public void setApplication(String application) {
+        this.application = emptyToNull(application);
+    }
+
+    /**
+     * The statistics do not record applications, so the caller resolves the application to its
+     * services, from the registry, and restricts the lookup to them.
+     *
+     * @param services the services to look up, or null for all of them
+     */
+    public void setServices(Collection<String> services) {
+        this.services = services == null ? null : new TreeSet<String>(services);
+    }
+
+    /**
+     * Whole days are read from their summaries, which outlive the statistics removed by retention,
+     * and only partial days are scanned from the store.
+     *
+     * @return one statistics URL per matching series, with its counters merged over the range
+     */
+    public List<URL> execute(SummaryIndex summaries, StatisticsStore store) {
+        final Map<Series, long[]> totals = new LinkedHashMap<Series, long[]>();
+        String first = DateUtils.toDay(from);
+        String last = DateUtils.toDay(to);
+        Set<String> days = new TreeSet<String>(summaries.getDays());
+        days.addAll(store.getDays());
+        for (String day : days) {
+            if (day.compareTo(first) < 0 || day.compareTo(last) > 0) {
+                continue;
+            }
+            long dayStart = DateUtils.toMinute(day);
+            boolean whole = from <= dayStart && to >= dayStart + DateUtils.MINUTES_PER_DAY - 1;
+            for (String serviceName : getServices(summaries, day)) {
+                Set<String> methods = new TreeSet<String>();
+                for (SummaryIndex.Entry entry : summaries.getEntries(day, serviceName)) {
+                    Series series = entry.getSeries();
+                    if (!matches(series)) {
+                        continue;
+                    }
+                    if (whole) {
+                        merge(totals, series, entry.getValues());
+                    } else {
+                        methods.add(series.getMethod());
+                    }
+                }
+                for (String methodName : methods) {
+                    store.scan(day, serviceName, methodName, new StatisticsListener() {
+                        public void onStatistics(long minute, Series series, long[] values) {
+                            if (minute >= from && minute <= to && matches(series)) {
+                                merge(totals, series, values);
+                            }
+                        }
+                    });
+                }
+            }
+        }
+        List<URL> urls = new ArrayList<URL>(totals.size());
+        for (Map.Entry<Series, long[]> entry : totals.entrySet()) {
+            urls.add(toURL(entry.getKey(), entry.getValue()));
+        }
+        return urls;
+    }
+
+    /**
+     * Merge the URLs of the same series, as found on several monitor nodes, summing their counters
+     * and keeping the greatest maxima.
+     */
+    public static List<URL> merge(List<URL> urls) {
+        Map<String, URL> merged = new LinkedHashMap<String, URL>();
+        for (URL url : urls) {
+            String key = url.getHost() + "/" + url.getPath()
+                    + "?" + url.getParameter(MonitorService.METHOD)
+                    + "&" + url.getParameter(Constants.SIDE_KEY)
+                    + "&" + url.getParameter(MonitorService.CONSUMER)
+                    + "&" + url.getParameter(MonitorService.PROVIDER);
+            URL previous = merged.get(key);
+            if (previous == null) {
+                merged.put(key, url);
+                continue;
+            }
+            Map<String, String> parameters = new HashMap<String, String>();
+            for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+                String type = StatisticsTypes.TYPES[i];
+                if (previous.hasParameter(type) || url.hasParameter(type)) {
+                    long a = previous.getParameter(type, 0L);
+                    long b = url.getParameter(type, 0L);
+                    parameters.put(type, String.valueOf(StatisticsTypes.isMax(i) ? Math.max(a, b) : a + b));
+                }
+            }
+            merged.put(key, previous.addParameters(parameters));
+        }
+        return new ArrayList<URL>(merged.values());
+    }
+
+    private Collection<String> getServices(SummaryIndex summaries, String day) {
+        if (service != null) {
+            if (services != null && !services.contains(service)) {
+                return new ArrayList<String>();
+            }
+            List<String> names = new ArrayList<String>(1);
+            names.add(service);
+            return names;
+        }
+        return services != null ? services : summaries.getServices(day);
+    }
+
+    private boolean matches(Series series) {
+        return (method == null || method.equals(series.getMethod()))
+                && (host == null || host.equals(series.getConsumer()) || host.equals(series.getProvider()))
+                && (consumer == null || consumer.equals(series.getConsumer()))
+                && (provider == null || provider.equals(series.getProvider()))
+                && (side == null || side.equals(series.getSide()));
+    }
+
+    private static void merge(Map<Series, long[]> totals, Series series, long[] values) {
+        long[] total = totals.get(series);
+        if (total == null) {
+            total = new long[StatisticsTypes.LENGTH];
+            totals.put(series, total);
+        }
+        StatisticsTypes.merge(total, values);
+    }
+
+    /**
+     * The reporting host is the consumer of consumer side statistics and the provider of provider
+     * side ones, the other end is a parameter, as in the reports {@link MonitorService#collect(URL)}
+     * receives.
+     */
+    private URL toURL(Series series, long[] values) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        String host;
+        if (MonitorService.CONSUMER.equals(series.getSide())) {
+            host = series.getConsumer();
+            parameters.put(MonitorService.PROVIDER, series.getProvider());
+        } else {
+            host = series.getProvider();
+            parameters.put(MonitorService.CONSUMER, series.getConsumer());
+        }
+        parameters.put(MonitorService.INTERFACE, series.getService());
+        parameters.put(MonitorService.METHOD, series.getMethod());
+        parameters.put(Constants.SIDE_KEY, series.getSide());
+        if (application != null) {
+            parameters.put(MonitorService.APPLICATION, application);
+        }
+        for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+            if (metric == null || metric.equals(StatisticsTypes.TYPES[i])) {
+                parameters.put(StatisticsTypes.TYPES[i], String.valueOf(values[i]));
+            }
+        }
+        parameters.put(MonitorService.TIMESTAMP, String.valueOf(from * DateUtils.MINUTE));
+        parameters.put(FROM, String.valueOf(from * DateUtils.MINUTE));
+        parameters.put(TO, String.valueOf(to * DateUtils.MINUTE));
+        return new URL(PROTOCOL, host, 0, series.getService(), parameters);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.length() == 0 ? null : value;
+    }
+
+}
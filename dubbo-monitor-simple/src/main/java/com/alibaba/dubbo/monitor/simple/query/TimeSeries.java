@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.query;
+
+import com.alibaba.dubbo.monitor.simple.statistics.Resolution;
+
+/**
+ * TimeSeries holds the points of a queried metric, ordered by time.
+ */
+public class TimeSeries {
+
+    private final long[] times;
+
+    private final double[] values;
+
+    private final int rawSize;
+
+    private final Resolution resolution;
+
+    /**
+     * @param times      the time of each point, in milliseconds
+     * @param values     the value of each point
+     * @param rawSize    the number of points before downsampling
+     * @param resolution the resolution the points were read at
+     */
+    public TimeSeries(long[] times, double[] values, int rawSize, Resolution resolution) {
+        if (times.length != values.length) {
+            throw new IllegalArgumentException("times and values differ in length: " + times.length + " != " + values.length);
+        }
+        this.times = times;
+        this.values = values;
+        this.rawSize = rawSize;
+        this.resolution = resolution;
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public long[] getTimes() {
+        return times;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    public int getRawSize() {
+        return rawSize;
+    }
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.retention;
+
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * DiskUsage is a snapshot of the files and bytes held by each kind of data, per day and service.
+ * <p>
+ * A kind is scanned from its root directory, where a day is either a directory named by the day
+ * holding one file or directory per service, or a file named "day.suffix" holding all services,
+ * which is counted under {@link #ALL}. Other names, as the directories of other kinds nested in
+ * the root, are skipped.
+ */
+public class DiskUsage {
+
+    /**
+     * The service of the files holding all services of a day.
+     */
+    public static final String ALL = "";
+
+    private final List<String> kinds;
+
+    private final long time = System.currentTimeMillis();
+
+    // day -> service -> files and bytes of each kind
+    private final Map<String, Map<String, long[]>> days = new TreeMap<String, Map<String, long[]>>();
+
+    public DiskUsage(String... kinds) {
+        this.kinds = Collections.unmodifiableList(Arrays.asList(kinds));
+    }
+
+    /**
+     * @param suffix the suffix stripped from the service files of a day, may be null
+     */
+    public void scan(String kind, File root, String suffix) {
+        int index = indexOf(kind);
+        File[] files = root.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.length() < 8 || !DateUtils.isDay(name.substring(0, 8))) {
+                continue;
+            }
+            String day = name.substring(0, 8);
+            if (name.length() == 8 && file.isDirectory()) {
+                File[] children = file.listFiles();
+                if (children == null) {
+                    continue;
+                }
+                for (File child : children) {
+                    String service = child.getName();
+                    if (suffix != null && service.endsWith(suffix) && child.isFile()) {
+                        service = service.substring(0, service.length() - suffix.length());
+                    }
+                    count(child, getValues(day, service), index);
+                }
+            } else if (name.length() > 8 && name.charAt(8) == '.') {
+                count(file, getValues(day, ALL), index);
+            }
+        }
+    }
+
+    private static void count(File file, long[] values, int index) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                count(child, values, index);
+            }
+        } else if (file.isFile()) {
+            values[index * 2]++;
+            values[index * 2 + 1] += file.length();
+        }
+    }
+
+    private long[] getValues(String day, String service) {
+        Map<String, long[]> services = days.get(day);
+        if (services == null) {
+            services = new TreeMap<String, long[]>();
+            days.put(day, services);
+        }
+        long[] values = services.get(service);
+        if (values == null) {
+            values = new long[kinds.size() * 2];
+            services.put(service, values);
+        }
+        return values;
+    }
+
+    private int indexOf(String kind) {
+        int index = kinds.indexOf(kind);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown kind " + kind + ", expected one of " + kinds);
+        }
+        return index;
+    }
+
+    /**
+     * @return the time of the snapshot in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public List<String> getKinds() {
+        return kinds;
+    }
+
+    /**
+     * @return the days holding any data, ascending
+     */
+    public List<String> getDays() {
+        return new ArrayList<String>(days.keySet());
+    }
+
+    /**
+     * @return the services of the day, ascending, {@link #ALL} first if any
+     */
+    public List<String> getServices(String day) {
+        Map<String, long[]> services = days.get(day);
+        return services == null ? Collections.<String>emptyList() : new ArrayList<String>(services.keySet());
+    }
+
+    public long getFiles(String kind, String day) {
+        return sum(indexOf(kind) * 2, day);
+    }
+
+    public long getBytes(String kind, String day) {
+        return sum(indexOf(kind) * 2 + 1, day);
+    }
+
+    public long getBytes(String kind, String day, String service) {
+        Map<String, long[]> services = days.get(day);
+        long[] values = services == null ? null : services.get(service);
+        return values == null ? 0 : values[indexOf(kind) * 2 + 1];
+    }
+
+    /**
+     * @return the bytes of the kind over all days
+     */
+    public long getBytes(String kind) {
+        int index = indexOf(kind) * 2 + 1;
+        long bytes = 0;
+        for (String day : days.keySet()) {
+            bytes += sum(index, day);
+        }
+        return bytes;
+    }
+
+    private long sum(int index, String day) {
+        Map<String, long[]> services = days.get(day);
+        long sum = 0;
+        if (services != null) {
+            for (long[] values : services.values()) {
+                sum += values[index];
+            }
+        }
+        return sum;
+    }
+
+}
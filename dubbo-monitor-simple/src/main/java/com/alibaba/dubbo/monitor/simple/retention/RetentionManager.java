@@ -0,0 +1,448 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.retention;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.query.StatisticsExport;
+import com.alibaba.dubbo.monitor.simple.statistics.FileStatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyStore;
+import com.alibaba.dubbo.monitor.simple.statistics.Resolution;
+import com.alibaba.dubbo.monitor.simple.statistics.RollupStore;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.SummaryIndex;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * RetentionManager deletes each kind of data once it is older than its retention in days, and
+ * keeps a {@link DiskUsage} snapshot of what is left. A retention of 0 keeps the data forever.
+ * <p>
+ * Deletions are paced by a files per second budget, so that expiring a large day does not stall
+ * the disk for the writers. Days kept as a directory of files are deleted a file at a time, days
+ * of other stores wait for the budget of their files, as counted by the last disk usage scan. Minute statistics and latencies are only deleted once their day has
+ * been rolled up, and, when archiving is enabled, once the day has been archived into a single
+ * gzipped CSV file:
+ * <pre>
+ * ${dubbo.statistics.archive.directory}/day.csv.gz
+ * </pre>
+ */
+public class RetentionManager implements Runnable {
+
+    public static final String STATISTICS = "statistics";
+
+    public static final String LATENCY = "latency";
+
+    public static final String ROLLUP = "rollup";
+
+    public static final String SUMMARY = "summary";
+
+    public static final String CHARTS = "charts";
+
+    public static final String ARCHIVE = "archive";
+
+    public static final String ARCHIVE_SUFFIX = ".csv.gz";
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionManager.class);
+
+    private final StatisticsStore store;
+
+    private final LatencyStore latencies;
+
+    private final RollupStore rollups;
+
+    private final SummaryIndex summaries;
+
+    private final String statisticsDirectory;
+
+    private final Throttle throttle;
+
+    private int minuteRetention;
+
+    private int hourRetention;
+
+    private int dayRetention;
+
+    private int summaryRetention;
+
+    private String chartsDirectory;
+
+    private int chartsRetention;
+
+    private String archiveDirectory;
+
+    private int archiveAfter;
+
+    private int archiveRetention;
+
+    private volatile DiskUsage usage;
+
+    /**
+     * @param statisticsDirectory the directory of the statistics store, scanned for disk usage only
+     * @param rate                the files deleted per second, 0 for no limit
+     */
+    public RetentionManager(StatisticsStore store, LatencyStore latencies, RollupStore rollups,
+                            SummaryIndex summaries, String statisticsDirectory, int rate) {
+        this.store = store;
+        this.latencies = latencies;
+        this.rollups = rollups;
+        this.summaries = summaries;
+        this.statisticsDirectory = statisticsDirectory;
+        this.throttle = new Throttle(rate);
+    }
+
+    /**
+     * @param days the days to keep minute statistics and latencies
+     */
+    public void setMinuteRetention(int days) {
+        this.minuteRetention = days;
+    }
+
+    public void setHourRetention(int days) {
+        this.hourRetention = days;
+    }
+
+    public void setDayRetention(int days) {
+        this.dayRetention = days;
+    }
+
+    public void setSummaryRetention(int days) {
+        this.summaryRetention = days;
+    }
+
+    /**
+     * @param directory the directory of the rendered charts, null if charts are not rendered to disk
+     */
+    public void setCharts(String directory, int days) {
+        this.chartsDirectory = directory;
+        this.chartsRetention = days;
+    }
+
+    /**
+     * @param after the days after which minute statistics are archived, 0 to never archive
+     * @param days  the days to keep the archives
+     */
+    public void setArchive(String directory, int after, int days) {
+        this.archiveDirectory = directory;
+        this.archiveAfter = after;
+        this.archiveRetention = days;
+    }
+
+    public int getMinuteRetention() {
+        return minuteRetention;
+    }
+
+    /**
+     * Latency histograms are not rolled up, so latency percentiles are only known from this minute on.
+     *
+     * @return the first minute whose minute statistics and latencies are retained at the given
+     * minute, or Long.MIN_VALUE if they are kept forever
+     */
+    public long getMinuteHorizon(long now) {
+        return minuteRetention > 0 ? DateUtils.toMinute(toDay(now, minuteRetention)) : Long.MIN_VALUE;
+    }
+
+    public int getHourRetention() {
+        return hourRetention;
+    }
+
+    public int getDayRetention() {
+        return dayRetention;
+    }
+
+    public int getSummaryRetention() {
+        return summaryRetention;
+    }
+
+    public int getChartsRetention() {
+        return chartsRetention;
+    }
+
+    public int getArchiveAfter() {
+        return archiveAfter;
+    }
+
+    public int getArchiveRetention() {
+        return archiveRetention;
+    }
+
+    /**
+     * @return the disk usage after the last run, null before the first one
+     */
+    public DiskUsage getUsage() {
+        return usage;
+    }
+
+    public void run() {
+        long now = DateUtils.toMinute(System.currentTimeMillis());
+        if (usage == null) {
+            usage = scan();
+        }
+        archive(now);
+        retain(now);
+        usage = scan();
+    }
+
+    /**
+     * @return a new snapshot of the disk usage
+     */
+    public DiskUsage scan() {
+        DiskUsage usage = new DiskUsage(STATISTICS, LATENCY, ROLLUP, SUMMARY, CHARTS, ARCHIVE);
+        usage.scan(STATISTICS, new File(statisticsDirectory), null);
+        usage.scan(LATENCY, new File(latencies.getDirectory()), LatencyStore.SUFFIX);
+        usage.scan(ROLLUP, new File(rollups.getDirectory()), null);
+        usage.scan(SUMMARY, new File(summaries.getDirectory()), null);
+        if (chartsDirectory != null) {
+            usage.scan(CHARTS, new File(chartsDirectory), null);
+        }
+        if (archiveDirectory != null) {
+            usage.scan(ARCHIVE, new File(archiveDirectory), null);
+        }
+        return usage;
+    }
+
+    /**
+     * Archive the minute statistics of the days older than the archive delay at the given minute.
+     *
+     * @return the number of days archived
+     */
+    public int archive(long now) {
+        if (archiveAfter <= 0) {
+            return 0;
+        }
+        String due = toDay(now, archiveAfter);
+        int count = 0;
+        for (String day : store.getDays()) {
+            if (day.compareTo(due) >= 0) {
+                break;
+            }
+            if (getArchive(day).exists()) {
+                continue;
+            }
+            if (!pace(STATISTICS, day)) {
+                break;
+            }
+            long start = System.currentTimeMillis();
+            long records;
+            try {
+                records = archive(day);
+            } catch (IOException e) {
+                logger.error("Failed to archive statistics of " + day + ", cause: " + e.getMessage(), e);
+                continue;
+            }
+            count++;
+            if (logger.isInfoEnabled()) {
+                logger.info("archive " + records + " statistics of " + day + " in "
+                        + (System.currentTimeMillis() - start) + "ms");
+            }
+        }
+        return count;
+    }
+
+    private long archive(String day) throws IOException {
+        File file = getArchive(day);
+        File dir = file.getParentFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        File temp = new File(dir, file.getName() + ".tmp");
+        long start = DateUtils.toMinute(day);
+        long records;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(temp), 8192), "UTF-8"), 8192);
+        try {
+            records = new StatisticsExport(StatisticsExport.CSV, start, start + DateUtils.MINUTES_PER_DAY - 1)
+                    .execute(store, writer);
+        } finally {
+            writer.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to rename " + temp + " to " + file);
+        }
+        return records;
+    }
+
+    public File getArchive(String day) {
+        return new File(archiveDirectory, day + ARCHIVE_SUFFIX);
+    }
+
+    /**
+     * Delete the data of each kind older than its retention at the given minute.
+     */
+    public void retain(long now) {
+        if (minuteRetention > 0) {
+            String expired = toDay(now, minuteRetention);
+            for (String day : store.getDays()) {
+                if (day.compareTo(expired) >= 0) {
+                    break;
+                }
+                if (!rollups.exists(day, Resolution.DAY)
+                        || archiveAfter > 0 && !getArchive(day).exists()) {
+                    continue;
+                }
+                if (logger.isInfoEnabled()) {
+                    logger.info("delete minute statistics of " + day);
+                }
+                if (store instanceof FileStatisticsStore) {
+                    // a file per series and type, deleted one at a time rather than in one burst
+                    if (!delete(new File(((FileStatisticsStore) store).getDirectory(), day))) {
+                        return;
+                    }
+                } else {
+                    if (!pace(STATISTICS, day)) {
+                        return;
+                    }
+                    store.delete(day);
+                }
+            }
+            for (String day : latencies.getDays()) {
+                if (day.compareTo(expired) >= 0) {
+                    break;
+                }
+                if (!delete(new File(latencies.getDirectory(), day))) {
+                    return;
+                }
+            }
+        }
+        if (!retain(Resolution.HOUR, hourRetention, now) || !retain(Resolution.DAY, dayRetention, now)) {
+            return;
+        }
+        if (summaryRetention > 0) {
+            String expired = toDay(now, summaryRetention);
+            for (String day : summaries.getDays()) {
+                if (day.compareTo(expired) >= 0) {
+                    break;
+                }
+                if (!throttle.acquire(1)) {
+                    return;
+                }
+                summaries.delete(day);
+            }
+        }
+        if (chartsDirectory != null && chartsRetention > 0) {
+            String expired = toDay(now, chartsRetention);
+            for (String day : list(new File(chartsDirectory))) {
+                if (day.compareTo(expired) >= 0) {
+                    break;
+                }
+                if (logger.isInfoEnabled()) {
+                    logger.info("delete charts of " + day);
+                }
+                if (!delete(new File(chartsDirectory, day))) {
+                    return;
+                }
+            }
+        }
+        if (archiveDirectory != null && archiveRetention > 0) {
+            String expired = toDay(now, archiveRetention);
+            for (String name : list(new File(archiveDirectory))) {
+                if (!name.endsWith(ARCHIVE_SUFFIX) || name.compareTo(expired) >= 0) {
+                    continue;
+                }
+                if (!throttle.acquire(1)) {
+                    return;
+                }
+                File file = new File(archiveDirectory, name);
+                if (!file.delete()) {
+                    logger.warn("Failed to delete archive " + file);
+                }
+            }
+        }
+    }
+
+    private boolean retain(Resolution resolution, int retention, long now) {
+        if (retention <= 0) {
+            return true;
+        }
+        String expired = toDay(now, retention);
+        for (String day : rollups.getDays(resolution)) {
+            if (day.compareTo(expired) >= 0) {
+                break;
+            }
+            if (!throttle.acquire(1)) {
+                return false;
+            }
+            if (logger.isInfoEnabled()) {
+                logger.info("delete " + resolution.getName() + " rollups of " + day);
+            }
+            rollups.delete(day, resolution);
+        }
+        return true;
+    }
+
+    /**
+     * Wait for the budget of the files of a day, as counted by the last snapshot.
+     */
+    private boolean pace(String kind, String day) {
+        DiskUsage usage = this.usage;
+        long files = usage == null ? 1 : Math.max(1, usage.getFiles(kind, day));
+        return throttle.acquire((int) Math.min(Integer.MAX_VALUE, files));
+    }
+
+    /**
+     * Delete a directory tree one file at a time within the budget.
+     *
+     * @return false if interrupted
+     */
+    private boolean delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (!delete(child)) {
+                    return false;
+                }
+            }
+        } else if (!throttle.acquire(1)) {
+            return false;
+        }
+        if (file.exists() && !file.delete()) {
+            logger.warn("Failed to delete " + file);
+        }
+        return true;
+    }
+
+    private static String toDay(long now, int days) {
+        return DateUtils.toDay(now - (long) days * DateUtils.MINUTES_PER_DAY);
+    }
+
+    private static List<String> list(File dir) {
+        String[] names = dir.list();
+        if (names == null) {
+            return new ArrayList<String>();
+        }
+        Arrays.sort(names);
+        List<String> result = new ArrayList<String>();
+        for (String name : names) {
+            if (name.length() >= 8 && DateUtils.isDay(name.substring(0, 8))) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.retention;
+
+/**
+ * Throttle paces deletions to an average number of files per second. A call pays for the
+ * permits taken by the previous calls, so a large unit is deleted at once and followed by a
+ * correspondingly longer pause.
+ */
+class Throttle {
+
+    private final int rate;
+
+    // the time in nanoseconds before which no more permits are available
+    private long next;
+
+    /**
+     * @param rate the permits per second, 0 for no limit
+     */
+    Throttle(int rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * @return false if interrupted while waiting
+     */
+    synchronized boolean acquire(int permits) {
+        if (rate <= 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (next < now) {
+            next = now;
+        }
+        long wait = next - now;
+        next += permits * 1000000000L / rate;
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
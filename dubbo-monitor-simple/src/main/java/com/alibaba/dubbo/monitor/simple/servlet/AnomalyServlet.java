@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.servlet;
+
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.anomaly.Anomaly;
+import com.alibaba.dubbo.monitor.simple.anomaly.AnomalyDetector;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.fastjson.JSON;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AnomalyServlet returns the anomalies of the monitored series as JSON:
+ * <pre>
+ * /anomalies.json?since=millis
+ * </pre>
+ * Active holds the latest minute of every anomaly still going on, history the first minute of
+ * every anomaly found since the given time, by default the last hour. QPS values are invocations
+ * per second, latencies average elapsed milliseconds, failures failure ratios. On a cluster, the
+ * anomalies of every node are listed, series and maxSeries count the baselines of this node.
+ */
+public class AnomalyServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 2690415734012359821L;
+
+    private static final long DEFAULT_RANGE = 60 * DateUtils.MINUTE;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The monitor service is not started.");
+            return;
+        }
+        long since;
+        String value = request.getParameter("since");
+        if (value == null || value.length() == 0) {
+            since = System.currentTimeMillis() - DEFAULT_RANGE;
+        } else {
+            try {
+                since = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Illegal since " + value + ", expected a number.");
+                return;
+            }
+        }
+        AnomalyDetector detector = monitor.getAnomalyDetector();
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("series", detector.size());
+        result.put("maxSeries", detector.getMaxSeries());
+        result.put("active", toJson(monitor.getActiveAnomalies()));
+        result.put("history", toJson(monitor.getAnomalyHistory(DateUtils.toMinute(since))));
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.getWriter().write(JSON.toJSONString(result));
+        response.getWriter().flush();
+    }
+
+    private static List<Map<String, Object>> toJson(List<Anomaly> anomalies) {
+        List<Map<String, Object>> items = new ArrayList<Map<String, Object>>(anomalies.size());
+        for (Anomaly anomaly : anomalies) {
+            Series series = anomaly.getSeries();
+            Map<String, Object> item = new LinkedHashMap<String, Object>();
+            item.put("type", anomaly.getType().getName());
+            item.put("service", series.getService());
+            item.put("method", series.getMethod());
+            item.put("consumer", series.getConsumer());
+            item.put("provider", series.getProvider());
+            item.put("side", series.getSide());
+            item.put("time", anomaly.getMinute() * DateUtils.MINUTE);
+            item.put("value", anomaly.getValue());
+            item.put("expected", anomaly.getExpected());
+            item.put("yesterday", Double.isNaN(anomaly.getYesterday()) ? null : anomaly.getYesterday());
+            item.put("score", anomaly.getScore());
+            items.add(item);
+        }
+        return items;
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.servlet;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.chart.ChartRenderer;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * ChartServlet renders the chart of a method on request:
+ * <pre>
+ * /chart.png?service=...&method=...&date=yyyyMMdd&type=success|elapsed|percentile
+ * </pre>
+ */
+public class ChartServlet extends HttpServlet {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChartServlet.class);
+
+    private static final long serialVersionUID = 3316226785925137519L;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String service = request.getParameter("service");
+        String method = request.getParameter("method");
+        if (service == null || service.length() == 0 || method == null || method.length() == 0) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Please input service and method parameters.");
+            return;
+        }
+        String date = request.getParameter("date");
+        if (date == null || date.length() == 0) {
+            date = DateUtils.today();
+        } else if (!DateUtils.isDay(date)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Illegal date " + date + ", expected yyyyMMdd.");
+            return;
+        }
+        String type = request.getParameter("type");
+        if (type == null || type.length() == 0) {
+            type = MonitorService.SUCCESS;
+        } else if (!ChartRenderer.isSupported(type)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unsupported chart type " + type);
+            return;
+        }
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The monitor service is not started.");
+            return;
+        }
+        byte[] image;
+        try {
+            image = monitor.getChartCache().get(date, service, method, type);
+        } catch (IOException e) {
+            logger.warn(e.getMessage(), e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+            return;
+        }
+        response.setContentType("image/png");
+        response.setContentLength(image.length);
+        response.setHeader("Cache-Control", "no-cache");
+        OutputStream output = response.getOutputStream();
+        output.write(image);
+        output.flush();
+    }
+
+}
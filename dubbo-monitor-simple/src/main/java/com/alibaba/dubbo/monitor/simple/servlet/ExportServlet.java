@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.servlet;
+
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.query.StatisticsExport;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ExportServlet streams the minute statistics of a time range as a download:
+ * <pre>
+ * /export?format=csv&from=20180101&to=20180107&service=...&method=...&host=...&gzip=true
+ * </pre>
+ * Format is csv or ndjson and defaults to csv, from and to are days or milliseconds and default to
+ * today. The length is unknown when the response starts, so it is sent chunked.
+ * <p>
+ * On a cluster, only the statistics of this node are exported, unlike the queries: streaming
+ * every node's records through one node would hold them all in its memory. Each record is
+ * written by one node only, so the exports of all nodes together hold every record, though a
+ * service which moved between nodes is split across their exports.
+ */
+public class ExportServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 5102783910273645126L;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The monitor service is not started.");
+            return;
+        }
+        StatisticsExport export;
+        boolean gzip;
+        try {
+            String today = DateUtils.today();
+            export = new StatisticsExport(getParameter(request, "format", StatisticsExport.CSV),
+                    StatisticsExport.parseTime(getParameter(request, "from", today), false),
+                    StatisticsExport.parseTime(getParameter(request, "to", today), true));
+            export.setService(getParameter(request, "service", null));
+            export.setMethod(getParameter(request, "method", null));
+            export.setHost(getParameter(request, "host", null));
+            gzip = Boolean.parseBoolean(getParameter(request, "gzip", "false"));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        String filename = "statistics-" + DateUtils.toDay(export.getFrom()) + "-" + DateUtils.toDay(export.getTo())
+                + "." + export.getFormat() + (gzip ? ".gz" : "");
+        if (gzip) {
+            response.setContentType("application/gzip");
+        } else {
+            response.setContentType(StatisticsExport.CSV.equals(export.getFormat()) ? "text/csv" : "application/x-ndjson");
+            response.setCharacterEncoding("UTF-8");
+        }
+        response.setHeader("Content-Disposition", "attachment; filename=" + filename);
+        response.setHeader("Cache-Control", "no-cache");
+        OutputStream output = response.getOutputStream();
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(output, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip ? compressed : output, "UTF-8"), BUFFER_SIZE);
+        export.execute(monitor.getStatisticsStore(), writer);
+        if (compressed != null) {
+            compressed.finish();
+        }
+        output.flush();
+    }
+
+    private static String getParameter(HttpServletRequest request, String name, String defaultValue) {
+        String value = request.getParameter(name);
+        return value == null || value.length() == 0 ? defaultValue : value;
+    }
+
+}
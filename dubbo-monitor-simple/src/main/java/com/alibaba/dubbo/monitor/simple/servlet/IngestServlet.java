@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.servlet;
+
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.ingest.ShardMetrics;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyHistogram;
+import com.alibaba.fastjson.JSON;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IngestServlet returns the ingestion metrics of the monitor as JSON:
+ * <pre>
+ * /ingest.json
+ * </pre>
+ * Counters are totals since startup, write latencies are percentiles of the write loop durations
+ * in microseconds.
+ */
+public class IngestServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 4212364502718345215L;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The monitor service is not started.");
+            return;
+        }
+        List<Map<String, Object>> shards = new ArrayList<Map<String, Object>>();
+        long received = 0;
+        long dropped = 0;
+        long shed = 0;
+        long lag = 0;
+        for (ShardMetrics metrics : monitor.getShardMetrics()) {
+            Map<String, Object> shard = new LinkedHashMap<String, Object>();
+            shard.put("id", metrics.getId());
+            shard.put("queued", metrics.getQueueSize());
+            shard.put("capacity", metrics.getCapacity());
+            shard.put("lag", metrics.getLag());
+            shard.put("received", metrics.getReceived());
+            shard.put("accepted", metrics.getReceived() - metrics.getDropped());
+            shard.put("dropped", metrics.getDropped());
+            shard.put("shed", metrics.getShed());
+            shard.put("spilled", metrics.getSpilled());
+            shard.put("journal", metrics.getJournalSize());
+            shard.put("journalCapacity", metrics.getJournalCapacity());
+            shard.put("reports", metrics.getReports());
+            shard.put("records", metrics.getRecords());
+            shard.put("batches", metrics.getBatches());
+            shard.put("errors", metrics.getErrors());
+            shard.put("lastWrite", metrics.getLastWrite());
+            Map<String, Object> latency = new LinkedHashMap<String, Object>();
+            long[] percentiles = metrics.getWriteLatency();
+            for (int i = 0; i < percentiles.length; i++) {
+                latency.put(LatencyHistogram.PERCENTILE_NAMES[i], percentiles[i]);
+            }
+            latency.put("max", metrics.getMaxWriteLatency());
+            shard.put("writeLatency", latency);
+            shards.add(shard);
+            received += metrics.getReceived();
+            dropped += metrics.getDropped();
+            shed += metrics.getShed();
+            lag += metrics.getLag();
+        }
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("overload", monitor.getOverloadPolicy().getName());
+        result.put("sampleRate", monitor.getSampleRate());
+        result.put("received", received);
+        result.put("accepted", received - dropped);
+        result.put("dropped", dropped);
+        result.put("shed", shed);
+        result.put("lag", lag);
+        result.put("statisticsBytes", monitor.getStatisticsStore().getWrittenBytes());
+        result.put("latencyBytes", monitor.getLatencyStore().getWrittenBytes());
+        result.put("series", monitor.getSeriesDictionary().size());
+        result.put("seriesLimit", monitor.getSeriesDictionary().getLimit());
+        result.put("seriesOverflows", monitor.getSeriesDictionary().getOverflows());
+        result.put("shards", shards);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.getWriter().write(JSON.toJSONString(result));
+        response.getWriter().flush();
+    }
+
+}
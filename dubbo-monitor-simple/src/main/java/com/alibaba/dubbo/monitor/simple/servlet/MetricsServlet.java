@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.servlet;
+
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * MetricsServlet exposes the counters of every series, and the ingestion counters of the monitor,
+ * to Prometheus:
+ * <pre>
+ * /metrics
+ * </pre>
+ * Series are labelled by service, method and side, and also by consumer and provider if
+ * dubbo.monitor.metrics.hosts is true. See {@link MetricsWriter} for the families.
+ * <p>
+ * On a cluster, only the series and ingestion of this node are exposed, as Prometheus scrapes
+ * every node and sums them; a node fanning out would have the others counted twice.
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = -3819203547172041093L;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The monitor service is not started.");
+            return;
+        }
+        response.setContentType(MetricsWriter.CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-cache");
+        MetricsWriter writer = new MetricsWriter(response.getOutputStream(), BUFFER.get());
+        writer.writeSeries(monitor.getSeriesCounters(), DateUtils.toMinute(System.currentTimeMillis()));
+        writer.writeShards(monitor.getShardMetrics());
+        writer.writeCounter("statistics_written_bytes", "bytes written to the statistics store",
+                monitor.getStatisticsStore().getWrittenBytes());
+        writer.writeCounter("latency_written_bytes", "bytes written to the latency store",
+                monitor.getLatencyStore().getWrittenBytes());
+        writer.writeGauge("series_dictionary_size", "series in the series dictionary",
+                monitor.getSeriesDictionary().size());
+        writer.writeGauge("series_dictionary_limit", "series the series dictionary holds at most",
+                monitor.getSeriesDictionary().getLimit());
+        // to alert on: the new series are neither journaled nor counted per series while it is 1
+        writer.writeGauge("series_dictionary_full", "1 if the series dictionary is full, raise dubbo.monitor.series.max",
+                monitor.getSeriesDictionary().isFull() ? 1 : 0);
+        writer.writeCounter("series_dictionary_overflows", "series lookups that found the series dictionary full",
+                monitor.getSeriesDictionary().getOverflows());
+        writer.flush();
+    }
+
+}
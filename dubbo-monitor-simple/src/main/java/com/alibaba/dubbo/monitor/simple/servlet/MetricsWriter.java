@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.servlet;
+
+import com.alibaba.dubbo.monitor.simple.ingest.ShardMetrics;
+import com.alibaba.dubbo.monitor.simple.statistics.SeriesCounters;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * MetricsWriter writes the Prometheus text exposition format, version 0.0.4, through one byte
+ * buffer, so that a scrape allocates nothing per series. Names and labels are encoded once,
+ * numbers are written digit by digit. (NotThreadSafe)
+ */
+public class MetricsWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String PREFIX = "dubbo_monitor_";
+
+    // the counters exported since startup
+    private static final int[] TOTALS = {StatisticsTypes.SUCCESS, StatisticsTypes.FAILURE, StatisticsTypes.ELAPSED};
+
+    private static final byte[][] TOTAL_NAMES = new byte[StatisticsTypes.LENGTH][];
+
+    private static final byte[][] MINUTE_NAMES = new byte[StatisticsTypes.LENGTH][];
+
+    private static final String[] HELPS = {"successful invocations", "failed invocations",
+            "elapsed milliseconds of the successful invocations", "concurrent invocations",
+            "maximum elapsed milliseconds", "maximum concurrent invocations"};
+
+    static {
+        for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+            String name = PREFIX + StatisticsTypes.TYPES[i].replace('.', '_');
+            TOTAL_NAMES[i] = ascii(name + "_total");
+            MINUTE_NAMES[i] = ascii(name + "_minute");
+        }
+    }
+
+    private final OutputStream output;
+
+    private final byte[] buffer;
+
+    private int position;
+
+    // the totals, the counters of the last minute and the last minute of every series, copied once
+    // so that all the families of a scrape show the same records
+    private static final int WIDTH = StatisticsTypes.LENGTH * 2 + 1;
+
+    private final long[] totals = new long[StatisticsTypes.LENGTH];
+
+    private final long[] last = new long[StatisticsTypes.LENGTH];
+
+    private SeriesCounters.Entry[] entries = new SeriesCounters.Entry[0];
+
+    private long[] snapshot = new long[0];
+
+    public MetricsWriter(OutputStream output, byte[] buffer) {
+        this.output = output;
+        this.buffer = buffer;
+    }
+
+    private static byte[] ascii(String value) {
+        byte[] bytes = new byte[value.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) value.charAt(i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Write the counters since startup of every series, then the counters of their last closed
+     * minute. A series without a record in the minute before the given one reports 0 for it.
+     *
+     * @param minute the current minute, in minutes since the epoch
+     */
+    public void writeSeries(SeriesCounters counters, long minute) throws IOException {
+        int size = copy(counters);
+        for (int type : TOTALS) {
+            writeHeader(TOTAL_NAMES[type], HELPS[type] + " since startup", "counter");
+            for (int i = 0; i < size; i++) {
+                writeSample(TOTAL_NAMES[type], entries[i].getLabels(), snapshot[i * WIDTH + type]);
+            }
+        }
+        for (int type = 0; type < StatisticsTypes.LENGTH; type++) {
+            writeHeader(MINUTE_NAMES[type], HELPS[type] + " in the last closed minute", "gauge");
+            for (int i = 0; i < size; i++) {
+                int offset = i * WIDTH;
+                long last = snapshot[offset + WIDTH - 1];
+                writeSample(MINUTE_NAMES[type], entries[i].getLabels(),
+                        last >= minute - 2 ? snapshot[offset + StatisticsTypes.LENGTH + type] : 0);
+            }
+        }
+        writeGauge("series", "series exported", size);
+        writeCounter("series_dropped", "records not exported as their series is past the limit", counters.getDropped());
+    }
+
+    /**
+     * Copy the counters of every series into the snapshot, growing it as needed.
+     *
+     * @return the number of series copied
+     */
+    private int copy(SeriesCounters counters) {
+        int size = 0;
+        for (SeriesCounters.Entry entry : counters.getEntries()) {
+            if (size == entries.length) {
+                int length = Math.max(16, entries.length * 2);
+                SeriesCounters.Entry[] grown = new SeriesCounters.Entry[length];
+                System.arraycopy(entries, 0, grown, 0, size);
+                entries = grown;
+                long[] values = new long[length * WIDTH];
+                System.arraycopy(snapshot, 0, values, 0, size * WIDTH);
+                snapshot = values;
+            }
+            int offset = size * WIDTH;
+            long last = entry.copy(totals, this.last);
+            System.arraycopy(totals, 0, snapshot, offset, StatisticsTypes.LENGTH);
+            System.arraycopy(this.last, 0, snapshot, offset + StatisticsTypes.LENGTH, StatisticsTypes.LENGTH);
+            snapshot[offset + WIDTH - 1] = last;
+            entries[size++] = entry;
+        }
+        return size;
+    }
+
+    /**
+     * Write the ingestion counters of every shard.
+     */
+    public void writeShards(List<ShardMetrics> shards) throws IOException {
+        byte[][] labels = new byte[shards.size()][];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = ascii("shard=\"" + shards.get(i).getId() + "\"");
+        }
+        byte[] name = ascii(PREFIX + "ingest_received_total");
+        writeHeader(name, "reports received", "counter");
+        for (int i = 0; i < labels.length; i++) {
+            writeSample(name, labels[i], shards.get(i).getReceived());
+        }
+        name = ascii(PREFIX + "ingest_dropped_total");
+        writeHeader(name, "reports dropped on overload", "counter");
+        for (int i = 0; i < labels.length; i++) {
+            writeSample(name, labels[i], shards.get(i).getDropped());
+        }
+        name = ascii(PREFIX + "ingest_lag");
+        writeHeader(name, "samples waiting to be aggregated", "gauge");
+        for (int i = 0; i < labels.length; i++) {
+            writeSample(name, labels[i], shards.get(i).getLag());
+        }
+    }
+
+    public void writeGauge(String name, String help, long value) throws IOException {
+        byte[] bytes = ascii(PREFIX + name);
+        writeHeader(bytes, help, "gauge");
+        writeSample(bytes, null, value);
+    }
+
+    public void writeCounter(String name, String help, long value) throws IOException {
+        byte[] bytes = ascii(PREFIX + name + "_total");
+        writeHeader(bytes, help, "counter");
+        writeSample(bytes, null, value);
+    }
+
+    private void writeHeader(byte[] name, String help, String type) throws IOException {
+        write(ascii("# HELP "));
+        write(name);
+        write((byte) ' ');
+        write(ascii(help));
+        write((byte) '\n');
+        write(ascii("# TYPE "));
+        write(name);
+        write((byte) ' ');
+        write(ascii(type));
+        write((byte) '\n');
+    }
+
+    private void writeSample(byte[] name, byte[] labels, long value) throws IOException {
+        write(name);
+        if (labels != null) {
+            write((byte) '{');
+            write(labels);
+            write((byte) '}');
+        }
+        write((byte) ' ');
+        writeLong(value);
+        write((byte) '\n');
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                write(ascii(String.valueOf(value)));
+                return;
+            }
+            write((byte) '-');
+            value = -value;
+        }
+        if (buffer.length - position < 20) {
+            flushBuffer();
+        }
+        int start = position;
+        do {
+            buffer[position++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        for (int i = start, j = position - 1; i < j; i++, j--) {
+            byte b = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = b;
+        }
+    }
+
+    private void write(byte b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = b;
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - position) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                output.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            output.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        output.flush();
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.servlet;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.query.Downsampler;
+import com.alibaba.dubbo.monitor.simple.query.SeriesQuery;
+import com.alibaba.dubbo.monitor.simple.query.TimeSeries;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyHistogram;
+import com.alibaba.dubbo.monitor.simple.statistics.Resolution;
+import com.alibaba.fastjson.JSON;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * QueryServlet returns the statistics of a method as JSON:
+ * <pre>
+ * /query.json?service=...&method=...&metric=qps&from=millis&to=millis&points=300&mode=lttb
+ * </pre>
+ * Optional parameters are consumer, provider and side to restrict the series, side defaults to
+ * provider, as every invocation is reported by both sides, metric defaults to qps, the time range
+ * to the last hour, and mode to lttb. Resolution is minute, hour or day, and by default the
+ * coarsest one which still yields the wanted points over the range. Without points, every period
+ * of the resolution is returned.
+ * <p>
+ * The metrics p50, p90, p99 and p999 are estimates, as reports only carry the elapsed sum and
+ * maximum of each minute, see {@link LatencyHistogram#recordReport}. They are read from the minute
+ * latencies, which are not rolled up, so ranges starting before the minute retention
+ * (dubbo.statistics.retention.minute) are rejected.
+ * On a cluster, the records of every node are merged.
+ */
+public class QueryServlet extends HttpServlet {
+
+    private static final long serialVersionUID = -2571924183635720418L;
+
+    private static final long DEFAULT_RANGE = 60 * DateUtils.MINUTE;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The monitor service is not started.");
+            return;
+        }
+        SeriesQuery query;
+        int points;
+        String mode;
+        try {
+            String service = getRequiredParameter(request, "service");
+            String method = getRequiredParameter(request, "method");
+            String metric = getParameter(request, "metric", SeriesQuery.QPS);
+            long to = getLongParameter(request, "to", System.currentTimeMillis());
+            long from = getLongParameter(request, "from", to - DEFAULT_RANGE);
+            query = new SeriesQuery(service, method, metric, DateUtils.toMinute(from), DateUtils.toMinute(to));
+            query.setConsumer(getParameter(request, "consumer", null));
+            query.setProvider(getParameter(request, "provider", null));
+            String side = getParameter(request, "side", MonitorService.PROVIDER);
+            if (!MonitorService.CONSUMER.equals(side) && !MonitorService.PROVIDER.equals(side)) {
+                throw new IllegalArgumentException("Illegal side " + side + ", expected consumer or provider.");
+            }
+            query.setSide(side);
+            points = (int) getLongParameter(request, "points", 0);
+            String resolution = getParameter(request, "resolution", null);
+            if (resolution != null && !"auto".equals(resolution)) {
+                query.setResolution(Resolution.parse(resolution));
+                if (query.getResolution() == null) {
+                    throw new IllegalArgumentException("Illegal resolution " + resolution + ", expected minute, hour, day or auto.");
+                }
+            }
+            long horizon = monitor.getRetentionManager().getMinuteHorizon(DateUtils.toMinute(System.currentTimeMillis()));
+            if (query.isPercentile() && query.getFrom() < horizon) {
+                throw new IllegalArgumentException("Percentiles are only kept for the last "
+                        + monitor.getRetentionManager().getMinuteRetention() + " days, query from "
+                        + horizon * DateUtils.MINUTE + " on.");
+            }
+            mode = getParameter(request, "mode", Downsampler.LTTB);
+            if (!Downsampler.isSupported(mode)) {
+                throw new IllegalArgumentException("Unsupported downsampling mode " + mode);
+            }
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        TimeSeries series = monitor.query(query, points);
+        if (points > 0) {
+            series = Downsampler.downsample(series, points, mode);
+        }
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("service", query.getService());
+        result.put("method", query.getMethod());
+        result.put("metric", query.getMetric());
+        result.put("from", query.getFrom() * DateUtils.MINUTE);
+        result.put("to", query.getTo() * DateUtils.MINUTE);
+        result.put("resolution", series.getResolution().getName());
+        result.put("raw", series.getRawSize());
+        result.put("times", series.getTimes());
+        result.put("values", series.getValues());
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.getWriter().write(JSON.toJSONString(result));
+        response.getWriter().flush();
+    }
+
+    private static String getParameter(HttpServletRequest request, String name, String defaultValue) {
+        String value = request.getParameter(name);
+        return value == null || value.length() == 0 ? defaultValue : value;
+    }
+
+    private static String getRequiredParameter(HttpServletRequest request, String name) {
+        String value = request.getParameter(name);
+        if (value == null || value.length() == 0) {
+            throw new IllegalArgumentException("Please input " + name + " parameter.");
+        }
+        return value;
+    }
+
+    private static long getLongParameter(HttpServletRequest request, String name, long defaultValue) {
+        String value = request.getParameter(name);
+        if (value == null || value.length() == 0) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Illegal " + name + " " + value + ", expected a number.");
+        }
+    }
+
+}
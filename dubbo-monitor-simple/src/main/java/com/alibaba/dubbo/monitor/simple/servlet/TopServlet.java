@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.servlet;
+
+import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.statistics.HeavyHitters;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+import com.alibaba.dubbo.monitor.simple.statistics.TopMetric;
+import com.alibaba.fastjson.JSON;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * TopServlet returns the top methods of a metric over a rolling window as JSON, each side apart:
+ * <pre>
+ * /top.json?metric=qps&window=5m&size=10
+ * </pre>
+ * Metric is qps, failure, rt, max.elapsed or max.concurrent and defaults to qps, window is 5m, 1h
+ * or 1d and defaults to 5m. Weights are upper bounds, overestimated by at most their error.
+ * On a cluster, the top lists of every node are merged.
+ */
+public class TopServlet extends HttpServlet {
+
+    private static final long serialVersionUID = -6402381273420418523L;
+
+    private static final int DEFAULT_SIZE = 10;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        SimpleMonitorService monitor = SimpleMonitorService.getInstance();
+        if (monitor == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The monitor service is not started.");
+            return;
+        }
+        TopMetric metric;
+        HeavyHitters.Window window;
+        int size;
+        try {
+            String name = getParameter(request, "metric", TopMetric.QPS.getName());
+            metric = TopMetric.parse(name);
+            if (metric == null) {
+                throw new IllegalArgumentException("Unsupported metric " + name
+                        + ", expected qps, failure, rt, max.elapsed or max.concurrent.");
+            }
+            name = getParameter(request, "window", HeavyHitters.Window.FIVE_MINUTES.getName());
+            window = HeavyHitters.Window.parse(name);
+            if (window == null) {
+                throw new IllegalArgumentException("Illegal window " + name + ", expected 5m, 1h or 1d.");
+            }
+            String value = getParameter(request, "size", String.valueOf(DEFAULT_SIZE));
+            try {
+                size = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Illegal size " + value + ", expected a number.");
+            }
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        HeavyHitters heavyHitters = monitor.getHeavyHitters();
+        List<Map<String, Object>> top = new ArrayList<Map<String, Object>>();
+        for (HeavyHitters.Entry entry : monitor.getTop(window, metric, size)) {
+            Series series = entry.getSeries();
+            Map<String, Object> item = new LinkedHashMap<String, Object>();
+            item.put("service", series.getService());
+            item.put("method", series.getMethod());
+            item.put("side", series.getSide());
+            item.put("value", entry.getValue());
+            item.put("weight", entry.getWeight());
+            item.put("error", entry.getError());
+            for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+                item.put(StatisticsTypes.TYPES[i], entry.getValues()[i]);
+            }
+            top.add(item);
+        }
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        result.put("metric", metric.getName());
+        result.put("window", window.getName());
+        result.put("capacity", heavyHitters.getCapacity());
+        result.put("top", top);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.getWriter().write(JSON.toJSONString(result));
+        response.getWriter().flush();
+    }
+
+    private static String getParameter(HttpServletRequest request, String name, String defaultValue) {
+        String value = request.getParameter(name);
+        return value == null || value.length() == 0 ? defaultValue : value;
+    }
+
+}
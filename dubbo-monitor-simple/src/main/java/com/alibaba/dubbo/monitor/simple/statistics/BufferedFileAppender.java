@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * BufferedFileAppender. (NotThreadSafe)
+ * <p>
+ * Keeps a bounded, least recently used set of files open in append mode, each with its own
+ * write buffer. Buffers are written out when the total pending bytes exceed the flush size,
+ * when the flush interval has elapsed, or when the file is evicted from the open set. Bytes that
+ * failed to be written stay pending in their buffer, and their file stays open, until a later
+ * flush writes them.
+ */
+public class BufferedFileAppender {
+
+    private static final Logger logger = LoggerFactory.getLogger(BufferedFileAppender.class);
+
+    private final int maxOpenFiles;
+
+    private final int bufferSize;
+
+    private final int flushSize;
+
+    private final long flushInterval;
+
+    private final Map<String, Appender> appenders;
+
+    private int pendingBytes;
+
+    private long lastFlush = System.currentTimeMillis();
+
+    private long writtenBytes;
+
+    private long openedFiles;
+
+    public BufferedFileAppender(int maxOpenFiles, int bufferSize, int flushSize, long flushInterval) {
+        if (maxOpenFiles <= 0) {
+            throw new IllegalArgumentException("maxOpenFiles must be positive: " + maxOpenFiles);
+        }
+        this.maxOpenFiles = maxOpenFiles;
+        this.bufferSize = bufferSize;
+        this.flushSize = flushSize;
+        this.flushInterval = flushInterval;
+        this.appenders = new LinkedHashMap<String, Appender>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Appender> eldest) {
+                // a file failing to be written stays open, over the limit, so as not to lose its buffer
+                return size() > BufferedFileAppender.this.maxOpenFiles && close(eldest.getValue());
+            }
+        };
+    }
+
+    public void append(String filename, byte[] data) throws IOException {
+        Appender appender = appenders.get(filename);
+        if (appender == null) {
+            appender = open(filename);
+            appenders.put(filename, appender);
+        }
+        appender.write(data);
+        pendingBytes += data.length;
+        if (pendingBytes >= flushSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Flush all pending buffers if the flush interval has elapsed since the last flush.
+     *
+     * @return true if nothing is pending anymore
+     */
+    public boolean flushIfNecessary() {
+        if (pendingBytes > 0 && System.currentTimeMillis() - lastFlush >= flushInterval) {
+            flush();
+        }
+        return pendingBytes == 0;
+    }
+
+    public void flush() {
+        int pending = 0;
+        for (Appender appender : appenders.values()) {
+            try {
+                appender.flush();
+            } catch (IOException e) {
+                logger.warn("Failed to flush statistics file " + appender.file + ", cause: " + e.getMessage(), e);
+            }
+            pending += appender.buffer.position();
+        }
+        pendingBytes = pending;
+        lastFlush = System.currentTimeMillis();
+    }
+
+    /**
+     * Flush and close every file, but those failing to be written, which stay open and pending.
+     */
+    public void close() {
+        int pending = 0;
+        for (Iterator<Appender> iterator = appenders.values().iterator(); iterator.hasNext(); ) {
+            Appender appender = iterator.next();
+            if (close(appender)) {
+                iterator.remove();
+            } else {
+                pending += appender.buffer.position();
+            }
+        }
+        pendingBytes = pending;
+    }
+
+    /**
+     * @return the bytes appended but not written yet
+     */
+    public int getPendingBytes() {
+        return pendingBytes;
+    }
+
+    public int getOpenFiles() {
+        return appenders.size();
+    }
+
+    public long getOpenedFiles() {
+        return openedFiles;
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    private Appender open(String filename) throws IOException {
+        File file = new File(filename);
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        openedFiles++;
+        return new Appender(file, new FileOutputStream(file, true).getChannel(), bufferSize);
+    }
+
+    /**
+     * @return false if the buffer failed to be written, and the file is left open
+     */
+    private boolean close(Appender appender) {
+        try {
+            appender.flush();
+        } catch (IOException e) {
+            logger.warn("Failed to flush statistics file " + appender.file + ", cause: " + e.getMessage(), e);
+            return false;
+        }
+        try {
+            appender.channel.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close statistics file " + appender.file + ", cause: " + e.getMessage(), e);
+        }
+        return true;
+    }
+
+    private class Appender {
+
+        private final File file;
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer;
+
+        Appender(File file, FileChannel channel, int bufferSize) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(bufferSize);
+        }
+
+        void write(byte[] data) throws IOException {
+            if (data.length > buffer.remaining()) {
+                flush();
+                if (data.length > buffer.capacity()) {
+                    writeFully(ByteBuffer.wrap(data));
+                    return;
+                }
+            }
+            buffer.put(data);
+        }
+
+        void flush() throws IOException {
+            if (buffer.position() > 0) {
+                buffer.flip();
+                try {
+                    writeFully(buffer);
+                } finally {
+                    // keep what was not written at the start of the buffer, to be retried
+                    buffer.compact();
+                }
+            }
+        }
+
+        private void writeFully(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                writtenBytes += channel.write(data);
+            }
+        }
+    }
+
+}
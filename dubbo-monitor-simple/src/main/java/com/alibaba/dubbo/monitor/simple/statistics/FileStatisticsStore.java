@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * FileStatisticsStore keeps one text file of "HHmm value" lines per series and statistics type:
+ * <pre>
+ * ${dubbo.statistics.directory}/day/service/method/consumer/provider/side.type
+ * </pre>
+ */
+public class FileStatisticsStore implements StatisticsStore {
+
+    public static final String NAME = "file";
+
+    private static final Logger logger = LoggerFactory.getLogger(FileStatisticsStore.class);
+
+    private static final String[] SIDES = {MonitorService.CONSUMER, MonitorService.PROVIDER};
+
+    private static final ThreadLocal<StatisticsScanner> SCANNER = new ThreadLocal<StatisticsScanner>() {
+        @Override
+        protected StatisticsScanner initialValue() {
+            return new StatisticsScanner();
+        }
+    };
+
+    private final String directory;
+
+    // the series are partitioned across stripes the way the monitor partitions them across its
+    // shards, and each file belongs to one series, so shard writers append without contending
+    private final Stripe[] stripes;
+
+    public FileStatisticsStore() {
+        directory = ConfigUtils.getProperty("dubbo.statistics.directory", "statistics");
+        int count = Math.max(1, Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.shards",
+                String.valueOf(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2))))));
+        int openFiles = Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.open.files", "256"));
+        int bufferSize = Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.buffer.size", "4096"));
+        int flushSize = Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.flush.size", "262144"));
+        long flushInterval = Long.parseLong(ConfigUtils.getProperty("dubbo.monitor.flush.interval", "1000"));
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(new BufferedFileAppender(Math.max(1, openFiles / count), bufferSize,
+                    Math.max(1, flushSize / count), flushInterval));
+        }
+    }
+
+    public void append(long minute, Series series, long[] values) {
+        stripes[stripeOf(series)].append(minute, series, values);
+    }
+
+    private int stripeOf(Series series) {
+        if (stripes.length == 1) {
+            return 0;
+        }
+        int hash = series.hashCode();
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % stripes.length;
+    }
+
+    public boolean flush() {
+        boolean flushed = true;
+        for (Stripe stripe : stripes) {
+            flushed &= stripe.flush();
+        }
+        return flushed;
+    }
+
+    public void close() {
+        for (Stripe stripe : stripes) {
+            stripe.close();
+        }
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public long getWrittenBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.getWrittenBytes();
+        }
+        return bytes;
+    }
+
+    public List<String> getDays() {
+        List<String> days = new ArrayList<String>();
+        for (String day : list(new File(directory))) {
+            if (DateUtils.isDay(day)) {
+                days.add(day);
+            }
+        }
+        return days;
+    }
+
+    public List<String> getServices(String day) {
+        return list(new File(directory + "/" + day));
+    }
+
+    public List<String> getMethods(String day, String service) {
+        return list(new File(directory + "/" + day + "/" + service));
+    }
+
+    public long getLastModified(String day, String service, String method) {
+        long modified = 0;
+        File methodDir = new File(directory + "/" + day + "/" + service + "/" + method);
+        for (String consumer : list(methodDir)) {
+            File consumerDir = new File(methodDir, consumer);
+            for (String provider : list(consumerDir)) {
+                File[] files = new File(consumerDir, provider).listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        modified = Math.max(modified, file.lastModified());
+                    }
+                }
+            }
+        }
+        return modified;
+    }
+
+    public void scan(String day, String service, String method, StatisticsListener listener) {
+        scan(day, service, method, null, listener);
+    }
+
+    public void scan(String day, String service, String method, StatisticsCursor cursor, StatisticsListener listener) {
+        long start = DateUtils.toMinute(day);
+        File methodDir = new File(directory + "/" + day + "/" + service + "/" + method);
+        for (String consumer : list(methodDir)) {
+            File consumerDir = new File(methodDir, consumer);
+            for (String provider : list(consumerDir)) {
+                File providerDir = new File(consumerDir, provider);
+                for (String side : SIDES) {
+                    Map<Integer, long[]> minutes = new TreeMap<Integer, long[]>();
+                    for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+                        read(new File(providerDir, side + "." + StatisticsTypes.TYPES[i]), i, minutes, cursor);
+                    }
+                    if (!minutes.isEmpty()) {
+                        Series series = new Series(service, method, consumer, provider, side);
+                        for (Map.Entry<Integer, long[]> entry : minutes.entrySet()) {
+                            listener.onStatistics(start + entry.getKey(), series, entry.getValue());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public void delete(String day) {
+        delete(new File(directory, day));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            logger.warn("Failed to delete statistics file " + file);
+        }
+    }
+
+    /**
+     * Read the complete lines after the cursor offset of the file, and advance the cursor past them.
+     */
+    private void read(File file, final int type, final Map<Integer, long[]> minutes, StatisticsCursor cursor) {
+        String source = file.getPath();
+        long offset = cursor == null ? 0 : cursor.getOffset(source);
+        long consumed;
+        try {
+            consumed = SCANNER.get().scan(file, offset, new StatisticsScanner.RecordVisitor() {
+                public void onRecord(int minute, long value) {
+                    long[] values = minutes.get(minute);
+                    if (values == null) {
+                        values = new long[StatisticsTypes.LENGTH];
+                        minutes.put(minute, values);
+                    }
+                    if (StatisticsTypes.isMax(type)) {
+                        values[type] = Math.max(values[type], value);
+                    } else {
+                        values[type] += value;
+                    }
+                }
+            });
+        } catch (IOException e) {
+            logger.warn(e.getMessage(), e);
+            return;
+        }
+        if (cursor != null) {
+            cursor.setOffset(source, consumed);
+        }
+    }
+
+    private static List<String> list(File dir) {
+        String[] names = dir.list();
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(names);
+        return Arrays.asList(names);
+    }
+
+    /**
+     * Stripe writes the files of a partition of the series, with its own open files and buffers.
+     */
+    private class Stripe {
+
+        private final BufferedFileAppender appender;
+
+        private final StringBuilder line = new StringBuilder();
+
+        // the file prefixes of the series written on the current day, reset when the day changes
+        private final Map<Series, String> prefixes = new HashMap<Series, String>();
+
+        private long minute = -1;
+
+        private String day;
+
+        Stripe(BufferedFileAppender appender) {
+            this.appender = appender;
+        }
+
+        synchronized void append(long minute, Series series, long[] values) {
+            String prefix = getPrefix(minute, series);
+            String time = DateUtils.toTime(minute);
+            for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+                line.setLength(0);
+                line.append(time).append(' ').append(values[i]).append('\n');
+                try {
+                    appender.append(prefix + StatisticsTypes.TYPES[i], line.toString().getBytes());
+                } catch (IOException e) {
+                    logger.error("Failed to write statistics " + series + ", cause: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        private String getPrefix(long minute, Series series) {
+            if (minute != this.minute) {
+                String day = DateUtils.toDay(minute);
+                if (!day.equals(this.day)) {
+                    prefixes.clear();
+                    this.day = day;
+                }
+                this.minute = minute;
+            }
+            String prefix = prefixes.get(series);
+            if (prefix == null) {
+                prefix = directory
+                        + "/" + this.day
+                        + "/" + series.getService()
+                        + "/" + series.getMethod()
+                        + "/" + series.getConsumer()
+                        + "/" + series.getProvider()
+                        + "/" + series.getSide() + ".";
+                prefixes.put(series, prefix);
+            }
+            return prefix;
+        }
+
+        synchronized boolean flush() {
+            return appender.flushIfNecessary();
+        }
+
+        synchronized void close() {
+            appender.close();
+        }
+
+        synchronized long getWrittenBytes() {
+            return appender.getWrittenBytes();
+        }
+
+    }
+
+}
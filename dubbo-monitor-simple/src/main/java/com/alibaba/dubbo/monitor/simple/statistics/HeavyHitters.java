@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HeavyHitters keeps the top methods of every {@link TopMetric} over rolling windows, in a fixed
+ * number of counters however many methods exist. It is fed by the statistics writer threads with
+ * every closed minute, so the windows lag by the aggregation delay. (ThreadSafe)
+ * <p>
+ * The records of a method are counted together whichever consumer and provider they come from,
+ * each side apart, so a method whose load is spread over many hosts ranks as a whole. A window is
+ * a ring of buckets, each holding one {@link TopKSketch} per metric, and a query merges the
+ * buckets of the window. A method is thus only missed if it is light in every bucket.
+ * <p>
+ * Methods are split by hash into stripes, each with its own windows and lock, so that the writer
+ * threads seldom wait for each other. A method is always counted in the same stripe, so a query
+ * merges the stripes as they are.
+ */
+public class HeavyHitters implements StatisticsListener {
+
+    private final int capacity;
+
+    private final Stripe[] stripes;
+
+    /**
+     * @param capacity the number of counters of each metric in each bucket
+     */
+    public HeavyHitters(int capacity) {
+        this(capacity, 1);
+    }
+
+    /**
+     * @param capacity the number of counters of each metric in each bucket of each stripe
+     * @param stripes  the number of stripes, usually the number of writer threads
+     */
+    public HeavyHitters(int capacity, int stripes) {
+        this.capacity = capacity;
+        this.stripes = new Stripe[Math.max(1, stripes)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void onStatistics(long minute, Series series, long[] values) {
+        Series method = new Series(series.getService(), series.getMethod(), Constants.ANY_VALUE,
+                Constants.ANY_VALUE, series.getSide());
+        int hash = method.hashCode();
+        hash ^= hash >>> 16;
+        stripes[(hash & Integer.MAX_VALUE) % stripes.length].add(minute, method, values);
+    }
+
+    /**
+     * @param now the current time in milliseconds, the window ends at its minute, exclusive
+     * @param n   the number of methods wanted
+     * @return the top methods of the metric over the window, ranked by the value of the metric,
+     * each as a series with * for the consumer and the provider
+     */
+    public List<Entry> getTop(Window window, final TopMetric metric, int n, long now) {
+        long end = DateUtils.toMinute(now);
+        long from = end - window.minutes;
+        Map<Series, Entry> merged = new HashMap<Series, Entry>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Bucket bucket : stripe.windows.get(window)) {
+                    if (bucket.start < 0 || bucket.start + window.bucketMinutes <= from || bucket.start >= end) {
+                        continue;
+                    }
+                    for (TopKSketch.Counter counter : bucket.sketches[metric.ordinal()].getCounters()) {
+                        add(merged, metric, counter.getSeries(), counter.getWeight(), counter.getError(),
+                                counter.getValues());
+                    }
+                }
+            }
+        }
+        return rank(merged, window, metric, n);
+    }
+
+    /**
+     * Merge the top lists of several monitor nodes, as a series found on several is kept in each.
+     *
+     * @param n the number of series wanted
+     */
+    public static List<Entry> merge(List<Entry> entries, Window window, TopMetric metric, int n) {
+        Map<Series, Entry> merged = new HashMap<Series, Entry>();
+        for (Entry entry : entries) {
+            add(merged, metric, entry.series, entry.weight, entry.error, entry.values);
+        }
+        return rank(merged, window, metric, n);
+    }
+
+    private static void add(Map<Series, Entry> merged, TopMetric metric, Series series, long weight, long error,
+                            long[] values) {
+        Entry entry = merged.get(series);
+        if (entry == null) {
+            entry = new Entry(series);
+            merged.put(series, entry);
+        }
+        if (metric.isMax()) {
+            entry.weight = Math.max(entry.weight, weight);
+        } else {
+            entry.weight += weight;
+            entry.error += error;
+        }
+        StatisticsTypes.merge(entry.values, values);
+    }
+
+    private static List<Entry> rank(Map<Series, Entry> merged, Window window, final TopMetric metric, int n) {
+        List<Entry> entries = new ArrayList<Entry>(merged.values());
+        for (Entry entry : entries) {
+            entry.value = metric.valueOf(entry.values, window.minutes);
+        }
+        Collections.sort(entries, new Comparator<Entry>() {
+            public int compare(Entry a, Entry b) {
+                if (a.value != b.value) {
+                    return a.value > b.value ? -1 : 1;
+                }
+                return a.weight > b.weight ? -1 : (a.weight == b.weight ? 0 : 1);
+            }
+        });
+        return entries.size() > n ? new ArrayList<Entry>(entries.subList(0, n)) : entries;
+    }
+
+    /**
+     * Rolling window, split in buckets.
+     */
+    public enum Window {
+
+        FIVE_MINUTES("5m", 5, 1), HOUR("1h", 60, 5), DAY("1d", DateUtils.MINUTES_PER_DAY, 60);
+
+        private final String name;
+
+        private final int minutes;
+
+        private final int bucketMinutes;
+
+        Window(String name, int minutes, int bucketMinutes) {
+            this.name = name;
+            this.minutes = minutes;
+            this.bucketMinutes = bucketMinutes;
+        }
+
+        /**
+         * @return the window of the given name, or null if unknown
+         */
+        public static Window parse(String name) {
+            for (Window window : values()) {
+                if (window.name.equals(name)) {
+                    return window;
+                }
+            }
+            return null;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMinutes() {
+            return minutes;
+        }
+
+        public int getBucketMinutes() {
+            return bucketMinutes;
+        }
+    }
+
+    /**
+     * Entry holds one method of a top list.
+     */
+    public static class Entry {
+
+        public static final String PROTOCOL = "top";
+
+        private static final String WEIGHT = "weight";
+
+        private static final String ERROR = "error";
+
+        private final Series series;
+
+        private final long[] values = new long[StatisticsTypes.LENGTH];
+
+        private long weight;
+
+        private long error;
+
+        private double value;
+
+        Entry(Series series) {
+            this.series = series;
+        }
+
+        public Series getSeries() {
+            return series;
+        }
+
+        /**
+         * @return the value of the metric over the window
+         */
+        public double getValue() {
+            return value;
+        }
+
+        /**
+         * @return an upper bound of the weight the series was kept by
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        /**
+         * @return the maximum overestimation of the weight
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * @return the counters of the series while it was kept, indexed by {@link StatisticsTypes}
+         */
+        public long[] getValues() {
+            return values;
+        }
+
+        /**
+         * @return the entry as "top://provider/service?method=...&consumer=...&side=...&weight=...&success=...",
+         * to be sent to another monitor node
+         */
+        public URL toURL() {
+            Map<String, String> parameters = new HashMap<String, String>();
+            parameters.put(MonitorService.METHOD, series.getMethod());
+            parameters.put(MonitorService.CONSUMER, series.getConsumer());
+            parameters.put(Constants.SIDE_KEY, series.getSide());
+            parameters.put(WEIGHT, String.valueOf(weight));
+            parameters.put(ERROR, String.valueOf(error));
+            for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+                parameters.put(StatisticsTypes.TYPES[i], String.valueOf(values[i]));
+            }
+            return new URL(PROTOCOL, series.getProvider(), 0, series.getService(), parameters);
+        }
+
+        /**
+         * @throws IllegalArgumentException if the URL is not a top list entry
+         */
+        public static Entry valueOf(URL url) {
+            if (!PROTOCOL.equals(url.getProtocol())) {
+                throw new IllegalArgumentException("Illegal top list entry " + url);
+            }
+            Entry entry = new Entry(new Series(url.getPath(), url.getParameter(MonitorService.METHOD),
+                    url.getParameter(MonitorService.CONSUMER), url.getHost(), url.getParameter(Constants.SIDE_KEY)));
+            entry.weight = url.getParameter(WEIGHT, 0L);
+            entry.error = url.getParameter(ERROR, 0L);
+            for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+                entry.values[i] = url.getParameter(StatisticsTypes.TYPES[i], 0L);
+            }
+            return entry;
+        }
+    }
+
+    private class Stripe {
+
+        private final Map<Window, Bucket[]> windows = new HashMap<Window, Bucket[]>();
+
+        Stripe() {
+            for (Window window : Window.values()) {
+                Bucket[] buckets = new Bucket[window.minutes / window.bucketMinutes];
+                for (int i = 0; i < buckets.length; i++) {
+                    buckets[i] = new Bucket();
+                }
+                windows.put(window, buckets);
+            }
+        }
+
+        synchronized void add(long minute, Series series, long[] values) {
+            for (Map.Entry<Window, Bucket[]> entry : windows.entrySet()) {
+                int bucketMinutes = entry.getKey().bucketMinutes;
+                Bucket[] buckets = entry.getValue();
+                long start = minute / bucketMinutes * bucketMinutes;
+                Bucket bucket = buckets[(int) (minute / bucketMinutes % buckets.length)];
+                if (bucket.start > start) {
+                    continue;
+                }
+                if (bucket.start < start) {
+                    bucket.clear(start);
+                }
+                for (TopKSketch sketch : bucket.sketches) {
+                    sketch.add(series, values);
+                }
+            }
+        }
+    }
+
+    private class Bucket {
+
+        private final TopKSketch[] sketches = new TopKSketch[TopMetric.values().length];
+
+        private long start = -1;
+
+        Bucket() {
+            for (TopMetric metric : TopMetric.values()) {
+                sketches[metric.ordinal()] = new TopKSketch(capacity, metric.getIndex());
+            }
+        }
+
+        void clear(long start) {
+            for (TopKSketch sketch : sketches) {
+                sketch.clear();
+            }
+            this.start = start;
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * LatencyAggregator. (NotThreadSafe)
+ * <p>
+ * Like {@link StatisticsAggregator}, merges the latencies of all reports of the same series within
+ * the same minute into one histogram before they are persisted.
+ */
+public class LatencyAggregator {
+
+    private final TreeMap<Long, Map<Series, LatencyHistogram>> minutes = new TreeMap<Long, Map<Series, LatencyHistogram>>();
+
+    /**
+     * @param values the counters of one report, indexed by {@link StatisticsTypes}
+     */
+    public void add(long minute, Series series, long[] values) {
+        long count = values[StatisticsTypes.SUCCESS] + values[StatisticsTypes.FAILURE];
+        if (count <= 0) {
+            return;
+        }
+        Map<Series, LatencyHistogram> histograms = minutes.get(minute);
+        if (histograms == null) {
+            histograms = new HashMap<Series, LatencyHistogram>();
+            minutes.put(minute, histograms);
+        }
+        LatencyHistogram histogram = histograms.get(series);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            histograms.put(series, histogram);
+        }
+        histogram.recordReport(count, values[StatisticsTypes.ELAPSED], values[StatisticsTypes.MAX_ELAPSED]);
+    }
+
+    /**
+     * Emit and remove every minute before the given one.
+     *
+     * @param before minutes since the epoch, exclusive
+     * @return the number of emitted histograms
+     */
+    public int flush(long before, LatencyListener listener) {
+        int count = 0;
+        for (Iterator<Map.Entry<Long, Map<Series, LatencyHistogram>>> iterator = minutes.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Long, Map<Series, LatencyHistogram>> entry = iterator.next();
+            if (entry.getKey() >= before) {
+                break;
+            }
+            for (Map.Entry<Series, LatencyHistogram> histogram : entry.getValue().entrySet()) {
+                listener.onLatency(entry.getKey(), histogram.getKey(), histogram.getValue());
+                count++;
+            }
+            iterator.remove();
+        }
+        return count;
+    }
+
+}
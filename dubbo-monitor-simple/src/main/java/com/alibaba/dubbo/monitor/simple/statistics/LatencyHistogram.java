@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import java.util.Arrays;
+
+/**
+ * LatencyHistogram counts latencies in logarithmic buckets, 16 linear sub-buckets per power of
+ * two, so any recorded value is reproduced within about 3%. (NotThreadSafe)
+ * <p>
+ * Only the buckets in use are held, at most {@link #BUCKETS}, which keeps histograms of sparse
+ * minutes small and lets histograms be merged across series and time without loss.
+ * <p>
+ * Reports only carry the elapsed sum and maximum of each minute, so histograms built with
+ * {@link #recordReport} hold estimates, and so do their percentiles, which are labelled as such.
+ */
+public class LatencyHistogram {
+
+    public static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    public static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    public static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+    private int[] indexes;
+
+    private long[] counts;
+
+    private int size;
+
+    private long totalCount;
+
+    private long max;
+
+    public LatencyHistogram() {
+        this(4);
+    }
+
+    private LatencyHistogram(int capacity) {
+        indexes = new int[capacity];
+        counts = new long[capacity];
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        value = Math.min(value, MAX_VALUE);
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the middle value of the bucket
+     */
+    static long valueOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) - 1) / 2;
+    }
+
+    /**
+     * Record the per-minute report of a series: the elapsed sum of count invocations, one of
+     * which took max. The report is approximated as the max and count - 1 invocations at the
+     * mean of the others, which preserves both the sum and the maximum.
+     */
+    public void recordReport(long count, long elapsed, long max) {
+        if (count <= 0) {
+            return;
+        }
+        if (count > 1 && max > 0 && max * count > elapsed && max <= elapsed) {
+            record(max, 1);
+            record((elapsed - max) / (count - 1), count - 1);
+        } else {
+            record(elapsed / count, count);
+        }
+    }
+
+    public void record(long value, long count) {
+        if (count <= 0) {
+            return;
+        }
+        add(indexOf(value), count);
+        totalCount += count;
+        max = Math.max(max, value);
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.indexes[i], other.counts[i]);
+        }
+        totalCount += other.totalCount;
+        max = Math.max(max, other.max);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @param percentile 0 to 100
+     * @return the latency at the given percentile, 0 if empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long count = 0;
+        for (int i = 0; i < size; i++) {
+            count += counts[i];
+            if (count >= target) {
+                // the highest bucket holds the exact maximum
+                return i == size - 1 ? max : Math.min(valueOf(indexes[i]), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the values at {@link #PERCENTILES}
+     */
+    public long[] getPercentiles() {
+        long[] values = new long[PERCENTILES.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getValueAtPercentile(PERCENTILES[i]);
+        }
+        return values;
+    }
+
+    /**
+     * @return "max;index:count,index:count..."
+     */
+    public String encode() {
+        StringBuilder builder = new StringBuilder(16 + size * 8);
+        builder.append(max).append(';');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(indexes[i]).append(':').append(counts[i]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is malformed
+     */
+    public static LatencyHistogram decode(String value) {
+        int i = value.indexOf(';');
+        if (i < 0) {
+            throw new IllegalArgumentException("Malformed latency histogram " + value);
+        }
+        try {
+            String[] buckets = i + 1 < value.length() ? value.substring(i + 1).split(",") : new String[0];
+            LatencyHistogram histogram = new LatencyHistogram(Math.max(1, buckets.length));
+            for (String bucket : buckets) {
+                int j = bucket.indexOf(':');
+                int index = Integer.parseInt(bucket.substring(0, j));
+                long count = Long.parseLong(bucket.substring(j + 1));
+                if (index < 0 || index >= BUCKETS || count <= 0) {
+                    throw new IllegalArgumentException("Malformed latency histogram " + value);
+                }
+                histogram.add(index, count);
+                histogram.totalCount += count;
+            }
+            histogram.max = Long.parseLong(value.substring(0, i));
+            return histogram;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed latency histogram " + value, e);
+        }
+    }
+
+    private void add(int index, long count) {
+        int i = Arrays.binarySearch(indexes, 0, size, index);
+        if (i >= 0) {
+            counts[i] += count;
+            return;
+        }
+        i = -i - 1;
+        if (size == indexes.length) {
+            int capacity = Math.min(BUCKETS, size * 2);
+            indexes = Arrays.copyOf(indexes, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        System.arraycopy(indexes, i, indexes, i + 1, size - i);
+        System.arraycopy(counts, i, counts, i + 1, size - i);
+        indexes[i] = index;
+        counts[i] = count;
+        size++;
+    }
+
+}
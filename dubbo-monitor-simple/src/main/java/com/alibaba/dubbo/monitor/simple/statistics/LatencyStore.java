@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LatencyStore persists the per-minute latency histograms of every series, one text file per
+ * day and service:
+ * <pre>
+ * ${dubbo.latency.directory}/day/service.latency    method \t consumer \t provider \t side \t HHmm \t histogram
+ * </pre>
+ * Appends come from the statistics writer threads, reads may come from any thread and only
+ * observe flushed, complete lines.
+ */
+public class LatencyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(LatencyStore.class);
+
+    public static final String SUFFIX = ".latency";
+
+    private final String directory;
+
+    // the services are partitioned across stripes, each file belongs to one service, so shard
+    // writers only contend when their series share a stripe
+    private final Stripe[] stripes;
+
+    public LatencyStore() {
+        directory = ConfigUtils.getProperty("dubbo.latency.directory",
+                ConfigUtils.getProperty("dubbo.statistics.directory", "statistics") + "/latency");
+        int count = Math.max(1, Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.shards",
+                String.valueOf(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2))))));
+        int openFiles = Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.open.files", "256"));
+        int bufferSize = Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.buffer.size", "4096"));
+        int flushSize = Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.flush.size", "262144"));
+        long flushInterval = Long.parseLong(ConfigUtils.getProperty("dubbo.monitor.flush.interval", "1000"));
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(new BufferedFileAppender(Math.max(1, openFiles / count), bufferSize,
+                    Math.max(1, flushSize / count), flushInterval));
+        }
+    }
+
+    public void append(long minute, Series series, LatencyHistogram histogram) {
+        stripes[(series.getService().hashCode() & Integer.MAX_VALUE) % stripes.length].append(minute, series, histogram);
+    }
+
+    /**
+     * @return true if everything appended so far is visible to readers
+     */
+    public boolean flush() {
+        boolean flushed = true;
+        for (Stripe stripe : stripes) {
+            flushed &= stripe.flush();
+        }
+        return flushed;
+    }
+
+    public void close() {
+        for (Stripe stripe : stripes) {
+            stripe.close();
+        }
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the bytes written to disk since startup
+     */
+    public long getWrittenBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.getWrittenBytes();
+        }
+        return bytes;
+    }
+
+    public List<String> getDays() {
+        List<String> days = new ArrayList<String>();
+        String[] names = new File(directory).list();
+        if (names != null) {
+            Arrays.sort(names);
+            for (String name : names) {
+                if (DateUtils.isDay(name)) {
+                    days.add(name);
+                }
+            }
+        }
+        return days;
+    }
+
+    public void scan(String day, String service, String method, LatencyListener listener) {
+        scan(day, service, method, null, listener);
+    }
+
+    /**
+     * Visit the histograms of the given method written after the cursor, and advance the cursor.
+     */
+    public void scan(String day, String service, String method, StatisticsCursor cursor, LatencyListener listener) {
+        File file = getFile(day, service);
+        String source = file.getPath();
+        long offset = cursor == null ? 0 : cursor.getOffset(source);
+        long length = file.length();
+        if (length <= offset) {
+            return;
+        }
+        byte[] data = new byte[(int) (length - offset)];
+        int size = 0;
+        try {
+            RandomAccessFile input = new RandomAccessFile(file, "r");
+            try {
+                input.seek(offset);
+                int n;
+                while (size < data.length && (n = input.read(data, size, data.length - size)) > 0) {
+                    size += n;
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            logger.warn(e.getMessage(), e);
+            return;
+        }
+        long start = DateUtils.toMinute(day);
+        byte[] prefix = (method + "\t").getBytes();
+        int consumed = 0;
+        for (int i = 0; i < size; i++) {
+            if (data[i] == '\n') {
+                if (startsWith(data, consumed, i, prefix)) {
+                    parseLine(new String(data, consumed, i - consumed), start, service, listener);
+                }
+                consumed = i + 1;
+            }
+        }
+        if (cursor != null) {
+            cursor.setOffset(source, offset + consumed);
+        }
+    }
+
+    public void delete(String day) {
+        File dir = new File(directory, day);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    logger.warn("Failed to delete latency file " + file);
+                }
+            }
+        }
+        if (dir.exists() && !dir.delete()) {
+            logger.warn("Failed to delete latency directory " + dir);
+        }
+    }
+
+    private File getFile(String day, String service) {
+        return new File(directory + "/" + day + "/" + service + SUFFIX);
+    }
+
+    private static boolean startsWith(byte[] data, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[from + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void parseLine(String line, long start, String service, LatencyListener listener) {
+        String[] fields = line.split("\t");
+        if (fields.length != 6) {
+            return;
+        }
+        int time = DateUtils.parseTime(fields[4]);
+        if (time < 0) {
+            return;
+        }
+        LatencyHistogram histogram;
+        try {
+            histogram = LatencyHistogram.decode(fields[5]);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        listener.onLatency(start + time, new Series(service, fields[0], fields[1], fields[2], fields[3]), histogram);
+    }
+
+    /**
+     * Stripe writes the files of a partition of the services, with its own open files and buffers.
+     */
+    private class Stripe {
+
+        private final BufferedFileAppender appender;
+
+        private final StringBuilder line = new StringBuilder();
+
+        // the files of the series written on the current day, reset when the day changes
+        private final Map<Series, String> paths = new HashMap<Series, String>();
+
+        private long minute = -1;
+
+        private String day;
+
+        Stripe(BufferedFileAppender appender) {
+            this.appender = appender;
+        }
+
+        synchronized void append(long minute, Series series, LatencyHistogram histogram) {
+            line.setLength(0);
+            line.append(series.getMethod()).append('\t')
+                    .append(series.getConsumer()).append('\t')
+                    .append(series.getProvider()).append('\t')
+                    .append(series.getSide()).append('\t')
+                    .append(DateUtils.toTime(minute)).append('\t')
+                    .append(histogram.encode()).append('\n');
+            try {
+                appender.append(getPath(minute, series), line.toString().getBytes());
+            } catch (IOException e) {
+                logger.error("Failed to write latencies " + series + ", cause: " + e.getMessage(), e);
+            }
+        }
+
+        private String getPath(long minute, Series series) {
+            if (minute != this.minute) {
+                String day = DateUtils.toDay(minute);
+                if (!day.equals(this.day)) {
+                    paths.clear();
+                    this.day = day;
+                }
+                this.minute = minute;
+            }
+            String path = paths.get(series);
+            if (path == null) {
+                path = getFile(day, series.getService()).getPath();
+                paths.put(series, path);
+            }
+            return path;
+        }
+
+        synchronized boolean flush() {
+            return appender.flushIfNecessary();
+        }
+
+        synchronized void close() {
+            appender.close();
+        }
+
+        synchronized long getWrittenBytes() {
+            return appender.getWrittenBytes();
+        }
+
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+/**
+ * Resolution of stored or queried statistics.
+ */
+public enum Resolution {
+
+    MINUTE(1), HOUR(60), DAY(DateUtils.MINUTES_PER_DAY);
+
+    private final int minutes;
+
+    Resolution(int minutes) {
+        this.minutes = minutes;
+    }
+
+    /**
+     * @return the resolution of the given name, or null if unknown
+     */
+    public static Resolution parse(String name) {
+        for (Resolution resolution : values()) {
+            if (resolution.getName().equals(name)) {
+                return resolution;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Select the coarsest resolution which still yields the given number of points over the range.
+     *
+     * @param range  the length of the range in minutes
+     * @param points the number of points wanted
+     */
+    public static Resolution select(long range, int points) {
+        Resolution[] resolutions = values();
+        for (int i = resolutions.length - 1; i > 0; i--) {
+            if (range / resolutions[i].minutes >= points) {
+                return resolutions[i];
+            }
+        }
+        return MINUTE;
+    }
+
+    public String getName() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * Nominal length, a day may be an hour shorter or longer on daylight saving changes.
+     */
+    public int getMinutes() {
+        return minutes;
+    }
+
+    /**
+     * @param dayStart the first minute of the day of the given minute
+     * @param minute   minutes since the epoch
+     * @return the first minute of the period holding the given minute
+     */
+    public long truncate(long dayStart, long minute) {
+        if (this == DAY) {
+            return dayStart;
+        }
+        return dayStart + (minute - dayStart) / minutes * minutes;
+    }
+
+}
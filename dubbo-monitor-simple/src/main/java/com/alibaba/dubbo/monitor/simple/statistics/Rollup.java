@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+/**
+ * Rollup
+ * <p>
+ * Indexes of the counters of a rollup, which summarizes the per-minute counters of a series over
+ * an hour or a day: the sum and the maximum of each {@link StatisticsTypes} counter, followed by
+ * the number of minutes summarized.
+ */
+public final class Rollup {
+
+    public static final int SUM = 0;
+
+    public static final int MAX = StatisticsTypes.LENGTH;
+
+    public static final int COUNT = 2 * StatisticsTypes.LENGTH;
+
+    public static final int LENGTH = COUNT + 1;
+
+    private Rollup() {
+    }
+
+    /**
+     * Add the counters of one minute to the rollup.
+     */
+    public static void add(long[] rollup, long[] values) {
+        for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+            rollup[SUM + i] += values[i];
+            rollup[MAX + i] = Math.max(rollup[MAX + i], values[i]);
+        }
+        rollup[COUNT]++;
+    }
+
+    public static void merge(long[] rollup, long[] other) {
+        for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+            rollup[SUM + i] += other[SUM + i];
+            rollup[MAX + i] = Math.max(rollup[MAX + i], other[MAX + i]);
+        }
+        rollup[COUNT] += other[COUNT];
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * RollupCompactor rolls up the minute statistics of every closed day into hourly and daily
+ * rollups. Deleting the data past its retention is left to the
+ * {@link com.alibaba.dubbo.monitor.simple.retention.RetentionManager}.
+ */
+public class RollupCompactor implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RollupCompactor.class);
+
+    // late statistics of a day may still arrive shortly after midnight
+    private static final int CLOSE_DELAY = 60;
+
+    private final StatisticsStore store;
+
+    private final RollupStore rollups;
+
+    public RollupCompactor(StatisticsStore store, RollupStore rollups) {
+        this.store = store;
+        this.rollups = rollups;
+    }
+
+    public void run() {
+        compact(DateUtils.toMinute(System.currentTimeMillis()));
+    }
+
+    /**
+     * Roll up every day closed before the given minute which has not been rolled up yet.
+     *
+     * @return the number of days rolled up
+     */
+    public int compact(long now) {
+        int count = 0;
+        for (String day : store.getDays()) {
+            if (DateUtils.toMinute(day) + DateUtils.MINUTES_PER_DAY + CLOSE_DELAY > now) {
+                break;
+            }
+            // the daily rollup is written last, and so marks the day as complete
+            if (rollups.exists(day, Resolution.DAY)) {
+                continue;
+            }
+            long start = System.currentTimeMillis();
+            try {
+                compact(day);
+                count++;
+            } catch (IOException e) {
+                logger.error("Failed to roll up statistics of " + day + ", cause: " + e.getMessage(), e);
+                continue;
+            }
+            if (logger.isInfoEnabled()) {
+                logger.info("roll up statistics of " + day + " in " + (System.currentTimeMillis() - start) + "ms");
+            }
+        }
+        return count;
+    }
+
+    private void compact(String day) throws IOException {
+        final long dayStart = DateUtils.toMinute(day);
+        RollupStore.RollupWriter hours = rollups.open(day, Resolution.HOUR);
+        RollupStore.RollupWriter days = null;
+        try {
+            days = rollups.open(day, Resolution.DAY);
+            for (String service : store.getServices(day)) {
+                for (String method : store.getMethods(day, service)) {
+                    // records of the same series and minute are merged before they are counted
+                    final Map<Series, Map<Long, long[]>> minutes = new HashMap<Series, Map<Long, long[]>>();
+                    store.scan(day, service, method, new StatisticsListener() {
+                        public void onStatistics(long minute, Series series, long[] values) {
+                            Map<Long, long[]> records = minutes.get(series);
+                            if (records == null) {
+                                records = new HashMap<Long, long[]>();
+                                minutes.put(series, records);
+                            }
+                            long[] record = records.get(minute);
+                            if (record == null) {
+                                records.put(minute, values.clone());
+                            } else {
+                                StatisticsTypes.merge(record, values);
+                            }
+                        }
+                    });
+                    for (Map.Entry<Series, Map<Long, long[]>> entry : minutes.entrySet()) {
+                        Map<Long, long[]> hourly = new TreeMap<Long, long[]>();
+                        long[] daily = new long[Rollup.LENGTH];
+                        for (Map.Entry<Long, long[]> record : entry.getValue().entrySet()) {
+                            long hour = Resolution.HOUR.truncate(dayStart, record.getKey());
+                            long[] rollup = hourly.get(hour);
+                            if (rollup == null) {
+                                rollup = new long[Rollup.LENGTH];
+                                hourly.put(hour, rollup);
+                            }
+                            Rollup.add(rollup, record.getValue());
+                            Rollup.add(daily, record.getValue());
+                        }
+                        for (Map.Entry<Long, long[]> rollup : hourly.entrySet()) {
+                            hours.write(rollup.getKey(), entry.getKey(), rollup.getValue());
+                        }
+                        days.write(dayStart, entry.getKey(), daily);
+                    }
+                }
+            }
+            hours.commit();
+            days.commit();
+        } catch (IOException e) {
+            hours.abort();
+            if (days != null) {
+                days.abort();
+            }
+            throw e;
+        }
+    }
+
+}
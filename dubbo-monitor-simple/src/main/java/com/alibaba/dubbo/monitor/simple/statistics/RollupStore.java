@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RollupStore keeps the hourly and daily rollups of the statistics, one text file per day and
+ * resolution. (ThreadSafe)
+ * <pre>
+ * ${dubbo.rollup.directory}/day.hour    service \t method \t consumer \t provider \t side \t minute of day \t rollup * 13
+ * ${dubbo.rollup.directory}/day.day
+ * </pre>
+ * Files are written once, when the day is compacted, and renamed into place when complete.
+ */
+public class RollupStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(RollupStore.class);
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final String directory;
+
+    public RollupStore(String directory) {
+        this.directory = directory;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public boolean exists(String day, Resolution resolution) {
+        return getFile(day, resolution).exists();
+    }
+
+    /**
+     * @return the days holding rollups of the given resolution, "yyyyMMdd", ascending
+     */
+    public List<String> getDays(Resolution resolution) {
+        List<String> days = new ArrayList<String>();
+        String[] names = new File(directory).list();
+        if (names != null) {
+            Arrays.sort(names);
+            String suffix = "." + resolution.getName();
+            for (String name : names) {
+                if (name.endsWith(suffix)) {
+                    String day = name.substring(0, name.length() - suffix.length());
+                    if (DateUtils.isDay(day)) {
+                        days.add(day);
+                    }
+                }
+            }
+        }
+        return days;
+    }
+
+    public RollupWriter open(String day, Resolution resolution) throws IOException {
+        File dir = new File(directory);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return new RollupWriter(DateUtils.toMinute(day), getFile(day, resolution));
+    }
+
+    public void scan(String day, Resolution resolution, String service, String method, RollupListener listener) {
+        File file = getFile(day, resolution);
+        if (!file.exists()) {
+            return;
+        }
+        long start = DateUtils.toMinute(day);
+        String prefix = service + "\t" + method + "\t";
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith(prefix)) {
+                        continue;
+                    }
+                    String[] fields = line.split("\t");
+                    if (fields.length != 6 + Rollup.LENGTH) {
+                        continue;
+                    }
+                    long[] rollup = new long[Rollup.LENGTH];
+                    for (int i = 0; i < Rollup.LENGTH; i++) {
+                        rollup[i] = Long.parseLong(fields[6 + i]);
+                    }
+                    listener.onRollup(start + Integer.parseInt(fields[5]),
+                            new Series(fields[0], fields[1], fields[2], fields[3], fields[4]), rollup);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to read rollup " + file + ", cause: " + e.getMessage(), e);
+        } catch (NumberFormatException e) {
+            logger.warn("Malformed rollup " + file + ", cause: " + e.getMessage(), e);
+        }
+    }
+
+    public void delete(String day, Resolution resolution) {
+        File file = getFile(day, resolution);
+        if (file.exists() && !file.delete()) {
+            logger.warn("Failed to delete rollup " + file);
+        }
+    }
+
+    private File getFile(String day, Resolution resolution) {
+        return new File(directory, day + "." + resolution.getName());
+    }
+
+    /**
+     * RollupWriter writes the rollups of one day and resolution. (NotThreadSafe)
+     */
+    public static class RollupWriter {
+
+        private final long start;
+
+        private final File file;
+
+        private final File temp;
+
+        private final Writer writer;
+
+        private final StringBuilder line = new StringBuilder();
+
+        RollupWriter(long start, File file) throws IOException {
+            this.start = start;
+            this.file = file;
+            this.temp = new File(file.getPath() + TEMP_SUFFIX);
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+        }
+
+        public void write(long minute, Series series, long[] rollup) throws IOException {
+            line.setLength(0);
+            line.append(series.getService()).append('\t')
+                    .append(series.getMethod()).append('\t')
+                    .append(series.getConsumer()).append('\t')
+                    .append(series.getProvider()).append('\t')
+                    .append(series.getSide()).append('\t')
+                    .append(minute - start);
+            for (long value : rollup) {
+                line.append('\t').append(value);
+            }
+            line.append('\n');
+            writer.write(line.toString());
+        }
+
+        /**
+         * Close the writer and make the file visible to readers.
+         */
+        public void commit() throws IOException {
+            writer.close();
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Failed to replace rollup " + file);
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Failed to rename " + temp + " to " + file);
+            }
+        }
+
+        public void abort() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn(e.getMessage(), e);
+            }
+            temp.delete();
+        }
+    }
+
+}
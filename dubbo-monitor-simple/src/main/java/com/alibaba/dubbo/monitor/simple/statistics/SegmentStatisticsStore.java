@@ -0,0 +1,568 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SegmentStatisticsStore keeps one append-only segment of fixed-width binary records per day,
+ * along with the dictionary of the series referenced by the records:
+ * <pre>
+ * ${dubbo.statistics.directory}/day.seg    [minute of day: int][series id: int][counters: long * 6]
+ * ${dubbo.statistics.directory}/day.series id \t service \t method \t consumer \t provider \t side
+ * </pre>
+ * Segments are read through memory mapped buffers, up to the last flushed record, in chunks of
+ * whole records below 2GB each, so that a day may grow beyond what one buffer can address.
+ */
+public class SegmentStatisticsStore implements StatisticsStore {
+
+    public static final String NAME = "segment";
+
+    static final int RECORD_SIZE = 4 + 4 + 8 * StatisticsTypes.LENGTH;
+
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    static final String SERIES_SUFFIX = ".series";
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentStatisticsStore.class);
+
+    private static final long IDLE_TIMEOUT = 10 * DateUtils.MINUTE;
+
+    private final String directory;
+
+    private final int bufferSize;
+
+    private final int chunkSize;
+
+    private final long flushInterval;
+
+    private final long idleTimeout;
+
+    private final ConcurrentMap<String, Segment> segments = new ConcurrentHashMap<String, Segment>();
+
+    private long lastFlush = System.currentTimeMillis();
+
+    private final AtomicLong writtenBytes = new AtomicLong();
+
+    public SegmentStatisticsStore() {
+        this(Integer.MAX_VALUE / RECORD_SIZE);
+    }
+
+    /**
+     * @param chunkRecords the records of each mapped chunk of a segment
+     */
+    SegmentStatisticsStore(int chunkRecords) {
+        this(chunkRecords, IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param chunkRecords the records of each mapped chunk of a segment
+     * @param idleTimeout  the milliseconds without appends after which the writer of a segment is closed
+     */
+    SegmentStatisticsStore(int chunkRecords, long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        chunkSize = chunkRecords * RECORD_SIZE;
+        directory = ConfigUtils.getProperty("dubbo.statistics.directory", "statistics");
+        int size = Integer.parseInt(ConfigUtils.getProperty("dubbo.monitor.buffer.size", "65536"));
+        bufferSize = Math.max(1, size / RECORD_SIZE) * RECORD_SIZE;
+        flushInterval = Long.parseLong(ConfigUtils.getProperty("dubbo.monitor.flush.interval", "1000"));
+    }
+
+    public void append(long minute, Series series, long[] values) {
+        String day = DateUtils.toDay(minute);
+        Segment segment = getSegment(day);
+        try {
+            segment.append((int) (minute - segment.start), series, values);
+        } catch (IOException e) {
+            logger.error("Failed to write statistics " + series + " to segment " + segment.data + ", cause: " + e.getMessage(), e);
+        }
+    }
+
+    public synchronized boolean flush() {
+        long now = System.currentTimeMillis();
+        if (now - lastFlush < flushInterval) {
+            return isFlushed();
+        }
+        for (Segment segment : segments.values()) {
+            try {
+                if (now - segment.lastAppend > idleTimeout) {
+                    segment.closeWriter();
+                } else {
+                    segment.flush();
+                }
+            } catch (IOException e) {
+                logger.error("Failed to flush segment " + segment.data + ", cause: " + e.getMessage(), e);
+            }
+        }
+        lastFlush = now;
+        return isFlushed();
+    }
+
+    private boolean isFlushed() {
+        for (Segment segment : segments.values()) {
+            if (segment.hasPending()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized void close() {
+        for (Iterator<Segment> iterator = segments.values().iterator(); iterator.hasNext(); ) {
+            Segment segment = iterator.next();
+            try {
+                segment.closeWriter();
+                iterator.remove();
+            } catch (IOException e) {
+                logger.error("Failed to close segment " + segment.data + ", cause: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes.get();
+    }
+
+    public List<String> getDays() {
+        List<String> days = new ArrayList<String>();
+        String[] names = new File(directory).list();
+        if (names != null) {
+            Arrays.sort(names);
+            for (String name : names) {
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    String day = name.substring(0, name.length() - SEGMENT_SUFFIX.length());
+                    if (DateUtils.isDay(day)) {
+                        days.add(day);
+                    }
+                }
+            }
+        }
+        return days;
+    }
+
+    public List<String> getServices(String day) {
+        Set<String> services = new TreeSet<String>();
+        Segment segment = findSegment(day);
+        if (segment != null) {
+            for (Series series : segment.getDictionary()) {
+                if (series != null) {
+                    services.add(series.getService());
+                }
+            }
+        }
+        return new ArrayList<String>(services);
+    }
+
+    public List<String> getMethods(String day, String service) {
+        Set<String> methods = new TreeSet<String>();
+        Segment segment = findSegment(day);
+        if (segment != null) {
+            for (Series series : segment.getDictionary()) {
+                if (series != null && series.getService().equals(service)) {
+                    methods.add(series.getMethod());
+                }
+            }
+        }
+        return new ArrayList<String>(methods);
+    }
+
+    public long getLastModified(String day, String service, String method) {
+        return new File(directory, day + SEGMENT_SUFFIX).lastModified();
+    }
+
+    public void scan(String day, String service, String method, StatisticsListener listener) {
+        scan(day, service, method, null, listener);
+    }
+
+    public void scan(String day, String service, String method, StatisticsCursor cursor, StatisticsListener listener) {
+        Segment segment = findSegment(day);
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.scan(service, method, cursor, listener);
+        } catch (IOException e) {
+            logger.warn("Failed to read segment " + segment.data + ", cause: " + e.getMessage(), e);
+        }
+    }
+
+    public void delete(String day) {
+        Segment segment = segments.remove(day);
+        if (segment == null) {
+            segment = new Segment(day);
+        }
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            logger.warn("Failed to delete segment " + segment.data + ", cause: " + e.getMessage(), e);
+        }
+    }
+
+    private Segment getSegment(String day) {
+        Segment segment = segments.get(day);
+        if (segment == null) {
+            segments.putIfAbsent(day, new Segment(day));
+            segment = segments.get(day);
+        }
+        return segment;
+    }
+
+    private Segment findSegment(String day) {
+        Segment segment = segments.get(day);
+        if (segment == null && new File(directory, day + SEGMENT_SUFFIX).exists()) {
+            segment = getSegment(day);
+        }
+        return segment;
+    }
+
+    private class Segment {
+
+        private final long start;
+
+        private final File data;
+
+        private final File dictionaryFile;
+
+        // indexed by series id, null for the ids of series lost to a torn line
+        private final List<Series> dictionary = new ArrayList<Series>();
+
+        private final Map<Series, Integer> ids = new HashMap<Series, Integer>();
+
+        private boolean loaded;
+
+        // the length of the complete lines of the dictionary file when loaded
+        private long dictionaryLength;
+
+        private FileChannel channel;
+
+        private Writer dictionaryWriter;
+
+        private ByteBuffer buffer;
+
+        private volatile long committed = -1;
+
+        private volatile long lastAppend;
+
+        private final List<MappedByteBuffer> chunks = new ArrayList<MappedByteBuffer>();
+
+        Segment(String day) {
+            this.start = DateUtils.toMinute(day);
+            this.data = new File(directory, day + SEGMENT_SUFFIX);
+            this.dictionaryFile = new File(directory, day + SERIES_SUFFIX);
+        }
+
+        synchronized List<Series> getDictionary() {
+            load();
+            return new ArrayList<Series>(dictionary);
+        }
+
+        synchronized void append(int minute, Series series, long[] values) throws IOException {
+            if (channel == null) {
+                openWriter();
+            }
+            Integer id = ids.get(series);
+            if (id == null) {
+                id = dictionary.size();
+                dictionary.add(series);
+                ids.put(series, id);
+                dictionaryWriter.write(id + "\t" + series.getService() + "\t" + series.getMethod()
+                        + "\t" + series.getConsumer() + "\t" + series.getProvider() + "\t" + series.getSide() + "\n");
+            }
+            if (buffer.remaining() < RECORD_SIZE) {
+                flush();
+            }
+            buffer.putInt(minute);
+            buffer.putInt(id);
+            for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+                buffer.putLong(values[i]);
+            }
+            lastAppend = System.currentTimeMillis();
+        }
+
+        synchronized void flush() throws IOException {
+            if (channel == null || buffer.position() == 0) {
+                return;
+            }
+            // the dictionary must be durable before any record referring to it
+            dictionaryWriter.flush();
+            dictionaryLength = dictionaryFile.length();
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    writtenBytes.addAndGet(channel.write(buffer));
+                }
+            } finally {
+                // keep what was not written at the start of the buffer, to be retried
+                buffer.compact();
+            }
+            committed = channel.position();
+        }
+
+        synchronized boolean hasPending() {
+            return buffer != null && buffer.position() > 0;
+        }
+
+        /**
+         * Flush and close the writer, or keep it open with its records pending if they fail to
+         * be written.
+         */
+        synchronized void closeWriter() throws IOException {
+            if (channel == null) {
+                return;
+            }
+            flush();
+            release();
+        }
+
+        private void release() throws IOException {
+            if (channel == null) {
+                return;
+            }
+            try {
+                dictionaryWriter.close();
+                // the lines written since the dictionary was loaded are complete, keep them on reopen
+                dictionaryLength = dictionaryFile.length();
+            } finally {
+                channel.close();
+                dictionaryWriter = null;
+                channel = null;
+                buffer = null;
+                committed = -1;
+            }
+        }
+
+        synchronized void delete() throws IOException {
+            try {
+                release();
+            } finally {
+                chunks.clear();
+                dictionary.clear();
+                ids.clear();
+                loaded = false;
+                if (data.exists() && !data.delete()) {
+                    logger.warn("Failed to delete segment " + data);
+                }
+                if (dictionaryFile.exists() && !dictionaryFile.delete()) {
+                    logger.warn("Failed to delete series dictionary " + dictionaryFile);
+                }
+            }
+        }
+
+        void scan(String service, String method, StatisticsCursor cursor, StatisticsListener listener) throws IOException {
+            long length = getLength();
+            if (length <= 0) {
+                return;
+            }
+            String source = data.getPath();
+            long offset = cursor == null ? 0 : cursor.getOffset(source);
+            List<Series> snapshot = getDictionary();
+            BitSet matches = new BitSet(snapshot.size());
+            for (int i = 0; i < snapshot.size(); i++) {
+                Series series = snapshot.get(i);
+                if (series != null && series.getService().equals(service) && series.getMethod().equals(method)) {
+                    matches.set(i);
+                }
+            }
+            if (cursor != null) {
+                cursor.setOffset(source, length);
+            }
+            if (matches.isEmpty() || offset >= length) {
+                return;
+            }
+            ByteBuffer[] records = map(length);
+            for (long position = offset - offset % RECORD_SIZE; position < length; position += RECORD_SIZE) {
+                ByteBuffer chunk = records[(int) (position / chunkSize)];
+                int at = (int) (position % chunkSize);
+                int id = chunk.getInt(at + 4);
+                if (id >= 0 && id < snapshot.size() && matches.get(id)) {
+                    long[] values = new long[StatisticsTypes.LENGTH];
+                    for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+                        values[i] = chunk.getLong(at + 8 + i * 8);
+                    }
+                    listener.onStatistics(start + chunk.getInt(at), snapshot.get(id), values);
+                }
+            }
+        }
+
+        /**
+         * @return the length of the flushed records of the segment
+         */
+        private synchronized long getLength() {
+            long length = committed >= 0 ? committed : data.length();
+            return length - length % RECORD_SIZE;
+        }
+
+        /**
+         * Map the given length of the segment in chunks, reusing the chunks mapped before while
+         * they are large enough, so that only the last one is mapped again as the segment grows.
+         */
+        private synchronized ByteBuffer[] map(long length) throws IOException {
+            int count = (int) ((length + chunkSize - 1) / chunkSize);
+            RandomAccessFile file = null;
+            try {
+                for (int i = 0; i < count; i++) {
+                    long position = (long) i * chunkSize;
+                    long size = Math.min(chunkSize, length - position);
+                    if (i < chunks.size() && chunks.get(i).capacity() >= size) {
+                        continue;
+                    }
+                    if (file == null) {
+                        file = new RandomAccessFile(data, "r");
+                    }
+                    MappedByteBuffer chunk = file.getChannel().map(FileChannel.MapMode.READ_ONLY, position, size);
+                    if (i < chunks.size()) {
+                        chunks.set(i, chunk);
+                    } else {
+                        chunks.add(chunk);
+                    }
+                }
+            } finally {
+                if (file != null) {
+                    file.close();
+                }
+            }
+            ByteBuffer[] buffers = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                buffers[i] = chunks.get(i).duplicate();
+            }
+            return buffers;
+        }
+
+        /**
+         * Load the complete lines of the dictionary, each at the index of its id, so that a line
+         * lost to a crash leaves a gap instead of shifting the ids of the following ones.
+         */
+        private void load() {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            dictionaryLength = 0;
+            if (!dictionaryFile.exists()) {
+                return;
+            }
+            try {
+                InputStream input = new BufferedInputStream(new FileInputStream(dictionaryFile));
+                try {
+                    ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+                    long position = 0;
+                    int b;
+                    while ((b = input.read()) >= 0) {
+                        position++;
+                        if (b != '\n') {
+                            line.write(b);
+                            continue;
+                        }
+                        addSeries(line.toString("UTF-8"));
+                        line.reset();
+                        dictionaryLength = position;
+                    }
+                    if (line.size() > 0) {
+                        logger.warn("Skip partial series " + line.toString("UTF-8") + " at the end of " + dictionaryFile);
+                    }
+                } finally {
+                    input.close();
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to load series of segment " + data + ", cause: " + e.getMessage(), e);
+            }
+        }
+
+        private void addSeries(String line) {
+            String[] fields = line.split("\t");
+            int id = -1;
+            if (fields.length == 6) {
+                try {
+                    id = Integer.parseInt(fields[0]);
+                } catch (NumberFormatException e) {
+                    id = -1;
+                }
+            }
+            if (id < 0) {
+                logger.warn("Skip malformed series " + line + " in " + dictionaryFile);
+                return;
+            }
+            Series series = new Series(fields[1], fields[2], fields[3], fields[4], fields[5]);
+            while (dictionary.size() <= id) {
+                dictionary.add(null);
+            }
+            dictionary.set(id, series);
+            ids.put(series, id);
+        }
+
+        private void openWriter() throws IOException {
+            load();
+            File dir = data.getParentFile();
+            if (dir != null && !dir.exists()) {
+                dir.mkdirs();
+            }
+            RandomAccessFile file = new RandomAccessFile(data, "rw");
+            FileChannel fileChannel = file.getChannel();
+            // drop a partially written record left by a crash
+            long length = fileChannel.size();
+            if (length % RECORD_SIZE != 0) {
+                logger.warn("Truncate partial record at the end of segment " + data);
+                fileChannel.truncate(length - length % RECORD_SIZE);
+            }
+            fileChannel.position(fileChannel.size());
+            // and a partially written series, so that the next one starts on a line of its own
+            if (dictionaryFile.length() > dictionaryLength) {
+                logger.warn("Truncate partial series at the end of " + dictionaryFile);
+                RandomAccessFile dictionaryOutput = new RandomAccessFile(dictionaryFile, "rw");
+                try {
+                    dictionaryOutput.setLength(dictionaryLength);
+                } finally {
+                    dictionaryOutput.close();
+                }
+            }
+            dictionaryWriter = new OutputStreamWriter(new FileOutputStream(dictionaryFile, true), "UTF-8");
+            buffer = ByteBuffer.allocate(bufferSize);
+            channel = fileChannel;
+            committed = fileChannel.size();
+        }
+    }
+
+}
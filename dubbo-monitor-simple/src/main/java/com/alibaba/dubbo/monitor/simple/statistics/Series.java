@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+/**
+ * Series identifies the statistics reported by one side of a service method call
+ * between one consumer host and one provider host.
+ * <p>
+ * Series handed out by the {@link SeriesDictionary} carry its stable id, series read back from
+ * the stores carry none. Either way, series compare by fields only.
+ */
+public class Series {
+
+    /**
+     * Id of series not in the dictionary.
+     */
+    public static final int NO_ID = -1;
+
+    private final int id;
+
+    private final String service;
+
+    private final String method;
+
+    private final String consumer;
+
+    private final String provider;
+
+    private final String side;
+
+    private final int hashCode;
+
+    public Series(String service, String method, String consumer, String provider, String side) {
+        this(NO_ID, service, method, consumer, provider, side);
+    }
+
+    public Series(int id, String service, String method, String consumer, String provider, String side) {
+        this.id = id;
+        this.service = service;
+        this.method = method;
+        this.consumer = consumer;
+        this.provider = provider;
+        this.side = side;
+        this.hashCode = computeHashCode();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getConsumer() {
+        return consumer;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public String getSide() {
+        return side;
+    }
+
+    private int computeHashCode() {
+        int result = service != null ? service.hashCode() : 0;
+        result = 31 * result + (method != null ? method.hashCode() : 0);
+        result = 31 * result + (consumer != null ? consumer.hashCode() : 0);
+        result = 31 * result + (provider != null ? provider.hashCode() : 0);
+        result = 31 * result + (side != null ? side.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Series that = (Series) o;
+        return hashCode == that.hashCode
+                && equals(service, that.service)
+                && equals(method, that.method)
+                && equals(consumer, that.consumer)
+                && equals(provider, that.provider)
+                && equals(side, that.side);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public String toString() {
+        return service + "/" + method + "/" + consumer + "/" + provider + "/" + side;
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SeriesCounters keeps the counters of every series since startup, and those of its last closed
+ * minute, for scrapers. It is fed by the statistics writer threads. (ThreadSafe)
+ * <p>
+ * Without hosts, the series of a method and side are merged regardless of their consumer and
+ * provider, which bounds the cardinality by the methods instead of the connections. Series past
+ * the limit are counted as dropped. Series without a record for the ttl are expired, their
+ * counters restart from zero if they report again, which scrapers take as a counter reset.
+ */
+public class SeriesCounters implements StatisticsListener {
+
+    private final boolean hosts;
+
+    private final int maxSeries;
+
+    private final int ttl;
+
+    private final ConcurrentMap<Series, Entry> entries = new ConcurrentHashMap<Series, Entry>();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param hosts     true to keep the consumer and provider of the series
+     * @param maxSeries the series to keep counters of
+     * @param ttl       the minutes without a record to expire a series
+     */
+    public SeriesCounters(boolean hosts, int maxSeries, int ttl) {
+        this.hosts = hosts;
+        this.maxSeries = maxSeries;
+        this.ttl = ttl;
+    }
+
+    public void onStatistics(long minute, Series series, long[] values) {
+        Series key = hosts ? series
+                : new Series(series.getService(), series.getMethod(), null, null, series.getSide());
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (entries.size() >= maxSeries) {
+                dropped.incrementAndGet();
+                return;
+            }
+            entry = new Entry(key, hosts);
+            Entry existing = entries.putIfAbsent(key, entry);
+            if (existing != null) {
+                entry = existing;
+            }
+        }
+        entry.add(minute, values);
+    }
+
+    /**
+     * Expire the series without a record for the ttl before the given minute.
+     *
+     * @param minute the last closed minute
+     * @return the number of series expired
+     */
+    public int expire(long minute) {
+        int expired = 0;
+        for (Entry entry : entries.values()) {
+            long last = entry.getMinute();
+            // an entry just created has no minute yet
+            if (last >= 0 && minute - last > ttl && entries.remove(entry.getSeries(), entry)) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    public boolean isHosts() {
+        return hosts;
+    }
+
+    public int getMaxSeries() {
+        return maxSeries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the records ignored as their series is past the limit
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    /**
+     * Entry holds the counters of one series, and its labels encoded once for the scrapes.
+     */
+    public static class Entry {
+
+        private final Series series;
+
+        private final byte[] labels;
+
+        private final long[] totals = new long[StatisticsTypes.LENGTH];
+
+        private final long[] last = new long[StatisticsTypes.LENGTH];
+
+        private long minute = -1;
+
+        Entry(Series series, boolean hosts) {
+            this.series = series;
+            StringBuilder builder = new StringBuilder();
+            appendLabel(builder, "service", series.getService());
+            appendLabel(builder, "method", series.getMethod());
+            appendLabel(builder, "side", series.getSide());
+            if (hosts) {
+                appendLabel(builder, "consumer", series.getConsumer());
+                appendLabel(builder, "provider", series.getProvider());
+            }
+            try {
+                labels = builder.toString().getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+
+        private static void appendLabel(StringBuilder builder, String name, String value) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(name).append("=\"");
+            if (value != null) {
+                for (int i = 0; i < value.length(); i++) {
+                    char c = value.charAt(i);
+                    if (c == '\\' || c == '"') {
+                        builder.append('\\').append(c);
+                    } else if (c == '\n') {
+                        builder.append("\\n");
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+            builder.append('"');
+        }
+
+        synchronized void add(long minute, long[] values) {
+            StatisticsTypes.merge(totals, values);
+            if (minute != this.minute) {
+                if (minute < this.minute) {
+                    return;
+                }
+                System.arraycopy(values, 0, last, 0, last.length);
+                this.minute = minute;
+            } else {
+                StatisticsTypes.merge(last, values);
+            }
+        }
+
+        public Series getSeries() {
+            return series;
+        }
+
+        synchronized long getMinute() {
+            return minute;
+        }
+
+        /**
+         * @return the labels of the series, as name="value" pairs separated by commas, UTF-8 encoded
+         */
+        public byte[] getLabels() {
+            return labels;
+        }
+
+        /**
+         * Copy the counters since startup and those of the last minute.
+         *
+         * @return the last minute, or -1 if none
+         */
+        public synchronized long copy(long[] totals, long[] last) {
+            System.arraycopy(this.totals, 0, totals, 0, totals.length);
+            System.arraycopy(this.last, 0, last, 0, last.length);
+            return minute;
+        }
+    }
+
+}
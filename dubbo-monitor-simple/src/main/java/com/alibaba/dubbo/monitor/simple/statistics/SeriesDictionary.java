@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SeriesDictionary assigns stable integer ids to series, and persists them in an append only file
+ * that is reloaded at startup:
+ * <pre>
+ * ${dubbo.series.dictionary}    id \t service \t method \t consumer \t provider \t side \t day
+ * </pre>
+ * The day is the last one the series was used on, in days since the epoch, saved on close.
+ * Every sample of a series shares the dictionary's instance, so stores can cache what they derive
+ * from a series. Ids are not reused while the monitor runs, as journaled samples refer to them:
+ * once the limit is reached, new series are handed out without id and are not persisted, which is
+ * logged once and counted in {@link #getOverflows()}. At startup, once no journal is left, the
+ * series unused for some days are {@link #expire expired} and the ids compacted, so that hosts
+ * coming and going do not fill the dictionary for good. (ThreadSafe)
+ */
+public class SeriesDictionary {
+
+    private static final Logger logger = LoggerFactory.getLogger(SeriesDictionary.class);
+
+    private final File file;
+
+    private final int limit;
+
+    private final ConcurrentMap<Series, Series> series = new ConcurrentHashMap<Series, Series>();
+
+    private volatile Series[] ids = new Series[16];
+
+    // id -> the last day the series was used on, in days since the epoch
+    private volatile int[] days = new int[16];
+
+    private int size;
+
+    private final AtomicLong overflows = new AtomicLong();
+
+    private OutputStream output;
+
+    public SeriesDictionary(String file, int limit) {
+        this.file = new File(file);
+        this.limit = limit;
+        load();
+    }
+
+    /**
+     * @return the dictionary's instance of the series, with its id
+     */
+    public Series intern(String service, String method, String consumer, String provider, String side) {
+        Series probe = new Series(service, method, consumer, provider, side);
+        Series interned = series.get(probe);
+        if (interned != null) {
+            touch(interned);
+            return interned;
+        }
+        synchronized (this) {
+            interned = series.get(probe);
+            if (interned != null) {
+                touch(interned);
+                return interned;
+            }
+            if (size >= limit) {
+                if (overflows.getAndIncrement() == 0) {
+                    logger.warn("Series dictionary " + file + " is full with " + limit + " series, new series are not"
+                            + " journaled anymore, please increase dubbo.monitor.series.max");
+                }
+                return probe;
+            }
+            interned = new Series(size, service, method, consumer, provider, side);
+            int today = today();
+            try {
+                write(interned, today);
+            } catch (IOException e) {
+                logger.warn("Failed to write series dictionary " + file + ", cause: " + e.getMessage(), e);
+                return probe;
+            }
+            put(interned, today);
+            return interned;
+        }
+    }
+
+    private void touch(Series interned) {
+        int[] days = this.days;
+        int id = interned.getId();
+        int today = today();
+        // racy, the day only has to be about right
+        if (id < days.length && days[id] != today) {
+            days[id] = today;
+        }
+    }
+
+    private static int today() {
+        return (int) (DateUtils.toMinute(System.currentTimeMillis()) / DateUtils.MINUTES_PER_DAY);
+    }
+
+    /**
+     * Remove the series unused for more than the given days, and give the remaining ones dense ids
+     * again, in the order of their former ids. Only to be called while no journal refers to the
+     * ids, that is at startup, once the journals of the previous run are recovered and deleted.
+     *
+     * @return the number of series removed
+     */
+    public synchronized int expire(int unusedDays) {
+        int before = today() - unusedDays;
+        Series[] oldIds = ids;
+        int[] oldDays = days;
+        ids = new Series[16];
+        days = new int[16];
+        series.clear();
+        size = 0;
+        int removed = 0;
+        for (int i = 0; i < oldIds.length; i++) {
+            Series value = oldIds[i];
+            if (value == null) {
+                continue;
+            }
+            if (oldDays[i] < before) {
+                removed++;
+                continue;
+            }
+            put(new Series(size, value.getService(), value.getMethod(), value.getConsumer(), value.getProvider(),
+                    value.getSide()), oldDays[i]);
+        }
+        close();
+        if (removed > 0 && logger.isInfoEnabled()) {
+            logger.info("expire " + removed + " series unused for " + unusedDays + " days from series dictionary "
+                    + file + ", " + size + " series left");
+        }
+        return removed;
+    }
+    /**
+     * @return the series of the given id, or null
+     */
+    public Series get(int id) {
+        Series[] ids = this.ids;
+        return id >= 0 && id < ids.length ? ids[id] : null;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return true if new series are handed out without id
+     */
+    public synchronized boolean isFull() {
+        return size >= limit;
+    }
+
+    /**
+     * @return the number of lookups of series that found the dictionary full
+     */
+    public long getOverflows() {
+        return overflows.get();
+    }
+
+    /**
+     * Close the file, and save the days the series were last used on.
+     */
+    public synchronized void close() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close series dictionary " + file + ", cause: " + e.getMessage(), e);
+            }
+            output = null;
+        }
+        save();
+    }
+
+    /**
+     * Rewrite the whole file aside, then replace the former one, so that a crash leaves either.
+     */
+    private void save() {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            File dir = file.getParentFile();
+            if (dir != null && !dir.exists()) {
+                dir.mkdirs();
+            }
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+            try {
+                Series[] ids = this.ids;
+                int[] days = this.days;
+                for (int i = 0; i < size; i++) {
+                    if (ids[i] != null) {
+                        out.write(toLine(ids[i], days[i]));
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+                throw new IOException("Failed to rename " + temp + " to " + file);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to save series dictionary " + file + ", cause: " + e.getMessage(), e);
+        }
+    }
+
+    private void put(Series value, int day) {
+        Series[] array = ids;
+        int[] dayArray = days;
+        if (value.getId() >= array.length) {
+            array = Arrays.copyOf(array, Math.max(array.length * 2, value.getId() + 1));
+            dayArray = Arrays.copyOf(dayArray, array.length);
+        }
+        array[value.getId()] = value;
+        dayArray[value.getId()] = day;
+        // republish, so that readers of the arrays see the new elements
+        days = dayArray;
+        ids = array;
+        series.put(value, value);
+        size = Math.max(size, value.getId() + 1);
+    }
+
+    private void write(Series value, int day) throws IOException {
+        if (output == null) {
+            File dir = file.getParentFile();
+            if (dir != null && !dir.exists()) {
+                dir.mkdirs();
+            }
+            boolean partial = endsWithPartialLine();
+            output = new FileOutputStream(file, true);
+            if (partial) {
+                output.write('\n');
+            }
+        }
+        // one write per line, so a crash leaves at most one partial line behind
+        output.write(toLine(value, day));
+    }
+
+    private static byte[] toLine(Series value, int day) throws IOException {
+        return (value.getId() + "\t" + encode(value.getService()) + "\t" + encode(value.getMethod())
+                + "\t" + encode(value.getConsumer()) + "\t" + encode(value.getProvider())
+                + "\t" + encode(value.getSide()) + "\t" + day + "\n").getBytes("UTF-8");
+    }
+
+    private synchronized void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                int today = today();
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t", -1);
+                    if ((fields.length != 6 && fields.length != 7) || !(MonitorService.CONSUMER.equals(fields[5])
+                            || MonitorService.PROVIDER.equals(fields[5]))) {
+                        logger.warn("Skip malformed series " + line + " in " + file);
+                        continue;
+                    }
+                    int id;
+                    int day;
+                    try {
+                        id = Integer.parseInt(fields[0]);
+                        // series written before days were kept count as used today
+                        day = fields.length == 7 ? Integer.parseInt(fields[6]) : today;
+                    } catch (NumberFormatException e) {
+                        logger.warn("Skip malformed series " + line + " in " + file);
+                        continue;
+                    }
+                    put(new Series(id, decode(fields[1]), decode(fields[2]), decode(fields[3]), decode(fields[4]),
+                            fields[5]), day);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to load series dictionary " + file + ", cause: " + e.getMessage(), e);
+        }
+    }
+
+    private boolean endsWithPartialLine() throws IOException {
+        if (file.length() == 0) {
+            return false;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            raf.seek(raf.length() - 1);
+            return raf.read() != '\n';
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static String encode(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String decode(String value) {
+        return value.length() == 0 ? null : value;
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * StatisticsAggregator. (NotThreadSafe)
+ * <p>
+ * Merges all reports of the same series within the same minute in memory, so that a closed
+ * minute is persisted as one record per series instead of one record per report.
+ */
+public class StatisticsAggregator {
+
+    private final TreeMap<Long, Map<Series, long[]>> minutes = new TreeMap<Long, Map<Series, long[]>>();
+
+    private long reports;
+
+    private long records;
+
+    public void add(long minute, Series series, long[] values) {
+        Map<Series, long[]> aggregates = minutes.get(minute);
+        if (aggregates == null) {
+            aggregates = new HashMap<Series, long[]>();
+            minutes.put(minute, aggregates);
+        }
+        long[] aggregate = aggregates.get(series);
+        if (aggregate == null) {
+            aggregates.put(series, values.clone());
+        } else {
+            StatisticsTypes.merge(aggregate, values);
+        }
+        reports++;
+    }
+
+    /**
+     * Emit and remove every minute before the given one.
+     *
+     * @param before minutes since the epoch, exclusive
+     * @return the number of emitted records
+     */
+    public int flush(long before, StatisticsListener listener) {
+        int count = 0;
+        for (Iterator<Map.Entry<Long, Map<Series, long[]>>> iterator = minutes.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Long, Map<Series, long[]>> entry = iterator.next();
+            if (entry.getKey() >= before) {
+                break;
+            }
+            for (Map.Entry<Series, long[]> aggregate : entry.getValue().entrySet()) {
+                listener.onStatistics(entry.getKey(), aggregate.getKey(), aggregate.getValue());
+                count++;
+            }
+            iterator.remove();
+        }
+        records += count;
+        return count;
+    }
+
+    public int flushAll(StatisticsListener listener) {
+        return flush(Long.MAX_VALUE, listener);
+    }
+
+    /**
+     * @return the number of series-minutes currently held in memory
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Series, long[]> aggregates : minutes.values()) {
+            size += aggregates.size();
+        }
+        return size;
+    }
+
+    public long getReports() {
+        return reports;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * StatisticsCursor remembers how far a reader has consumed each source of a store,
+ * so that a later scan only visits records written since. (NotThreadSafe)
+ */
+public class StatisticsCursor {
+
+    private final Map<String, Long> offsets = new HashMap<String, Long>();
+
+    public long getOffset(String source) {
+        Long offset = offsets.get(source);
+        return offset == null ? 0 : offset;
+    }
+
+    public void setOffset(String source, long offset) {
+        offsets.put(source, offset);
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * StatisticsScanner parses "HHmm value" statistics lines straight from a reused buffer into
+ * longs, without allocating per line. Malformed lines are skipped. (NotThreadSafe)
+ */
+public class StatisticsScanner {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final ByteBuffer buffer;
+
+    public StatisticsScanner() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public StatisticsScanner(int bufferSize) {
+        buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Visit the complete lines of the file after the given offset.
+     *
+     * @return the offset after the last complete line
+     */
+    public long scan(File file, long offset, RecordVisitor visitor) throws IOException {
+        if (file.length() <= offset) {
+            return offset;
+        }
+        FileInputStream input = new FileInputStream(file);
+        try {
+            return scan(input.getChannel(), offset, visitor);
+        } finally {
+            input.close();
+        }
+    }
+
+    private long scan(FileChannel channel, long offset, RecordVisitor visitor) throws IOException {
+        byte[] data = buffer.array();
+        buffer.clear();
+        channel.position(offset);
+        long consumed = offset;
+        // bytes of a line longer than the buffer, which is malformed and skipped up to its end
+        long skipped = 0;
+        while (channel.read(buffer) > 0) {
+            int limit = buffer.position();
+            int start = 0;
+            for (int i = 0; i < limit; i++) {
+                if (data[i] == '\n') {
+                    if (skipped == 0) {
+                        parseLine(data, start, i, visitor);
+                    }
+                    consumed += skipped + i + 1 - start;
+                    skipped = 0;
+                    start = i + 1;
+                }
+            }
+            if (start == 0 && limit == data.length) {
+                skipped += limit;
+                buffer.clear();
+            } else {
+                System.arraycopy(data, start, data, 0, limit - start);
+                buffer.position(limit - start);
+            }
+        }
+        return consumed;
+    }
+
+    /**
+     * Parse a "HHmm value" line, skipping it if malformed.
+     */
+    private static void parseLine(byte[] data, int from, int to, RecordVisitor visitor) {
+        int i = from;
+        int time = 0;
+        for (; i < to && data[i] != ' '; i++) {
+            if (data[i] < '0' || data[i] > '9' || i - from >= 4) {
+                return;
+            }
+            time = time * 10 + (data[i] - '0');
+        }
+        if (i - from != 4) {
+            return;
+        }
+        while (i < to && (data[i] == ' ' || data[i] == '\t')) {
+            i++;
+        }
+        if (i == to) {
+            return;
+        }
+        long value = 0;
+        for (; i < to && data[i] != '\r' && data[i] != ' '; i++) {
+            if (data[i] < '0' || data[i] > '9') {
+                return;
+            }
+            value = value * 10 + (data[i] - '0');
+        }
+        visitor.onRecord((time / 100) * 60 + time % 100, value);
+    }
+
+    /**
+     * RecordVisitor
+     */
+    public interface RecordVisitor {
+
+        /**
+         * @param minute minutes since midnight
+         * @param value  the value
+         */
+        void onRecord(int minute, long value);
+
+    }
+
+    /**
+     * Summary computes the sum, maximum, count and average of the visited records in one pass.
+     */
+    public static class Summary implements RecordVisitor {
+
+        private long sum;
+
+        private long max;
+
+        private long count;
+
+        public void onRecord(int minute, long value) {
+            sum += value;
+            max = Math.max(max, value);
+            count++;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getAverage() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        public void reset() {
+            sum = 0;
+            max = 0;
+            count = 0;
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.common.extension.SPI;
+
+import java.util.List;
+
+/**
+ * StatisticsStore persists the per-minute aggregates of the monitor. (SPI, Singleton, ThreadSafe)
+ * <p>
+ * Appends come from the statistics writer threads, one per ingestion shard, each writing its own
+ * series. Reads may come from any thread and only observe what has been flushed.
+ */
+@SPI(FileStatisticsStore.NAME)
+public interface StatisticsStore {
+
+    /**
+     * Append the aggregate of one series for one closed minute.
+     *
+     * @param minute minutes since the epoch
+     * @param series the series
+     * @param values the counters, indexed by {@link StatisticsTypes}
+     */
+    void append(long minute, Series series, long[] values);
+
+    /**
+     * Called periodically by every writer thread. Implementations may defer the actual write
+     * until their own size or time threshold is reached.
+     *
+     * @return true if everything appended so far is visible to readers
+     */
+    boolean flush();
+
+    /**
+     * Flush everything and release open files. The store is reopened on the next append. Files
+     * failing to be written are kept open, and {@link #flush()} returns false until they are.
+     */
+    void close();
+
+    /**
+     * @return the bytes written to disk since startup
+     */
+    long getWrittenBytes();
+
+    /**
+     * @return the days holding statistics, "yyyyMMdd", ascending
+     */
+    List<String> getDays();
+
+    List<String> getServices(String day);
+
+    List<String> getMethods(String day, String service);
+
+    /**
+     * @return the last time the statistics of the given method were written, in milliseconds
+     */
+    long getLastModified(String day, String service, String method);
+
+    /**
+     * Visit every stored record of the given method on the given day. Records of the same
+     * series and minute may be visited more than once and are to be merged by the caller.
+     */
+    void scan(String day, String service, String method, StatisticsListener listener);
+
+    /**
+     * Like {@link #scan(String, String, String, StatisticsListener)}, but only visit the records
+     * written after the given cursor, and advance the cursor past them.
+     */
+    void scan(String day, String service, String method, StatisticsCursor cursor, StatisticsListener listener);
+
+    /**
+     * Delete all statistics of the given day. Only called for days which are no longer written.
+     */
+    void delete(String day);
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+
+/**
+ * StatisticsTypes
+ * <p>
+ * Indexes of the per-minute counters reported through {@link MonitorService#collect}.
+ */
+public final class StatisticsTypes {
+
+    public static final int SUCCESS = 0;
+
+    public static final int FAILURE = 1;
+
+    public static final int ELAPSED = 2;
+
+    public static final int CONCURRENT = 3;
+
+    public static final int MAX_ELAPSED = 4;
+
+    public static final int MAX_CONCURRENT = 5;
+
+    public static final String[] TYPES = {MonitorService.SUCCESS, MonitorService.FAILURE, MonitorService.ELAPSED,
+            MonitorService.CONCURRENT, MonitorService.MAX_ELAPSED, MonitorService.MAX_CONCURRENT};
+
+    public static final int LENGTH = TYPES.length;
+
+    private StatisticsTypes() {
+    }
+
+    /**
+     * Whether the counter at the given index is merged by maximum instead of by sum.
+     */
+    public static boolean isMax(int index) {
+        return index == MAX_ELAPSED || index == MAX_CONCURRENT;
+    }
+
+    public static int indexOf(String type) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(type)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static void merge(long[] target, long[] values) {
+        for (int i = 0; i < LENGTH; i++) {
+            if (isMax(i)) {
+                target[i] = Math.max(target[i], values[i]);
+            } else {
+                target[i] += values[i];
+            }
+        }
+    }
+
+}
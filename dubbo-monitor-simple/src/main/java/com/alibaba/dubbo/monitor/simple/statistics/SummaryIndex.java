@@ -0,0 +1,438 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * SummaryIndex keeps the daily totals and maxima, and the daily latency histogram, of every
+ * series. It is maintained by the statistics writer threads, so pages answer from memory or from
+ * one small file per day instead of scanning the store. (ThreadSafe)
+ * <pre>
+ * ${dubbo.summary.directory}/day.summary    service \t method \t consumer \t provider \t side \t counters * 6 \t histogram
+ * </pre>
+ * Days still written, today and yesterday, are rebuilt from the stores on first use after startup,
+ * as their files may miss what was written after the last save. Other days are loaded from their
+ * file, and rebuilt if it is missing.
+ */
+public class SummaryIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SummaryIndex.class);
+
+    private static final String SUFFIX = ".summary";
+
+    private static final String PROTOCOL = "summary";
+
+    private static final String LATENCY = "latency";
+
+    private final StatisticsStore store;
+
+    private final LatencyStore latencies;
+
+    private final String directory;
+
+    private final long saveInterval;
+
+    private final ConcurrentMap<String, DaySummary> days = new ConcurrentHashMap<String, DaySummary>();
+
+    // the days rebuilt since startup
+    private final Set<String> rebuilt = new HashSet<String>();
+
+    private long lastSave = System.currentTimeMillis();
+
+    /**
+     * @param saveInterval the minimum interval in milliseconds between two saves of a changed day
+     */
+    public SummaryIndex(StatisticsStore store, LatencyStore latencies, String directory, long saveInterval) {
+        this.store = store;
+        this.latencies = latencies;
+        this.directory = directory;
+        this.saveInterval = saveInterval;
+    }
+
+    /**
+     * Add the counters of a series, called by a writer thread before they are appended to the
+     * store, so that a rebuild never counts them twice.
+     */
+    public void add(long minute, Series series, long[] values) {
+        getDay(DateUtils.toDay(minute)).add(series, values);
+    }
+
+    /**
+     * Add the latencies of a series, called by a writer thread before they are appended to the
+     * latency store.
+     */
+    public void addLatency(long minute, Series series, LatencyHistogram histogram) {
+        getDay(DateUtils.toDay(minute)).addLatency(series, histogram);
+    }
+
+    /**
+     * @return the services summarized on the given day, ascending
+     */
+    public List<String> getServices(String day) {
+        return getDay(day).getServices();
+    }
+
+    /**
+     * @return a copy of the summaries of the given service on the given day
+     */
+    public List<Entry> getEntries(String day, String service) {
+        return getDay(day).getEntries(service);
+    }
+
+    /**
+     * Save the changed days if the save interval has elapsed, and release the days no longer
+     * written. Called by the writer threads.
+     */
+    public synchronized void saveIfNecessary() {
+        if (System.currentTimeMillis() - lastSave >= saveInterval) {
+            save();
+        }
+    }
+
+    public synchronized void save() {
+        String yesterday = DateUtils.toDay(DateUtils.toMinute(System.currentTimeMillis()) - DateUtils.MINUTES_PER_DAY);
+        for (Iterator<DaySummary> iterator = days.values().iterator(); iterator.hasNext(); ) {
+            DaySummary summary = iterator.next();
+            try {
+                summary.save();
+            } catch (IOException e) {
+                logger.warn("Failed to save summary of " + summary.day + ", cause: " + e.getMessage(), e);
+                continue;
+            }
+            if (summary.day.compareTo(yesterday) < 0) {
+                iterator.remove();
+            }
+        }
+        lastSave = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the number of days held in memory
+     */
+    public int size() {
+        return days.size();
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the days saved on disk, ascending
+     */
+    public List<String> getDays() {
+        List<String> result = new ArrayList<String>();
+        String[] names = new File(directory).list();
+        if (names != null) {
+            Arrays.sort(names);
+            for (String name : names) {
+                if (name.endsWith(SUFFIX)) {
+                    String day = name.substring(0, name.length() - SUFFIX.length());
+                    if (DateUtils.isDay(day)) {
+                        result.add(day);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Delete the saved summary of a day, and release it from memory.
+     */
+    public synchronized void delete(String day) {
+        days.remove(day);
+        File file = new File(directory, day + SUFFIX);
+        if (file.exists() && !file.delete()) {
+            logger.warn("Failed to delete summary " + file);
+        }
+    }
+
+    private DaySummary getDay(String day) {
+        DaySummary summary = days.get(day);
+        if (summary != null) {
+            return summary;
+        }
+        synchronized (this) {
+            summary = days.get(day);
+            if (summary == null) {
+                summary = load(day);
+                days.put(day, summary);
+            }
+        }
+        return summary;
+    }
+
+    private DaySummary load(String day) {
+        DaySummary summary = new DaySummary(day);
+        File file = new File(directory, day + SUFFIX);
+        String yesterday = DateUtils.toDay(DateUtils.toMinute(System.currentTimeMillis()) - DateUtils.MINUTES_PER_DAY);
+        boolean written = day.compareTo(yesterday) >= 0 && !rebuilt.contains(day);
+        if (!written && file.exists()) {
+            try {
+                summary.load(file);
+                return summary;
+            } catch (IOException e) {
+                logger.warn("Failed to load summary " + file + ", rebuild it, cause: " + e.getMessage(), e);
+                summary = new DaySummary(day);
+            }
+        }
+        long start = System.currentTimeMillis();
+        summary.rebuild();
+        rebuilt.add(day);
+        if (logger.isInfoEnabled()) {
+            logger.info("rebuild summary of " + day + " in " + (System.currentTimeMillis() - start) + "ms");
+        }
+        return summary;
+    }
+
+    /**
+     * Entry holds the daily summary of one series.
+     */
+    public static class Entry {
+
+        private final Series series;
+
+        private final long[] values;
+
+        private final LatencyHistogram latency;
+
+        Entry(Series series, long[] values, LatencyHistogram latency) {
+            this.series = series;
+            this.values = values;
+            this.latency = latency;
+        }
+
+        public Series getSeries() {
+            return series;
+        }
+
+        /**
+         * @return the daily totals and maxima, indexed by {@link StatisticsTypes}
+         */
+        public long[] getValues() {
+            return values;
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return the entry as "summary://provider/service?method=...&consumer=...&side=...&success=...&latency=...",
+         * to be sent to another monitor node
+         */
+        public URL toURL() {
+            Map<String, String> parameters = new HashMap<String, String>();
+            parameters.put(MonitorService.METHOD, series.getMethod());
+            parameters.put(MonitorService.CONSUMER, series.getConsumer());
+            parameters.put(Constants.SIDE_KEY, series.getSide());
+            for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+                parameters.put(StatisticsTypes.TYPES[i], String.valueOf(values[i]));
+            }
+            parameters.put(LATENCY, latency.encode());
+            return new URL(PROTOCOL, series.getProvider(), 0, series.getService(), parameters);
+        }
+
+        /**
+         * @throws IllegalArgumentException if the URL is not a summary
+         */
+        public static Entry valueOf(URL url) {
+            if (!PROTOCOL.equals(url.getProtocol())) {
+                throw new IllegalArgumentException("Illegal summary " + url);
+            }
+            Series series = new Series(url.getPath(), url.getParameter(MonitorService.METHOD),
+                    url.getParameter(MonitorService.CONSUMER), url.getHost(), url.getParameter(Constants.SIDE_KEY));
+            long[] values = new long[StatisticsTypes.LENGTH];
+            for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+                values[i] = url.getParameter(StatisticsTypes.TYPES[i], 0L);
+            }
+            return new Entry(series, values, LatencyHistogram.decode(url.getParameter(LATENCY, "0;")));
+        }
+    }
+
+    private class DaySummary implements StatisticsListener, LatencyListener {
+
+        private final String day;
+
+        // service -> series -> summary
+        private final Map<String, Map<Series, Entry>> services = new HashMap<String, Map<Series, Entry>>();
+
+        private boolean dirty;
+
+        DaySummary(String day) {
+            this.day = day;
+        }
+
+        synchronized void add(Series series, long[] values) {
+            StatisticsTypes.merge(getEntry(series).values, values);
+            dirty = true;
+        }
+
+        synchronized void addLatency(Series series, LatencyHistogram histogram) {
+            getEntry(series).latency.merge(histogram);
+            dirty = true;
+        }
+
+        public void onStatistics(long minute, Series series, long[] values) {
+            add(series, values);
+        }
+
+        public void onLatency(long minute, Series series, LatencyHistogram histogram) {
+            addLatency(series, histogram);
+        }
+
+        synchronized List<String> getServices() {
+            List<String> names = new ArrayList<String>(services.keySet());
+            Collections.sort(names);
+            return names;
+        }
+
+        synchronized List<Entry> getEntries(String service) {
+            Map<Series, Entry> entries = services.get(service);
+            if (entries == null) {
+                return new ArrayList<Entry>();
+            }
+            List<Entry> copy = new ArrayList<Entry>(entries.size());
+            for (Entry entry : entries.values()) {
+                LatencyHistogram latency = new LatencyHistogram();
+                latency.merge(entry.latency);
+                copy.add(new Entry(entry.series, entry.values.clone(), latency));
+            }
+            return copy;
+        }
+
+        private Entry getEntry(Series series) {
+            Map<Series, Entry> entries = services.get(series.getService());
+            if (entries == null) {
+                entries = new HashMap<Series, Entry>();
+                services.put(series.getService(), entries);
+            }
+            Entry entry = entries.get(series);
+            if (entry == null) {
+                entry = new Entry(series, new long[StatisticsTypes.LENGTH], new LatencyHistogram());
+                entries.put(series, entry);
+            }
+            return entry;
+        }
+
+        void rebuild() {
+            for (String service : store.getServices(day)) {
+                for (String method : store.getMethods(day, service)) {
+                    store.scan(day, service, method, this);
+                    latencies.scan(day, service, method, this);
+                }
+            }
+        }
+
+        void load(File file) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split("\t");
+                    if (fields.length != 6 + StatisticsTypes.LENGTH) {
+                        throw new IOException("Malformed summary line " + line);
+                    }
+                    Series series = new Series(fields[0], fields[1], fields[2], fields[3], fields[4]);
+                    long[] values = new long[StatisticsTypes.LENGTH];
+                    try {
+                        for (int i = 0; i < StatisticsTypes.LENGTH; i++) {
+                            values[i] = Long.parseLong(fields[5 + i]);
+                        }
+                        add(series, values);
+                        addLatency(series, LatencyHistogram.decode(fields[5 + StatisticsTypes.LENGTH]));
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Malformed summary line " + line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            dirty = false;
+        }
+
+        synchronized void save() throws IOException {
+            if (!dirty) {
+                return;
+            }
+            File dir = new File(directory);
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            File file = new File(dir, day + SUFFIX);
+            File temp = new File(dir, day + SUFFIX + ".tmp");
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+            try {
+                StringBuilder line = new StringBuilder();
+                for (Map<Series, Entry> entries : services.values()) {
+                    for (Entry entry : entries.values()) {
+                        Series series = entry.series;
+                        line.setLength(0);
+                        line.append(series.getService()).append('\t')
+                                .append(series.getMethod()).append('\t')
+                                .append(series.getConsumer()).append('\t')
+                                .append(series.getProvider()).append('\t')
+                                .append(series.getSide());
+                        for (long value : entry.values) {
+                            line.append('\t').append(value);
+                        }
+                        line.append('\t').append(entry.latency.encode()).append('\n');
+                        writer.write(line.toString());
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Failed to replace summary " + file);
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Failed to rename " + temp + " to " + file);
+            }
+            dirty = false;
+        }
+    }
+
+}
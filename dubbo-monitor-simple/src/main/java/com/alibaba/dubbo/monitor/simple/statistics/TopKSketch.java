@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * TopKSketch keeps the series with the largest weights of a stream in a fixed number of counters,
+ * with the Space-Saving algorithm. (NotThreadSafe)
+ * <p>
+ * An unknown series takes over the counter of the smallest weight when all are used, and starts
+ * from that weight, which is kept as its error. The weight of a counter is thus an upper bound of
+ * the true one, and every series heavier than the smallest counter is kept. Maximum weights are
+ * exact, as a taken over counter restarts from the new, larger, maximum.
+ */
+public class TopKSketch {
+
+    private final int capacity;
+
+    private final boolean max;
+
+    private final int index;
+
+    private final Map<Series, Counter> counters;
+
+    // ordered by weight, then by age
+    private final TreeSet<Counter> order = new TreeSet<Counter>();
+
+    private long sequence;
+
+    /**
+     * @param capacity the number of counters
+     * @param index    the counter weighing the series, in {@link StatisticsTypes}
+     */
+    public TopKSketch(int capacity, int index) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.index = index;
+        this.max = StatisticsTypes.isMax(index);
+        this.counters = new HashMap<Series, Counter>(capacity * 2);
+    }
+
+    /**
+     * Add the counters of a series. Counters of a series not kept are ignored if they weigh nothing.
+     */
+    public void add(Series series, long[] values) {
+        long weight = values[index];
+        Counter counter = counters.get(series);
+        if (counter != null) {
+            order.remove(counter);
+            counter.weight = max ? Math.max(counter.weight, weight) : counter.weight + weight;
+            StatisticsTypes.merge(counter.values, values);
+            order.add(counter);
+            return;
+        }
+        if (weight <= 0) {
+            return;
+        }
+        if (counters.size() < capacity) {
+            counter = new Counter(series, weight, 0);
+        } else {
+            Counter smallest = order.first();
+            if (max && weight <= smallest.weight) {
+                return;
+            }
+            order.remove(smallest);
+            counters.remove(smallest.series);
+            counter = max ? new Counter(series, weight, 0)
+                    : new Counter(series, smallest.weight + weight, smallest.weight);
+        }
+        StatisticsTypes.merge(counter.values, values);
+        counters.put(series, counter);
+        order.add(counter);
+    }
+
+    public void clear() {
+        counters.clear();
+        order.clear();
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public Collection<Counter> getCounters() {
+        return counters.values();
+    }
+
+    /**
+     * Counter of one series.
+     */
+    public class Counter implements Comparable<Counter> {
+
+        private final Series series;
+
+        private final long error;
+
+        private final long[] values = new long[StatisticsTypes.LENGTH];
+
+        private final long id = sequence++;
+
+        private long weight;
+
+        Counter(Series series, long weight, long error) {
+            this.series = series;
+            this.weight = weight;
+            this.error = error;
+        }
+
+        public Series getSeries() {
+            return series;
+        }
+
+        /**
+         * @return an upper bound of the weight of the series
+         */
+        public long getWeight() {
+            return weight;
+        }
+
+        /**
+         * @return the maximum overestimation of the weight
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * @return the counters of the series added since it is kept, indexed by {@link StatisticsTypes}
+         */
+        public long[] getValues() {
+            return values;
+        }
+
+        public int compareTo(Counter o) {
+            if (weight != o.weight) {
+                return weight < o.weight ? -1 : 1;
+            }
+            return id < o.id ? -1 : (id == o.id ? 0 : 1);
+        }
+    }
+
+}
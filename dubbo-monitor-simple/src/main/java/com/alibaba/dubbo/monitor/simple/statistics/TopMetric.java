@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+
+/**
+ * TopMetric ranks the methods in {@link HeavyHitters}. Each metric keeps its candidates by an
+ * additive weight, or by a maximum, and ranks them by its value.
+ * <p>
+ * Rates and averages are not additive, so their candidates are kept by the counter behind them:
+ * failure rates among the methods with the most failures, average elapsed among the methods with
+ * the most elapsed time. This also keeps a single failed call from ranking first.
+ */
+public enum TopMetric {
+
+    QPS("qps", StatisticsTypes.SUCCESS),
+    FAILURE("failure", StatisticsTypes.FAILURE),
+    RT("rt", StatisticsTypes.ELAPSED),
+    MAX_ELAPSED(MonitorService.MAX_ELAPSED, StatisticsTypes.MAX_ELAPSED),
+    MAX_CONCURRENT(MonitorService.MAX_CONCURRENT, StatisticsTypes.MAX_CONCURRENT);
+
+    private final String name;
+
+    private final int index;
+
+    TopMetric(String name, int index) {
+        this.name = name;
+        this.index = index;
+    }
+
+    /**
+     * @return the metric of the given name, or null if unknown
+     */
+    public static TopMetric parse(String name) {
+        for (TopMetric metric : values()) {
+            if (metric.name.equals(name)) {
+                return metric;
+            }
+        }
+        return null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the index of the counter the candidates are kept by, in {@link StatisticsTypes}
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return true if the candidates are kept by their maximum rather than their sum
+     */
+    public boolean isMax() {
+        return StatisticsTypes.isMax(index);
+    }
+
+    /**
+     * @param values  the counters merged over the window, indexed by {@link StatisticsTypes}
+     * @param minutes the length of the window
+     * @return the invocations per second, the failure ratio, the average elapsed milliseconds or
+     * the maximum
+     */
+    public double valueOf(long[] values, int minutes) {
+        long success = values[StatisticsTypes.SUCCESS];
+        long failure = values[StatisticsTypes.FAILURE];
+        switch (this) {
+            case QPS:
+                return success / (minutes * 60.0);
+            case FAILURE:
+                return success + failure == 0 ? 0 : (double) failure / (success + failure);
+            case RT:
+                return success == 0 ? 0 : (double) values[StatisticsTypes.ELAPSED] / success;
+            default:
+                return values[index];
+        }
+    }
+
+}
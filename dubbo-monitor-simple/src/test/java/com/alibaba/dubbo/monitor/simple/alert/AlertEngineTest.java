@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.alert;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * AlertEngineTest
+ */
+public class AlertEngineTest {
+
+    private final List<Alert> alerts = new ArrayList<Alert>();
+
+    private final Series bar = new Series("com.foo.BarService", "bar", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+
+    private final Series foo = new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+
+    private AlertEngine engine;
+
+    @Before
+    public void setUp() {
+        List<AlertRule> rules = Arrays.asList(
+                AlertRule.parse("failures: com.foo.BarService failure/success > 5% for 3"),
+                AlertRule.parse("slow: com.foo.BarService/bar max.elapsed > 2000ms"),
+                AlertRule.parse("other: com.foo.OtherService max.elapsed > 0"));
+        List<AlertSink> sinks = new ArrayList<AlertSink>();
+        sinks.add(new AlertSink() {
+            public void notify(Alert alert) {
+                alerts.add(alert);
+            }
+        });
+        engine = new AlertEngine(rules, sinks, new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    @Test
+    public void testParse() {
+        AlertRule rule = AlertRule.parse("failures: com.foo.BarService/* failure/success > 5% for 3");
+        Assert.assertEquals("failures", rule.getName());
+        Assert.assertEquals("com.foo.BarService", rule.getService());
+        Assert.assertNull(rule.getMethod());
+        Assert.assertEquals(3, rule.getMinutes());
+        Assert.assertEquals(0.1, rule.valueOf(new long[]{10, 1, 0, 0, 0, 0}), 0.0001);
+        Assert.assertTrue(rule.isCrossed(0.1));
+        Assert.assertFalse(rule.isCrossed(rule.valueOf(new long[6])));
+        Assert.assertEquals("failures: com.foo.BarService/* failure/success > 5% for 3", rule.toString());
+        try {
+            AlertRule.parse("failures: com.foo.BarService errors > 5");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testFireAfterMinutes() {
+        record(100, foo, new long[]{100, 10, 0, 0, 0, 0});
+        record(101, foo, new long[]{100, 10, 0, 0, 0, 0});
+        Assert.assertTrue(alerts.isEmpty());
+        record(102, foo, new long[]{100, 10, 0, 0, 0, 0});
+        Assert.assertEquals(1, alerts.size());
+        Assert.assertTrue(alerts.get(0).isFiring());
+        Assert.assertEquals(100, alerts.get(0).getSince());
+        Assert.assertEquals(1, engine.getAlerts().size());
+
+        record(103, foo, new long[]{100, 10, 0, 0, 0, 0});
+        Assert.assertEquals(1, alerts.size());
+        record(104, foo, new long[]{100, 1, 0, 0, 0, 0});
+        Assert.assertEquals(2, alerts.size());
+        Assert.assertFalse(alerts.get(1).isFiring());
+        Assert.assertTrue(engine.getAlerts().isEmpty());
+    }
+
+    @Test
+    public void testStreakBrokenByGap() {
+        record(100, foo, new long[]{100, 10, 0, 0, 0, 0});
+        record(101, foo, new long[]{100, 10, 0, 0, 0, 0});
+        record(103, foo, new long[]{100, 10, 0, 0, 0, 0});
+        record(104, foo, new long[]{100, 10, 0, 0, 0, 0});
+        Assert.assertTrue(alerts.isEmpty());
+        record(105, foo, new long[]{100, 10, 0, 0, 0, 0});
+        Assert.assertEquals(1, alerts.size());
+    }
+
+    @Test
+    public void testTotalOutage() {
+        // failures without any success
+        for (int minute = 100; minute < 103; minute++) {
+            record(minute, foo, new long[]{0, 10, 0, 0, 0, 0});
+        }
+        Assert.assertEquals(1, alerts.size());
+        Assert.assertTrue(alerts.get(0).isFiring());
+        Assert.assertTrue(Double.isInfinite(alerts.get(0).getValue()));
+        // no call at all crosses nothing
+        Assert.assertTrue(Double.isNaN(alerts.get(0).getRule().valueOf(new long[6])));
+    }
+
+    @Test
+    public void testExpire() {
+        for (int minute = 100; minute < 103; minute++) {
+            engine.onStatistics(minute, foo, new long[]{100, 10, 0, 0, 0, 0});
+            if (minute == 101) {
+                engine.onStatistics(minute, bar, new long[]{1, 0, 3000, 1, 3000, 1});
+            }
+            engine.close(minute + 1);
+        }
+        Assert.assertEquals(2, engine.getAlerts().size());
+        // the scopes stop reporting, their states last the duration of their rule
+        Assert.assertEquals(1, engine.expire(103));
+        Assert.assertEquals(3, alerts.size());
+        Assert.assertEquals("slow", alerts.get(2).getRule().getName());
+        Assert.assertFalse(alerts.get(2).isFiring());
+        Assert.assertEquals(0, engine.expire(105));
+        Assert.assertEquals(1, engine.expire(106));
+        Assert.assertEquals(4, alerts.size());
+        Assert.assertFalse(alerts.get(3).isFiring());
+        Assert.assertEquals(100, alerts.get(3).getSince());
+        Assert.assertTrue(engine.getAlerts().isEmpty());
+        Assert.assertEquals(0, engine.expire(200));
+    }
+
+    @Test
+    public void testScope() {
+        record(100, foo, new long[]{1, 0, 3000, 1, 3000, 1});
+        Assert.assertTrue(alerts.isEmpty());
+        record(101, bar, new long[]{1, 0, 3000, 1, 3000, 1});
+        Assert.assertEquals(1, alerts.size());
+        Assert.assertEquals("slow", alerts.get(0).getRule().getName());
+        Assert.assertEquals(3000, alerts.get(0).getValue(), 0.0001);
+    }
+
+    @Test
+    public void testMergeScope() {
+        Series consumer = new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.CONSUMER);
+        for (int minute = 100; minute < 103; minute++) {
+            // one failing provider among healthy ones, reported by both sides
+            for (int i = 0; i < 20; i++) {
+                engine.onStatistics(minute, new Series("com.foo.BarService", "bar", "10.0.0.1", "10.0.1." + i,
+                        MonitorService.PROVIDER), new long[]{100, 0, 0, 0, 0, 0});
+            }
+            engine.onStatistics(minute, foo, new long[]{100, 50, 0, 0, 0, 0});
+            engine.onStatistics(minute, consumer, new long[]{100, 50, 0, 0, 0, 0});
+            engine.close(minute + 1);
+        }
+        Assert.assertTrue(alerts.isEmpty());
+        for (int minute = 103; minute < 106; minute++) {
+            for (int i = 0; i < 5; i++) {
+                engine.onStatistics(minute, new Series("com.foo.BarService", "bar", "10.0.0.1", "10.0.1." + i,
+                        MonitorService.PROVIDER), new long[]{100, 10, 0, 0, 0, 0});
+            }
+            engine.onStatistics(minute, consumer, new long[]{100, 10, 0, 0, 0, 0});
+            engine.close(minute + 1);
+        }
+        // the service as a whole, once
+        Assert.assertEquals(1, alerts.size());
+        Assert.assertEquals(0.1, alerts.get(0).getValue(), 0.0001);
+        Series scope = alerts.get(0).getSeries();
+        Assert.assertEquals("com.foo.BarService", scope.getService());
+        Assert.assertEquals(AlertRule.ANY, scope.getMethod());
+        Assert.assertEquals(AlertRule.ANY, scope.getProvider());
+        Assert.assertEquals(MonitorService.PROVIDER, scope.getSide());
+    }
+
+    private void record(long minute, Series series, long[] values) {
+        engine.onStatistics(minute, series, values);
+        engine.close(minute + 1);
+    }
+
+}
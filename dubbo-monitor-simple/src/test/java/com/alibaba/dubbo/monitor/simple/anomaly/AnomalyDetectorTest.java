@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.anomaly;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * AnomalyDetectorTest
+ */
+public class AnomalyDetectorTest {
+
+    private final Series series = new Series("com.foo.BarService", "bar", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+
+    private final Random random = new Random(0);
+
+    private AnomalyDetector newDetector() {
+        return new AnomalyDetector(0.05, 4, 0.5, 30, 5, 10, 100, 5, 1, 60);
+    }
+
+    private long[] normal() {
+        long success = 6000 + random.nextInt(200);
+        return new long[]{success, random.nextInt(2), success * (10 + random.nextInt(2)), 1, 50, 2};
+    }
+
+    @Test
+    public void testQuietSeries() {
+        AnomalyDetector detector = newDetector();
+        for (long minute = 0; minute < 3000; minute++) {
+            detector.onStatistics(minute, series, normal());
+        }
+        Assert.assertTrue(detector.getActive().isEmpty());
+        Assert.assertTrue(detector.getHistory(0).isEmpty());
+    }
+
+    @Test
+    public void testDropShiftAndBurst() {
+        AnomalyDetector detector = newDetector();
+        long minute = 0;
+        for (; minute < 60; minute++) {
+            detector.onStatistics(minute, series, normal());
+        }
+        detector.onStatistics(minute++, series, new long[]{600, 0, 6000, 1, 50, 2});
+        Assert.assertEquals(AnomalyType.QPS_DROP, detector.getActive().get(0).getType());
+        detector.onStatistics(minute++, series, normal());
+        Assert.assertTrue(detector.getActive().isEmpty());
+
+        detector.onStatistics(minute++, series, new long[]{6000, 0, 6000 * 40, 1, 500, 2});
+        Assert.assertEquals(AnomalyType.LATENCY_SHIFT, detector.getActive().get(0).getType());
+
+        detector.onStatistics(minute++, series, new long[]{6000, 3000, 6000 * 10, 1, 50, 2});
+        List<Anomaly> active = detector.getActive();
+        Assert.assertEquals(1, active.size());
+        Assert.assertEquals(AnomalyType.FAILURE_BURST, active.get(0).getType());
+        Assert.assertEquals(1.0 / 3, active.get(0).getValue(), 0.001);
+        Assert.assertEquals(3, detector.getHistory(0).size());
+        Assert.assertEquals(AnomalyType.FAILURE_BURST, detector.getHistory(0).get(0).getType());
+    }
+
+    @Test
+    public void testDailyCurve() {
+        AnomalyDetector detector = newDetector();
+        // traffic is ten times lower from noon to one, every day
+        int flagged = 0;
+        for (long minute = 0; minute < 3 * 24 * 60; minute++) {
+            long[] values = normal();
+            if (minute % (24 * 60) >= 12 * 60 && minute % (24 * 60) < 13 * 60) {
+                values[0] /= 10;
+                values[2] /= 10;
+            }
+            detector.onStatistics(minute, series, values);
+            if (minute >= 24 * 60 && !detector.getActive().isEmpty()) {
+                flagged++;
+            }
+        }
+        // the drops of the first day are anomalies, the same ones later are known from yesterday
+        Assert.assertEquals(0, flagged);
+        Assert.assertEquals(1, detector.getHistory(0).size());
+    }
+
+    @Test
+    public void testMaxSeries() {
+        AnomalyDetector detector = new AnomalyDetector(0.05, 4, 0.5, 30, 5, 1, 100, 5, 1, 60);
+        detector.onStatistics(0, series, normal());
+        detector.onStatistics(0, new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2",
+                MonitorService.PROVIDER), normal());
+        Assert.assertEquals(1, detector.size());
+    }
+
+    @Test
+    public void testSweepSilentSeries() {
+        AnomalyDetector detector = newDetector();
+        Series idle = new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        long minute = 0;
+        for (; minute < 60; minute++) {
+            detector.onStatistics(minute, series, normal());
+            detector.onStatistics(minute, idle, new long[]{6, 0, 60, 1, 50, 2});
+        }
+        detector.onStatistics(minute, series, new long[]{6000, 3000, 6000 * 10, 1, 50, 2});
+        Assert.assertEquals(AnomalyType.FAILURE_BURST, detector.getActive().get(0).getType());
+
+        Assert.assertEquals(0, detector.sweep(minute + 4));
+        Assert.assertEquals(1, detector.getActive().size());
+        Assert.assertEquals(0, detector.sweep(minute + 5));
+        // the burst ended with the records, the series below the floor is not flagged
+        List<Anomaly> active = detector.getActive();
+        Assert.assertEquals(1, active.size());
+        Assert.assertEquals(AnomalyType.QPS_DROP, active.get(0).getType());
+        Assert.assertEquals(series, active.get(0).getSeries());
+        Assert.assertEquals(0, active.get(0).getValue(), 0);
+        Assert.assertEquals(2, detector.getHistory(0).size());
+        detector.sweep(minute + 6);
+        Assert.assertEquals(2, detector.getHistory(0).size());
+
+        Assert.assertEquals(1, detector.sweep(minute + 60));
+        Assert.assertEquals(1, detector.size());
+        Assert.assertEquals(1, detector.sweep(minute + 61));
+        Assert.assertEquals(0, detector.size());
+        Assert.assertTrue(detector.getActive().isEmpty());
+    }
+
+}
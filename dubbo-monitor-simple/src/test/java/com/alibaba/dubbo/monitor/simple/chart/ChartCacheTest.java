@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.chart;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.statistics.FileStatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyStore;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsCursor;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsListener;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ChartCacheTest
+ */
+public class ChartCacheTest {
+
+    private static final String SERVICE = "com.foo.BarService";
+
+    private File directory;
+
+    private String day;
+
+    private BlockingStore store;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("statistics", "");
+        directory.delete();
+        System.setProperty("dubbo.statistics.directory", directory.getAbsolutePath());
+        System.setProperty("dubbo.monitor.flush.interval", "0");
+        long minute = DateUtils.toMinute(System.currentTimeMillis());
+        day = DateUtils.toDay(minute);
+        store = new BlockingStore();
+        store.append(minute, new Series(SERVICE, "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER),
+                new long[]{60, 1, 600, 2, 20, 3});
+        store.append(minute, new Series(SERVICE, "bar", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER),
+                new long[]{30, 0, 900, 0, 40, 2});
+        store.flush();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        store.close();
+        System.clearProperty("dubbo.statistics.directory");
+        System.clearProperty("dubbo.monitor.flush.interval");
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testConcurrentRendersShared() throws Exception {
+        final ChartCache cache = new ChartCache(store, new LatencyStore(), Long.MAX_VALUE, 10000);
+        store.block();
+        Future<byte[]> first = render(cache, "foo");
+        Assert.assertTrue(store.scanning.await(10, TimeUnit.SECONDS));
+        Future<byte[]> second = render(cache, "foo");
+        // the second request is past the image lookup, so it waits for the first rendering
+        while (cache.getMisses() < 2) {
+            Thread.sleep(1);
+        }
+        store.release();
+        byte[] image = first.get(10, TimeUnit.SECONDS);
+        Assert.assertSame(image, second.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, store.scans.get());
+        Assert.assertSame(image, cache.get(day, SERVICE, "foo", MonitorService.SUCCESS));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(image.length, cache.getSize());
+    }
+
+    @Test
+    public void testInvalidateWhileRendering() throws Exception {
+        ChartCache cache = new ChartCache(store, new LatencyStore(), Long.MAX_VALUE, 10000);
+        store.block();
+        Future<byte[]> stale = render(cache, "foo");
+        Assert.assertTrue(store.scanning.await(10, TimeUnit.SECONDS));
+        cache.invalidate(ChartCache.toKey(day, SERVICE, "foo"));
+        store.release();
+        Assert.assertNotNull(stale.get(10, TimeUnit.SECONDS));
+        // the image rendered before the invalidation is not cached
+        Assert.assertEquals(0, cache.getSize());
+        cache.get(day, SERVICE, "foo", MonitorService.SUCCESS);
+        Assert.assertEquals(2, store.scans.get());
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertTrue(cache.getSize() > 0);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws Exception {
+        ChartCache unbounded = new ChartCache(store, new LatencyStore(), Long.MAX_VALUE, 10000);
+        int foo = unbounded.get(day, SERVICE, "foo", MonitorService.SUCCESS).length;
+        int bar = unbounded.get(day, SERVICE, "bar", MonitorService.SUCCESS).length;
+        Assert.assertEquals(foo + bar, unbounded.getSize());
+
+        ChartCache cache = new ChartCache(store, new LatencyStore(), foo + bar - 1, 10000);
+        cache.get(day, SERVICE, "foo", MonitorService.SUCCESS);
+        Assert.assertEquals(foo, cache.getSize());
+        cache.get(day, SERVICE, "bar", MonitorService.SUCCESS);
+        // foo is evicted to make room for bar
+        Assert.assertEquals(bar, cache.getSize());
+        cache.get(day, SERVICE, "bar", MonitorService.SUCCESS);
+        Assert.assertEquals(1, cache.getHits());
+        cache.get(day, SERVICE, "foo", MonitorService.SUCCESS);
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(foo, cache.getSize());
+        cache.invalidate(ChartCache.toKey(day, SERVICE, "foo"));
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testUnknownMethodNotCached() {
+        ChartCache cache = new ChartCache(store, new LatencyStore(), Long.MAX_VALUE, 10000);
+        Assert.assertSame(cache.getChartData(day, SERVICE, "foo"), cache.getChartData(day, SERVICE, "foo"));
+        Assert.assertNotSame(cache.getChartData(day, SERVICE, "baz"), cache.getChartData(day, SERVICE, "baz"));
+        Assert.assertNotSame(cache.getChartData(day, "com.foo.Unknown", "foo"),
+                cache.getChartData(day, "com.foo.Unknown", "foo"));
+    }
+
+    private Future<byte[]> render(final ChartCache cache, final String method) {
+        return executor.submit(new Callable<byte[]>() {
+            public byte[] call() throws Exception {
+                return cache.get(day, SERVICE, method, MonitorService.SUCCESS);
+            }
+        });
+    }
+
+    /**
+     * Holds the scans, which the renderings start with, until released.
+     */
+    private static class BlockingStore extends FileStatisticsStore {
+
+        private final AtomicInteger scans = new AtomicInteger();
+
+        private final CountDownLatch scanning = new CountDownLatch(1);
+
+        private volatile CountDownLatch released = new CountDownLatch(0);
+
+        void block() {
+            released = new CountDownLatch(1);
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public void scan(String day, String service, String method, StatisticsCursor cursor,
+                         StatisticsListener listener) {
+            scans.incrementAndGet();
+            scanning.countDown();
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.scan(day, service, method, cursor, listener);
+        }
+    }
+
+}
@@ -0,0 +1,391 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.cluster;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.alert.Alert;
+import com.alibaba.dubbo.monitor.simple.alert.AlertRule;
+import com.alibaba.dubbo.monitor.simple.anomaly.Anomaly;
+import com.alibaba.dubbo.monitor.simple.anomaly.AnomalyType;
+import com.alibaba.dubbo.monitor.simple.chart.ChartData;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.query.SeriesQuery;
+import com.alibaba.dubbo.monitor.simple.query.TimeSeries;
+import com.alibaba.dubbo.monitor.simple.statistics.HeavyHitters;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyHistogram;
+import com.alibaba.dubbo.monitor.simple.statistics.Resolution;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.TopMetric;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MonitorClusterTest runs several nodes in one JVM, connected by direct calls.
+ */
+public class MonitorClusterTest {
+
+    private final Map<String, Node> nodes = new HashMap<String, Node>();
+
+    private final Map<String, MonitorCluster> clusters = new HashMap<String, MonitorCluster>();
+
+    @Before
+    public void setUp() {
+        for (String address : new String[]{"10.0.0.1:7070", "10.0.0.2:7070", "10.0.0.3:7070"}) {
+            start(address);
+        }
+        join(nodes.keySet());
+    }
+
+    @After
+    public void tearDown() {
+        for (MonitorCluster cluster : clusters.values()) {
+            cluster.close();
+        }
+    }
+
+    private void start(String address) {
+        Node node = new Node();
+        nodes.put(address, node);
+        clusters.put(address, new MonitorCluster(address, node, new LocalTransport(), 160, 10, 1000, 0, 1000));
+    }
+
+    private void join(Collection<String> members) {
+        for (String address : members) {
+            clusters.get(address).setNodes(members);
+        }
+    }
+
+    private void collect(String address, URL statistics) {
+        if (!clusters.get(address).route(statistics)) {
+            nodes.get(address).forward(Collections.singletonList(statistics));
+        }
+    }
+
+    private void flush() {
+        for (MonitorCluster cluster : clusters.values()) {
+            cluster.flush();
+        }
+    }
+
+    private static URL newStatistics(String service, long success) {
+        return URL.valueOf("count://10.0.0.9/" + service + "?method=foo&provider=10.0.0.8:20880&success=" + success);
+    }
+
+    private static List<String> services(int count) {
+        List<String> services = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            services.add("com.foo.Service" + i);
+        }
+        return services;
+    }
+
+    @Test
+    public void testRouteToOwner() {
+        List<String> addresses = new ArrayList<String>(nodes.keySet());
+        List<String> services = services(300);
+        for (int i = 0; i < services.size(); i++) {
+            collect(addresses.get(i % addresses.size()), newStatistics(services.get(i), 1));
+        }
+        flush();
+        Map<String, Integer> owned = new HashMap<String, Integer>();
+        for (String service : services) {
+            String owner = clusters.get(addresses.get(0)).getOwner(service);
+            for (MonitorCluster cluster : clusters.values()) {
+                Assert.assertEquals(owner, cluster.getOwner(service));
+            }
+            Assert.assertEquals(Arrays.asList(service), nodes.get(owner).getServices(service));
+            Integer count = owned.get(owner);
+            owned.put(owner, count == null ? 1 : count + 1);
+        }
+        for (String address : addresses) {
+            // roughly a third each
+            Assert.assertTrue(owned.get(address) > 50);
+        }
+    }
+
+    @Test
+    public void testRebalance() {
+        List<String> services = services(1000);
+        Map<String, String> before = owners(services);
+        start("10.0.0.4:7070");
+        join(nodes.keySet());
+        Map<String, String> after = owners(services);
+        int moved = 0;
+        for (String service : services) {
+            if (!before.get(service).equals(after.get(service))) {
+                // only to the node joining
+                Assert.assertEquals("10.0.0.4:7070", after.get(service));
+                moved++;
+            }
+        }
+        Assert.assertTrue("moved " + moved, moved > 150 && moved < 350);
+
+        List<String> members = new ArrayList<String>(nodes.keySet());
+        members.remove("10.0.0.2:7070");
+        join(members);
+        Map<String, String> left = owners(services);
+        for (String service : services) {
+            if (!after.get(service).equals("10.0.0.2:7070")) {
+                Assert.assertEquals(after.get(service), left.get(service));
+            } else {
+                Assert.assertFalse("10.0.0.2:7070".equals(left.get(service)));
+            }
+        }
+    }
+
+    private Map<String, String> owners(List<String> services) {
+        Map<String, String> owners = new HashMap<String, String>();
+        for (String service : services) {
+            owners.put(service, clusters.get("10.0.0.1:7070").getOwner(service));
+        }
+        return owners;
+    }
+
+    @Test
+    public void testKeepStatisticsOfFailedNode() {
+        String self = "10.0.0.1:7070";
+        String failed = "10.0.0.2:7070";
+        String service = null;
+        for (String s : services(100)) {
+            if (failed.equals(clusters.get(self).getOwner(s))) {
+                service = s;
+                break;
+            }
+        }
+        nodes.get(failed).down = true;
+        collect(self, newStatistics(service, 1));
+        collect(self, newStatistics(service, 2));
+        flush();
+        Assert.assertEquals(1, clusters.get(self).getPeers().iterator().next().getFailures());
+        Assert.assertEquals(2, clusters.get(self).getPeers().iterator().next().getQueued());
+
+        // the failed node leaves, its statistics go to the new owner
+        List<String> members = new ArrayList<String>(nodes.keySet());
+        members.remove(failed);
+        clusters.get(self).setNodes(members);
+        clusters.get(self).flush();
+        String owner = clusters.get(self).getOwner(service);
+        Assert.assertEquals(Arrays.asList(service, service), nodes.get(owner).getServices(service));
+    }
+
+    @Test
+    public void testLookupMerge() {
+        URL url = URL.valueOf("count://10.0.0.9/com.foo.BarService?method=foo&side=consumer&provider=10.0.0.8:20880");
+        nodes.get("10.0.0.1:7070").lookups.add(url.addParameter(MonitorService.SUCCESS, 3)
+                .addParameter("max.elapsed", 10));
+        nodes.get("10.0.0.2:7070").lookups.add(url.addParameter(MonitorService.SUCCESS, 4)
+                .addParameter("max.elapsed", 20));
+        nodes.get("10.0.0.3:7070").lookups.add(url.addParameter(MonitorService.METHOD, "bar")
+                .addParameter(MonitorService.SUCCESS, 1));
+        List<URL> urls = clusters.get("10.0.0.3:7070").lookup(URL.valueOf("count://0.0.0.0/com.foo.BarService"));
+        Assert.assertEquals(2, urls.size());
+        Assert.assertEquals(7, urls.get(0).getParameter(MonitorService.SUCCESS, 0));
+        Assert.assertEquals(20, urls.get(0).getParameter("max.elapsed", 0));
+        Assert.assertEquals("bar", urls.get(1).getParameter(MonitorService.METHOD));
+    }
+
+    @Test
+    public void testQueryMerge() {
+        URL bucket = URL.valueOf("bucket://0.0.0.0/com.foo.BarService?method=foo&count=1");
+        nodes.get("10.0.0.1:7070").buckets.add(bucket.addParameter("time", 100)
+                .addParameter(MonitorService.SUCCESS, 60).addParameter(MonitorService.ELAPSED, 600));
+        nodes.get("10.0.0.2:7070").buckets.add(bucket.addParameter("time", 100)
+                .addParameter(MonitorService.SUCCESS, 120).addParameter(MonitorService.ELAPSED, 3600));
+        nodes.get("10.0.0.3:7070").buckets.add(bucket.addParameter("time", 101)
+                .addParameter(MonitorService.SUCCESS, 60).addParameter(MonitorService.ELAPSED, 60));
+        SeriesQuery query = new SeriesQuery("com.foo.BarService", "foo", SeriesQuery.RT, 100, 101);
+        TimeSeries series = clusters.get("10.0.0.1:7070").query(query, 0);
+        Assert.assertEquals(Resolution.MINUTE, series.getResolution());
+        Assert.assertEquals(2, series.size());
+        Assert.assertEquals(100 * DateUtils.MINUTE, series.getTimes()[0]);
+        // the average of all the calls, not of the averages of each node
+        Assert.assertEquals(4200.0 / 180, series.getValues()[0], 0.0001);
+        Assert.assertEquals(1, series.getValues()[1], 0.0001);
+    }
+
+    @Test
+    public void testTopMerge() {
+        URL entry = URL.valueOf("top://10.0.0.8/com.foo.BarService?consumer=10.0.0.9&side=provider&error=0");
+        nodes.get("10.0.0.1:7070").top.add(entry.addParameter(MonitorService.METHOD, "foo")
+                .addParameter("weight", 300).addParameter(MonitorService.SUCCESS, 300));
+        nodes.get("10.0.0.2:7070").top.add(entry.addParameter(MonitorService.METHOD, "foo")
+                .addParameter("weight", 300).addParameter(MonitorService.SUCCESS, 300));
+        nodes.get("10.0.0.3:7070").top.add(entry.addParameter(MonitorService.METHOD, "bar")
+                .addParameter("weight", 500).addParameter(MonitorService.SUCCESS, 500));
+        List<HeavyHitters.Entry> top = clusters.get("10.0.0.2:7070").getTop(HeavyHitters.Window.FIVE_MINUTES,
+                TopMetric.QPS, 1);
+        Assert.assertEquals(1, top.size());
+        Assert.assertEquals("foo", top.get(0).getSeries().getMethod());
+        Assert.assertEquals("10.0.0.8", top.get(0).getSeries().getProvider());
+        Assert.assertEquals(600, top.get(0).getWeight());
+        Assert.assertEquals(2.0, top.get(0).getValue(), 0.0001);
+    }
+
+    @Test
+    public void testChartMerge() {
+        long minute = DateUtils.toMinute("20180101") + 60;
+        Series provider = new Series("com.foo.BarService", "foo", "10.0.0.9", "10.0.0.8", MonitorService.PROVIDER);
+        Series consumer = new Series("com.foo.BarService", "foo", "10.0.0.9", "10.0.0.8", MonitorService.CONSUMER);
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10, 60);
+        nodes.get("10.0.0.1:7070").chart.onStatistics(minute, provider, new long[]{60, 0, 600, 1, 20, 1});
+        nodes.get("10.0.0.1:7070").chart.onLatency(minute, provider, histogram);
+        histogram = new LatencyHistogram();
+        histogram.record(1000, 30);
+        nodes.get("10.0.0.2:7070").chart.onStatistics(minute, provider, new long[]{30, 0, 30000, 1, 1500, 1});
+        nodes.get("10.0.0.2:7070").chart.onLatency(minute, provider, histogram);
+        nodes.get("10.0.0.3:7070").chart.onStatistics(minute, consumer, new long[]{5, 0, 50, 1, 10, 1});
+
+        ChartData chart = clusters.get("10.0.0.3:7070").getChartData("20180101", "com.foo.BarService", "foo");
+        String time = DateUtils.toTime(minute);
+        Assert.assertArrayEquals(new long[]{5, 90}, chart.getSuccessData().get(time));
+        Assert.assertArrayEquals(new long[]{50, 30600}, chart.getElapsedData().get(time));
+        Assert.assertEquals(1500, chart.getElapsedMax());
+        // the provider side, with the calls of both nodes
+        long[] percentiles = chart.getPercentiles();
+        Assert.assertTrue(percentiles[0] < 20);
+        Assert.assertTrue(percentiles[percentiles.length - 1] >= 900);
+    }
+
+    private class LocalTransport implements ClusterTransport {
+
+        public ClusterService getService(String node) {
+            return nodes.get(node);
+        }
+
+        public void retain(Collection<String> nodes) {
+        }
+
+        public void destroy() {
+        }
+    }
+
+    @Test
+    public void testAlertsAndAnomaliesMerge() {
+        Series series = new Series("com.foo.BarService", "foo", "10.0.0.9", "10.0.0.8", MonitorService.PROVIDER);
+        AlertRule rule = AlertRule.parse("failures: com.foo.BarService failure/success > 5% for 3");
+        nodes.get("10.0.0.1:7070").alerts.add(new Alert(rule, series, true, 100, 103, 0.25).toURL());
+        nodes.get("10.0.0.1:7070").anomalies.add(
+                new Anomaly(series, AnomalyType.QPS_DROP, 100, 0, 60, Double.NaN, 9.5).toURL());
+        nodes.get("10.0.0.2:7070").anomalies.add(
+                new Anomaly(series, AnomalyType.LATENCY_SHIFT, 200, 900, 20, 25, 12).toURL());
+
+        List<Alert> alerts = clusters.get("10.0.0.3:7070").getAlerts();
+        Assert.assertEquals(1, alerts.size());
+        Alert alert = alerts.get(0);
+        Assert.assertEquals(rule.toString(), alert.getRule().toString());
+        Assert.assertEquals(series, alert.getSeries());
+        Assert.assertTrue(alert.isFiring());
+        Assert.assertEquals(100, alert.getSince());
+        Assert.assertEquals(103, alert.getMinute());
+        Assert.assertEquals(0.25, alert.getValue(), 0.0);
+
+        Assert.assertEquals(2, clusters.get("10.0.0.3:7070").getActiveAnomalies().size());
+        // latest first, whichever node found it
+        List<Anomaly> history = clusters.get("10.0.0.3:7070").getAnomalyHistory(0);
+        Assert.assertEquals(AnomalyType.LATENCY_SHIFT, history.get(0).getType());
+        Assert.assertEquals(200, history.get(0).getMinute());
+        Assert.assertEquals(AnomalyType.QPS_DROP, history.get(1).getType());
+        Assert.assertEquals(series, history.get(1).getSeries());
+        Assert.assertTrue(Double.isNaN(history.get(1).getYesterday()));
+        Assert.assertEquals(9.5, history.get(1).getScore(), 0.0);
+    }
+
+    private static class Node implements ClusterService {
+
+        private final List<URL> collected = Collections.synchronizedList(new ArrayList<URL>());
+
+        private final List<URL> lookups = new ArrayList<URL>();
+
+        private final List<URL> buckets = new ArrayList<URL>();
+
+        private final List<URL> top = new ArrayList<URL>();
+
+        private final ChartData chart = new ChartData("20180101", "com.foo.BarService", "foo");
+
+        private final List<URL> alerts = new ArrayList<URL>();
+
+        private final List<URL> anomalies = new ArrayList<URL>();
+
+        private volatile boolean down;
+
+        public void forward(List<URL> statistics) {
+            if (down) {
+                throw new IllegalStateException("The node is down.");
+            }
+            collected.addAll(statistics);
+        }
+
+        public List<URL> lookup(URL query) {
+            return lookups;
+        }
+
+        public List<URL> getSummaries(String day, String service) {
+            return Collections.emptyList();
+        }
+
+        public List<URL> query(URL query) {
+            Assert.assertEquals(Resolution.MINUTE.getName(), query.getParameter("resolution"));
+            return buckets;
+        }
+
+        public List<URL> getTop(String window, String metric, int size) {
+            return top;
+        }
+
+        public List<URL> getChart(String day, String service, String method) {
+            return chart.toURLs();
+        }
+
+        public List<URL> getAlerts() {
+            return alerts;
+        }
+
+        public List<URL> getActiveAnomalies() {
+            return anomalies;
+        }
+
+        public List<URL> getAnomalyHistory(long since) {
+            return anomalies;
+        }
+
+        List<String> getServices(String service) {
+            List<String> services = new ArrayList<String>();
+            synchronized (collected) {
+                for (URL url : collected) {
+                    if (url.getServiceInterface().equals(service)) {
+                        services.add(service);
+                    }
+                }
+            }
+            return services;
+        }
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.common;
+
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * CountBenchmark compares {@link CountUtils}, which reads statistics files through
+ * {@link StatisticsScanner}, with the former line parsing of CountUtils, kept here as a baseline:
+ * readLine, substring, trim, a regex match and Integer.parseInt per line, and one pass per
+ * aggregate. Each invocation computes the sum and max of a day of ten "HHmm value" files.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java -Dexec.args="-cp %classpath org.openjdk.jmh.Main CountBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CountBenchmark {
+
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d+");
+
+    private static final int FILES = 10;
+
+    private File directory;
+
+    private File[] files;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = File.createTempFile("count", "");
+        directory.delete();
+        directory.mkdirs();
+        files = new File[FILES];
+        Random random = new Random(0);
+        for (int i = 0; i < FILES; i++) {
+            files[i] = new File(directory, i + ".txt");
+            Writer writer = new FileWriter(files[i]);
+            try {
+                for (int minute = 0; minute < 24 * 60; minute++) {
+                    writer.write(String.format("%02d%02d %d\n", minute / 60, minute % 60, random.nextInt(100000)));
+                }
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : files) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public long lines() throws IOException {
+        long result = 0;
+        for (File file : files) {
+            result += calc(file, false) + calc(file, true);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long scanner() {
+        StatisticsScanner.Summary summary = CountUtils.summarize(files);
+        return summary.getSum() + summary.getMax();
+    }
+
+    private static long calc(File file, boolean max) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int i = line.indexOf(" ");
+                if (i > 0) {
+                    line = line.substring(i + 1).trim();
+                    if (NUMBER_PATTERN.matcher(line).matches()) {
+                        int value = Integer.parseInt(line);
+                        if (max) {
+                            count = Math.max(count, value);
+                        } else {
+                            count += value;
+                        }
+                    }
+                }
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.ingest;
+
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IntakeBenchmark compares the shard intake of {@link RingBuffer} with the former
+ * {@link LinkedBlockingQueue}: three reporting threads offer while one writer thread drains in
+ * batches, as SimpleMonitorService does. Offer latency is what the RPC threads pay per report.
+ * The journaled groups add the {@link SpillJournal} append in front of the ring, claimed with a
+ * CAS as shards do, or under the shard lock as they formerly did.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java -Dexec.args="-cp %classpath org.openjdk.jmh.Main IntakeBenchmark"
+ * </pre>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntakeBenchmark {
+
+    private static final int CAPACITY = 65536;
+
+    private static final int BATCH = 1000;
+
+    private static final Sample SAMPLE = new Sample(0, new Series("com.alibaba.dubbo.demo.DemoService", "sayHello",
+            "10.20.153.11", "10.20.153.10", "provider"), new long[]{1, 0, 3, 1, 3, 1});
+
+    @State(Scope.Group)
+    public static class Ring {
+
+        final RingBuffer<Sample> ring = new RingBuffer<Sample>(CAPACITY);
+
+    }
+
+    @State(Scope.Group)
+    public static class Queue {
+
+        final BlockingQueue<Sample> queue = new LinkedBlockingQueue<Sample>(CAPACITY);
+
+    }
+
+    @State(Scope.Group)
+    public static class Journaled {
+
+        final RingBuffer<Sample> ring = new RingBuffer<Sample>(CAPACITY);
+
+        File file;
+
+        SpillJournal journal;
+
+        @Setup
+        public void setUp() throws IOException {
+            file = File.createTempFile("intake", SpillJournal.SUFFIX);
+            journal = new SpillJournal(file, CAPACITY * 4);
+        }
+
+        @TearDown
+        public void tearDown() {
+            journal.close();
+            file.delete();
+        }
+
+        boolean offer(Sample sample) {
+            long sequence = journal.append(sample.getMinute(), sample.getSeries(), sample.getValues());
+            if (sequence < 0) {
+                return false;
+            }
+            if (!ring.offer(new Sample(sequence, sample.getMinute(), sample.getSeries(), sample.getValues()))) {
+                journal.spill(sequence);
+            }
+            return true;
+        }
+
+        int drain(List<Sample> samples) {
+            int count = ring.drainTo(samples, BATCH);
+            if (count > 0) {
+                long sequence = samples.get(count - 1).getSequence() + 1;
+                journal.commit(sequence, sequence, 0);
+            }
+            samples.clear();
+            return count;
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+
+        final List<Sample> samples = new ArrayList<Sample>(BATCH);
+
+    }
+
+    @Benchmark
+    @Group("ring")
+    @GroupThreads(3)
+    public boolean ringOffer(Ring state) {
+        return state.ring.offer(SAMPLE);
+    }
+
+    @Benchmark
+    @Group("ring")
+    @GroupThreads(1)
+    public int ringDrain(Ring state, Batch batch) {
+        int count = state.ring.drainTo(batch.samples, BATCH);
+        batch.samples.clear();
+        return count;
+    }
+
+    @Benchmark
+    @Group("journal")
+    @GroupThreads(3)
+    public boolean journalOffer(Journaled state) {
+        return state.offer(SAMPLE);
+    }
+
+    @Benchmark
+    @Group("journal")
+    @GroupThreads(1)
+    public int journalDrain(Journaled state, Batch batch) {
+        return state.drain(batch.samples);
+    }
+
+    @Benchmark
+    @Group("lockedJournal")
+    @GroupThreads(3)
+    public boolean lockedJournalOffer(Journaled state) {
+        synchronized (state) {
+            return state.offer(SAMPLE);
+        }
+    }
+
+    @Benchmark
+    @Group("lockedJournal")
+    @GroupThreads(1)
+    public int lockedJournalDrain(Journaled state, Batch batch) {
+        return state.drain(batch.samples);
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(3)
+    public boolean queueOffer(Queue state) {
+        return state.queue.offer(SAMPLE);
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(1)
+    public int queueDrain(Queue state, Batch batch) {
+        int count = state.queue.drainTo(batch.samples, BATCH);
+        batch.samples.clear();
+        return count;
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.ingest;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.StatisticsTypes;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * OverloadPolicyTest
+ */
+public class OverloadPolicyTest {
+
+    private static final Series FOO = new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2",
+            MonitorService.PROVIDER);
+
+    private static final Series BAR = new Series("com.foo.BarService", "bar", "10.0.0.1", "10.0.0.2",
+            MonitorService.PROVIDER);
+
+    @Test
+    public void testDropOldest() {
+        // without journal, the queue is shed down to half of its capacity past three quarters
+        Assert.assertEquals(0, OverloadPolicy.getShedCount(96, -1, 128));
+        Assert.assertEquals(33, OverloadPolicy.getShedCount(97, -1, 128));
+        Assert.assertEquals(64, OverloadPolicy.getShedCount(128, -1, 128));
+        // with a journal, the journaled backlog is shed down to half of the journal
+        Assert.assertEquals(0, OverloadPolicy.getShedCount(16, 192, 256));
+        Assert.assertEquals(72, OverloadPolicy.getShedCount(16, 200, 256));
+        // a queue full of samples not journaled never sheds more than is journaled
+        Assert.assertEquals(10, OverloadPolicy.getShedCount(256, 10, 256));
+        Assert.assertEquals(0, OverloadPolicy.getShedCount(256, 0, 256));
+    }
+
+    @Test
+    public void testSample() {
+        ReportSampler sampler = new ReportSampler(10);
+        int kept = 0;
+        for (int i = 0; i < 25; i++) {
+            Sample sample = sampler.sample(new Sample(0, FOO, new long[]{1, 2, 30, 1, 40, 3}));
+            if (sample != null) {
+                kept++;
+                Assert.assertEquals(10, sample.getValues()[StatisticsTypes.SUCCESS]);
+                Assert.assertEquals(20, sample.getValues()[StatisticsTypes.FAILURE]);
+                Assert.assertEquals(300, sample.getValues()[StatisticsTypes.ELAPSED]);
+                Assert.assertEquals(40, sample.getValues()[StatisticsTypes.MAX_ELAPSED]);
+                Assert.assertEquals(3, sample.getValues()[StatisticsTypes.MAX_CONCURRENT]);
+            }
+        }
+        Assert.assertEquals(3, kept);
+        // each series is sampled apart, from its first report on
+        Assert.assertNotNull(sampler.sample(new Sample(0, BAR, new long[StatisticsTypes.LENGTH])));
+        Assert.assertEquals(2, sampler.size());
+
+        // the series are forgotten once the minute changes
+        sampler.expire(1);
+        Assert.assertEquals(0, sampler.size());
+        Assert.assertNotNull(sampler.sample(new Sample(1, FOO, new long[StatisticsTypes.LENGTH])));
+        sampler.expire(1);
+        Assert.assertEquals(1, sampler.size());
+        Assert.assertNull(sampler.sample(new Sample(1, FOO, new long[StatisticsTypes.LENGTH])));
+    }
+
+}
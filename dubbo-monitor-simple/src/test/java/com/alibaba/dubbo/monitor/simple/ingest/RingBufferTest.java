@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.ingest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RingBufferTest
+ */
+public class RingBufferTest {
+
+    @Test
+    public void testOfferAndPoll() throws Exception {
+        RingBuffer<Integer> ring = new RingBuffer<Integer>(3);
+        Assert.assertEquals(4, ring.capacity());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(ring.offer(i));
+        }
+        Assert.assertFalse(ring.offer(4));
+        Assert.assertEquals(4, ring.size());
+        Assert.assertEquals(Integer.valueOf(0), ring.poll());
+        Assert.assertTrue(ring.offer(4));
+        List<Integer> drained = new ArrayList<Integer>();
+        Assert.assertEquals(3, ring.drainTo(drained, 3));
+        Assert.assertEquals(3, drained.size());
+        Assert.assertEquals(Integer.valueOf(1), drained.get(0));
+        Assert.assertEquals(Integer.valueOf(4), ring.poll(10, TimeUnit.MILLISECONDS));
+        Assert.assertNull(ring.poll(10, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void testMultipleProducers() throws Exception {
+        final int producers = 4;
+        final int count = 100000;
+        final RingBuffer<long[]> ring = new RingBuffer<long[]>(1024);
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        long[] element = new long[]{producer, i};
+                        while (!ring.offer(element)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        start.countDown();
+        long[] next = new long[producers];
+        List<long[]> batch = new ArrayList<long[]>();
+        int received = 0;
+        while (received < producers * count) {
+            long[] first = ring.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull(first);
+            batch.add(first);
+            ring.drainTo(batch, 99);
+            for (long[] element : batch) {
+                // elements of one producer are taken in the order they were offered
+                Assert.assertEquals(next[(int) element[0]]++, element[1]);
+            }
+            received += batch.size();
+            batch.clear();
+        }
+        Assert.assertEquals(0, ring.size());
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.ingest;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.SeriesDictionary;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SpillJournalTest
+ */
+public class SpillJournalTest {
+
+    private File file;
+
+    private SeriesDictionary dictionary;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("shard", SpillJournal.SUFFIX);
+        dictionary = new SeriesDictionary(file.getPath() + ".dictionary", 10);
+    }
+
+    @After
+    public void tearDown() {
+        dictionary.close();
+        new File(file.getPath() + ".dictionary").delete();
+        file.delete();
+    }
+
+    private static List<Sample> recover(File file, SeriesDictionary dictionary) throws Exception {
+        final List<Sample> samples = new ArrayList<Sample>();
+        SpillJournal.recover(file, dictionary, new SpillJournal.SampleVisitor() {
+            public void onSample(Sample sample) {
+                samples.add(sample);
+            }
+        });
+        return samples;
+    }
+
+    @Test
+    public void testAppendCommitAndRecover() throws Exception {
+        Series series = dictionary.intern("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        SpillJournal journal = new SpillJournal(file, 4);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(i, journal.append(100 + i, series, new long[]{i, 0, 0, 0, 0, 0}));
+        }
+        Assert.assertEquals(-1, journal.append(104, series, new long[6]));
+        journal.commit(3, 3, 0);
+        // wraps around over the committed slots
+        Assert.assertEquals(4, journal.append(104, series, new long[]{4, 0, 0, 0, 0, 0}));
+        Assert.assertEquals(2, journal.size());
+        Sample sample = journal.read(4, dictionary);
+        Assert.assertEquals(104, sample.getMinute());
+        Assert.assertSame(series, sample.getSeries());
+        Assert.assertEquals(4, sample.getValues()[0]);
+        journal.close();
+
+        List<Sample> samples = recover(file, dictionary);
+        Assert.assertEquals(2, samples.size());
+        Assert.assertEquals(3, samples.get(0).getSequence());
+        Assert.assertEquals(4, samples.get(1).getSequence());
+        Assert.assertEquals(103, samples.get(0).getMinute());
+    }
+
+    @Test
+    public void testRecoverSkipsPersistedMinutes() throws Exception {
+        Series foo = dictionary.intern("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        Series bar = dictionary.intern("com.foo.BarService", "bar", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        SpillJournal journal = new SpillJournal(file, 16);
+        // late samples of minute 100 interleaved with samples of minute 101
+        long[] minutes = {100, 101, 100, 101, 100, 101};
+        for (int i = 0; i < minutes.length; i++) {
+            journal.append(minutes[i], i % 2 == 0 ? foo : bar, new long[]{i + 1, 0, 0, 0, 0, 0});
+        }
+        // the shard persisted minute 100, minute 101 is pending since sequence 1, then it crashed
+        journal.commit(1, minutes.length, 101);
+        journal.append(102, foo, new long[]{minutes.length + 1, 0, 0, 0, 0, 0});
+        journal.close();
+
+        long[] totals = new long[3];
+        for (Sample sample : recover(file, dictionary)) {
+            totals[(int) (sample.getMinute() - 100)] += sample.getValues()[0];
+        }
+        // persisted already, replayed neither before nor after the head
+        Assert.assertEquals(0, totals[0]);
+        Assert.assertEquals(2 + 4 + 6, totals[1]);
+        Assert.assertEquals(7, totals[2]);
+    }
+
+    @Test
+    public void testRecoverSkipsIncompleteRecord() throws Exception {
+        Series series = dictionary.intern("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        SpillJournal journal = new SpillJournal(file, 8);
+        journal.append(100, series, new long[6]);
+        journal.append(101, series, new long[6]);
+        journal.close();
+        // clear the sequence of the second record, as if the process died while writing it
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(64 + SpillJournal.RECORD_SIZE);
+            raf.writeLong(0);
+        } finally {
+            raf.close();
+        }
+        List<Sample> samples = recover(file, dictionary);
+        Assert.assertEquals(1, samples.size());
+        Assert.assertEquals(100, samples.get(0).getMinute());
+
+        // a record claimed but not written before a later one, as by concurrent producers
+        journal = new SpillJournal(file, 8);
+        journal.append(100, series, new long[6]);
+        journal.append(101, series, new long[6]);
+        journal.append(102, series, new long[6]);
+        Assert.assertFalse(journal.isSpilled(2));
+        journal.spill(2);
+        Assert.assertTrue(journal.isSpilled(2));
+        journal.close();
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(64 + SpillJournal.RECORD_SIZE);
+            raf.writeLong(0);
+        } finally {
+            raf.close();
+        }
+        samples = recover(file, dictionary);
+        Assert.assertEquals(2, samples.size());
+        Assert.assertEquals(102, samples.get(1).getMinute());
+
+        // a new journal starts empty
+        journal = new SpillJournal(file, 8);
+        Assert.assertEquals(0, journal.size());
+        journal.close();
+        Assert.assertEquals(0, recover(file, dictionary).size());
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.query;
+
+import com.alibaba.dubbo.monitor.simple.statistics.Resolution;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * DownsamplerTest
+ */
+public class DownsamplerTest {
+
+    private static TimeSeries create(int size) {
+        long[] times = new long[size];
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            times[i] = i * 60000L;
+            values[i] = i % 10;
+        }
+        values[size / 2] = 1000; // spike
+        return new TimeSeries(times, values, size, Resolution.MINUTE);
+    }
+
+    @Test
+    public void testLttb() {
+        TimeSeries series = Downsampler.lttb(create(1440), 100);
+        Assert.assertEquals(100, series.size());
+        Assert.assertEquals(1440, series.getRawSize());
+        Assert.assertEquals(0, series.getTimes()[0]);
+        Assert.assertEquals(1439 * 60000L, series.getTimes()[99]);
+        boolean spike = false;
+        for (int i = 0; i < series.size(); i++) {
+            if (i > 0) {
+                Assert.assertTrue(series.getTimes()[i] > series.getTimes()[i - 1]);
+            }
+            spike |= series.getValues()[i] == 1000;
+        }
+        Assert.assertTrue(spike);
+    }
+
+    @Test
+    public void testMinMax() {
+        TimeSeries series = Downsampler.minMax(create(1440), 100);
+        Assert.assertEquals(100, series.size());
+        boolean spike = false;
+        for (int i = 0; i < series.size(); i++) {
+            if (i > 0) {
+                Assert.assertTrue(series.getTimes()[i] > series.getTimes()[i - 1]);
+            }
+            spike |= series.getValues()[i] == 1000;
+        }
+        Assert.assertTrue(spike);
+    }
+
+    @Test
+    public void testNoDownsampling() {
+        TimeSeries series = create(50);
+        Assert.assertSame(series, Downsampler.lttb(series, 100));
+        Assert.assertSame(series, Downsampler.minMax(series, 50));
+        Assert.assertSame(series, Downsampler.downsample(series, 0, Downsampler.LTTB));
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.query;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyStore;
+import com.alibaba.dubbo.monitor.simple.statistics.Resolution;
+import com.alibaba.dubbo.monitor.simple.statistics.RollupStore;
+import com.alibaba.dubbo.monitor.simple.statistics.SegmentStatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+/**
+ * SeriesQueryTest
+ */
+public class SeriesQueryTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("statistics", "");
+        directory.delete();
+        System.setProperty("dubbo.statistics.directory", directory.getAbsolutePath());
+        System.setProperty("dubbo.monitor.flush.interval", "0");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("dubbo.statistics.directory");
+        System.clearProperty("dubbo.monitor.flush.interval");
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testCountInvocationsOnce() {
+        long minute = DateUtils.toMinute("20180101", "1230");
+        SegmentStatisticsStore store = new SegmentStatisticsStore();
+        // the same 60 invocations, reported by the consumer and by the provider
+        store.append(minute, new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.CONSUMER),
+                new long[]{60, 0, 600, 0, 20, 1});
+        store.append(minute, new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER),
+                new long[]{60, 0, 300, 0, 10, 1});
+        store.flush();
+        RollupStore rollups = new RollupStore(directory.getAbsolutePath() + "/rollup");
+
+        SeriesQuery query = new SeriesQuery("com.foo.BarService", "foo", SeriesQuery.QPS, minute, minute);
+        query.setResolution(Resolution.MINUTE);
+        Assert.assertEquals(1.0, query.execute(store, rollups, new LatencyStore(), 0).getValues()[0], 0.0001);
+        query = new SeriesQuery("com.foo.BarService", "foo", MonitorService.SUCCESS, minute, minute);
+        query.setResolution(Resolution.MINUTE);
+        Assert.assertEquals(60.0, query.execute(store, rollups, new LatencyStore(), 0).getValues()[0], 0.0001);
+        query.setSide(MonitorService.CONSUMER);
+        Assert.assertEquals(60.0, query.execute(store, rollups, new LatencyStore(), 0).getValues()[0], 0.0001);
+        query = new SeriesQuery("com.foo.BarService", "foo", SeriesQuery.RT, minute, minute);
+        query.setResolution(Resolution.MINUTE);
+        Assert.assertEquals(5.0, query.execute(store, rollups, new LatencyStore(), 0).getValues()[0], 0.0001);
+        // and sent to another node as is
+        Assert.assertEquals(MonitorService.PROVIDER, SeriesQuery.valueOf(query.toURL()).getSide());
+        store.close();
+    }
+
+}
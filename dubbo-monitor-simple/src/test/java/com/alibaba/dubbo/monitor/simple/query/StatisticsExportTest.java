@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.query;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.statistics.FileStatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+
+/**
+ * StatisticsExportTest
+ */
+public class StatisticsExportTest {
+
+    private File directory;
+
+    private FileStatisticsStore store;
+
+    private long start;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("statistics", "");
+        directory.delete();
+        System.setProperty("dubbo.statistics.directory", directory.getAbsolutePath());
+        start = DateUtils.toMinute("20180101");
+        store = new FileStatisticsStore();
+        Series foo = new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        Series bar = new Series("com.foo.BarService", "bar", "10.0.0.3", "10.0.0.2", MonitorService.CONSUMER);
+        for (int day = 0; day < 3; day++) {
+            for (int i = 0; i < 10; i++) {
+                store.append(start + day * DateUtils.MINUTES_PER_DAY + i, foo, new long[]{10, 1, 100, 2, 10 + i, 3});
+            }
+            store.append(start + day * DateUtils.MINUTES_PER_DAY, bar, new long[]{1, 0, 1, 1, 1, 1});
+        }
+        store.close();
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("dubbo.statistics.directory");
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testCsv() throws Exception {
+        StatisticsExport export = new StatisticsExport(StatisticsExport.CSV,
+                StatisticsExport.parseTime("20180102", false), StatisticsExport.parseTime("20180103", true));
+        StringWriter writer = new StringWriter();
+        Assert.assertEquals(22, export.execute(store, writer));
+        String[] lines = writer.toString().split("\n");
+        Assert.assertEquals(23, lines.length);
+        Assert.assertEquals("time,service,method,consumer,provider,side,success,failure,elapsed,concurrent,max.elapsed,max.concurrent", lines[0]);
+        Assert.assertEquals((start + DateUtils.MINUTES_PER_DAY) * DateUtils.MINUTE
+                + ",com.foo.BarService,bar,10.0.0.3,10.0.0.2,consumer,1,0,1,1,1,1", lines[1]);
+    }
+
+    @Test
+    public void testNdjsonFiltered() throws Exception {
+        StatisticsExport export = new StatisticsExport(StatisticsExport.NDJSON, start + 5, start + DateUtils.MINUTES_PER_DAY + 5);
+        export.setHost("10.0.0.1");
+        StringWriter writer = new StringWriter();
+        Assert.assertEquals(11, export.execute(store, writer));
+        String[] lines = writer.toString().split("\n");
+        JSONObject first = JSON.parseObject(lines[0]);
+        Assert.assertEquals((start + 5) * DateUtils.MINUTE, first.getLongValue("time"));
+        Assert.assertEquals("foo", first.getString("method"));
+        Assert.assertEquals(15, first.getLongValue("max.elapsed"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedFormat() {
+        new StatisticsExport("xml", 0, 1);
+    }
+
+}
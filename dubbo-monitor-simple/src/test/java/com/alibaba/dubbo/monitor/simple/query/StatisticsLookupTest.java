@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.query;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyStore;
+import com.alibaba.dubbo.monitor.simple.statistics.SegmentStatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.SummaryIndex;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * StatisticsLookupTest
+ */
+public class StatisticsLookupTest {
+
+    private File directory;
+
+    private SegmentStatisticsStore store;
+
+    private SummaryIndex summaries;
+
+    private long start;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("statistics", "");
+        directory.delete();
+        System.setProperty("dubbo.statistics.directory", directory.getAbsolutePath());
+        System.setProperty("dubbo.monitor.flush.interval", "0");
+        start = DateUtils.toMinute("20180101");
+        Series foo = new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        Series bar = new Series("com.foo.BarService", "bar", "10.0.0.1", "10.0.0.3", MonitorService.CONSUMER);
+        store = new SegmentStatisticsStore();
+        for (int day = 0; day < 2; day++) {
+            for (int i = 0; i < 10; i++) {
+                store.append(start + day * DateUtils.MINUTES_PER_DAY + i, foo, new long[]{10, 1, 100, 2, 10 + i, 3});
+            }
+            store.append(start + day * DateUtils.MINUTES_PER_DAY, bar, new long[]{1, 0, 1, 1, 1, 1});
+        }
+        store.flush();
+        summaries = new SummaryIndex(store, new LatencyStore(), directory.getAbsolutePath() + "/summary", 0);
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("dubbo.statistics.directory");
+        System.clearProperty("dubbo.monitor.flush.interval");
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testWholeDays() {
+        URL query = URL.valueOf("count://0.0.0.0/com.foo.BarService?method=foo&from=" + start * DateUtils.MINUTE
+                + "&to=" + ((start + 2 * DateUtils.MINUTES_PER_DAY) * DateUtils.MINUTE - 1));
+        List<URL> urls = StatisticsLookup.parse(query).execute(summaries, store);
+        Assert.assertEquals(1, urls.size());
+        URL url = urls.get(0);
+        Assert.assertEquals("10.0.0.2", url.getHost());
+        Assert.assertEquals("com.foo.BarService", url.getServiceInterface());
+        Assert.assertEquals("foo", url.getParameter(MonitorService.METHOD));
+        Assert.assertEquals("10.0.0.1", url.getParameter(MonitorService.CONSUMER));
+        Assert.assertEquals(200, url.getParameter(MonitorService.SUCCESS, 0L));
+        Assert.assertEquals(20, url.getParameter(MonitorService.FAILURE, 0L));
+        Assert.assertEquals(19, url.getParameter(MonitorService.MAX_ELAPSED, 0L));
+    }
+
+    @Test
+    public void testDeletedDays() {
+        summaries.getEntries("20180101", "com.foo.BarService");
+        summaries.save();
+        store.delete("20180101");
+        StatisticsLookup lookup = new StatisticsLookup(start, start + 2 * DateUtils.MINUTES_PER_DAY - 1);
+        lookup.setMethod("foo");
+        List<URL> urls = lookup.execute(summaries, store);
+        Assert.assertEquals(1, urls.size());
+        // the first day from its summary, though its statistics are deleted
+        Assert.assertEquals(200, urls.get(0).getParameter(MonitorService.SUCCESS, 0L));
+    }
+
+    @Test
+    public void testPartialDay() {
+        StatisticsLookup lookup = new StatisticsLookup(start + 5, start + DateUtils.MINUTES_PER_DAY + 2);
+        lookup.setHost("10.0.0.2");
+        lookup.setMetric(MonitorService.SUCCESS);
+        List<URL> urls = lookup.execute(summaries, store);
+        Assert.assertEquals(1, urls.size());
+        // minutes 5 to 9 of the first day, 0 to 2 of the second
+        Assert.assertEquals(80, urls.get(0).getParameter(MonitorService.SUCCESS, 0L));
+        Assert.assertFalse(urls.get(0).hasParameter(MonitorService.FAILURE));
+    }
+
+    @Test
+    public void testServices() {
+        StatisticsLookup lookup = new StatisticsLookup(start, start + 2 * DateUtils.MINUTES_PER_DAY - 1);
+        lookup.setSide(MonitorService.CONSUMER);
+        URL url = lookup.execute(summaries, store).get(0);
+        Assert.assertEquals("10.0.0.1", url.getHost());
+        Assert.assertEquals("10.0.0.3", url.getParameter(MonitorService.PROVIDER));
+        Assert.assertEquals(2, url.getParameter(MonitorService.SUCCESS, 0L));
+
+        lookup.setServices(Collections.singleton("com.foo.OtherService"));
+        Assert.assertTrue(lookup.execute(summaries, store).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalMetric() {
+        StatisticsLookup.parse(URL.valueOf("count://0.0.0.0/com.foo.BarService?metric=foo"));
+    }
+
+}
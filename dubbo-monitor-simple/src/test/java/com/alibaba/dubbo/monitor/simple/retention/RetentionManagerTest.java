@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.retention;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.statistics.FileStatisticsStore;
+import com.alibaba.dubbo.monitor.simple.statistics.LatencyStore;
+import com.alibaba.dubbo.monitor.simple.statistics.RollupCompactor;
+import com.alibaba.dubbo.monitor.simple.statistics.RollupStore;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.SummaryIndex;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * RetentionManagerTest
+ */
+public class RetentionManagerTest {
+
+    private File directory;
+
+    private FileStatisticsStore store;
+
+    private RollupStore rollups;
+
+    private SummaryIndex summaries;
+
+    private RetentionManager retention;
+
+    private long start;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("statistics", "");
+        directory.delete();
+        System.setProperty("dubbo.statistics.directory", directory.getAbsolutePath());
+        System.setProperty("dubbo.monitor.flush.interval", "0");
+        start = DateUtils.toMinute("20180101");
+        store = new FileStatisticsStore();
+        Series foo = new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        Series bar = new Series("com.foo.BazService", "bar", "10.0.0.1", "10.0.0.3", MonitorService.PROVIDER);
+        for (int day = 0; day < 3; day++) {
+            for (int i = 0; i < 10; i++) {
+                store.append(start + day * DateUtils.MINUTES_PER_DAY + i, foo, new long[]{10, 1, 100, 2, 10, 3});
+                store.append(start + day * DateUtils.MINUTES_PER_DAY + i, bar, new long[]{5, 0, 50, 1, 10, 1});
+            }
+        }
+        store.flush();
+        LatencyStore latencies = new LatencyStore();
+        rollups = new RollupStore(directory.getAbsolutePath() + "/rollup");
+        summaries = new SummaryIndex(store, latencies, directory.getAbsolutePath() + "/summary", 0);
+        retention = new RetentionManager(store, latencies, rollups, summaries, directory.getAbsolutePath(), 0);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        System.clearProperty("dubbo.statistics.directory");
+        System.clearProperty("dubbo.monitor.flush.interval");
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testArchiveBeforeDelete() throws Exception {
+        long now = start + 3 * DateUtils.MINUTES_PER_DAY + 120;
+        Assert.assertEquals(Long.MIN_VALUE, retention.getMinuteHorizon(now));
+        retention.setMinuteRetention(1);
+        Assert.assertEquals(DateUtils.toMinute("20180103"), retention.getMinuteHorizon(now));
+        retention.setArchive(directory.getAbsolutePath() + "/archive", 2, 0);
+        // not rolled up yet
+        retention.retain(now);
+        Assert.assertEquals(Arrays.asList("20180101", "20180102", "20180103"), store.getDays());
+
+        new RollupCompactor(store, rollups).compact(now);
+        Assert.assertEquals(1, retention.archive(now));
+        Assert.assertEquals(0, retention.archive(now));
+        retention.retain(now);
+        // 20180102 is expired but not archived yet
+        Assert.assertEquals(Arrays.asList("20180102", "20180103"), store.getDays());
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(retention.getArchive("20180101"))), "UTF-8"));
+        try {
+            Assert.assertTrue(reader.readLine().startsWith("time,service,method"));
+            int lines = 0;
+            while (reader.readLine() != null) {
+                lines++;
+            }
+            Assert.assertEquals(20, lines);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testRetainChartsAndSummaries() throws Exception {
+        String charts = directory.getAbsolutePath() + "/charts";
+        for (String day : new String[]{"20180101", "20180103"}) {
+            File file = new File(charts + "/" + day + "/com.foo.BarService/foo/success.png");
+            file.getParentFile().mkdirs();
+            new FileOutputStream(file).close();
+        }
+        summaries.getServices("20180101");
+        summaries.getServices("20180103");
+        summaries.save();
+        Assert.assertEquals(Arrays.asList("20180101", "20180103"), summaries.getDays());
+
+        retention.setCharts(charts, 1);
+        retention.setSummaryRetention(1);
+        retention.retain(start + 3 * DateUtils.MINUTES_PER_DAY);
+        Assert.assertEquals(Arrays.asList("20180103"), Arrays.asList(new File(charts).list()));
+        Assert.assertEquals(Arrays.asList("20180103"), summaries.getDays());
+    }
+
+    @Test
+    public void testDeleteFileByFile() throws Exception {
+        long now = start + 3 * DateUtils.MINUTES_PER_DAY + 120;
+        new RollupCompactor(store, rollups).compact(now);
+        RetentionManager paced = new RetentionManager(store, new LatencyStore(), rollups, summaries,
+                directory.getAbsolutePath(), 1);
+        paced.setMinuteRetention(2);
+        Thread.currentThread().interrupt();
+        try {
+            paced.retain(now);
+        } finally {
+            Thread.interrupted();
+        }
+        // the first file is free, the wait for the second one was interrupted
+        Assert.assertEquals(Arrays.asList("20180101", "20180102", "20180103"), store.getDays());
+        Assert.assertEquals(11, paced.scan().getFiles(RetentionManager.STATISTICS, "20180101"));
+
+        retention.setMinuteRetention(2);
+        retention.retain(now);
+        Assert.assertEquals(Arrays.asList("20180102", "20180103"), store.getDays());
+    }
+
+    @Test
+    public void testDiskUsage() {
+        retention.setCharts(directory.getAbsolutePath() + "/charts", 0);
+        DiskUsage usage = retention.scan();
+        Assert.assertEquals(Arrays.asList("20180101", "20180102", "20180103"), usage.getDays());
+        Assert.assertEquals(Arrays.asList("com.foo.BarService", "com.foo.BazService"), usage.getServices("20180101"));
+        // one file per statistics type of each series
+        Assert.assertEquals(12, usage.getFiles(RetentionManager.STATISTICS, "20180101"));
+        Assert.assertEquals(usage.getBytes(RetentionManager.STATISTICS, "20180101"),
+                usage.getBytes(RetentionManager.STATISTICS, "20180101", "com.foo.BarService")
+                        + usage.getBytes(RetentionManager.STATISTICS, "20180101", "com.foo.BazService"));
+        Assert.assertEquals(0, usage.getBytes(RetentionManager.CHARTS));
+    }
+
+    @Test
+    public void testThrottle() {
+        Throttle throttle = new Throttle(100);
+        long begin = System.nanoTime();
+        Assert.assertTrue(throttle.acquire(10));
+        Assert.assertTrue(throttle.acquire(1));
+        // the second call waited for the 10 permits of the first at 100 per second
+        Assert.assertTrue(System.nanoTime() - begin >= 90 * 1000000L);
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.servlet;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.statistics.Series;
+import com.alibaba.dubbo.monitor.simple.statistics.SeriesCounters;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * MetricsWriterTest
+ */
+public class MetricsWriterTest {
+
+    private static String write(SeriesCounters counters, long minute, int bufferSize) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        MetricsWriter writer = new MetricsWriter(output, new byte[bufferSize]);
+        writer.writeSeries(counters, minute);
+        writer.flush();
+        return output.toString("UTF-8");
+    }
+
+    @Test
+    public void testSeries() throws Exception {
+        SeriesCounters counters = new SeriesCounters(false, 10, 60);
+        counters.onStatistics(100, new Series("com.foo.BarService", "bar", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER),
+                new long[]{10, 1, 1234567890123L, 2, 30, 3});
+        counters.onStatistics(100, new Series("com.foo.BarService", "bar", "10.0.0.3", "10.0.0.2", MonitorService.PROVIDER),
+                new long[]{5, 0, 50, 1, 40, 1});
+        counters.onStatistics(99, new Series("com.foo.Bar\"Service", "foo", "10.0.0.1", "10.0.0.2", MonitorService.CONSUMER),
+                new long[]{1, 0, 1, 1, 1, 1});
+        Assert.assertEquals(2, counters.size());
+
+        String text = write(counters, 101, 16);
+        Assert.assertTrue(text.contains("# TYPE dubbo_monitor_success_total counter\n"));
+        Assert.assertTrue(text.contains("dubbo_monitor_success_total{service=\"com.foo.BarService\",method=\"bar\",side=\"provider\"} 15\n"));
+        Assert.assertTrue(text.contains("dubbo_monitor_elapsed_total{service=\"com.foo.BarService\",method=\"bar\",side=\"provider\"} 1234567890173\n"));
+        Assert.assertTrue(text.contains("dubbo_monitor_max_elapsed_minute{service=\"com.foo.BarService\",method=\"bar\",side=\"provider\"} 40\n"));
+        Assert.assertTrue(text.contains("dubbo_monitor_success_minute{service=\"com.foo.Bar\\\"Service\",method=\"foo\",side=\"consumer\"} 1\n"));
+        Assert.assertFalse(text.contains("consumer=\""));
+        Assert.assertTrue(text.contains("dubbo_monitor_series 2\n"));
+
+        // stale minutes report 0
+        text = write(counters, 110, 4096);
+        Assert.assertTrue(text.contains("dubbo_monitor_success_minute{service=\"com.foo.BarService\",method=\"bar\",side=\"provider\"} 0\n"));
+        Assert.assertTrue(text.contains("dubbo_monitor_success_total{service=\"com.foo.BarService\",method=\"bar\",side=\"provider\"} 15\n"));
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        SeriesCounters counters = new SeriesCounters(true, 1, 60);
+        counters.onStatistics(100, new Series("com.foo.BarService", "bar", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER),
+                new long[]{10, 1, 100, 2, 30, 3});
+        counters.onStatistics(100, new Series("com.foo.BarService", "bar", "10.0.0.3", "10.0.0.2", MonitorService.PROVIDER),
+                new long[]{5, 0, 50, 1, 40, 1});
+        String text = write(counters, 101, 4096);
+        Assert.assertTrue(text.contains("method=\"bar\",side=\"provider\",consumer=\"10.0.0.1\",provider=\"10.0.0.2\"} 10\n"));
+        Assert.assertTrue(text.contains("dubbo_monitor_series_dropped_total 1\n"));
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        SeriesCounters counters = new SeriesCounters(true, 1, 60);
+        Series bar = new Series("com.foo.BarService", "bar", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        Series foo = new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        counters.onStatistics(100, bar, new long[]{10, 1, 100, 2, 30, 3});
+        Assert.assertEquals(0, counters.expire(160));
+        Assert.assertEquals(1, counters.expire(161));
+        // the expired series frees its place for another
+        counters.onStatistics(161, foo, new long[]{5, 0, 50, 1, 40, 1});
+        String text = write(counters, 162, 4096);
+        Assert.assertTrue(text.contains("method=\"foo\",side=\"provider\",consumer=\"10.0.0.1\",provider=\"10.0.0.2\"} 5\n"));
+        Assert.assertFalse(text.contains("method=\"bar\""));
+        Assert.assertTrue(text.contains("dubbo_monitor_series_dropped_total 0\n"));
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * HeavyHittersTest
+ */
+public class HeavyHittersTest {
+
+    private static Series series(int i) {
+        return new Series("com.foo.BarService", "method" + i, "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+    }
+
+    @Test
+    public void testSketchKeepsHeavySeries() {
+        TopKSketch sketch = new TopKSketch(10, StatisticsTypes.SUCCESS);
+        Random random = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            // 3 heavy series among 1000 light ones
+            int n = random.nextInt(10) < 3 ? random.nextInt(3) : 3 + random.nextInt(1000);
+            sketch.add(series(n), new long[]{1, 0, 1, 0, 1, 0});
+        }
+        Assert.assertEquals(10, sketch.size());
+        int heavy = 0;
+        for (TopKSketch.Counter counter : sketch.getCounters()) {
+            if (counter.getSeries().getMethod().length() == "method0".length()
+                    && counter.getSeries().getMethod().compareTo("method3") < 0) {
+                heavy++;
+                Assert.assertTrue(counter.getWeight() - counter.getError() <= 10000);
+                Assert.assertTrue(counter.getWeight() >= 9000);
+            }
+        }
+        Assert.assertEquals(3, heavy);
+    }
+
+    @Test
+    public void testSketchMaximum() {
+        TopKSketch sketch = new TopKSketch(2, StatisticsTypes.MAX_ELAPSED);
+        for (int i = 0; i < 10; i++) {
+            sketch.add(series(i), new long[]{1, 0, 1, 0, i, 0});
+        }
+        for (TopKSketch.Counter counter : sketch.getCounters()) {
+            Assert.assertTrue(counter.getWeight() >= 8);
+            Assert.assertEquals(0, counter.getError());
+        }
+    }
+
+    @Test
+    public void testWindows() {
+        HeavyHitters heavyHitters = new HeavyHitters(10);
+        long now = DateUtils.toMinute(System.currentTimeMillis());
+        // method0 is the busiest one an hour ago, method1 in the last minutes
+        heavyHitters.onStatistics(now - 50, series(0), new long[]{6000, 0, 6000, 1, 1, 1});
+        for (int i = 1; i <= 3; i++) {
+            heavyHitters.onStatistics(now - i, series(1), new long[]{600, 300, 60000, 1, 500, 2});
+            heavyHitters.onStatistics(now - i, series(2), new long[]{60, 0, 60, 1, 5, 9});
+        }
+        long millis = now * DateUtils.MINUTE;
+
+        List<HeavyHitters.Entry> top = heavyHitters.getTop(HeavyHitters.Window.FIVE_MINUTES, TopMetric.QPS, 10, millis);
+        Assert.assertEquals(2, top.size());
+        Assert.assertEquals("method1", top.get(0).getSeries().getMethod());
+        Assert.assertEquals(6.0, top.get(0).getValue(), 0.001);
+
+        top = heavyHitters.getTop(HeavyHitters.Window.HOUR, TopMetric.QPS, 1, millis);
+        Assert.assertEquals(1, top.size());
+        Assert.assertEquals("method0", top.get(0).getSeries().getMethod());
+
+        top = heavyHitters.getTop(HeavyHitters.Window.HOUR, TopMetric.FAILURE, 10, millis);
+        Assert.assertEquals(1, top.size());
+        Assert.assertEquals(1.0 / 3, top.get(0).getValue(), 0.001);
+
+        top = heavyHitters.getTop(HeavyHitters.Window.DAY, TopMetric.MAX_CONCURRENT, 10, millis);
+        Assert.assertEquals("method2", top.get(0).getSeries().getMethod());
+        Assert.assertEquals(9, top.get(0).getValue(), 0.001);
+
+        top = heavyHitters.getTop(HeavyHitters.Window.DAY, TopMetric.RT, 10, millis);
+        Assert.assertEquals("method1", top.get(0).getSeries().getMethod());
+        Assert.assertEquals(100, top.get(0).getValue(), 0.001);
+    }
+
+    @Test
+    public void testSpreadMethod() {
+        HeavyHitters heavyHitters = new HeavyHitters(5, 4);
+        long now = DateUtils.toMinute(System.currentTimeMillis());
+        // method0 is called a little on each of many providers, the other ones a lot on one
+        for (int i = 0; i < 50; i++) {
+            heavyHitters.onStatistics(now - 1, new Series("com.foo.BarService", "method0", "10.0.0.1", "10.0.1." + i,
+                    MonitorService.PROVIDER), new long[]{60, 0, 60, 1, 1, 1});
+        }
+        for (int i = 1; i <= 20; i++) {
+            heavyHitters.onStatistics(now - 1, series(i), new long[]{600, 0, 600, 1, 1, 1});
+        }
+        List<HeavyHitters.Entry> top = heavyHitters.getTop(HeavyHitters.Window.FIVE_MINUTES, TopMetric.QPS, 1,
+                now * DateUtils.MINUTE);
+        Assert.assertEquals("method0", top.get(0).getSeries().getMethod());
+        Assert.assertEquals(3000, top.get(0).getValues()[StatisticsTypes.SUCCESS]);
+        Assert.assertEquals(MonitorService.PROVIDER, top.get(0).getSeries().getSide());
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * LatencyHistogramTest
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 10000000; value = value * 11 / 10 + 1) {
+            long bucket = LatencyHistogram.valueOf(LatencyHistogram.indexOf(value));
+            Assert.assertTrue(value + " -> " + bucket, Math.abs(bucket - value) <= value / 32 + 1);
+        }
+        Assert.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i, 1);
+        }
+        Assert.assertEquals(1000, histogram.getTotalCount());
+        Assert.assertEquals(500, histogram.getValueAtPercentile(50), 16);
+        Assert.assertEquals(990, histogram.getValueAtPercentile(99), 32);
+        Assert.assertEquals(1000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testRecordReport() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 100 invocations, 1000ms in total, the slowest took 505ms
+        histogram.recordReport(100, 1000, 505);
+        Assert.assertEquals(5, histogram.getValueAtPercentile(50));
+        Assert.assertEquals(505, histogram.getValueAtPercentile(100));
+        Assert.assertEquals(505, histogram.getMax());
+    }
+
+    @Test
+    public void testMergeAndEncode() {
+        LatencyHistogram a = new LatencyHistogram();
+        a.record(10, 90);
+        LatencyHistogram b = new LatencyHistogram();
+        b.record(1000, 10);
+        b.record(3, 5);
+        a.merge(b);
+        LatencyHistogram decoded = LatencyHistogram.decode(a.encode());
+        Assert.assertEquals(a.encode(), decoded.encode());
+        Assert.assertEquals(105, decoded.getTotalCount());
+        Assert.assertEquals(1000, decoded.getMax());
+        Assert.assertEquals(10, decoded.getValueAtPercentile(50));
+        Assert.assertEquals(1000, decoded.getValueAtPercentile(99), 32);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeMalformed() {
+        LatencyHistogram.decode("10;x:1");
+    }
+
+}
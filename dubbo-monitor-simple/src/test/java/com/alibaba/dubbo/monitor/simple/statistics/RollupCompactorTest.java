@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+import com.alibaba.dubbo.monitor.simple.query.SeriesQuery;
+import com.alibaba.dubbo.monitor.simple.query.TimeSeries;
+import com.alibaba.dubbo.monitor.simple.retention.RetentionManager;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * RollupCompactorTest
+ */
+public class RollupCompactorTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("statistics", "");
+        directory.delete();
+        System.setProperty("dubbo.statistics.directory", directory.getAbsolutePath());
+        System.setProperty("dubbo.monitor.flush.interval", "0");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("dubbo.statistics.directory");
+        System.clearProperty("dubbo.monitor.flush.interval");
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testCompactAndRetain() {
+        long start = DateUtils.toMinute("20180101");
+        Series foo = new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        SegmentStatisticsStore store = new SegmentStatisticsStore();
+        for (int i = 0; i < 120; i++) {
+            store.append(start + i, foo, new long[]{60, 1, 600, 2, i, 3});
+        }
+        store.flush();
+
+        RollupStore rollups = new RollupStore(directory.getAbsolutePath() + "/rollup");
+        RollupCompactor compactor = new RollupCompactor(store, rollups);
+        // not closed yet
+        Assert.assertEquals(0, compactor.compact(start + 120));
+        long now = start + 3 * DateUtils.MINUTES_PER_DAY;
+        Assert.assertEquals(1, compactor.compact(now));
+        Assert.assertEquals(0, compactor.compact(now));
+
+        final List<long[]> hours = new ArrayList<long[]>();
+        rollups.scan("20180101", Resolution.HOUR, "com.foo.BarService", "foo", new RollupListener() {
+            public void onRollup(long minute, Series series, long[] rollup) {
+                hours.add(rollup);
+            }
+        });
+        Assert.assertEquals(2, hours.size());
+        Assert.assertEquals(3600, hours.get(0)[Rollup.SUM + StatisticsTypes.SUCCESS]);
+        Assert.assertEquals(59, hours.get(0)[Rollup.MAX + StatisticsTypes.MAX_ELAPSED]);
+        Assert.assertEquals(119, hours.get(1)[Rollup.MAX + StatisticsTypes.MAX_ELAPSED]);
+        Assert.assertEquals(60, hours.get(1)[Rollup.COUNT]);
+
+        RetentionManager retention = new RetentionManager(store, new LatencyStore(), rollups,
+                new SummaryIndex(store, new LatencyStore(), directory.getAbsolutePath() + "/summary", 0),
+                directory.getAbsolutePath(), 0);
+        retention.setMinuteRetention(1);
+        retention.retain(now);
+        Assert.assertEquals(Collections.<String>emptyList(), store.getDays());
+        Assert.assertEquals(Arrays.asList("20180101"), rollups.getDays(Resolution.DAY));
+
+        SeriesQuery query = new SeriesQuery("com.foo.BarService", "foo", SeriesQuery.RT, start, start + 7 * DateUtils.MINUTES_PER_DAY);
+        TimeSeries series = query.execute(store, rollups, new LatencyStore(), 0);
+        Assert.assertEquals(Resolution.HOUR, series.getResolution());
+        Assert.assertEquals(2, series.size());
+        Assert.assertEquals(10.0, series.getValues()[1], 0.0001);
+        query.setResolution(Resolution.DAY);
+        series = query.execute(store, rollups, new LatencyStore(), 0);
+        Assert.assertEquals(1, series.size());
+        Assert.assertEquals(start * DateUtils.MINUTE, series.getTimes()[0]);
+
+        // as sent to another node and merged there
+        query.setResolution(Resolution.HOUR);
+        TimeSeries expected = query.execute(store, rollups, new LatencyStore(), 0);
+        SeriesQuery received = SeriesQuery.valueOf(query.toURL());
+        series = query.merge(received.scan(store, rollups, new LatencyStore()));
+        Assert.assertEquals(Resolution.HOUR, series.getResolution());
+        Assert.assertArrayEquals(expected.getTimes(), series.getTimes());
+        Assert.assertArrayEquals(expected.getValues(), series.getValues(), 0.0001);
+    }
+
+}
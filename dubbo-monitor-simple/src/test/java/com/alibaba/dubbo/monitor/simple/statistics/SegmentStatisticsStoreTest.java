@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SegmentStatisticsStoreTest
+ */
+public class SegmentStatisticsStoreTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("statistics", "");
+        directory.delete();
+        System.setProperty("dubbo.statistics.directory", directory.getAbsolutePath());
+        System.setProperty("dubbo.monitor.flush.interval", "0");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("dubbo.statistics.directory");
+        System.clearProperty("dubbo.monitor.flush.interval");
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testAppendAndScan() {
+        long minute = DateUtils.toMinute("20180101", "1230");
+        Series foo = new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        Series bar = new Series("com.foo.BarService", "bar", "10.0.0.1", "10.0.0.2", MonitorService.CONSUMER);
+
+        SegmentStatisticsStore store = new SegmentStatisticsStore();
+        store.append(minute, foo, new long[]{1, 2, 3, 4, 5, 6});
+        store.append(minute + 1, bar, new long[]{7, 8, 9, 10, 11, 12});
+        store.append(minute + 2, foo, new long[]{13, 14, 15, 16, 17, 18});
+        store.flush();
+
+        Assert.assertEquals(Arrays.asList("20180101"), store.getDays());
+        Assert.assertEquals(Arrays.asList("com.foo.BarService"), store.getServices("20180101"));
+        Assert.assertEquals(Arrays.asList("bar", "foo"), store.getMethods("20180101", "com.foo.BarService"));
+        assertScan(store, minute, foo);
+        store.close();
+
+        // reopened from disk
+        assertScan(new SegmentStatisticsStore(), minute, foo);
+    }
+
+    @Test
+    public void testScanAcrossChunks() {
+        long minute = DateUtils.toMinute("20180101", "1230");
+        Series foo = new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        Series bar = new Series("com.foo.BarService", "bar", "10.0.0.1", "10.0.0.2", MonitorService.CONSUMER);
+        // 3 records per mapped chunk
+        SegmentStatisticsStore store = new SegmentStatisticsStore(3);
+        StatisticsCursor cursor = new StatisticsCursor();
+        for (int i = 0; i < 7; i++) {
+            store.append(minute + i, i % 2 == 0 ? foo : bar, new long[]{i, 0, 0, 0, 0, 0});
+        }
+        store.flush();
+        Assert.assertEquals(Arrays.asList(0L, 2L, 4L, 6L), scanSuccess(store, "foo", cursor));
+        for (int i = 7; i < 11; i++) {
+            store.append(minute + i, i % 2 == 0 ? foo : bar, new long[]{i, 0, 0, 0, 0, 0});
+        }
+        store.flush();
+        // the last chunk grew, and a new one was added
+        Assert.assertEquals(Arrays.asList(8L, 10L), scanSuccess(store, "foo", cursor));
+        Assert.assertEquals(Arrays.asList(1L, 3L, 5L, 7L, 9L), scanSuccess(store, "bar", null));
+        store.close();
+    }
+
+    @Test
+    public void testRecoverDictionary() throws Exception {
+        long minute = DateUtils.toMinute("20180101", "1230");
+        SegmentStatisticsStore store = new SegmentStatisticsStore();
+        for (int i = 0; i < 3; i++) {
+            store.append(minute, newSeries("m" + i), new long[]{i, 0, 0, 0, 0, 0});
+        }
+        store.close();
+        // a malformed line in the middle, and a partial line at the end
+        File dictionary = new File(directory, "20180101" + SegmentStatisticsStore.SERIES_SUFFIX);
+        List<String> lines = readLines(dictionary);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(dictionary), "UTF-8");
+        writer.write(lines.get(0) + "\n" + "1\tcom.foo.Bar" + "\n" + lines.get(2) + "\n" + "3\tcom.foo.BarSer");
+        writer.close();
+
+        store = new SegmentStatisticsStore();
+        Assert.assertEquals(Arrays.asList(0L), scanSuccess(store, "m0", null));
+        Assert.assertEquals(Collections.<Long>emptyList(), scanSuccess(store, "m1", null));
+        Assert.assertEquals(Arrays.asList(2L), scanSuccess(store, "m2", null));
+        store.append(minute + 1, newSeries("m3"), new long[]{3, 0, 0, 0, 0, 0});
+        store.close();
+
+        store = new SegmentStatisticsStore();
+        Assert.assertEquals(Arrays.asList(2L), scanSuccess(store, "m2", null));
+        Assert.assertEquals(Arrays.asList(3L), scanSuccess(store, "m3", null));
+        Assert.assertTrue(readLines(dictionary).get(3).startsWith("3\tcom.foo.BarService\tm3\t"));
+        store.close();
+    }
+
+    @Test
+    public void testReopenIdleWriter() throws Exception {
+        long minute = DateUtils.toMinute("20180101", "1230");
+        SegmentStatisticsStore store = new SegmentStatisticsStore(Integer.MAX_VALUE / SegmentStatisticsStore.RECORD_SIZE, 0);
+        store.append(minute, newSeries("m0"), new long[]{0, 0, 0, 0, 0, 0});
+        Thread.sleep(5);
+        // idle, the writer is closed
+        store.flush();
+        store.append(minute + 1, newSeries("m1"), new long[]{1, 0, 0, 0, 0, 0});
+        store.close();
+
+        File dictionary = new File(directory, "20180101" + SegmentStatisticsStore.SERIES_SUFFIX);
+        Assert.assertEquals(2, readLines(dictionary).size());
+        store = new SegmentStatisticsStore();
+        Assert.assertEquals(Arrays.asList(0L), scanSuccess(store, "m0", null));
+        Assert.assertEquals(Arrays.asList(1L), scanSuccess(store, "m1", null));
+        store.close();
+    }
+
+    private static Series newSeries(String method) {
+        return new Series("com.foo.BarService", method, "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private static List<Long> scanSuccess(StatisticsStore store, String method, StatisticsCursor cursor) {
+        final List<Long> values = new ArrayList<Long>();
+        store.scan("20180101", "com.foo.BarService", method, cursor, new StatisticsListener() {
+            public void onStatistics(long minute, Series series, long[] record) {
+                values.add(record[StatisticsTypes.SUCCESS]);
+            }
+        });
+        return values;
+    }
+
+    private void assertScan(StatisticsStore store, final long minute, final Series foo) {
+        final List<long[]> records = new ArrayList<long[]>();
+        store.scan("20180101", "com.foo.BarService", "foo", new StatisticsListener() {
+            public void onStatistics(long m, Series series, long[] values) {
+                Assert.assertEquals(foo, series);
+                Assert.assertEquals(minute + records.size() * 2, m);
+                records.add(values);
+            }
+        });
+        Assert.assertEquals(2, records.size());
+        Assert.assertArrayEquals(new long[]{1, 2, 3, 4, 5, 6}, records.get(0));
+        Assert.assertArrayEquals(new long[]{13, 14, 15, 16, 17, 18}, records.get(1));
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+/**
+ * SeriesDictionaryTest
+ */
+public class SeriesDictionaryTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("series", ".dictionary");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testIntern() throws Exception {
+        SeriesDictionary dictionary = new SeriesDictionary(file.getPath(), 2);
+        Series foo = dictionary.intern("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        Series bar = dictionary.intern("com.foo.BarService", "bar", null, "10.0.0.2", MonitorService.CONSUMER);
+        Assert.assertEquals(0, foo.getId());
+        Assert.assertEquals(1, bar.getId());
+        Assert.assertSame(foo, dictionary.intern("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER));
+        Assert.assertSame(bar, dictionary.get(1));
+        Assert.assertEquals(foo, new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER));
+        // over the limit, series are handed out without id
+        Series baz = dictionary.intern("com.foo.BarService", "baz", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        Assert.assertEquals(Series.NO_ID, baz.getId());
+        Assert.assertEquals(1, dictionary.getOverflows());
+        dictionary.close();
+
+        // a partial line left by a crash is skipped and terminated
+        FileOutputStream output = new FileOutputStream(file, true);
+        output.write("2\tcom.foo".getBytes());
+        output.close();
+
+        dictionary = new SeriesDictionary(file.getPath(), 10);
+        Assert.assertEquals(2, dictionary.size());
+        Assert.assertEquals(0, dictionary.intern("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER).getId());
+        Series reloaded = dictionary.get(1);
+        Assert.assertEquals("bar", reloaded.getMethod());
+        Assert.assertNull(reloaded.getConsumer());
+        Assert.assertEquals(2, dictionary.intern("com.foo.BarService", "baz", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER).getId());
+        dictionary.close();
+
+        dictionary = new SeriesDictionary(file.getPath(), 10);
+        Assert.assertEquals(3, dictionary.size());
+        Assert.assertEquals("baz", dictionary.get(2).getMethod());
+        dictionary.close();
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        int today = (int) (DateUtils.toMinute(System.currentTimeMillis()) / DateUtils.MINUTES_PER_DAY);
+        FileOutputStream output = new FileOutputStream(file);
+        output.write(("0\tcom.foo.BarService\tfoo\t10.0.0.1\t10.0.0.2\tprovider\t" + (today - 30) + "\n"
+                + "1\tcom.foo.BarService\tbar\t10.0.0.1\t10.0.0.2\tprovider\t" + (today - 1) + "\n"
+                // written before the days were kept
+                + "2\tcom.foo.BarService\tbaz\t10.0.0.1\t10.0.0.2\tprovider\n").getBytes());
+        output.close();
+
+        SeriesDictionary dictionary = new SeriesDictionary(file.getPath(), 3);
+        Assert.assertTrue(dictionary.isFull());
+        Assert.assertEquals(1, dictionary.expire(7));
+        Assert.assertFalse(dictionary.isFull());
+        Assert.assertEquals(2, dictionary.size());
+        Assert.assertEquals("bar", dictionary.get(0).getMethod());
+        Assert.assertEquals("baz", dictionary.get(1).getMethod());
+        Assert.assertEquals(0, dictionary.intern("com.foo.BarService", "bar", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER).getId());
+        dictionary.close();
+
+        // the compacted ids and the days they were used on survive a restart
+        dictionary = new SeriesDictionary(file.getPath(), 10);
+        Assert.assertEquals(2, dictionary.size());
+        Assert.assertEquals("baz", dictionary.get(1).getMethod());
+        Assert.assertEquals(0, dictionary.expire(0));
+        Assert.assertEquals(2, dictionary.intern("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER).getId());
+        dictionary.close();
+    }
+
+    @Test
+    public void testEqualsByFields() {
+        Series foo = new Series(0, "com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        Series probe = new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        // the same series interned by another dictionary, and another series given the same id
+        Series other = new Series(1, "com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        Series bar = new Series(0, "com.foo.BarService", "bar", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        Assert.assertEquals(foo, probe);
+        Assert.assertEquals(probe, other);
+        Assert.assertEquals(foo, other);
+        Assert.assertEquals(foo.hashCode(), other.hashCode());
+        Assert.assertNotEquals(foo, bar);
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * StatisticsAggregatorTest
+ */
+public class StatisticsAggregatorTest {
+
+    @Test
+    public void testAggregate() {
+        StatisticsAggregator aggregator = new StatisticsAggregator();
+        Series series = new Series("com.foo.BarService", "sayHello", "10.0.0.1", "10.0.0.2", "provider");
+        aggregator.add(100, series, new long[]{10, 1, 200, 2, 50, 3});
+        aggregator.add(100, new Series("com.foo.BarService", "sayHello", "10.0.0.1", "10.0.0.2", "provider"),
+                new long[]{5, 0, 100, 1, 80, 2});
+        aggregator.add(101, series, new long[]{1, 1, 1, 1, 1, 1});
+        Assert.assertEquals(2, aggregator.size());
+
+        final List<long[]> records = new ArrayList<long[]>();
+        Assert.assertEquals(1, aggregator.flush(101, new StatisticsListener() {
+            public void onStatistics(long minute, Series s, long[] values) {
+                Assert.assertEquals(100, minute);
+                records.add(values);
+            }
+        }));
+        Assert.assertArrayEquals(new long[]{15, 1, 300, 3, 80, 3}, records.get(0));
+        Assert.assertEquals(1, aggregator.size());
+        Assert.assertEquals(3, aggregator.getReports());
+        Assert.assertEquals(1, aggregator.getRecords());
+    }
+
+}
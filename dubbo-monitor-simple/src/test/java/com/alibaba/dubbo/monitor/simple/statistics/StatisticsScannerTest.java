@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * StatisticsScannerTest
+ */
+public class StatisticsScannerTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("statistics", ".success");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private void write(String content) throws IOException {
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content.getBytes());
+        } finally {
+            output.close();
+        }
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        write("0000 1\n0001 5000000000\r\nbad line\n12345 1\n0002 x\n0130  7\n0131 partial");
+        final List<long[]> records = new ArrayList<long[]>();
+        // smaller than the file, so lines span buffer reads
+        StatisticsScanner scanner = new StatisticsScanner(20);
+        long offset = scanner.scan(file, 0, new StatisticsScanner.RecordVisitor() {
+            public void onRecord(int minute, long value) {
+                records.add(new long[]{minute, value});
+            }
+        });
+        Assert.assertEquals(3, records.size());
+        Assert.assertArrayEquals(new long[]{0, 1}, records.get(0));
+        Assert.assertArrayEquals(new long[]{1, 5000000000L}, records.get(1));
+        Assert.assertArrayEquals(new long[]{90, 7}, records.get(2));
+        Assert.assertEquals(file.length() - "0131 partial".length(), offset);
+
+        StatisticsScanner.Summary summary = new StatisticsScanner.Summary();
+        Assert.assertEquals(offset, scanner.scan(file, 0, summary));
+        Assert.assertEquals(5000000008L, summary.getSum());
+        Assert.assertEquals(5000000000L, summary.getMax());
+        Assert.assertEquals(3, summary.getCount());
+        Assert.assertEquals(5000000008L / 3, summary.getAverage());
+    }
+
+    @Test
+    public void testSkipLongLine() throws Exception {
+        StringBuilder content = new StringBuilder("0000 1\n");
+        for (int i = 0; i < 100; i++) {
+            content.append('9');
+        }
+        content.append("\n0001 2\n");
+        write(content.toString());
+        StatisticsScanner.Summary summary = new StatisticsScanner.Summary();
+        Assert.assertEquals(file.length(), new StatisticsScanner(16).scan(file, 0, summary));
+        Assert.assertEquals(3, summary.getSum());
+        Assert.assertEquals(2, summary.getCount());
+    }
+
+}
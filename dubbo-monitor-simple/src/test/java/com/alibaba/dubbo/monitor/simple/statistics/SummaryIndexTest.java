@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple.statistics;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+import com.alibaba.dubbo.monitor.simple.common.DateUtils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SummaryIndexTest
+ */
+public class SummaryIndexTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("statistics", "");
+        directory.delete();
+        System.setProperty("dubbo.statistics.directory", directory.getAbsolutePath());
+        System.setProperty("dubbo.monitor.flush.interval", "0");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("dubbo.statistics.directory");
+        System.clearProperty("dubbo.monitor.flush.interval");
+        delete(directory);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testRebuildAndLoad() {
+        long start = DateUtils.toMinute("20180101");
+        Series foo = new Series("com.foo.BarService", "foo", "10.0.0.1", "10.0.0.2", MonitorService.PROVIDER);
+        Series bar = new Series("com.foo.BarService", "bar", "10.0.0.1", "10.0.0.2", MonitorService.CONSUMER);
+        SegmentStatisticsStore store = new SegmentStatisticsStore();
+        LatencyStore latencies = new LatencyStore();
+        for (int i = 0; i < 10; i++) {
+            store.append(start + i, foo, new long[]{10, 1, 100, 2, 10 + i, 3});
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(10, 10);
+            latencies.append(start + i, foo, histogram);
+        }
+        store.append(start, bar, new long[]{1, 0, 1, 1, 1, 1});
+        store.flush();
+        latencies.flush();
+
+        String summaries = directory.getAbsolutePath() + "/summary";
+        SummaryIndex index = new SummaryIndex(store, latencies, summaries, 0);
+        assertSummary(index.getEntries("20180101", "com.foo.BarService"), foo);
+        // as sent to another monitor node
+        List<SummaryIndex.Entry> copies = new ArrayList<SummaryIndex.Entry>();
+        for (SummaryIndex.Entry entry : index.getEntries("20180101", "com.foo.BarService")) {
+            copies.add(SummaryIndex.Entry.valueOf(entry.toURL()));
+        }
+        assertSummary(copies, foo);
+        // written after the rebuild
+        index.add(start + 10, foo, new long[]{10, 0, 100, 1, 30, 1});
+        index.save();
+        Assert.assertEquals(0, index.size());
+        Assert.assertTrue(new File(summaries, "20180101.summary").exists());
+
+        List<SummaryIndex.Entry> entries = new SummaryIndex(store, latencies, summaries, 0).getEntries("20180101", "com.foo.BarService");
+        Assert.assertEquals(2, entries.size());
+        for (SummaryIndex.Entry entry : entries) {
+            if (entry.getSeries().equals(foo)) {
+                Assert.assertArrayEquals(new long[]{110, 10, 1100, 21, 30, 3}, entry.getValues());
+                Assert.assertEquals(100, entry.getLatency().getTotalCount());
+            }
+        }
+        Assert.assertTrue(index.getEntries("20180101", "com.foo.OtherService").isEmpty());
+    }
+
+    private static void assertSummary(List<SummaryIndex.Entry> entries, Series foo) {
+        Assert.assertEquals(2, entries.size());
+        for (SummaryIndex.Entry entry : entries) {
+            if (entry.getSeries().equals(foo)) {
+                Assert.assertArrayEquals(new long[]{100, 10, 1000, 20, 19, 3}, entry.getValues());
+                Assert.assertEquals(100, entry.getLatency().getTotalCount());
+                Assert.assertEquals(10, entry.getLatency().getValueAtPercentile(99));
+            } else {
+                Assert.assertArrayEquals(new long[]{1, 0, 1, 1, 1, 1}, entry.getValues());
+            }
+        }
+    }
+
+}